@@ -19,8 +19,13 @@ import com.frostvoid.trekwar.client.gui.BottomMenu.BottomMenuPanel;
 import com.frostvoid.trekwar.client.gui.BottomMenu.BottomMenuToolbarPanel;
 import com.frostvoid.trekwar.client.gui.*;
 import com.frostvoid.trekwar.client.net.ClientCommunication;
+import com.frostvoid.trekwar.client.net.ServerEventListener;
 import com.frostvoid.trekwar.common.*;
 import com.frostvoid.trekwar.common.exceptions.UserNotFoundException;
+import com.frostvoid.trekwar.common.net.messaging.Event;
+import com.frostvoid.trekwar.common.net.messaging.events.ChatEvent;
+import com.frostvoid.trekwar.common.net.messaging.events.TurnExecutedEvent;
+import com.frostvoid.trekwar.common.net.messaging.events.UserStatusEvent;
 import com.frostvoid.trekwar.common.utils.Language;
 import org.jvnet.substance.SubstanceLookAndFeel;
 
@@ -39,6 +44,8 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 import java.util.logging.*;
 
 /**
@@ -51,6 +58,7 @@ import java.util.logging.*;
 public class Client extends JFrame {
 
     public static final long SYNC_UPDATE_TIME = 5000;
+    public static final long SUBSCRIBED_SYNC_UPDATE_TIME = 15000; // only keeps the session alive, events are pushed by the server
     public static final String VERSION = "0.4.55";
     public static final Logger LOG = Logger.getLogger("trekwar_client");
     private static Language language;
@@ -63,7 +71,7 @@ public class Client extends JFrame {
     private LinkedList<ChatLine> chatQueue;
     private boolean getMapFromServerThreadRunning = true;
     private long lastSyncTimestamp = 0;
-    private boolean downloadNeeded = true;
+    private volatile boolean downloadNeeded = true;
     private Thread reloadThread;
     private Properties userProperties;
     private String propertiesFilename = "properties.xml";
@@ -96,6 +104,13 @@ public class Client extends JFrame {
         setTitle("Trekwar " + VERSION);
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         chatQueue = new LinkedList<ChatLine>();
+        comm.setEventListener(new ServerEventListener() {
+
+            @Override
+            public void eventReceived(Event event) {
+                handleServerEvent(event);
+            }
+        });
 
         // load user preferences
         try {
@@ -187,10 +202,24 @@ public class Client extends JFrame {
                         // DOWNLOAD CHAT + SYNC TIME WITH SERVER EVERY X SECONDS
                         if (comm.isLoggedIn() && localGalaxy != null) {
 
-                            if (lastSyncTimestamp < System.currentTimeMillis() - SYNC_UPDATE_TIME) {
-                                final ArrayList<ChatLine> chatLines = comm.server_getChat();
-                                final ArrayList<User> userList = Client.getInstance().getComm().server_getUserList();
-                                comm.sync();
+                            if (comm.isSubscribed() && lastSyncTimestamp > 0) {
+                                // chat, users and new turns are pushed by the server (after the first full sync)
+                                if (lastSyncTimestamp < System.currentTimeMillis() - SUBSCRIBED_SYNC_UPDATE_TIME) {
+                                    comm.sync();
+                                    lastSyncTimestamp = System.currentTimeMillis();
+                                    if (comm.getCurrentServerTurn() > localGalaxy.getCurrentTurn()) {
+                                        downloadNeeded = true;
+                                    }
+                                }
+                                updateTurnProgress();
+                            } else if (lastSyncTimestamp < System.currentTimeMillis() - SYNC_UPDATE_TIME) {
+                                // all three requests are sent before waiting for any of the responses
+                                CompletableFuture<ArrayList<ChatLine>> chatFuture = comm.server_getChatAsync();
+                                CompletableFuture<ArrayList<User>> userListFuture = comm.server_getUserListAsync();
+                                CompletableFuture<Void> syncFuture = comm.syncAsync();
+                                final ArrayList<ChatLine> chatLines = chatFuture.get();
+                                final ArrayList<User> userList = userListFuture.get();
+                                syncFuture.get();
                                 lastSyncTimestamp = System.currentTimeMillis();
 
                                 if (Client.getInstance().getLocalGalaxy() != null && comm.getCurrentServerTurn() > Client.getInstance().getLocalGalaxy().getCurrentTurn()) {
@@ -219,19 +248,7 @@ public class Client extends JFrame {
                                 }
                             } // USE LOCAL TIME WHEN NOT SYNCING WITH SERVER (EVERY 0.5 SECONDS)
                             else {
-                                java.awt.EventQueue.invokeLater(new Runnable() {
-
-                                    @Override
-                                    public void run() {
-                                        int time = (int) ((comm.getNextTurnDate() - System.currentTimeMillis()) / 1000);
-                                        if (time < 0) {
-                                            time = 0;
-                                            downloadNeeded = true;
-                                        }
-                                        topMenuPanel.setTurnProgress(language.get("next_turn_in") + " " + time + " " + language.get("seconds"),
-                                                (int) (localGalaxy.getTurnSpeed() / 1000) - time, (int) localGalaxy.getTurnSpeed() / 1000);
-                                    }
-                                });
+                                updateTurnProgress();
                             }
                         }
 
@@ -549,6 +566,97 @@ public class Client extends JFrame {
         } else {
             chatWindow.setVisible(true);
         }
+        if (comm.isSubscribed()) {
+            // not updated by the reload thread when events are pushed
+            flushChatQueue();
+            refreshChatUserList();
+        }
+    }
+
+    /**
+     * Handles events pushed by the server, called by the response dispatcher thread
+     *
+     * @param event the event
+     */
+    private void handleServerEvent(Event event) {
+        if (event instanceof TurnExecutedEvent) {
+            downloadNeeded = true;
+        } else if (event instanceof ChatEvent) {
+            final ChatLine line = ((ChatEvent) event).getChatLine();
+            java.awt.EventQueue.invokeLater(new Runnable() {
+
+                @Override
+                public void run() {
+                    chatQueue.add(line);
+                    while (chatQueue.size() > 300) {
+                        chatQueue.removeFirst();
+                    }
+                }
+            });
+            flushChatQueue();
+        } else if (event instanceof UserStatusEvent) {
+            refreshChatUserList();
+        }
+    }
+
+    /**
+     * Moves queued chat lines to the chat window (if it is visible)
+     */
+    private void flushChatQueue() {
+        java.awt.EventQueue.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                if (chatWindow != null && chatWindow.isVisible()) {
+                    while (chatQueue.size() > 0) {
+                        chatWindow.addChat(chatQueue.removeFirst());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the list of logged in users from the server, and shows it in the chat window (if it is visible)
+     */
+    private void refreshChatUserList() {
+        if (chatWindow == null || !chatWindow.isVisible()) {
+            return;
+        }
+        comm.server_getUserListAsync().thenAccept(new Consumer<ArrayList<User>>() {
+
+            @Override
+            public void accept(final ArrayList<User> userList) {
+                java.awt.EventQueue.invokeLater(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        if (chatWindow != null && chatWindow.isVisible()) {
+                            chatWindow.populateUserList(userList);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Updates the turn countdown using the local clock
+     */
+    private void updateTurnProgress() {
+        java.awt.EventQueue.invokeLater(new Runnable() {
+
+            @Override
+            public void run() {
+                int time = (int) ((comm.getNextTurnDate() - System.currentTimeMillis()) / 1000);
+                if (time < 0) {
+                    time = 0;
+                    downloadNeeded = true;
+                }
+                topMenuPanel.setTurnProgress(language.get("next_turn_in") + " " + time + " " + language.get("seconds"),
+                        (int) (localGalaxy.getTurnSpeed() / 1000) - time, (int) localGalaxy.getTurnSpeed() / 1000);
+            }
+        });
     }
 
     /**
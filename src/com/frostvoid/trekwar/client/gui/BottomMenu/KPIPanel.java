@@ -190,7 +190,7 @@ public class KPIPanel extends JPanel {
         // Defense
         Color sensorColor = Color.BLACK;
         String sensorTooltip = Client.getLanguage().get("sensor_strength") + ": " + s.getDeuterium();
-        sensorLabel.setText("" + Client.getInstance().getLocalUser().getSensorOverlay()[s.getX()][s.getY()]);
+        sensorLabel.setText("" + Client.getInstance().getLocalUser().getSensorOverlay().getSensorStrength(s.getX(), s.getY()));
         sensorLabel.setForeground(sensorColor);
         sensorLabel.setToolTipText(sensorTooltip);
     }
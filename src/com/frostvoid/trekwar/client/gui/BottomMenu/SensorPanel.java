@@ -55,7 +55,7 @@ public class SensorPanel extends JPanel {
     }
 
     public void setSystem(StarSystem s) {
-        int num = Client.getInstance().getLocalUser().getSensorOverlay()[s.getX()][s.getY()];
+        int num = Client.getInstance().getLocalUser().getSensorOverlay().getSensorStrength(s.getX(), s.getY());
         sensorLabel.setText("" + num);
         repaint();
     }
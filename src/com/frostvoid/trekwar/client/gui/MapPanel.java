@@ -262,7 +262,7 @@ public class MapPanel extends JPanel {
                     }
                 }
 
-                if (Client.getInstance().getLocalUser().getSensorOverlay()[i][j] != Integer.MIN_VALUE) {
+                if (Client.getInstance().getLocalUser().getSensorOverlay().isExplored(i, j)) {
                     // tile has been discovered
                     if (map[i][j].getStarSystemClassification() == StarSystemClassification.empty) {
                         tile.addImage(getRandomBlackTile());
@@ -342,7 +342,7 @@ public class MapPanel extends JPanel {
                     }
 
                     // fog of war
-                    if (Client.getInstance().getLocalUser().getSensorOverlay()[i][j] < 1) {
+                    if (!Client.getInstance().getLocalUser().getSensorOverlay().isInSensorRange(i, j)) {
                         tile.addImage(ImageManager.getInstance().getImage("graphics/map_icons/black_transparent.png"));
                     }
 
@@ -381,7 +381,7 @@ public class MapPanel extends JPanel {
                         if (currentAction == ACTION_NONE) {
 
                             // ignore clicks in LOS
-                            if (Client.getInstance().getLocalUser().getSensorOverlay()[s.getX()][s.getY()] == Integer.MIN_VALUE) {
+                            if (!Client.getInstance().getLocalUser().getSensorOverlay().isExplored(s.getX(), s.getY())) {
                                 return;
                             }
 
@@ -399,7 +399,7 @@ public class MapPanel extends JPanel {
                             currentAction = ACTION_NONE;
                             currentActionObject = null;
                             Client.getInstance().getSoundSystem().play_movefleet();
-                            Client.getInstance().getComm().server_moveFleet(f.getName(), s.getX(), s.getY());
+                            Client.getInstance().getComm().server_moveFleetAsync(f.getName(), s.getX(), s.getY());
 
                             ArrayList<Fleet> localFleets = Client.getInstance().getLocalUser().getFleets();
                             for (Fleet localFleet : localFleets) {
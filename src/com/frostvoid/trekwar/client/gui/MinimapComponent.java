@@ -104,7 +104,7 @@ public class MinimapComponent extends JComponent {
                 StarSystem s = map[i][j];
 
                 // skip systems in Fog Of War
-                if (Client.getInstance().getLocalUser().getSensorOverlay()[i][j] == Integer.MIN_VALUE) {
+                if (!Client.getInstance().getLocalUser().getSensorOverlay().isExplored(i, j)) {
                     minimapdata.add(new MinimapSystem(j, i, FOG_OF_WAR, false));
                     continue;
                 }
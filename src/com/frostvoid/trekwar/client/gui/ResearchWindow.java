@@ -639,7 +639,7 @@ public final class ResearchWindow extends JInternalFrame {
         techDescriptionArea.setText(tech.getDesscription());
         techDescriptionArea.setCaretPosition(1);
 
-        if (user.getTechs().contains(tech)) {
+        if (user.hasTech(tech)) {
             techStartButton.setEnabled(false);
             techProgressBar.setValue(techProgressBar.getMaximum());
             techProgressLabel.setText(lang.get("researchwindow_research_completed"));
@@ -19,26 +19,41 @@ import com.frostvoid.trekwar.client.Client;
 import com.frostvoid.trekwar.common.*;
 import com.frostvoid.trekwar.common.exceptions.ServerCommunicationException;
 import com.frostvoid.trekwar.common.exceptions.UserNotFoundException;
+import com.frostvoid.trekwar.common.net.FrameCodec;
+import com.frostvoid.trekwar.common.net.MessageCodec;
 import com.frostvoid.trekwar.common.net.messaging.*;
+import com.frostvoid.trekwar.common.net.messaging.events.TurnExecutedEvent;
 import com.frostvoid.trekwar.common.net.messaging.requests.*;
 import com.frostvoid.trekwar.common.net.messaging.responses.*;
 import com.frostvoid.trekwar.common.shipComponents.ShipComponent;
 import com.frostvoid.trekwar.common.structures.Structure;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.net.Socket;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Communicates with the Server
+ * <p>
+ * Every request gets an id, which the server copies to the response. Responses are
+ * read by a dispatcher thread that completes the future of the matching request,
+ * so several requests can be in flight at once. The server_* methods wait for the
+ * response, the *Async methods return a CompletableFuture instead. Callbacks added to
+ * those futures are run by the dispatcher thread, and must not wait for other responses.
+ * <p>
+ * After login the client subscribes to events, and the server pushes turns, chat
+ * and users logging in/out to the ServerEventListener instead of being polled.
  *
  * @author Erlend Aakre
  * @author FrostVoid Software
@@ -47,22 +62,42 @@ import java.util.logging.Logger;
 public class ClientCommunication {
 
     private Socket socket;
-    protected ObjectOutputStream out;
-    protected ObjectInputStream in;
+    protected DataOutputStream out;
+    protected DataInputStream in;
+    private MessageCodec codec = MessageCodec.SERIALIZATION;
+    private int frameFlags = 0;
+    private final ConcurrentHashMap<Integer, CompletableFuture<Response>> pendingRequests = new ConcurrentHashMap<Integer, CompletableFuture<Response>>();
+    private final AtomicInteger nextRequestId = new AtomicInteger(1);
+    private volatile IOException connectionError; // set by the dispatcher when the connection is lost
+    private volatile boolean subscribed = false;
+    private volatile ServerEventListener eventListener;
     private String localUsername;
     private boolean isLoggedIn = false;
-    private long nextTurnDate = 0;
-    private long currentServerTurn = 0;
+    private volatile long nextTurnDate = 0;
+    private volatile long currentServerTurn = 0;
+    private Galaxy transferedGalaxy; // the last galaxy downloaded and applied
+    private long galaxyTransferId = -1; // transfer id of transferedGalaxy, sent when asking for a galaxy delta
 
     public ClientCommunication() {
     }
 
     public void connect(String server, int port) throws UnknownHostException, IOException, ClassNotFoundException {
         socket = new Socket(server, port);
-        in = new ObjectInputStream(socket.getInputStream());
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
         WelcomeMessage welcome = (WelcomeMessage) readResponse();
         System.out.println("welcome to server " + welcome.getServerName());
-        out = new ObjectOutputStream(socket.getOutputStream());
+        if (welcome.supportsCodec(MessageCodec.BINARY.getName())) {
+            codec = MessageCodec.BINARY; // the server answers using the same codec
+        }
+        if (welcome.isCompressionSupported()) {
+            frameFlags = FrameCodec.FLAG_ACCEPTS_COMPRESSION; // large responses (galaxy) are compressed
+        }
+
+        Thread dispatcher = new Thread(new ResponseDispatcher(), "Response dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
     }
 
     public void disconnect() {
@@ -87,13 +122,13 @@ public class ClientCommunication {
     public void login(String username, String password) {
         try {
             System.out.println("about to send login request");
-            sendRequest(new LoginRequest(username, password));
-            LoginResponse response = (LoginResponse) readResponse();
+            LoginResponse response = (LoginResponse) request(new LoginRequest(username, password));
             System.out.println("Got login response");
             if (response.isLoginSuccessful()) {
                 isLoggedIn = true;
                 this.localUsername = username;
                 sync();
+                subscribe();
             }
         } catch (IOException ex) {
             Logger.getLogger(ClientCommunication.class.getName()).log(Level.SEVERE, null, ex);
@@ -102,6 +137,33 @@ public class ClientCommunication {
         }
     }
 
+    /**
+     * Asks the server to push events to this client
+     *
+     * @throws IOException            if the request could not be sent
+     * @throws ClassNotFoundException if the response contains an unknown class
+     */
+    private void subscribe() throws IOException, ClassNotFoundException {
+        SubscribeResponse res = (SubscribeResponse) request(new SubscribeRequest());
+        subscribed = res.isSubscribed();
+    }
+
+    /**
+     * @return true if the server pushes events to this client, so it does not need to poll
+     */
+    public boolean isSubscribed() {
+        return subscribed;
+    }
+
+    /**
+     * Sets the listener for events pushed by the server
+     *
+     * @param eventListener the listener
+     */
+    public void setEventListener(ServerEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
     public boolean isLoggedIn() {
         return isLoggedIn;
     }
@@ -119,35 +181,48 @@ public class ClientCommunication {
     }
 
     /**
-     * Downloads the main galaxy object for the logged in user
+     * Downloads the main galaxy object for the logged in user.
+     * If the client already has a galaxy, only the changes since then are downloaded
      *
      * @return true if galaxy downloaded, false if not
      */
     public void downloadGalaxy() {
-        synchronized (out) {
-            try {
-                sync();
-                sendRequest(new GetGalaxyRequest());
-                GetGalaxyResponse res = (GetGalaxyResponse) readResponse();
-
-                if (res.getGalaxy() != null) {
-                    try {
-                        Client.getInstance().galaxyDownloaded(res.getGalaxy());
-                        //return true;
-                    } catch (InterruptedException ex) {
-                        Logger.getLogger(ClientCommunication.class.getName()).log(Level.SEVERE, null, ex);
-                    } catch (InvocationTargetException ex) {
-                        Logger.getLogger(ClientCommunication.class.getName()).log(Level.SEVERE, null, ex);
-                    }
-                } else {
-                    System.out.println("Galaxy downloaded from server was null");
-                    //return false;
+        try {
+            sync();
+            Galaxy localGalaxy = Client.getInstance().getLocalGalaxy();
+            // only ask for a delta against a galaxy that was applied, a full galaxy is sent for -1
+            long baseTransferId = localGalaxy != null && localGalaxy == transferedGalaxy ? galaxyTransferId : -1;
+            GetGalaxyDeltaResponse res = (GetGalaxyDeltaResponse) request(new GetGalaxyDeltaRequest(baseTransferId));
+
+            Galaxy galaxy = null;
+            if (res.isFullGalaxy()) {
+                galaxy = res.getGalaxy();
+            } else if (res.hasData()) {
+                GalaxyDelta delta = res.getDelta();
+                if (localGalaxy != null && delta.getBaseTurn() == localGalaxy.getCurrentTurn()) {
+                    galaxy = localGalaxy.applyDelta(delta);
                 }
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_downloading_galaxy_from_server"), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("Error while downloading galaxy from server"), cnfe, false, true);
             }
+
+            if (galaxy != null) {
+                try {
+                    Client.getInstance().galaxyDownloaded(galaxy);
+                    transferedGalaxy = galaxy;
+                    galaxyTransferId = res.getTransferId();
+                    //return true;
+                } catch (InterruptedException ex) {
+                    Logger.getLogger(ClientCommunication.class.getName()).log(Level.SEVERE, null, ex);
+                } catch (InvocationTargetException ex) {
+                    Logger.getLogger(ClientCommunication.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            } else {
+                System.out.println("Galaxy downloaded from server was null");
+                //return false;
+            }
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_downloading_galaxy_from_server"), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("Error while downloading galaxy from server"), cnfe, false, true);
         }
     }
 
@@ -157,37 +232,64 @@ public class ClientCommunication {
      * @throws IOException if shit hits the fan
      */
     public void sync() throws IOException {
-        synchronized (out) {
-            try {
-                sendRequest(new TimeToNextTurnRequest());
-                TimeToNextTurnResponse res = (TimeToNextTurnResponse) readResponse();
-                nextTurnDate = System.currentTimeMillis() + (res.getMillisecondsToNextTurn());
-                currentServerTurn = res.getCurrentTurn();
-            } catch (ClassNotFoundException ex) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
-            }
+        try {
+            TimeToNextTurnResponse res = (TimeToNextTurnResponse) request(new TimeToNextTurnRequest());
+            updateTurnTime(res);
+        } catch (ClassNotFoundException ex) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
         }
     }
 
+    /**
+     * Syncs up the time with the server without waiting for the response
+     *
+     * @return future completed when the time has been updated
+     */
+    public CompletableFuture<Void> syncAsync() {
+        return sendRequestAsync(new TimeToNextTurnRequest()).thenApply(new Function<Response, Void>() {
+            @Override
+            public Void apply(Response response) {
+                updateTurnTime((TimeToNextTurnResponse) response);
+                return null;
+            }
+        });
+    }
+
+    private void updateTurnTime(TimeToNextTurnResponse res) {
+        nextTurnDate = System.currentTimeMillis() + (res.getMillisecondsToNextTurn());
+        currentServerTurn = res.getCurrentTurn();
+    }
+
     public ArrayList<User> server_getUserList() {
         ArrayList<User> users = new ArrayList<User>();
 
-        synchronized (out) {
+        try {
+            ListUsersResponse res = (ListUsersResponse) request(new ListUsersRequest());
+            users = getUsers(res);
+        } catch (ClassNotFoundException ex) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
+        } catch (IOException ioe) {
+            Client.getInstance().showError("Error getting user list: ", ioe, false, true);
+        }
+        return users;
+    }
+
+    public CompletableFuture<ArrayList<User>> server_getUserListAsync() {
+        return sendRequestAsync(new ListUsersRequest()).thenApply(new Function<Response, ArrayList<User>>() {
+            @Override
+            public ArrayList<User> apply(Response response) {
+                return getUsers((ListUsersResponse) response);
+            }
+        });
+    }
+
+    private ArrayList<User> getUsers(ListUsersResponse res) {
+        ArrayList<User> users = new ArrayList<User>();
+        for (String username : res.getUsernames()) {
             try {
-                sendRequest(new ListUsersRequest());
-                ListUsersResponse res = (ListUsersResponse) readResponse();
-
-                for (String username : res.getUsernames()) {
-                    try {
-                        users.add(Client.getInstance().getLocalGalaxy().getUser(username));
-                    } catch (UserNotFoundException ex) {
-                        Client.LOG.log(Level.SEVERE, "ClientCommunication.server_getUserList() username not found in local galaxy! should not happen, send bug report =) :\n{0}", ex.getMessage());
-                    }
-                }
-            } catch (ClassNotFoundException ex) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
-            } catch (IOException ioe) {
-                Client.getInstance().showError("Error getting user list: ", ioe, false, true);
+                users.add(Client.getInstance().getLocalGalaxy().getUser(username));
+            } catch (UserNotFoundException ex) {
+                Client.LOG.log(Level.SEVERE, "ClientCommunication.server_getUserList() username not found in local galaxy! should not happen, send bug report =) :\n{0}", ex.getMessage());
             }
         }
 
@@ -203,404 +305,443 @@ public class ClientCommunication {
     }
 
     public ArrayList<ChatLine> server_getChat() throws IOException {
-        synchronized (out) {
-            sendRequest(new GetChatRequest());
-            try {
-                GetChatResponse res = (GetChatResponse) readResponse();
-                return res.getChatLines();
-            } catch (ClassNotFoundException ex) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
-            }
+        try {
+            GetChatResponse res = (GetChatResponse) request(new GetChatRequest());
+            return res.getChatLines();
+        } catch (ClassNotFoundException ex) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
         }
         return new ArrayList<ChatLine>(0);
     }
 
+    public CompletableFuture<ArrayList<ChatLine>> server_getChatAsync() {
+        return sendRequestAsync(new GetChatRequest()).thenApply(new Function<Response, ArrayList<ChatLine>>() {
+            @Override
+            public ArrayList<ChatLine> apply(Response response) {
+                return ((GetChatResponse) response).getChatLines();
+            }
+        });
+    }
+
     public void server_send_chat(String destination, String message, boolean privateMessage) {
-        synchronized (out) {
-            try {
-                sendRequest(new SendChatRequest(destination, message, privateMessage));
-                SendChatResponse res = (SendChatResponse) readResponse();
-                if (!res.isMessageDelivered()) {
-                    throw new IOException("Message not delivered: " + res.getErrorMessage());
-                }
-            } catch (IOException ex) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_send_chat_message"), ex, false, false);
-            } catch (ClassNotFoundException ex) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
+        try {
+            SendChatResponse res = (SendChatResponse) request(new SendChatRequest(destination, message, privateMessage));
+            if (!res.isMessageDelivered()) {
+                throw new IOException("Message not delivered: " + res.getErrorMessage());
             }
+        } catch (IOException ex) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_send_chat_message"), ex, false, false);
+        } catch (ClassNotFoundException ex) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage(), ex, false, false);
         }
     }
 
     public void server_changeResearch(Technology tech) throws ServerCommunicationException, IOException {
-        synchronized (out) {
-            try {
-                sendRequest(new ResearchRequest(tech.toString()));
-                ResearchResponse res = (ResearchResponse) readResponse();
-                if (!res.isResearchChangeOK()) {
-                    throw new ServerCommunicationException(res.getErrorMessage());
-                }
-            } catch (ClassNotFoundException ex) {
-                throw new ServerCommunicationException(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage());
+        try {
+            ResearchResponse res = (ResearchResponse) request(new ResearchRequest(tech.toString()));
+            if (!res.isResearchChangeOK()) {
+                throw new ServerCommunicationException(res.getErrorMessage());
             }
+        } catch (ClassNotFoundException ex) {
+            throw new ServerCommunicationException(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage());
         }
     }
 
     public void server_sendTemplate(ShipTemplate template) throws ServerCommunicationException {
-        synchronized (out) {
-            try {
-                UpdateTemplateRequest req = new UpdateTemplateRequest(template.getName(), template.getHullClass().getName());
-                for (int i : template.getComponents().keySet()) {
-                    ShipComponent c = template.getComponents().get(i);
-                    req.addComponent(i, c.getName());
-                }
-                sendRequest(req);
-                UpdateTemplateResponse res = (UpdateTemplateResponse) readResponse();
-                if (!res.isTemplateUpdated()) {
-                    throw new ServerCommunicationException("Unable to update template: " + res.getErrorMessage());
-                }
-            } catch (IOException ex) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_sending_template_to_server"), ex, false, true);
-                throw new ServerCommunicationException();
-            } catch (ClassNotFoundException ex) {
-                throw new ServerCommunicationException(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage());
+        try {
+            UpdateTemplateRequest req = new UpdateTemplateRequest(template.getName(), template.getHullClass().getName());
+            for (int i : template.getComponents().keySet()) {
+                ShipComponent c = template.getComponents().get(i);
+                req.addComponent(i, c.getName());
+            }
+            UpdateTemplateResponse res = (UpdateTemplateResponse) request(req);
+            if (!res.isTemplateUpdated()) {
+                throw new ServerCommunicationException("Unable to update template: " + res.getErrorMessage());
             }
+        } catch (IOException ex) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_sending_template_to_server"), ex, false, true);
+            throw new ServerCommunicationException();
+        } catch (ClassNotFoundException ex) {
+            throw new ServerCommunicationException(Client.getLanguage().get("server_client_communication_problem") + ex.getMessage());
         }
     }
 
     public void server_deleteTemplate(String templateName) {
-        synchronized (out) {
-            try {
-                sendRequest(new DeleteTemplateRequest(templateName));
-                DeleteTemplateResponse res = (DeleteTemplateResponse) readResponse();
-                if (!res.isTemplateDeleted()) {
-                    Client.getInstance().showError(Client.getLanguage().get("error_while_deleting_template") + " " + templateName + "\n" + res.getErrorMessage(), null, false, true);
-                }
-            } catch (IOException ex) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_delete_template"), ex, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
+        try {
+            DeleteTemplateResponse res = (DeleteTemplateResponse) request(new DeleteTemplateRequest(templateName));
+            if (!res.isTemplateDeleted()) {
+                Client.getInstance().showError(Client.getLanguage().get("error_while_deleting_template") + " " + templateName + "\n" + res.getErrorMessage(), null, false, true);
             }
+        } catch (IOException ex) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_delete_template"), ex, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
     }
 
     public boolean server_moveFleet(String fleetname, int dstx, int dsty) {
-        synchronized (out) {
-            try {
-                sendRequest(new MoveFleetRequest(fleetname, dstx, dsty));
-                MoveFleetResponse res = (MoveFleetResponse) readResponse();
-                return res.isFleetMoveOK();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_move_fleet") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            MoveFleetResponse res = (MoveFleetResponse) request(new MoveFleetRequest(fleetname, dstx, dsty));
+            return res.isFleetMoveOK();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_move_fleet") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
-    public boolean server_cancelFleetOrders(String fleetname) {
-        synchronized (out) {
-            try {
-                sendRequest(new CancelOrdersRequest(fleetname));
-                CancelOrdersResponse res = (CancelOrdersResponse) readResponse();
-                return res.isFleetOrdersCancelled();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_cancel_fleet_orders") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
+    /**
+     * Tells the server to move a fleet, without waiting for the response.
+     * Errors are shown to the user
+     *
+     * @param fleetname the fleet to move
+     * @param dstx      destination x
+     * @param dsty      destination y
+     * @return future completed with true if the move order was accepted
+     */
+    public CompletableFuture<Boolean> server_moveFleetAsync(final String fleetname, int dstx, int dsty) {
+        return sendRequestAsync(new MoveFleetRequest(fleetname, dstx, dsty)).thenApply(new Function<Response, Boolean>() {
+            @Override
+            public Boolean apply(Response response) {
+                return ((MoveFleetResponse) response).isFleetMoveOK();
+            }
+        }).exceptionally(new Function<Throwable, Boolean>() {
+            @Override
+            public Boolean apply(Throwable t) {
+                Throwable cause = t.getCause() != null ? t.getCause() : t;
+                if (cause instanceof IOException) {
+                    Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_move_fleet") + " " + fleetname, (IOException) cause, false, true);
+                } else {
+                    Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", new Exception(cause), false, false);
+                }
+                return false;
             }
+        });
+    }
+
+    /**
+     * Asks the server to predict the outcome of a fleet fighting the enemy fleets in a system
+     *
+     * @param fleetname the fleet
+     * @param x         x location of the system
+     * @param y         y location of the system
+     * @return the prediction (check the error message), or null if the server could not be asked
+     */
+    public PredictBattleResponse server_predictBattle(String fleetname, int x, int y) {
+        try {
+            return (PredictBattleResponse) request(new PredictBattleRequest(fleetname, x, y));
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_asking_server_to_predict_battle") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
+        }
+        return null;
+    }
+
+    /**
+     * Asks the server to predict the outcome of a fleet fighting the enemy fleets in a system,
+     * without waiting for the response. Errors are shown to the user
+     *
+     * @param fleetname the fleet
+     * @param x         x location of the system
+     * @param y         y location of the system
+     * @return future completed with the prediction, or null if the server could not be asked
+     */
+    public CompletableFuture<PredictBattleResponse> server_predictBattleAsync(final String fleetname, int x, int y) {
+        return sendRequestAsync(new PredictBattleRequest(fleetname, x, y)).thenApply(new Function<Response, PredictBattleResponse>() {
+            @Override
+            public PredictBattleResponse apply(Response response) {
+                return (PredictBattleResponse) response;
+            }
+        }).exceptionally(new Function<Throwable, PredictBattleResponse>() {
+            @Override
+            public PredictBattleResponse apply(Throwable t) {
+                Throwable cause = t.getCause() != null ? t.getCause() : t;
+                if (cause instanceof IOException) {
+                    Client.getInstance().showError(Client.getLanguage().get("io_error_while_asking_server_to_predict_battle") + " " + fleetname, (IOException) cause, false, true);
+                } else {
+                    Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", new Exception(cause), false, false);
+                }
+                return null;
+            }
+        });
+    }
+
+    public boolean server_cancelFleetOrders(String fleetname) {
+        try {
+            CancelOrdersResponse res = (CancelOrdersResponse) request(new CancelOrdersRequest(fleetname));
+            return res.isFleetOrdersCancelled();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_cancel_fleet_orders") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public void server_renameFleet(String fleetname, String newname) throws ServerCommunicationException {
-        synchronized (out) {
-            try {
-                sendRequest(new RenameFleetRequest(fleetname, newname));
-                RenameFleetResponse res = (RenameFleetResponse) readResponse();
-                if (!res.isRenameOK()) {
-                    throw new ServerCommunicationException(res.getErrorMessage());
-                }
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_rename_fleet") + " " + fleetname + " -> " + newname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
+        try {
+            RenameFleetResponse res = (RenameFleetResponse) request(new RenameFleetRequest(fleetname, newname));
+            if (!res.isRenameOK()) {
+                throw new ServerCommunicationException(res.getErrorMessage());
             }
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_rename_fleet") + " " + fleetname + " -> " + newname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
     }
 
     public boolean server_newFleet(String fleetname, int x, int y) {
-        synchronized (out) {
-            try {
-                sendRequest(new NewFleetRequest(fleetname, x, y));
-                NewFleetResponse res = (NewFleetResponse) readResponse();
-                return res.isFleetCreationOK();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_create_new_fleet") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            NewFleetResponse res = (NewFleetResponse) request(new NewFleetRequest(fleetname, x, y));
+            return res.isFleetCreationOK();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_create_new_fleet") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_moveShipToFleet(Fleet currentFleet, Ship ship, String newFleetName) {
-        synchronized (out) {
-            try {
-                sendRequest(new MoveShipToFleetRequest(currentFleet.getName(), ship.getShipId(), newFleetName));
-                MoveShipToFleetResponse res = (MoveShipToFleetResponse) readResponse();
-                return res.isShipMovedSuccessfully();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_move_ship_to_fleet") + " " + "ship=" + ship.getShipId() + " from=" + currentFleet.getName() + " to=" + newFleetName, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            MoveShipToFleetResponse res = (MoveShipToFleetResponse) request(new MoveShipToFleetRequest(currentFleet.getName(), ship.getShipId(), newFleetName));
+            return res.isShipMovedSuccessfully();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_move_ship_to_fleet") + " " + "ship=" + ship.getShipId() + " from=" + currentFleet.getName() + " to=" + newFleetName, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_decommissionDestroyShip(Ship ship) {
-        synchronized (out) {
-            try {
-                sendRequest(new DestroyDecommissionShipRequest(ship.getFleet().getName(), ship.getShipId()));
-                DestroyDecommissionShipResponse res = (DestroyDecommissionShipResponse) readResponse();
-                return res.isShipDestroyedSuccessfully();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_decommission_or_self_destruct_ship") + " " + "ship=" + ship.getShipId() + " fleet=" + ship.getFleet().getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            DestroyDecommissionShipResponse res = (DestroyDecommissionShipResponse) request(new DestroyDecommissionShipRequest(ship.getFleet().getName(), ship.getShipId()));
+            return res.isShipDestroyedSuccessfully();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_decommission_or_self_destruct_ship") + " " + "ship=" + ship.getShipId() + " fleet=" + ship.getFleet().getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public void server_colonize(String fleetname) throws ServerCommunicationException {
-        synchronized (out) {
-            try {
-                sendRequest(new ColonizeRequest(fleetname));
-                ColonizeResponse res = (ColonizeResponse) readResponse();
+        try {
+            ColonizeResponse res = (ColonizeResponse) request(new ColonizeRequest(fleetname));
 
-                if (!res.isColonizationStarted()) {
-                    throw new ServerCommunicationException(res.getErrorMessage());
-                }
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_colonize_system") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
+            if (!res.isColonizationStarted()) {
+                throw new ServerCommunicationException(res.getErrorMessage());
             }
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_colonize_system") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
     }
 
     public boolean server_invade(String fleetname) {
-        synchronized (out) {
-            try {
-                sendRequest(new InvadeRequest(fleetname));
-                InvadeResponse res = (InvadeResponse) readResponse();
-                return res.isInvasionStarted();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_invade_system") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            InvadeResponse res = (InvadeResponse) request(new InvadeRequest(fleetname));
+            return res.isInvasionStarted();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_invade_system") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_bombSystem(String fleetname) {
-        synchronized (out) {
-            try {
-                sendRequest(new OrbitalBombardmentRequest(fleetname));
-                OrbitalBombardmentResponse res = (OrbitalBombardmentResponse) readResponse();
-                return res.isBombardmentStarted();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_bomb_system") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            OrbitalBombardmentResponse res = (OrbitalBombardmentResponse) request(new OrbitalBombardmentRequest(fleetname));
+            return res.isBombardmentStarted();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_bomb_system") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_mine(String fleetname) {
-        synchronized (out) {
-            try {
-                sendRequest(new MineRequest(fleetname));
-                MineResponse res = (MineResponse) readResponse();
-                return res.isMiningStarted();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_mine_asteroids") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            MineResponse res = (MineResponse) request(new MineRequest(fleetname));
+            return res.isMiningStarted();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_mine_asteroids") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_harvestDeuterium(String fleetname) {
-        synchronized (out) {
-            try {
-                sendRequest(new HarvestRequest(fleetname));
-                HarvestResponse res = (HarvestResponse) readResponse();
-                return res.isHarvestingStarted();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_harvest_nebula") + " " + fleetname, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            HarvestResponse res = (HarvestResponse) request(new HarvestRequest(fleetname));
+            return res.isHarvestingStarted();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_harvest_nebula") + " " + fleetname, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_transferCargoFromShipToSystem(StarSystem s, int shipId, CargoClassification cargo, int amount) {
-        synchronized (out) {
-            try {
-                sendRequest(new CargoTransferRequest(CargoTransferRequestType.SHIPTOSYSTEM, cargo, s.getX(), s.getY(), shipId, amount));
-                CargoTransferResponse res = (CargoTransferResponse) readResponse();
-                return res.isCargoTransferred();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_cargo_from_ship_to_system") + " " + s.getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            CargoTransferResponse res = (CargoTransferResponse) request(new CargoTransferRequest(CargoTransferRequestType.SHIPTOSYSTEM, cargo, s.getX(), s.getY(), shipId, amount));
+            return res.isCargoTransferred();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_cargo_from_ship_to_system") + " " + s.getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_transferCargoFromSystemToShip(StarSystem s, int shipId, CargoClassification cargo, int amount) {
-        synchronized (out) {
-            try {
-                sendRequest(new CargoTransferRequest(CargoTransferRequestType.SYSTEMTOSHIP, cargo, s.getX(), s.getY(), shipId, amount));
-                CargoTransferResponse res = (CargoTransferResponse) readResponse();
-                return res.isCargoTransferred();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_cargo_from_system_to_ship") + " " + s.getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            CargoTransferResponse res = (CargoTransferResponse) request(new CargoTransferRequest(CargoTransferRequestType.SYSTEMTOSHIP, cargo, s.getX(), s.getY(), shipId, amount));
+            return res.isCargoTransferred();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_cargo_from_system_to_ship") + " " + s.getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_transferTroopsFromShipToSystem(StarSystem s, int shipId, int amount) {
-        synchronized (out) {
-            try {
-                sendRequest(new TroopTransferRequest(TroopTransferRequestType.SHIPTOSYSTEM, s.getX(), s.getY(), shipId, amount));
-                TroopTransferResponse res = (TroopTransferResponse) readResponse();
-                return res.isTroopsTransferred();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_troops_from_ship_to_system") + " " + s.getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            TroopTransferResponse res = (TroopTransferResponse) request(new TroopTransferRequest(TroopTransferRequestType.SHIPTOSYSTEM, s.getX(), s.getY(), shipId, amount));
+            return res.isTroopsTransferred();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_troops_from_ship_to_system") + " " + s.getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_transferTroopsFromSystemToShip(StarSystem s, int shipId, int amount) {
-        synchronized (out) {
-            try {
-                sendRequest(new TroopTransferRequest(TroopTransferRequestType.SYSTEMTOSHIP, s.getX(), s.getY(), shipId, amount));
-                TroopTransferResponse res = (TroopTransferResponse) readResponse();
-                return res.isTroopsTransferred();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_troops_from_system_to_ship") + " " + s.getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            TroopTransferResponse res = (TroopTransferResponse) request(new TroopTransferRequest(TroopTransferRequestType.SYSTEMTOSHIP, s.getX(), s.getY(), shipId, amount));
+            return res.isTroopsTransferred();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_transfer_troops_from_system_to_ship") + " " + s.getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_buildShip(StarSystem s, ShipTemplate t) {
-        synchronized (out) {
-            try {
-                sendRequest(new BuildShipRequest(s.getX(), s.getY(), t.getName()));
-                BuildShipResponse res = (BuildShipResponse) readResponse();
-                return res.isShipAddedToBuildQueue();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_build_ship") + ": " + s.getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            BuildShipResponse res = (BuildShipResponse) request(new BuildShipRequest(s.getX(), s.getY(), t.getName()));
+            return res.isShipAddedToBuildQueue();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_build_ship") + ": " + s.getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_buildStructure(Planet p, Structure s, int slot) {
-        synchronized (out) {
-            try {
-                sendRequest(new BuildStructureRequest(p.getStarSystem().getX(), p.getStarSystem().getY(), p.getPlanetNumber(), slot, s.getName()));
-                BuildStructureResponse res = (BuildStructureResponse) readResponse();
-                return res.isStructureAddedToBuildQueue();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_build_structure_in_system") + ": " + p.getStarSystem().getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            BuildStructureResponse res = (BuildStructureResponse) request(new BuildStructureRequest(p.getStarSystem().getX(), p.getStarSystem().getY(), p.getPlanetNumber(), slot, s.getName()));
+            return res.isStructureAddedToBuildQueue();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_build_structure_in_system") + ": " + p.getStarSystem().getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_demolishStructure(Planet p, int slot) {
-        synchronized (out) {
-            try {
-                sendRequest(new DemolishStructureRequest(p.getStarSystem().getX(), p.getStarSystem().getY(), p.getPlanetNumber(), slot));
-                DemolishStructureResponse res = (DemolishStructureResponse) readResponse();
-                return res.isStructureDemolished();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_demolish_structure_in_system") + ": " + p.getStarSystem().getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            DemolishStructureResponse res = (DemolishStructureResponse) request(new DemolishStructureRequest(p.getStarSystem().getX(), p.getStarSystem().getY(), p.getPlanetNumber(), slot));
+            return res.isStructureDemolished();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_demolish_structure_in_system") + ": " + p.getStarSystem().getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_updateBuildQueue(StarSystem s, int index, BuildQueueRequestType action) {
-        synchronized (out) {
-            try {
-                sendRequest(new BuildQueueRequest(s.getX(), s.getY(), index, action));
-                BuildQueueResponse res = (BuildQueueResponse) readResponse();
-                return res.isBuildQueueActionsSuccessful();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_update_item_in_build_queue") + ": " + s.getName() + " index=" + index + ", action=" + action.toString(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            BuildQueueResponse res = (BuildQueueResponse) request(new BuildQueueRequest(s.getX(), s.getY(), index, action));
+            return res.isBuildQueueActionsSuccessful();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_update_item_in_build_queue") + ": " + s.getName() + " index=" + index + ", action=" + action.toString(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_hurryProduction(StarSystem s, int index, int amount) {
-        synchronized (out) {
-            try {
-                sendRequest(new HurryProductionRequest(s.getX(), s.getY(), index, amount));
-                HurryProductionResponse res = (HurryProductionResponse) readResponse();
-                return res.isProductionHurried();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_hurry_production") + ": " + s.getName() + " index=" + index + " amount=" + amount, ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            HurryProductionResponse res = (HurryProductionResponse) request(new HurryProductionRequest(s.getX(), s.getY(), index, amount));
+            return res.isProductionHurried();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_hurry_production") + ": " + s.getName() + " index=" + index + " amount=" + amount, ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
     public boolean server_changeStructureState(Planet p, int slot, StructureStateChangeRequestType newState) {
-        synchronized (out) {
-            try {
-                sendRequest(new StructureStateChangeRequest(p.getStarSystem().getX(), p.getStarSystem().getY(), p.getPlanetNumber(), slot, newState));
-                StructureStateChangeResponse res = (StructureStateChangeResponse) readResponse();
-                return res.isStateChanged();
-            } catch (IOException ioe) {
-                Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_enable_or_disable_structure") + ": " + p.getStarSystem().getName(), ioe, false, true);
-            } catch (Exception cnfe) {
-                Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
-            }
+        try {
+            StructureStateChangeResponse res = (StructureStateChangeResponse) request(new StructureStateChangeRequest(p.getStarSystem().getX(), p.getStarSystem().getY(), p.getPlanetNumber(), slot, newState));
+            return res.isStateChanged();
+        } catch (IOException ioe) {
+            Client.getInstance().showError(Client.getLanguage().get("io_error_while_telling_server_to_enable_or_disable_structure") + ": " + p.getStarSystem().getName(), ioe, false, true);
+        } catch (Exception cnfe) {
+            Client.getInstance().showError(Client.getLanguage().get("server_client_communication_problem") + ":\n", cnfe, false, false);
         }
         return false;
     }
 
+    /**
+     * Sends several requests in a single round trip, the server handles them in order.
+     * Used for bursts of orders (and by scripts), instead of one round trip for each order
+     *
+     * @param requests the requests
+     * @return the responses, in the same order as the requests
+     * @throws IOException            if the connection is lost
+     * @throws ClassNotFoundException if the response contains an unknown class
+     */
+    public ArrayList<Response> server_sendBatch(ArrayList<Request> requests) throws IOException, ClassNotFoundException {
+        BatchResponse res = (BatchResponse) request(makeBatch(requests));
+        return res.getResponses();
+    }
+
+    public CompletableFuture<ArrayList<Response>> server_sendBatchAsync(ArrayList<Request> requests) {
+        return sendRequestAsync(makeBatch(requests)).thenApply(new Function<Response, ArrayList<Response>>() {
+            @Override
+            public ArrayList<Response> apply(Response response) {
+                return ((BatchResponse) response).getResponses();
+            }
+        });
+    }
+
+    private BatchRequest makeBatch(ArrayList<Request> requests) {
+        BatchRequest batch = new BatchRequest();
+        for (Request r : requests) {
+            batch.addRequest(r);
+        }
+        return batch;
+    }
+
     public void server_logout() {
         try {
             sendRequest(new LogoutRequest());
@@ -608,16 +749,123 @@ public class ClientCommunication {
         }
     }
 
+    /**
+     * Sends a request to the server without waiting for the response
+     *
+     * @param request the request
+     * @return future completed with the response, or exceptionally if the connection is lost
+     */
+    public CompletableFuture<Response> sendRequestAsync(Request request) {
+        CompletableFuture<Response> future = new CompletableFuture<Response>();
+        int id = nextRequestId.getAndIncrement();
+        if (id == 0) { // 0 is used for messages that are not responses to a request
+            id = nextRequestId.getAndIncrement();
+        }
+        request.setRequestId(id);
+        pendingRequests.put(id, future);
+        try {
+            sendRequest(request);
+        } catch (IOException ioe) {
+            pendingRequests.remove(id);
+            future.completeExceptionally(ioe);
+        }
+        // the dispatcher may have failed all pending requests before this one was added
+        if (connectionError != null && pendingRequests.remove(id) != null) {
+            future.completeExceptionally(connectionError);
+        }
+        return future;
+    }
+
+    /**
+     * Sends a request to the server, and waits for the response
+     *
+     * @param request the request
+     * @return the response
+     * @throws IOException            if the connection is lost
+     * @throws ClassNotFoundException if the response contains an unknown class
+     */
+    private Response request(Request request) throws IOException, ClassNotFoundException {
+        try {
+            return sendRequestAsync(request).get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response to " + request.getClass().getSimpleName());
+        } catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     private void sendRequest(Request request) throws IOException {
         System.out.println("SENDING OBJECT OF TYPE: " + request.getClass().getName());
-        out.reset();
-        out.writeUnshared(request);
-        out.flush();
+        synchronized (out) {
+            FrameCodec.write(out, request, codec, frameFlags, 0);
+        }
     }
 
     private Response readResponse() throws IOException, ClassNotFoundException {
         System.out.println("READING RESPONSE FROM SERVER....");
-        return (Response) in.readObject();
+        return (Response) FrameCodec.read(in, FrameCodec.MAX_RESPONSE_SIZE);
+    }
+
+    /**
+     * Reads all responses from the server, and completes the future of the matching request
+     */
+    private class ResponseDispatcher implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Response response = readResponse();
+                    if (response instanceof Event) {
+                        handleEvent((Event) response);
+                        continue;
+                    }
+                    CompletableFuture<Response> future = pendingRequests.remove(response.getRequestId());
+                    if (future != null) {
+                        future.complete(response);
+                    } else {
+                        Client.LOG.log(Level.WARNING, "Got {0} from server for unknown request {1}", new Object[]{response.getClass().getSimpleName(), response.getRequestId()});
+                    }
+                }
+            } catch (Exception e) {
+                subscribed = false;
+                IOException error = e instanceof IOException ? (IOException) e : new IOException("Bad response from server", e);
+                connectionError = error;
+                for (Integer id : pendingRequests.keySet()) {
+                    CompletableFuture<Response> future = pendingRequests.remove(id);
+                    if (future != null) {
+                        future.completeExceptionally(error);
+                    }
+                }
+                if (isLoggedIn) {
+                    Client.LOG.log(Level.WARNING, "Lost connection to server", e);
+                }
+            }
+        }
+
+        private void handleEvent(Event event) {
+            if (event instanceof TurnExecutedEvent) {
+                TurnExecutedEvent turnEvent = (TurnExecutedEvent) event;
+                nextTurnDate = System.currentTimeMillis() + turnEvent.getMillisecondsToNextTurn();
+                currentServerTurn = turnEvent.getCurrentTurn();
+            }
+            ServerEventListener listener = eventListener;
+            if (listener != null) {
+                try {
+                    listener.eventReceived(event);
+                } catch (RuntimeException e) {
+                    Client.LOG.log(Level.SEVERE, "Error handling " + event.getClass().getSimpleName() + " from server", e);
+                }
+            }
+        }
     }
 
     public String getLocalUsername() {
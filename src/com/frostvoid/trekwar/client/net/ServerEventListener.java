@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.client.net;
+
+import com.frostvoid.trekwar.common.net.messaging.Event;
+
+/**
+ * Receives the events pushed by the server
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public interface ServerEventListener {
+
+    /**
+     * Called by the response dispatcher thread for every event from the server,
+     * must not wait for responses from the server
+     *
+     * @param event the event
+     */
+    public void eventReceived(Event event);
+}
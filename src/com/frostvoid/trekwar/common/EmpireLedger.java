@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * The empire wide totals of a user: ship upkeep, research and deuterium.
+ * <p>
+ * The ledger is kept up to date by the starsystems and fleets counted in it,
+ * a starsystem reports its totals again when its structures, population
+ * or deuterium changes, and a fleet reports its upkeep again when ships are added or removed.
+ * Systems and fleets are attached when the user gains them and detached when they are lost.
+ * Systems of the same user are updated by different threads during turn execution,
+ * so all totals are atomic, and what a system or fleet has counted in a ledger is an
+ * immutable Report that is replaced with compare and set (no locks, so virtual threads are not pinned).
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+class EmpireLedger {
+
+    private final AtomicInteger shipUpkeepSupply = new AtomicInteger(); // not including the base value
+    private final AtomicInteger shipUpkeepUsed = new AtomicInteger();
+    private final AtomicInteger researchSurplus = new AtomicInteger();
+    private final AtomicInteger deuterium = new AtomicInteger();
+    private final AtomicInteger maxDeuterium = new AtomicInteger();
+
+    /**
+     * Replaces what a starsystem or fleet has counted in an empire ledger, if it has not been replaced by another thread.
+     * The old report is subtracted from its ledger and the new report is added to its ledger
+     *
+     * @param updater  the report field of the starsystem or fleet
+     * @param owner    the starsystem or fleet
+     * @param expected the current report, or null if not counted in any ledger
+     * @param update   the new report, or null to stop counting
+     * @param <T>      starsystem or fleet
+     * @return false if the report was changed by another thread, and nothing was done
+     */
+    static <T> boolean replace(AtomicReferenceFieldUpdater<T, Report> updater, T owner, Report expected, Report update) {
+        if (!updater.compareAndSet(owner, expected, update)) {
+            return false;
+        }
+        if (expected != null) {
+            expected.ledger.add(expected, -1);
+        }
+        if (update != null) {
+            update.ledger.add(update, 1);
+        }
+        return true;
+    }
+
+    private void add(Report report, int sign) {
+        if (report.upkeepSupply != 0) {
+            shipUpkeepSupply.addAndGet(sign * report.upkeepSupply);
+        }
+        if (report.upkeepUsed != 0) {
+            shipUpkeepUsed.addAndGet(sign * report.upkeepUsed);
+        }
+        if (report.research != 0) {
+            researchSurplus.addAndGet(sign * report.research);
+        }
+        if (report.deuterium != 0) {
+            deuterium.addAndGet(sign * report.deuterium);
+        }
+        if (report.maxDeuterium != 0) {
+            maxDeuterium.addAndGet(sign * report.maxDeuterium);
+        }
+    }
+
+    int getShipUpkeepSupply() {
+        return shipUpkeepSupply.get();
+    }
+
+    int getShipUpkeepUsed() {
+        return shipUpkeepUsed.get();
+    }
+
+    int getResearchSurplus() {
+        return researchSurplus.get();
+    }
+
+    int getDeuterium() {
+        return deuterium.get();
+    }
+
+    int getMaxDeuterium() {
+        return maxDeuterium.get();
+    }
+
+    /**
+     * What a single starsystem or fleet counts in an empire ledger
+     */
+    static final class Report {
+        final EmpireLedger ledger;
+        final int upkeepSupply;
+        final int upkeepUsed;
+        final int research;
+        final int deuterium;
+        final int maxDeuterium;
+
+        /**
+         * Makes the report of a starsystem
+         */
+        Report(EmpireLedger ledger, int upkeepSupply, int research, int deuterium, int maxDeuterium) {
+            this(ledger, upkeepSupply, 0, research, deuterium, maxDeuterium);
+        }
+
+        /**
+         * Makes the report of a fleet
+         */
+        Report(EmpireLedger ledger, int upkeepUsed) {
+            this(ledger, 0, upkeepUsed, 0, 0, 0);
+        }
+
+        private Report(EmpireLedger ledger, int upkeepSupply, int upkeepUsed, int research, int deuterium, int maxDeuterium) {
+            this.ledger = ledger;
+            this.upkeepSupply = upkeepSupply;
+            this.upkeepUsed = upkeepUsed;
+            this.research = research;
+            this.deuterium = deuterium;
+            this.maxDeuterium = maxDeuterium;
+        }
+
+        boolean sameAs(Report other) {
+            return ledger == other.ledger && upkeepSupply == other.upkeepSupply && upkeepUsed == other.upkeepUsed
+                    && research == other.research && deuterium == other.deuterium && maxDeuterium == other.maxDeuterium;
+        }
+    }
+}
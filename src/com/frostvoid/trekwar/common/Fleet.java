@@ -20,6 +20,7 @@ import com.frostvoid.trekwar.common.shipComponents.TorpedoLauncher;
 import com.frostvoid.trekwar.server.TrekwarServer;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 
 /**
@@ -35,6 +36,9 @@ public class Fleet extends SpaceObject {
     private ArrayList<Ship> ships;
     private Order currentOrder;
     private int movementLeft; // 10 = ship moves 1 extra tile
+    private transient volatile EmpireLedger.Report ledgerReport; // the upkeep this fleet counts in the empire ledger of its owner, or null
+    private static final AtomicReferenceFieldUpdater<Fleet, EmpireLedger.Report> LEDGER_REPORT =
+            AtomicReferenceFieldUpdater.newUpdater(Fleet.class, EmpireLedger.Report.class, "ledgerReport");
 
     /**
      * Gets "extra" movement points this fleet has saved up
@@ -104,6 +108,7 @@ public class Fleet extends SpaceObject {
      */
     public void addShip(Ship s) {
         ships.add(s);
+        reportToEmpireLedger();
         s.setFleet(this);
     }
 
@@ -115,7 +120,9 @@ public class Fleet extends SpaceObject {
      */
     public void removeShip(Ship s) {
         TrekwarServer.LOG.log(Level.FINE, "Removing ship {0} from fleet {1} with size {2} ", new Object[]{s.getName(), getName(), ships.size()});
-        ships.remove(s);
+        if (ships.remove(s)) {
+            reportToEmpireLedger();
+        }
         TrekwarServer.LOG.log(Level.FINE, "Number of ships left after removal: {0}", ships.size());
         if (ships.isEmpty()) {
             TrekwarServer.LOG.log(Level.FINE, "All ships removed from fleet {0}, deleting fleet from user {1} and system: {2}", new Object[]{getName(), user.getUsername(), currentLocation.getName()});
@@ -124,6 +131,59 @@ public class Fleet extends SpaceObject {
         }
     }
 
+    /**
+     * Starts counting the upkeep of this fleet in the empire ledger of its owner
+     *
+     * @param ledger the empire ledger
+     */
+    void attachEmpireLedger(EmpireLedger ledger) {
+        EmpireLedger.Report old;
+        do {
+            old = ledgerReport;
+        } while (!EmpireLedger.replace(LEDGER_REPORT, this, old, new EmpireLedger.Report(ledger, getUpkeepCost())));
+    }
+
+    /**
+     * Stops counting the upkeep of this fleet in an empire ledger
+     *
+     * @param ledger the empire ledger
+     */
+    void detachEmpireLedger(EmpireLedger ledger) {
+        EmpireLedger.Report old;
+        do {
+            old = ledgerReport;
+            if (old == null || old.ledger != ledger) {
+                return;
+            }
+        } while (!EmpireLedger.replace(LEDGER_REPORT, this, old, null));
+    }
+
+    /**
+     * Reports the current upkeep of this fleet to the empire ledger it is counted in
+     */
+    private void reportToEmpireLedger() {
+        EmpireLedger.Report old;
+        EmpireLedger.Report report;
+        do {
+            old = ledgerReport;
+            if (old == null) {
+                return;
+            }
+            report = new EmpireLedger.Report(old.ledger, getUpkeepCost());
+            if (report.sameAs(old)) {
+                return;
+            }
+        } while (!EmpireLedger.replace(LEDGER_REPORT, this, old, report));
+    }
+
+    private int getUpkeepCost() {
+        int upkeep = 0;
+        for (Ship s : ships) {
+            upkeep += s.getUpkeepCost();
+        }
+        return upkeep;
+    }
+
     /**
      * Gets the current order of this fleet
      *
@@ -765,4 +825,17 @@ public class Fleet extends SpaceObject {
         hash = 59 * hash + (this.user != null ? this.user.hashCode() : 0);
         return hash;
     }
-}
\ No newline at end of file
+
+    /**
+     * Makes a copy of this fleet without its current order,
+     * used when sending the fleet to users other than the owner
+     *
+     * @return the copy
+     */
+    public Fleet getPublicCopy() {
+        Fleet copy = new Fleet(user, name, currentLocation);
+        copy.ships = ships;
+        copy.movementLeft = movementLeft;
+        return copy;
+    }
+}
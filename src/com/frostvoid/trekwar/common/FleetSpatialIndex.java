@@ -0,0 +1,163 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Index of the tiles that have fleets on them, and which users own those fleets.
+ * <p>
+ * The index is kept up to date by StarSystem.addFleet / removeFleet (and so by Fleet.move),
+ * so finding systems with opposing fleets only looks at occupied tiles,
+ * not at every fleet or every tile in the galaxy.
+ * Ships can be added to or removed from fleets without the fleet moving, so whether
+ * fleets are armed is checked when asked for, not kept in the index.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class FleetSpatialIndex {
+
+    private final StarSystem[][] map;
+    private final int height;
+    private final HashMap<Integer, TileOccupancy> occupied = new HashMap<Integer, TileOccupancy>(); // index x * height + y
+    private final ReentrantLock lock = new ReentrantLock(); // guards occupied, not synchronized so virtual threads are not pinned
+
+    /**
+     * Makes an index of all fleets on the map, and attaches it to every starsystem
+     *
+     * @param map the map
+     */
+    FleetSpatialIndex(StarSystem[][] map) {
+        this.map = map;
+        this.height = map.length == 0 ? 0 : map[0].length;
+        for (StarSystem[] column : map) {
+            for (StarSystem system : column) {
+                for (Fleet fleet : system.getFleets()) {
+                    fleetAdded(system, fleet);
+                }
+                system.setFleetIndex(this);
+            }
+        }
+    }
+
+    /**
+     * Called by a starsystem when a fleet has been added to it
+     *
+     * @param system the system
+     * @param fleet  the fleet
+     */
+    void fleetAdded(StarSystem system, Fleet fleet) {
+        int i = system.getX() * height + system.getY();
+        lock.lock();
+        try {
+            TileOccupancy tile = occupied.get(i);
+            if (tile == null) {
+                tile = new TileOccupancy();
+                occupied.put(i, tile);
+            }
+            tile.add(fleet.getUser());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called by a starsystem when a fleet has been removed from it
+     *
+     * @param system the system
+     * @param fleet  the fleet
+     */
+    void fleetRemoved(StarSystem system, Fleet fleet) {
+        int i = system.getX() * height + system.getY();
+        lock.lock();
+        try {
+            TileOccupancy tile = occupied.get(i);
+            if (tile != null && tile.remove(fleet.getUser())) {
+                occupied.remove(i);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets all systems that have fleets from more than one faction, combat can only happen in these
+     *
+     * @return the systems with opposing fleets
+     */
+    public ArrayList<StarSystem> getSystemsWithOpposingFleets() {
+        ArrayList<StarSystem> systems = new ArrayList<StarSystem>();
+        lock.lock();
+        try {
+            for (Map.Entry<Integer, TileOccupancy> entry : occupied.entrySet()) {
+                if (entry.getValue().hasOpposingFactions()) {
+                    int i = entry.getKey();
+                    systems.add(map[i / height][i % height]);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return systems;
+    }
+
+    /**
+     * The owners of the fleets on a single tile
+     */
+    private static class TileOccupancy {
+        private final HashMap<User, Integer> fleetsByOwner = new HashMap<User, Integer>(4);
+
+        void add(User owner) {
+            Integer count = fleetsByOwner.get(owner);
+            fleetsByOwner.put(owner, count == null ? 1 : count + 1);
+        }
+
+        /**
+         * @return true if the tile has no fleets left
+         */
+        boolean remove(User owner) {
+            Integer count = fleetsByOwner.get(owner);
+            if (count != null) {
+                if (count <= 1) {
+                    fleetsByOwner.remove(owner);
+                } else {
+                    fleetsByOwner.put(owner, count - 1);
+                }
+            }
+            return fleetsByOwner.isEmpty();
+        }
+
+        boolean hasOpposingFactions() {
+            if (fleetsByOwner.size() < 2) {
+                return false;
+            }
+            Faction first = null;
+            for (User owner : fleetsByOwner.keySet()) {
+                if (first == null) {
+                    first = owner.getFaction();
+                } else if (!owner.getFaction().equals(first)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -15,10 +15,8 @@
  */
 package com.frostvoid.trekwar.common;
 
-import com.frostvoid.trekwar.client.Client;
 import com.frostvoid.trekwar.common.exceptions.AddUserException;
 import com.frostvoid.trekwar.common.exceptions.UserNotFoundException;
-import com.frostvoid.trekwar.common.utils.Language;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -44,6 +42,7 @@ public class Galaxy implements Serializable {
     private long currentTurn;
     public long lastTurnDate; // unix time
     public long nextTurnDate; // unix time
+    private transient volatile FleetSpatialIndex fleetIndex; // server side only, made on first use
 
     /**
      * Create a new galaxy
@@ -66,6 +65,27 @@ public class Galaxy implements Serializable {
         loggedInUsers = new ArrayList<User>();
     }
 
+    /**
+     * Copies a galaxy, the map is a new array (with the same systems)
+     *
+     * @param galaxy the galaxy to copy
+     */
+    private Galaxy(Galaxy galaxy) {
+        map = new StarSystem[galaxy.map.length][];
+        for (int i = 0; i < map.length; i++) {
+            map[i] = galaxy.map[i].clone();
+        }
+        users = galaxy.users;
+        loggedInUsers = galaxy.loggedInUsers;
+        maxUsersInGalaxy = galaxy.maxUsersInGalaxy;
+        turnSpeed = galaxy.turnSpeed;
+        executingTurn = galaxy.executingTurn;
+        currentTurn = galaxy.currentTurn;
+        lastTurnDate = galaxy.lastTurnDate;
+        nextTurnDate = galaxy.nextTurnDate;
+        // fleetIndex is left null, it indexes the old map and is made again from this map on first use
+    }
+
     /**
      * This method is called every time a galaxy object is started
      * (deserialized from disk).
@@ -176,6 +196,35 @@ public class Galaxy implements Serializable {
         return getSystem(f.getX(), f.getY());
     }
 
+    /**
+     * Gets the index of all fleets on the map, the index is made the first time
+     * this is called and then kept up to date as fleets are added, removed and moved
+     *
+     * @return the fleet index
+     */
+    public FleetSpatialIndex getFleetIndex() {
+        FleetSpatialIndex index = fleetIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = fleetIndex;
+                if (index == null) {
+                    index = new FleetSpatialIndex(map);
+                    fleetIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Sets the map, used when the galaxy is read from the galaxy data sent by the server
+     *
+     * @param map the map
+     */
+    void setMap(StarSystem[][] map) {
+        this.map = map;
+    }
+
     /**
      * Gets the map matrix
      *
@@ -219,8 +268,8 @@ public class Galaxy implements Serializable {
      */
     public void loginUser(User u, String ipString) {
         TurnReportItem tr = new TurnReportItem(currentTurn, -1, -1, TurnReportItem.TurnReportSeverity.HIGH);
-        tr.setSummary(Client.getLanguage().get("turn_report_login1"));
-        tr.setDetailed(Language.pop(Client.getLanguage().get("turn_report_login2"), new Date(), ipString));
+        tr.setSummaryKey("turn_report_login1");
+        tr.setDetailedKey("turn_report_login2", new Date(), ipString);
         u.addTurnReport(tr);
         loggedInUsers.add(u);
     }
@@ -268,4 +317,23 @@ public class Galaxy implements Serializable {
     public long getTurnSpeed() {
         return turnSpeed;
     }
-}
\ No newline at end of file
+
+    /**
+     * Makes a new galaxy by applying changes sent from the server to this galaxy.
+     * This galaxy is not modified, so it can still be used while the delta is applied
+     *
+     * @param delta the changes
+     * @return the updated galaxy
+     */
+    public Galaxy applyDelta(GalaxyDelta delta) {
+        Galaxy updated = new Galaxy(this);
+        for (StarSystem s : delta.getSystems()) {
+            updated.map[s.getX()][s.getY()] = s;
+        }
+        updated.users = delta.getUsers();
+        updated.currentTurn = delta.getTurn();
+        updated.lastTurnDate = delta.getLastTurnDate();
+        updated.nextTurnDate = delta.getNextTurnDate();
+        return updated;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * The changes made to a galaxy between two transfers to the same user.
+ * Holds the starsystems (with fleets) that has changed, all the users and
+ * the turn information. Applied to the clients galaxy by Galaxy.applyDelta()
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GalaxyDelta implements Serializable {
+    private long baseTurn;
+    private long turn;
+    private long lastTurnDate;
+    private long nextTurnDate;
+    private ArrayList<User> users;
+    private ArrayList<StarSystem> systems;
+
+    /**
+     * Creates a new galaxy delta
+     *
+     * @param baseTurn     the turn of the galaxy this delta must be applied to
+     * @param turn         the turn of the galaxy after the delta is applied
+     * @param lastTurnDate when the last turn was executed (unix time)
+     * @param nextTurnDate when the next turn will be executed (unix time)
+     * @param users        all the users in the galaxy
+     * @param systems      the changed starsystems
+     */
+    public GalaxyDelta(long baseTurn, long turn, long lastTurnDate, long nextTurnDate,
+                       ArrayList<User> users, ArrayList<StarSystem> systems) {
+        this.baseTurn = baseTurn;
+        this.turn = turn;
+        this.lastTurnDate = lastTurnDate;
+        this.nextTurnDate = nextTurnDate;
+        this.users = users;
+        this.systems = systems;
+    }
+
+    /**
+     * @return the turn of the galaxy this delta must be applied to
+     */
+    public long getBaseTurn() {
+        return baseTurn;
+    }
+
+    /**
+     * @return the turn of the galaxy after the delta is applied
+     */
+    public long getTurn() {
+        return turn;
+    }
+
+    /**
+     * @return when the last turn was executed (unix time)
+     */
+    public long getLastTurnDate() {
+        return lastTurnDate;
+    }
+
+    /**
+     * @return when the next turn will be executed (unix time)
+     */
+    public long getNextTurnDate() {
+        return nextTurnDate;
+    }
+
+    /**
+     * @return all the users in the galaxy
+     */
+    public ArrayList<User> getUsers() {
+        return users;
+    }
+
+    /**
+     * @return the starsystems that has changed
+     */
+    public ArrayList<StarSystem> getSystems() {
+        return systems;
+    }
+}
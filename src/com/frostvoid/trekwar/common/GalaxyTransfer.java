@@ -0,0 +1,330 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import com.frostvoid.trekwar.common.shipComponents.ShipComponent;
+import com.frostvoid.trekwar.common.shipHulls.HullClass;
+import com.frostvoid.trekwar.common.structures.Structure;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * The format a galaxy (or galaxy delta) is sent to a client in.
+ * <p>
+ * The server serializes the parts of the galaxy that are the same for many users
+ * (the galaxy header and the public view of every tile) once, and puts them together
+ * with the private part of a single user (the user itself and the tiles where it has
+ * systems or fleets) for every transfer. So the parts can be serialized on their own:
+ * - every part is a separate object stream, without stream header and with classes
+ * written as numbers in a class table sent first
+ * - users are written as UserRef, and read as the users of the header (or the full user of the private part)
+ * - hulls, ship components and structures from StaticData are written as CatalogRef
+ * - unexplored tiles are written as an empty part, and read as empty space
+ * <p>
+ * Layout: kind, base turn, width, height, class table, header (galaxy without map),
+ * private part (user, its systems), tiles (tile index and one starsystem each)
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GalaxyTransfer {
+
+    public static final int FULL_GALAXY = 1;
+    public static final int GALAXY_DELTA = 2;
+
+    /**
+     * Reads a full galaxy sent by the server
+     *
+     * @param data the galaxy data
+     * @return the galaxy
+     * @throws IOException            if the data could not be read
+     * @throws ClassNotFoundException if the data contains unknown classes
+     */
+    public static Galaxy readGalaxy(byte[] data) throws IOException, ClassNotFoundException {
+        Transfer transfer = read(data, FULL_GALAXY);
+        StarSystem[][] map = new StarSystem[transfer.width][transfer.height];
+        for (StarSystem s : transfer.systems) {
+            map[s.getX()][s.getY()] = s;
+        }
+        transfer.galaxy.setMap(map);
+        return transfer.galaxy;
+    }
+
+    /**
+     * Reads a galaxy delta sent by the server
+     *
+     * @param data the delta data
+     * @return the delta
+     * @throws IOException            if the data could not be read
+     * @throws ClassNotFoundException if the data contains unknown classes
+     */
+    public static GalaxyDelta readDelta(byte[] data) throws IOException, ClassNotFoundException {
+        Transfer transfer = read(data, GALAXY_DELTA);
+        Galaxy header = transfer.galaxy;
+        return new GalaxyDelta(transfer.baseTurn, header.getCurrentTurn(), header.lastTurnDate, header.nextTurnDate,
+                header.getUsers(), transfer.systems);
+    }
+
+    private static Transfer read(byte[] data, int expectedKind) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        Transfer transfer = new Transfer();
+        int kind = in.readInt();
+        if (kind != expectedKind) {
+            throw new InvalidObjectException("Expected galaxy data of kind " + expectedKind + ", got " + kind);
+        }
+        transfer.baseTurn = in.readLong();
+        transfer.width = in.readInt();
+        transfer.height = in.readInt();
+        String[] classNames = new String[in.readInt()];
+        for (int i = 0; i < classNames.length; i++) {
+            classNames[i] = in.readUTF();
+        }
+
+        HashMap<String, User> users = new HashMap<String, User>();
+        TransferInputStream header = new TransferInputStream(readPart(in), classNames, users);
+        transfer.galaxy = (Galaxy) header.readObject();
+        for (User u : transfer.galaxy.getUsers()) {
+            users.put(u.getUsername(), u);
+        }
+
+        TransferInputStream privatePart = new TransferInputStream(readPart(in), classNames, users);
+        User viewer = (User) privatePart.readObject();
+        replaceUser(transfer.galaxy.getUsers(), viewer);
+        replaceUser(transfer.galaxy.getLoggedInUsers(), viewer);
+        users.put(viewer.getUsername(), viewer);
+        transfer.systems = new ArrayList<StarSystem>();
+        for (Object s : (List<?>) privatePart.readObject()) {
+            transfer.systems.add((StarSystem) s);
+        }
+
+        int tiles = in.readInt();
+        transfer.systems.ensureCapacity(transfer.systems.size() + tiles);
+        User nobody = users.containsKey(StaticData.nobodyUser.getUsername()) ? users.get(StaticData.nobodyUser.getUsername()) : StaticData.nobodyUser;
+        for (int i = 0; i < tiles; i++) {
+            int index = in.readInt();
+            byte[] part = readPart(in);
+            if (part.length == 0) {
+                transfer.systems.add(new StarSystem(nobody, index / transfer.height, index % transfer.height, "", StarSystemClassification.empty));
+            } else {
+                transfer.systems.add((StarSystem) new TransferInputStream(part, classNames, users).readObject());
+            }
+        }
+        return transfer;
+    }
+
+    private static byte[] readPart(DataInputStream in) throws IOException {
+        byte[] part = new byte[in.readInt()];
+        in.readFully(part);
+        return part;
+    }
+
+    private static void replaceUser(ArrayList<User> list, User user) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i).getUsername().equals(user.getUsername())) {
+                list.set(i, user);
+            }
+        }
+    }
+
+    /**
+     * Gets what a user is written as in a part of the galaxy data
+     *
+     * @param user the user
+     * @return the reference to the user
+     */
+    public static Object userRef(User user) {
+        return new UserRef(user.getUsername());
+    }
+
+    /**
+     * Gets what a hull, ship component or structure from StaticData is written as in the galaxy data
+     *
+     * @param obj any object
+     * @return the reference, or null if the object is not in StaticData
+     */
+    public static Object catalogRef(Object obj) {
+        if (obj instanceof HullClass || obj instanceof ShipComponent || obj instanceof Structure) {
+            return Catalog.INSTANCE.getRef(obj);
+        }
+        return null;
+    }
+
+    private static class Transfer {
+        long baseTurn;
+        int width;
+        int height;
+        Galaxy galaxy;
+        ArrayList<StarSystem> systems;
+    }
+
+    /**
+     * Reads a single part of the galaxy data
+     */
+    private static class TransferInputStream extends ObjectInputStream {
+        private final String[] classNames;
+        private final HashMap<String, User> users;
+
+        TransferInputStream(byte[] part, String[] classNames, HashMap<String, User> users) throws IOException {
+            super(new ByteArrayInputStream(part));
+            this.classNames = classNames;
+            this.users = users;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected void readStreamHeader() {
+            // parts are written without stream header
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            int id = readInt();
+            if (id < 0 || id >= classNames.length) {
+                throw new InvalidObjectException("Unknown class number " + id);
+            }
+            ObjectStreamClass desc = ObjectStreamClass.lookup(Class.forName(classNames[id], false, GalaxyTransfer.class.getClassLoader()));
+            if (desc == null) {
+                throw new InvalidObjectException("Class is not serializable: " + classNames[id]);
+            }
+            return desc;
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof UserRef) {
+                User user = users.get(((UserRef) obj).username);
+                if (user == null) {
+                    throw new InvalidObjectException("Unknown user " + ((UserRef) obj).username);
+                }
+                return user;
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * A user, read as the user with the same username in the galaxy header
+     */
+    private static class UserRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private final String username;
+
+        UserRef(String username) {
+            this.username = username;
+        }
+    }
+
+    /**
+     * A hull, ship component or structure, read as the same object from StaticData
+     */
+    private static class CatalogRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private static final int HULL = 0;
+        private static final int COMPONENT = 1;
+        private static final int STRUCTURE = 2;
+
+        private final int catalog;
+        private final int index;
+
+        CatalogRef(int catalog, int index) {
+            this.catalog = catalog;
+            this.index = index;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            List<?> list = Catalog.getList(catalog);
+            if (list == null || index < 0 || index >= list.size()) {
+                throw new InvalidObjectException("Unknown catalog object " + catalog + "/" + index);
+            }
+            return list.get(index);
+        }
+    }
+
+    /**
+     * Finds the StaticData hulls, components and structures. Objects loaded from
+     * a saved galaxy are copies, so they are also found by class and name
+     */
+    private static class Catalog {
+        private static final Catalog INSTANCE = new Catalog();
+
+        private final IdentityHashMap<Object, CatalogRef> byIdentity = new IdentityHashMap<Object, CatalogRef>();
+        private final HashMap<String, CatalogRef> byName = new HashMap<String, CatalogRef>();
+
+        private Catalog() {
+            for (int c = CatalogRef.HULL; c <= CatalogRef.STRUCTURE; c++) {
+                List<?> list = getList(c);
+                ArrayList<String> duplicates = new ArrayList<String>();
+                for (int i = 0; i < list.size(); i++) {
+                    Object obj = list.get(i);
+                    CatalogRef ref = new CatalogRef(c, i);
+                    byIdentity.put(obj, ref);
+                    String key = getKey(obj);
+                    if (byName.put(key, ref) != null) {
+                        duplicates.add(key);
+                    }
+                }
+                for (String key : duplicates) {
+                    byName.remove(key);
+                }
+            }
+        }
+
+        static List<?> getList(int catalog) {
+            switch (catalog) {
+                case CatalogRef.HULL:
+                    return StaticData.allHullClasses;
+                case CatalogRef.COMPONENT:
+                    return StaticData.allShipComponents;
+                case CatalogRef.STRUCTURE:
+                    return StaticData.allStructures;
+                default:
+                    return null;
+            }
+        }
+
+        CatalogRef getRef(Object obj) {
+            CatalogRef ref = byIdentity.get(obj);
+            if (ref == null) {
+                ref = byName.get(getKey(obj));
+            }
+            return ref;
+        }
+
+        private static String getKey(Object obj) {
+            String name;
+            if (obj instanceof HullClass) {
+                name = ((HullClass) obj).getName();
+            } else if (obj instanceof ShipComponent) {
+                name = ((ShipComponent) obj).getName();
+            } else {
+                name = ((Structure) obj).getName();
+            }
+            return obj.getClass().getName() + ":" + name;
+        }
+    }
+}
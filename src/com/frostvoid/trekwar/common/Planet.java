@@ -43,6 +43,8 @@ public class Planet implements Serializable {
     private HashMap<Integer, Structure> structures;
     private HashMap<Integer, Boolean> structuresEnabled;
     private HashMap<Integer, Point> surfaceMap;
+    private transient volatile int version; // increased every time the ledger must be remade
+    private transient volatile ProductionLedger ledger; // cached production totals, null until first asked for
 
     /**
      * Creates a new planet object
@@ -94,6 +96,7 @@ public class Planet implements Serializable {
      */
     public void setMaximumPopulation(int maximumPopulation) {
         this.maximumPopulation = maximumPopulation;
+        productionChanged();
     }
 
     /**
@@ -124,7 +127,8 @@ public class Planet implements Serializable {
     }
 
     /**
-     * Gets the structure map
+     * Gets the structure map, structures must be added with addStructure
+     * and removed with delStructure
      *
      * @return a map of slot id's to structures
      */
@@ -152,11 +156,23 @@ public class Planet implements Serializable {
     public void setStructureEnabled(int index, boolean enabled) throws IndexOutOfBoundsException {
         if (structures.keySet().contains(index)) {
             structuresEnabled.put(index, enabled);
+            productionChanged();
         } else {
             throw new IndexOutOfBoundsException("Invalid structure index: " + index);
         }
     }
 
+    /**
+     * Adds a structure to a slot on this planet
+     *
+     * @param index the slot
+     * @param s     the structure
+     */
+    public void addStructure(int index, Structure s) {
+        structures.put(index, s);
+        productionChanged();
+    }
+
     /**
      * Deletes a structure
      *
@@ -164,6 +180,7 @@ public class Planet implements Serializable {
      */
     public void delStructure(int index) {
         structures.remove(index);
+        productionChanged();
     }
 
     /**
@@ -179,6 +196,7 @@ public class Planet implements Serializable {
         if (currentPopulation < 0) {
             currentPopulation = 0;
         }
+        productionChanged();
     }
 
     /**
@@ -197,6 +215,7 @@ public class Planet implements Serializable {
      */
     public void setStarSystem(StarSystem starsystem) {
         this.starsystem = starsystem;
+        productionChanged();
     }
 
     /**
@@ -232,16 +251,7 @@ public class Planet implements Serializable {
      * @return industry produced
      */
     public int getIndustryProduced() {
-        int totalIndustry = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getIndustryOutput() > 0) {
-                    totalIndustry += s.getIndustryOutput();
-                }
-            }
-        }
-        return totalIndustry;
+        return getLedger().industryProduced;
     }
 
     /**
@@ -250,16 +260,7 @@ public class Planet implements Serializable {
      * @return industry consumed
      */
     public int getIndustryConsumed() {
-        int totalIndustry = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getIndustryOutput() < 0) {
-                    totalIndustry += s.getIndustryOutput();
-                }
-            }
-        }
-        return Math.abs(totalIndustry);
+        return getLedger().industryConsumed;
     }
 
     /**
@@ -277,16 +278,7 @@ public class Planet implements Serializable {
      * @return power produced
      */
     public int getPowerProduced() {
-        int totalPower = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getPowerOutput() > 0) {
-                    totalPower += s.getPowerOutput();
-                }
-            }
-        }
-        return totalPower;
+        return getLedger().powerProduced;
     }
 
     /**
@@ -295,16 +287,7 @@ public class Planet implements Serializable {
      * @return power consumed
      */
     public int getPowerConsumed() {
-        int totalPower = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getPowerOutput() < 0) {
-                    totalPower += s.getPowerOutput();
-                }
-            }
-        }
-        return Math.abs(totalPower);
+        return getLedger().powerConsumed;
     }
 
     /**
@@ -322,16 +305,7 @@ public class Planet implements Serializable {
      * @return research produced
      */
     public int getResearchProduced() {
-        int totalResearch = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getResearchOutput() > 0) {
-                    totalResearch += s.getResearchOutput();
-                }
-            }
-        }
-        return totalResearch;
+        return getLedger().researchProduced;
     }
 
     /**
@@ -340,16 +314,7 @@ public class Planet implements Serializable {
      * @return research consumed
      */
     public int getResearchConsumed() {
-        int totalResearch = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getResearchOutput() < 0) {
-                    totalResearch += s.getResearchOutput();
-                }
-            }
-        }
-        return Math.abs(totalResearch);
+        return getLedger().researchConsumed;
     }
 
     /**
@@ -367,18 +332,7 @@ public class Planet implements Serializable {
      * @return ground combat
      */
     public int getDefenseRating() {
-        int result = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s instanceof Bunker) {
-                    result += ((Bunker) s).getTroopCapacity();
-                }
-                if (s instanceof MilitaryOutpost) {
-                    result += ((MilitaryOutpost) s).getTroopCapacity();
-                }
-            }
-        }
+        int result = getLedger().defenseRating;
         result += ((result / 100) * starsystem.getUser().getFaction().getGroundCombatBonus());
         return result;
     }
@@ -389,16 +343,7 @@ public class Planet implements Serializable {
      * @return food produced
      */
     public int getFoodProduced() {
-        int totalFood = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getFoodOutput() > 0) {
-                    totalFood += s.getFoodOutput();
-                }
-            }
-        }
-        return totalFood;
+        return getLedger().foodProduced;
     }
 
     /**
@@ -407,16 +352,7 @@ public class Planet implements Serializable {
      * @return food consumed
      */
     public int getFoodConsumed() {
-        int totalFood = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.getFoodOutput() < 0) {
-                    totalFood += s.getFoodOutput();
-                }
-            }
-        }
-        return Math.abs(totalFood) + (currentPopulation / 120); // 1 farm feeds 2,4 billion people
+        return getLedger().foodConsumed;
     }
 
     /**
@@ -434,19 +370,7 @@ public class Planet implements Serializable {
      * @return ore storage
      */
     public int getOreStorage() {
-        int ore = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s instanceof OreRefinery) {
-                    ore += ((OreRefinery) s).getOreCapacity();
-                }
-                if (s instanceof OreSilo) {
-                    ore += ((OreSilo) s).getOreCapacity();
-                }
-            }
-        }
-        return ore;
+        return getLedger().oreStorage;
     }
 
     /**
@@ -455,19 +379,7 @@ public class Planet implements Serializable {
      * @return deuterium storage
      */
     public int getDeuteriumStorage() {
-        int deuterium = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s instanceof DeuteriumPlant) {
-                    deuterium += ((DeuteriumPlant) s).getDeuteriumCapacity();
-                }
-                if (s instanceof DeuteriumSilo) {
-                    deuterium += ((DeuteriumSilo) s).getDeuteriumCapacity();
-                }
-            }
-        }
-        return deuterium;
+        return getLedger().deuteriumStorage;
     }
 
     /**
@@ -476,17 +388,7 @@ public class Planet implements Serializable {
      * @return troop production
      */
     public int getTroopProduction() {
-        int troopProd = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s instanceof MilitaryOutpost) {
-                    troopProd += ((MilitaryOutpost) s).getTroopProduction();
-                }
-            }
-        }
-
-        return troopProd;
+        return getLedger().troopProduction;
     }
 
     /**
@@ -495,20 +397,7 @@ public class Planet implements Serializable {
      * @return troop capacity
      */
     public int getTroopCapacity() {
-        int troopMax = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s instanceof MilitaryOutpost) {
-                    troopMax += ((MilitaryOutpost) s).getTroopCapacity();
-                }
-                if (s instanceof Bunker) {
-                    troopMax += ((Bunker) s).getTroopCapacity();
-                }
-            }
-        }
-
-        return troopMax;
+        return getLedger().troopCapacity;
     }
 
     /**
@@ -517,17 +406,7 @@ public class Planet implements Serializable {
      * @return number of active bunkers
      */
     public int countBunkers() {
-        int bunkers = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s instanceof Bunker) {
-                    bunkers++;
-                }
-            }
-        }
-
-        return bunkers;
+        return getLedger().bunkers;
     }
 
 
@@ -610,13 +489,7 @@ public class Planet implements Serializable {
      * @return number of active structures
      */
     public int countActiveStructures() {
-        int count = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                count++;
-            }
-        }
-        return count;
+        return getLedger().activeStructures;
     }
 
     /**
@@ -653,16 +526,34 @@ public class Planet implements Serializable {
      * @return sensor strength
      */
     public int getScanStrength() {
-        int strength = 0;
-        for (int i : structures.keySet()) {
-            if (isStructureEnabled(i)) {
-                Structure s = structures.get(i);
-                if (s.equals(StaticData.subspaceScanner1)) {
-                    strength += 38;
-                }
-            }
+        return getLedger().scanStrength;
+    }
+
+    /**
+     * Gets the production ledger of this planet, the ledger is only remade
+     * if the planet has changed since it was last made
+     *
+     * @return the production ledger
+     */
+    ProductionLedger getLedger() {
+        ProductionLedger l = ledger;
+        int v = version;
+        if (l == null || l.version != v) {
+            l = ProductionLedger.forPlanet(v, structures, structuresEnabled, currentPopulation, maximumPopulation);
+            ledger = l;
+        }
+        return l;
+    }
+
+    /**
+     * Called when structures or population has changed, makes the planet
+     * and starsystem production ledgers be remade next time they are used
+     */
+    private void productionChanged() {
+        version++;
+        if (starsystem != null) {
+            starsystem.productionChanged();
         }
-        return strength;
     }
 
     public boolean equals(Planet secondPlanet) {
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import com.frostvoid.trekwar.common.structures.*;
+
+import java.util.HashMap;
+
+/**
+ * The production, storage and troop totals of a planet, or the sum for a starsystem.
+ * <p>
+ * A ledger is made in one pass over the structures of a planet, and cached by the planet
+ * until a structure is built, demolished, enabled/disabled or the population changes.
+ * Every change increases the version of the planet (and its starsystem), a ledger made
+ * for an older version is thrown away the next time it is asked for.
+ * Ledgers are never changed once made, so they can be shared between threads.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+class ProductionLedger {
+
+    final int version; // the version of the planet/system this ledger was made for
+
+    int industryProduced;
+    int industryConsumed;
+    int powerProduced;
+    int powerConsumed;
+    int researchProduced;
+    int researchConsumed;
+    int foodProduced;
+    int foodConsumed;
+    int defenseRating; // before faction bonus
+    int oreStorage;
+    int deuteriumStorage;
+    int troopProduction;
+    int troopCapacity;
+    int bunkers;
+    int activeStructures;
+    int scanStrength;
+    int activeShipyards;
+    int population;
+    int maxPopulation;
+
+    private ProductionLedger(int version) {
+        this.version = version;
+    }
+
+    /**
+     * Makes the ledger for a planet
+     *
+     * @param version           the version of the planet
+     * @param structures        the structures on the planet
+     * @param structuresEnabled the enabled state of the structures
+     * @param population        the population of the planet
+     * @param maxPopulation     the maximum population of the planet
+     * @return the ledger
+     */
+    static ProductionLedger forPlanet(int version, HashMap<Integer, Structure> structures,
+                                      HashMap<Integer, Boolean> structuresEnabled,
+                                      int population, int maxPopulation) {
+        ProductionLedger l = new ProductionLedger(version);
+        l.population = population;
+        l.maxPopulation = maxPopulation;
+        l.foodConsumed = population / 120; // 1 farm feeds 2,4 billion people
+
+        for (Integer i : structures.keySet()) {
+            Boolean enabled = structuresEnabled.get(i);
+            if (enabled == null || !enabled) {
+                continue;
+            }
+            Structure s = structures.get(i);
+            l.activeStructures++;
+
+            int industry = s.getIndustryOutput();
+            if (industry > 0) {
+                l.industryProduced += industry;
+            } else {
+                l.industryConsumed -= industry;
+            }
+            int power = s.getPowerOutput();
+            if (power > 0) {
+                l.powerProduced += power;
+            } else {
+                l.powerConsumed -= power;
+            }
+            int research = s.getResearchOutput();
+            if (research > 0) {
+                l.researchProduced += research;
+            } else {
+                l.researchConsumed -= research;
+            }
+            int food = s.getFoodOutput();
+            if (food > 0) {
+                l.foodProduced += food;
+            } else {
+                l.foodConsumed -= food;
+            }
+
+            if (s instanceof Bunker) {
+                l.defenseRating += ((Bunker) s).getTroopCapacity();
+                l.troopCapacity += ((Bunker) s).getTroopCapacity();
+                l.bunkers++;
+            }
+            if (s instanceof MilitaryOutpost) {
+                l.defenseRating += ((MilitaryOutpost) s).getTroopCapacity();
+                l.troopCapacity += ((MilitaryOutpost) s).getTroopCapacity();
+                l.troopProduction += ((MilitaryOutpost) s).getTroopProduction();
+            }
+            if (s instanceof OreRefinery) {
+                l.oreStorage += ((OreRefinery) s).getOreCapacity();
+            }
+            if (s instanceof OreSilo) {
+                l.oreStorage += ((OreSilo) s).getOreCapacity();
+            }
+            if (s instanceof DeuteriumPlant) {
+                l.deuteriumStorage += ((DeuteriumPlant) s).getDeuteriumCapacity();
+            }
+            if (s instanceof DeuteriumSilo) {
+                l.deuteriumStorage += ((DeuteriumSilo) s).getDeuteriumCapacity();
+            }
+            if (s.equals(StaticData.subspaceScanner1)) {
+                l.scanStrength += 38;
+            }
+            if (s.equals(StaticData.shipyard1)) {
+                l.activeShipyards++;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Makes the ledger for a starsystem, the sum of the ledgers of its planets
+     *
+     * @param version the version of the starsystem
+     * @param planets the planets in the starsystem
+     * @return the ledger
+     */
+    static ProductionLedger forSystem(int version, Iterable<Planet> planets) {
+        ProductionLedger l = new ProductionLedger(version);
+        for (Planet p : planets) {
+            ProductionLedger pl = p.getLedger();
+            l.industryProduced += pl.industryProduced;
+            l.industryConsumed += pl.industryConsumed;
+            l.powerProduced += pl.powerProduced;
+            l.powerConsumed += pl.powerConsumed;
+            l.researchProduced += pl.researchProduced;
+            l.researchConsumed += pl.researchConsumed;
+            l.foodProduced += pl.foodProduced;
+            l.foodConsumed += pl.foodConsumed;
+            l.defenseRating += pl.defenseRating;
+            l.oreStorage += pl.oreStorage;
+            l.deuteriumStorage += pl.deuteriumStorage;
+            l.troopProduction += pl.troopProduction;
+            l.troopCapacity += pl.troopCapacity;
+            l.bunkers += pl.bunkers;
+            l.activeStructures += pl.activeStructures;
+            l.scanStrength += pl.scanStrength;
+            l.activeShipyards += pl.activeShipyards;
+            l.population += pl.population;
+            l.maxPopulation += pl.maxPopulation;
+        }
+        return l;
+    }
+}
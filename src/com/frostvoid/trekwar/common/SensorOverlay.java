@@ -0,0 +1,185 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.BitSet;
+
+/**
+ * The sensor overlay / fog of war of a user.
+ * <p>
+ * A tile is either unexplored, explored (seen at some point), or in sensor range
+ * with a sensor strength above 0. Explored tiles are kept in a BitSet and sensor
+ * strengths in a single short array (index x * height + y), only tiles in sensor
+ * range are written when the overlay is serialized.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SensorOverlay implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int width;
+    private int height;
+    private BitSet explored;
+    private transient short[] strengths;
+
+    /**
+     * Makes a new sensor overlay where no tiles are explored
+     *
+     * @param width  the width of the map
+     * @param height the height of the map
+     */
+    public SensorOverlay(int width, int height) {
+        this.width = width;
+        this.height = height;
+        explored = new BitSet(width * height);
+        strengths = new short[width * height];
+    }
+
+    /**
+     * Makes a sensor overlay from a matrix of sensor strengths where Integer.MIN_VALUE is unexplored
+     * (the format used by old galaxy files)
+     *
+     * @param matrix the sensor strengths
+     * @return the sensor overlay
+     */
+    public static SensorOverlay fromMatrix(int[][] matrix) {
+        SensorOverlay overlay = new SensorOverlay(matrix.length, matrix.length == 0 ? 0 : matrix[0].length);
+        for (int x = 0; x < overlay.width; x++) {
+            for (int y = 0; y < overlay.height; y++) {
+                overlay.update(x, y, matrix[x][y]);
+            }
+        }
+        return overlay;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Checks if a tile has ever been explored
+     *
+     * @param x x location
+     * @param y y location
+     * @return true if the tile is explored
+     */
+    public boolean isExplored(int x, int y) {
+        return explored.get(x * height + y);
+    }
+
+    /**
+     * Checks if a tile is currently in sensor range
+     *
+     * @param x x location
+     * @param y y location
+     * @return true if the tile is currently seen
+     */
+    public boolean isInSensorRange(int x, int y) {
+        return strengths[x * height + y] >= 1;
+    }
+
+    /**
+     * Gets the sensor strength of a tile
+     *
+     * @param x x location
+     * @param y y location
+     * @return the sensor strength, 0 if the tile is not in sensor range
+     */
+    public int getSensorStrength(int x, int y) {
+        return strengths[x * height + y];
+    }
+
+    /**
+     * Updates a tile with a sensor strength, if it is higher than the existing one.
+     * Any strength above Integer.MIN_VALUE explores the tile (line of sight uses -1 and 0
+     * for tiles that are explored but not seen)
+     *
+     * @param x        x location
+     * @param y        y location
+     * @param strength the sensor strength
+     */
+    public void update(int x, int y, int strength) {
+        if (strength == Integer.MIN_VALUE) {
+            return;
+        }
+        int i = x * height + y;
+        explored.set(i);
+        if (strength > strengths[i]) {
+            strengths[i] = (short) Math.min(strength, Short.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Removes the sensor strength of a tile, the tile is still explored
+     *
+     * @param x x location
+     * @param y y location
+     */
+    public void clearSensorStrength(int x, int y) {
+        strengths[x * height + y] = 0;
+    }
+
+    /**
+     * Removes the sensor strength of all tiles, only explored tiles are visited
+     */
+    public void clearSensorStrengths() {
+        for (int i = explored.nextSetBit(0); i >= 0; i = explored.nextSetBit(i + 1)) {
+            strengths[i] = 0;
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        int count = 0;
+        for (int i = explored.nextSetBit(0); i >= 0; i = explored.nextSetBit(i + 1)) {
+            if (strengths[i] != 0) {
+                count++;
+            }
+        }
+        out.writeInt(count);
+        for (int i = explored.nextSetBit(0); i >= 0; i = explored.nextSetBit(i + 1)) {
+            if (strengths[i] != 0) {
+                out.writeInt(i);
+                out.writeShort(strengths[i]);
+            }
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        strengths = new short[width * height];
+        int count = in.readInt();
+        for (int n = 0; n < count; n++) {
+            int i = in.readInt();
+            if (i < 0 || i >= strengths.length) {
+                throw new InvalidObjectException("sensor strength for tile outside of map: " + i);
+            }
+            strengths[i] = in.readShort();
+        }
+    }
+}
@@ -991,12 +991,30 @@ public class Ship implements Serializable {
         }
     }
 
+    /**
+     * Sets the number of action points this ship has, used when a battle has been resolved
+     *
+     * @param points the action points
+     */
+    public void battle_setActionPoints(int points) {
+        actionPoints = points < 0 ? 0 : points;
+    }
+
     /**
      * Restores this ships action points
      */
     public final void battle_restoreActionPoints() {
+        actionPoints = applyStructuralDamagePenalty(getUndamagedActionPoints(), getCurrentHullStrength(), getMaxHitpoints());
+    }
+
+    /**
+     * Gets the action points this ship gets each combat round, before the penalty for structural damage
+     *
+     * @return action points
+     */
+    public final int getUndamagedActionPoints() {
         // base points
-        actionPoints = (hullClass.getSlots() / 2) + 5;
+        int actionPoints = (hullClass.getSlots() / 2) + 5;
 
         // points from components
         for (ShipComponent c : components.values()) {
@@ -1016,12 +1034,22 @@ public class Ship implements Serializable {
 
         // penalty for crew loss
         double crewLossPercentage = (100.0D / ((double) hullClass.getMaxCrew())) * ((double) crew);
-        actionPoints = (int) ((((double) actionPoints) / 100.0) * crewLossPercentage);
+        return (int) ((((double) actionPoints) / 100.0) * crewLossPercentage);
+    }
 
+    /**
+     * Reduces action points by the structural damage a ship has taken
+     *
+     * @param actionPoints    the undamaged action points
+     * @param hullStrength    current hull strength
+     * @param maxHullStrength maximum hull strength
+     * @return the action points
+     */
+    public static int applyStructuralDamagePenalty(int actionPoints, int hullStrength, int maxHullStrength) {
         // penatly for structural damage
-        double hitpointLossPercentage = (100.0D / ((double) getMaxHitpoints())) * ((double) getCurrentHullStrength());
+        double hitpointLossPercentage = (100.0D / ((double) maxHullStrength)) * ((double) hullStrength);
 
-        actionPoints = (int) ((((double) actionPoints) / 100.0) * hitpointLossPercentage);
+        return (int) ((((double) actionPoints) / 100.0) * hitpointLossPercentage);
     }
 
     /**
@@ -22,6 +22,7 @@ import com.frostvoid.trekwar.common.orders.Order;
 import com.frostvoid.trekwar.common.structures.Structure;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * This class represent a starsystem, and has a list of planets and fleets
@@ -43,6 +44,12 @@ public class StarSystem extends SpaceObject {
     private int ore; // used for colonized systems that store ore
     private int deuterium; // used for colonized systems that store deuterium
     private int troops; // used for colonized systems, this is the owners troops
+    private transient FleetSpatialIndex fleetIndex; // server side only, null until the galaxy index is made
+    private transient volatile int productionVersion; // increased by planets every time the ledger must be remade
+    private transient volatile ProductionLedger ledger; // cached production totals of all planets
+    private transient volatile EmpireLedger.Report ledgerReport; // what this system counts in the empire ledger of its owner, or null
+    private static final AtomicReferenceFieldUpdater<StarSystem, EmpireLedger.Report> LEDGER_REPORT =
+            AtomicReferenceFieldUpdater.newUpdater(StarSystem.class, EmpireLedger.Report.class, "ledgerReport");
 
     /**
      * Constructor to make a new StarSystem
@@ -163,6 +170,7 @@ public class StarSystem extends SpaceObject {
      */
     public void addPlanet(Planet p) {
         planets.add(p);
+        productionChanged();
     }
 
     /**
@@ -196,6 +204,9 @@ public class StarSystem extends SpaceObject {
      */
     public void addFleet(Fleet f) {
         fleets.add(f);
+        if (fleetIndex != null) {
+            fleetIndex.fleetAdded(this, f);
+        }
     }
 
     /**
@@ -204,7 +215,13 @@ public class StarSystem extends SpaceObject {
      * @param f the fleet to remove
      */
     public void removeFleet(Fleet f) {
-        fleets.remove(f);
+        if (fleets.remove(f) && fleetIndex != null) {
+            fleetIndex.fleetRemoved(this, f);
+        }
+    }
+
+    void setFleetIndex(FleetSpatialIndex fleetIndex) {
+        this.fleetIndex = fleetIndex;
     }
 
     /**
@@ -268,11 +285,7 @@ public class StarSystem extends SpaceObject {
      * @return number of enabled structures
      */
     public int countActiveStructures() {
-        int structures = 0;
-        for (Planet p : planets) {
-            structures += p.countActiveStructures();
-        }
-        return structures;
+        return getLedger().activeStructures;
     }
 
     /**
@@ -281,11 +294,7 @@ public class StarSystem extends SpaceObject {
      * @return the maximum population
      */
     public int getMaxPopulation() {
-        int pop = 0;
-        for (Planet p : planets) {
-            pop += p.getMaximumPopulation();
-        }
-        return pop;
+        return getLedger().maxPopulation;
     }
 
     /**
@@ -294,11 +303,7 @@ public class StarSystem extends SpaceObject {
      * @return the population
      */
     public int getPopulation() {
-        int pop = 0;
-        for (Planet p : planets) {
-            pop += p.getPopulation();
-        }
-        return pop;
+        return getLedger().population;
     }
 
     /**
@@ -326,11 +331,7 @@ public class StarSystem extends SpaceObject {
      * @return industry produced
      */
     public int getSystemIndustryProduced() {
-        int totalIndustry = 0;
-        for (Planet p : planets) {
-            totalIndustry += p.getIndustryProduced();
-        }
-        return totalIndustry;
+        return getLedger().industryProduced;
     }
 
     /**
@@ -339,11 +340,7 @@ public class StarSystem extends SpaceObject {
      * @return industry consumed
      */
     public int getSystemIndustryConsumed() {
-        int totalIndustry = 0;
-        for (Planet p : planets) {
-            totalIndustry += p.getIndustryConsumed();
-        }
-        return totalIndustry;
+        return getLedger().industryConsumed;
     }
 
     /**
@@ -352,11 +349,7 @@ public class StarSystem extends SpaceObject {
      * @return power produced
      */
     public int getSystemPowerProduced() {
-        int totalPower = 0;
-        for (Planet p : planets) {
-            totalPower += p.getPowerProduced();
-        }
-        return totalPower;
+        return getLedger().powerProduced;
     }
 
     /**
@@ -365,11 +358,7 @@ public class StarSystem extends SpaceObject {
      * @return power consumed
      */
     public int getSystemPowerConsumed() {
-        int totalPower = 0;
-        for (Planet p : planets) {
-            totalPower += p.getPowerConsumed();
-        }
-        return totalPower;
+        return getLedger().powerConsumed;
     }
 
     /**
@@ -378,11 +367,7 @@ public class StarSystem extends SpaceObject {
      * @return reserach produced
      */
     public int getSystemResearchProduced() {
-        int totalResearch = 0;
-        for (Planet p : planets) {
-            totalResearch += p.getResearchProduced();
-        }
-        return totalResearch;
+        return getLedger().researchProduced;
     }
 
     /**
@@ -391,11 +376,7 @@ public class StarSystem extends SpaceObject {
      * @return research consumed
      */
     public int getSystemResearchConsumed() {
-        int totalResearch = 0;
-        for (Planet p : planets) {
-            totalResearch += p.getResearchConsumed();
-        }
-        return totalResearch;
+        return getLedger().researchConsumed;
     }
 
 
@@ -418,11 +399,7 @@ public class StarSystem extends SpaceObject {
      * @return food produced
      */
     public int getSystemFoodProduced() {
-        int totalFood = 0;
-        for (Planet p : planets) {
-            totalFood += p.getFoodProduced();
-        }
-        return totalFood;
+        return getLedger().foodProduced;
     }
 
     /**
@@ -431,11 +408,7 @@ public class StarSystem extends SpaceObject {
      * @return food consumed
      */
     public int getSystemFoodConsumed() {
-        int totalFood = 0;
-        for (Planet p : planets) {
-            totalFood += p.getFoodConsumed();
-        }
-        return totalFood;
+        return getLedger().foodConsumed;
     }
 
     /**
@@ -444,11 +417,8 @@ public class StarSystem extends SpaceObject {
      * @return food surplus
      */
     public int getSystemFoodSurplus() {
-        int totalFood = 0;
-        for (Planet p : planets) {
-            totalFood += p.getFoodSurplus();
-        }
-        return totalFood;
+        ProductionLedger l = getLedger();
+        return l.foodProduced - l.foodConsumed;
     }
 
     /**
@@ -457,7 +427,8 @@ public class StarSystem extends SpaceObject {
      * @return power surplus
      */
     public int getSystemPowerSurplus() {
-        return getSystemPowerProduced() - getSystemPowerConsumed();
+        ProductionLedger l = getLedger();
+        return l.powerProduced - l.powerConsumed;
     }
 
     /**
@@ -583,7 +554,7 @@ public class StarSystem extends SpaceObject {
      */
     public void addStructure(Planet p, int planetSlot, Structure s) {
         if (p.getStructuresMap().size() < p.getMaximumStructures()) {
-            p.getStructuresMap().put(planetSlot, s);
+            p.addStructure(planetSlot, s);
         }
     }
 
@@ -607,18 +578,7 @@ public class StarSystem extends SpaceObject {
      * @return true if shipyard is present
      */
     public boolean hasActiveShipyard() {
-        boolean activeShipyardFound = false;
-        for (Planet p : planets) {
-            for (int i : p.getStructuresMap().keySet()) {
-                Structure s = p.getStructuresMap().get(i);
-                if (s.equals(StaticData.shipyard1)) {
-                    if (p.isStructureEnabled(i)) {
-                        activeShipyardFound = true;
-                    }
-                }
-            }
-        }
-        return activeShipyardFound;
+        return getLedger().activeShipyards > 0;
     }
 
     /**
@@ -627,11 +587,7 @@ public class StarSystem extends SpaceObject {
      * @return max ore storage
      */
     public int getMaxOreStorage() {
-        int maxOre = 0;
-        for (Planet p : planets) {
-            maxOre += p.getOreStorage();
-        }
-        return maxOre;
+        return getLedger().oreStorage;
     }
 
     /**
@@ -680,11 +636,7 @@ public class StarSystem extends SpaceObject {
      * @return maximum deuterium capacity
      */
     public int getMaxDeuterium() {
-        int max = 0;
-        for (Planet p : planets) {
-            max += p.getDeuteriumStorage();
-        }
-        return max;
+        return getLedger().deuteriumStorage;
     }
 
     /**
@@ -742,11 +694,7 @@ public class StarSystem extends SpaceObject {
      * @return troop production
      */
     public int getTroopProduction() {
-        int troopProd = 1;
-        for (Planet p : planets) {
-            troopProd += p.getTroopProduction();
-        }
-        return troopProd;
+        return 1 + getLedger().troopProduction;
     }
 
     /**
@@ -755,10 +703,7 @@ public class StarSystem extends SpaceObject {
      * @return maximum number of troops
      */
     public int getTroopCapacity() {
-        int maxTroops = 3 * planets.size();
-        for (Planet p : planets) {
-            maxTroops += p.getTroopCapacity();
-        }
+        int maxTroops = 3 * planets.size() + getLedger().troopCapacity;
         if (maxTroops > 150) {
             maxTroops = 150;
         }
@@ -775,6 +720,7 @@ public class StarSystem extends SpaceObject {
         if (this.deuterium > getMaxDeuterium()) {
             this.deuterium = getMaxDeuterium();
         }
+        reportToEmpireLedger();
     }
 
     /**
@@ -852,9 +798,7 @@ public class StarSystem extends SpaceObject {
             strength += 30;
         }
 
-        for (Planet p : getPlanets()) {
-            strength += p.getScanStrength();
-        }
+        strength += getLedger().scanStrength;
         if (strength < 0) {
             strength = 0;
         }
@@ -901,11 +845,7 @@ public class StarSystem extends SpaceObject {
      * @return number of bunkers
      */
     public int getNumberOfBunkers() {
-        int bunkers = 0;
-        for (Planet p : planets) {
-            bunkers += p.countBunkers();
-        }
-        return bunkers;
+        return getLedger().bunkers;
     }
 
     /**
@@ -924,4 +864,101 @@ public class StarSystem extends SpaceObject {
             }
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gets the production ledger of this system, the sum of the planet ledgers.
+     * The ledger is only remade if a planet has changed since it was last made
+     *
+     * @return the production ledger
+     */
+    ProductionLedger getLedger() {
+        ProductionLedger l = ledger;
+        int v = productionVersion;
+        if (l == null || l.version != v) {
+            l = ProductionLedger.forSystem(v, planets);
+            ledger = l;
+        }
+        return l;
+    }
+
+    /**
+     * Called by planets in this system when their structures or population has changed
+     */
+    void productionChanged() {
+        productionVersion++;
+        reportToEmpireLedger();
+    }
+
+    /**
+     * Starts counting this system in the empire ledger of a user,
+     * the system is removed from any other ledger it was counted in
+     *
+     * @param ledger the empire ledger of the new owner
+     */
+    void attachEmpireLedger(EmpireLedger ledger) {
+        EmpireLedger.Report old;
+        do {
+            old = ledgerReport;
+        } while (!EmpireLedger.replace(LEDGER_REPORT, this, old, makeLedgerReport(ledger)));
+    }
+
+    /**
+     * Stops counting this system in an empire ledger
+     *
+     * @param ledger the empire ledger of the previous owner
+     */
+    void detachEmpireLedger(EmpireLedger ledger) {
+        EmpireLedger.Report old;
+        do {
+            old = ledgerReport;
+            if (old == null || old.ledger != ledger) {
+                return;
+            }
+        } while (!EmpireLedger.replace(LEDGER_REPORT, this, old, null));
+    }
+
+    /**
+     * Reports the current upkeep, research and deuterium of this system
+     * to the empire ledger this system is counted in
+     */
+    private void reportToEmpireLedger() {
+        EmpireLedger.Report old;
+        EmpireLedger.Report report;
+        do {
+            old = ledgerReport;
+            if (old == null) {
+                return;
+            }
+            report = makeLedgerReport(old.ledger);
+            if (report.sameAs(old)) {
+                return;
+            }
+        } while (!EmpireLedger.replace(LEDGER_REPORT, this, old, report));
+    }
+
+    private EmpireLedger.Report makeLedgerReport(EmpireLedger ledger) {
+        return new EmpireLedger.Report(ledger, getShipUpkeepContribution(), getSystemResearchSurplus(), deuterium, getMaxDeuterium());
+    }
+
+    /**
+     * Makes a shallow copy of this system with a different set of fleets and
+     * no build queue. Planets are shared with the original.
+     * Used by the server when building the galaxy a specific user is allowed to see
+     *
+     * @param visibleFleets the fleets the copy should contain
+     * @return the copy
+     */
+    public StarSystem getFilteredCopy(ArrayList<Fleet> visibleFleets) {
+        StarSystem copy = new StarSystem(user, x, y, name, starSystemType);
+        copy.sensorCost = sensorCost;
+        copy.imageFile = imageFile;
+        copy.planets = planets;
+        copy.fleets = visibleFleets;
+        copy.morale = morale;
+        copy.resourcesLeft = resourcesLeft;
+        copy.ore = ore;
+        copy.deuterium = deuterium;
+        copy.troops = troops;
+        return copy;
+    }
+}
@@ -810,35 +810,14 @@ public class StaticData {
     }
 
     public static Iterable<ShipComponent> getShipComponentsRequiringTechnology(Technology tech) {
-        ArrayList<ShipComponent> res = new ArrayList<ShipComponent>();
-
-        for (ShipComponent component : allShipComponents) {
-            if (component.getTechsRequired().contains(tech)) {
-                res.add(component);
-            }
-        }
-        return res;
+        return TechnologyIndex.get().getShipComponentsRequiring(tech);
     }
 
     public static Iterable<HullClass> getHullClassesRequiringTechnology(Technology tech) {
-        ArrayList<HullClass> res = new ArrayList<HullClass>();
-
-        for (HullClass hull : allHullClasses) {
-            if (hull.getTechsRequired().contains(tech)) {
-                res.add(hull);
-            }
-        }
-        return res;
+        return TechnologyIndex.get().getHullClassesRequiring(tech);
     }
 
     public static Iterable<Structure> getStructuresRequiringTechnology(Technology tech) {
-        ArrayList<Structure> res = new ArrayList<Structure>();
-
-        for (Structure structure : allStructures) {
-            if (structure.getTechsRequired().contains(tech)) {
-                res.add(structure);
-            }
-        }
-        return res;
+        return TechnologyIndex.get().getStructuresRequiring(tech);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import com.frostvoid.trekwar.common.shipComponents.ShipComponent;
+import com.frostvoid.trekwar.common.shipHulls.HullClass;
+import com.frostvoid.trekwar.common.structures.Structure;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Gives every technology a bit number, so the technologies of a user can be kept in a BitSet,
+ * and knows which technologies every hull, component and structure requires (as a BitSet),
+ * and which hulls, components and structures every technology is required by.
+ * <p>
+ * Made once from TechnologyGenerator and StaticData the first time it is used.
+ * Technologies are looked up by equals, so technologies from a deserialized galaxy
+ * map to the same bits as the originals.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+class TechnologyIndex {
+
+    private final HashMap<Technology, Integer> bits = new HashMap<Technology, Integer>();
+    private final IdentityHashMap<Object, BitSet> requirements = new IdentityHashMap<Object, BitSet>();
+    private final HashMap<Technology, ArrayList<HullClass>> hullsByTech = new HashMap<Technology, ArrayList<HullClass>>();
+    private final HashMap<Technology, ArrayList<ShipComponent>> componentsByTech = new HashMap<Technology, ArrayList<ShipComponent>>();
+    private final HashMap<Technology, ArrayList<Structure>> structuresByTech = new HashMap<Technology, ArrayList<Structure>>();
+
+    private TechnologyIndex() {
+        for (Technology t : TechnologyGenerator.getAllTechs()) {
+            addBit(t);
+        }
+        for (HullClass h : StaticData.allHullClasses) {
+            requirements.put(h, makeRequirements(h.getTechsRequired()));
+            for (Technology t : h.getTechsRequired()) {
+                addUnlock(hullsByTech, t, h);
+            }
+        }
+        for (ShipComponent c : StaticData.allShipComponents) {
+            requirements.put(c, makeRequirements(c.getTechsRequired()));
+            for (Technology t : c.getTechsRequired()) {
+                addUnlock(componentsByTech, t, c);
+            }
+        }
+        for (Structure s : StaticData.allStructures) {
+            requirements.put(s, makeRequirements(s.getTechsRequired()));
+            for (Technology t : s.getTechsRequired()) {
+                addUnlock(structuresByTech, t, s);
+            }
+        }
+    }
+
+    /**
+     * Gets the technology index
+     *
+     * @return the index
+     */
+    static TechnologyIndex get() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Makes the index when first used (not when StaticData is loaded), without locking on every get()
+     */
+    private static class Holder {
+        private static final TechnologyIndex INSTANCE = new TechnologyIndex();
+    }
+
+    /**
+     * Gets the bit number of a technology
+     *
+     * @param tech the technology
+     * @return the bit number, or -1 if the technology is not required by anything and not a known technology
+     */
+    int getBit(Technology tech) {
+        Integer bit = bits.get(tech);
+        return bit == null ? -1 : bit;
+    }
+
+    /**
+     * Makes the set of bits for a list of technologies
+     *
+     * @param techs the technologies
+     * @return the bits, unknown technologies are left out
+     */
+    BitSet toBits(List<Technology> techs) {
+        BitSet res = new BitSet(bits.size());
+        for (Technology t : techs) {
+            int bit = getBit(t);
+            if (bit != -1) {
+                res.set(bit);
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Gets the technologies required by a hull, component or structure from StaticData
+     *
+     * @param item the hull, component or structure
+     * @return the required technologies as bits, or null if the object is not from StaticData
+     */
+    BitSet getRequirements(Object item) {
+        return requirements.get(item);
+    }
+
+    /**
+     * Checks if a set of technologies has all the bits required
+     *
+     * @param required the required bits
+     * @param techs    the technologies a user has
+     * @return true if every required bit is set in techs
+     */
+    static boolean hasAll(BitSet required, BitSet techs) {
+        for (int i = required.nextSetBit(0); i >= 0; i = required.nextSetBit(i + 1)) {
+            if (!techs.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the hulls, components or structures requiring a technology, in StaticData order
+     *
+     * @param tech the technology
+     * @return the hulls, components or structures requiring the technology
+     */
+    List<HullClass> getHullClassesRequiring(Technology tech) {
+        return getOrEmpty(hullsByTech, tech);
+    }
+
+    List<ShipComponent> getShipComponentsRequiring(Technology tech) {
+        return getOrEmpty(componentsByTech, tech);
+    }
+
+    List<Structure> getStructuresRequiring(Technology tech) {
+        return getOrEmpty(structuresByTech, tech);
+    }
+
+    private void addBit(Technology tech) {
+        if (!bits.containsKey(tech)) {
+            bits.put(tech, bits.size());
+        }
+    }
+
+    private BitSet makeRequirements(List<Technology> techs) {
+        for (Technology t : techs) {
+            addBit(t);
+        }
+        return toBits(techs);
+    }
+
+    private static <T> void addUnlock(HashMap<Technology, ArrayList<T>> map, Technology tech, T item) {
+        ArrayList<T> list = map.get(tech);
+        if (list == null) {
+            list = new ArrayList<T>();
+            map.put(tech, list);
+        }
+        if (!list.contains(item)) {
+            list.add(item);
+        }
+    }
+
+    private static <T> List<T> getOrEmpty(HashMap<Technology, ArrayList<T>> map, Technology tech) {
+        ArrayList<T> list = map.get(tech);
+        if (list == null) {
+            return Collections.<T>emptyList();
+        }
+        return Collections.unmodifiableList(list);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Collects the turn reports made by one part of the turn execution.
+ * <p>
+ * While a buffer is open on a thread, User.addTurnReport adds reports to the buffer
+ * instead of to the user, so tasks running in parallel never touch the turn reports
+ * of a user. When the turn is done all buffers are flushed to the users in the order
+ * given, which does not depend on how the tasks were scheduled.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class TurnReportBuffer {
+
+    private static final ThreadLocal<TurnReportBuffer> current = new ThreadLocal<TurnReportBuffer>();
+
+    private final ArrayList<User> users = new ArrayList<User>();
+    private final ArrayList<TurnReportItem> items = new ArrayList<TurnReportItem>();
+
+    /**
+     * Makes turn reports added on the calling thread go to this buffer
+     */
+    public void open() {
+        current.set(this);
+    }
+
+    /**
+     * Makes turn reports added on the calling thread go directly to the user again
+     */
+    public void close() {
+        current.remove();
+    }
+
+    /**
+     * Makes a task that runs with this buffer open
+     *
+     * @param task the task
+     * @return the task with this buffer open while it runs
+     */
+    public Runnable wrap(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                open();
+                try {
+                    task.run();
+                } finally {
+                    close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Makes a task that runs with this buffer open
+     *
+     * @param task the task
+     * @param <T>  the task result type
+     * @return the task with this buffer open while it runs
+     */
+    public <T> Callable<T> wrap(final Callable<T> task) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                open();
+                try {
+                    return task.call();
+                } finally {
+                    close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Adds a report to the buffer open on the calling thread
+     *
+     * @param user the user the report is for
+     * @param item the report
+     * @return false if no buffer is open on the calling thread
+     */
+    static boolean add(User user, TurnReportItem item) {
+        TurnReportBuffer buffer = current.get();
+        if (buffer == null) {
+            return false;
+        }
+        buffer.users.add(user);
+        buffer.items.add(item);
+        return true;
+    }
+
+    /**
+     * Adds all buffered reports to the users, buffers are flushed in the order given
+     *
+     * @param buffers the buffers
+     */
+    public static void flush(List<TurnReportBuffer> buffers) {
+        LinkedHashMap<User, ArrayList<TurnReportItem>> reports = new LinkedHashMap<User, ArrayList<TurnReportItem>>();
+        for (TurnReportBuffer buffer : buffers) {
+            for (int i = 0; i < buffer.items.size(); i++) {
+                ArrayList<TurnReportItem> userReports = reports.get(buffer.users.get(i));
+                if (userReports == null) {
+                    userReports = new ArrayList<TurnReportItem>();
+                    reports.put(buffer.users.get(i), userReports);
+                }
+                userReports.add(buffer.items.get(i));
+            }
+            buffer.users.clear();
+            buffer.items.clear();
+        }
+        for (Map.Entry<User, ArrayList<TurnReportItem>> entry : reports.entrySet()) {
+            entry.getKey().addTurnReports(entry.getValue());
+        }
+    }
+}
@@ -15,23 +15,35 @@
  */
 package com.frostvoid.trekwar.common;
 
+import com.frostvoid.trekwar.client.Client;
+import com.frostvoid.trekwar.common.utils.Language;
+
 import java.io.Serializable;
 
 /**
  * Represents an entry in the Turn Report list
+ * <p>
+ * The summary and details are normally stored as a language key and the values
+ * to insert, and are formatted with the language of the client when shown.
+ * Text that does not come from the language file can be set directly.
  *
  * @author Erlend Aakre
  * @author FrostVoid Software
  * @author http://www.frostvoid.com
  */
 public class TurnReportItem implements Serializable {
+    private static final long serialVersionUID = 7142520773371003769L;
 
     private long turn;
     private int x = -1;
     private int y = -1;
     private TurnReportSeverity severity;
-    private String summary;
-    private String detailed;
+    private String summary; // text, used if there is no summary key
+    private String detailed; // text, used if there is no detailed key
+    private String summaryKey;
+    private String[] summaryValues;
+    private String detailedKey;
+    private String[] detailedValues;
 
     public enum TurnReportSeverity {
         LOW,
@@ -94,30 +106,96 @@ public class TurnReportItem implements Serializable {
     }
 
     /**
+     * Gets the summary, formatted with the client language
+     *
      * @return the summary
      */
     public String getSummary() {
-        return summary;
+        return getSummary(Client.getLanguage());
     }
 
     /**
-     * @param summary the summary to set
+     * Gets the summary, formatted with a given language
+     *
+     * @param language the language
+     * @return the summary
+     */
+    public String getSummary(Language language) {
+        if (summaryKey == null) {
+            return summary;
+        }
+        return language.format(summaryKey, (Object[]) summaryValues);
+    }
+
+    /**
+     * @param summary the summary text to set
      */
     public void setSummary(String summary) {
         this.summary = summary;
+        this.summaryKey = null;
+        this.summaryValues = null;
+    }
+
+    /**
+     * Sets the summary to a value from the language file, formatted when shown
+     *
+     * @param key    the language key
+     * @param values the values to insert at %1, %2 etc..
+     */
+    public void setSummaryKey(String key, Object... values) {
+        this.summary = "";
+        this.summaryKey = key;
+        this.summaryValues = toStrings(values);
     }
 
     /**
-     * @return the detailed
+     * Gets the details, formatted with the client language
+     *
+     * @return the details
      */
     public String getDetailed() {
-        return detailed;
+        return getDetailed(Client.getLanguage());
     }
 
     /**
-     * @param detailed the detailed to set
+     * Gets the details, formatted with a given language
+     *
+     * @param language the language
+     * @return the details
+     */
+    public String getDetailed(Language language) {
+        if (detailedKey == null) {
+            return detailed;
+        }
+        return language.format(detailedKey, (Object[]) detailedValues);
+    }
+
+    /**
+     * @param detailed the detailed text to set
      */
     public void setDetailed(String detailed) {
         this.detailed = detailed;
+        this.detailedKey = null;
+        this.detailedValues = null;
+    }
+
+    /**
+     * Sets the details to a value from the language file, formatted when shown
+     *
+     * @param key    the language key
+     * @param values the values to insert at %1, %2 etc..
+     */
+    public void setDetailedKey(String key, Object... values) {
+        this.detailed = "";
+        this.detailedKey = key;
+        this.detailedValues = toStrings(values);
+    }
+
+    private static String[] toStrings(Object[] values) {
+        String[] res = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            res[i] = String.valueOf(values[i]);
+        }
+        return res;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * The turn reports of a user, a ring buffer of the newest reports kept in turn order.
+ * <p>
+ * Reports are almost always added in turn order, so adding is done at the end
+ * of the buffer, replacing the oldest report when the buffer is full.
+ * The list shown to the user (newest turn first) is made once after every change.
+ * Not thread safe, guarded by the user owning it.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class TurnReportLog implements Serializable {
+
+    public static final int CAPACITY = 100;
+
+    private TurnReportItem[] items = new TurnReportItem[CAPACITY];
+    private int head; // index of the oldest report
+    private int size;
+    private transient ArrayList<TurnReportItem> newestFirst; // null when changed since last made
+
+    /**
+     * Adds a report, if the log is full the oldest report is removed
+     *
+     * @param item the report
+     */
+    void add(TurnReportItem item) {
+        if (size == CAPACITY) {
+            items[head] = null;
+            head = (head + 1) % CAPACITY;
+            size--;
+        }
+        // keep turn order, only reports older than the newest report are moved
+        int pos = size;
+        while (pos > 0 && get(pos - 1).getTurn() > item.getTurn()) {
+            items[(head + pos) % CAPACITY] = get(pos - 1);
+            pos--;
+        }
+        items[(head + pos) % CAPACITY] = item;
+        size++;
+        newestFirst = null;
+    }
+
+    /**
+     * Gets the number of reports in the log
+     *
+     * @return number of reports
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Gets all reports, newest turn first, reports from the same turn in the order they were added.
+     * The list is shared and must not be modified
+     *
+     * @return the reports
+     */
+    ArrayList<TurnReportItem> getNewestFirst() {
+        ArrayList<TurnReportItem> list = newestFirst;
+        if (list == null) {
+            list = new ArrayList<TurnReportItem>(size);
+            int end = size - 1;
+            while (end >= 0) {
+                int start = end;
+                while (start > 0 && get(start - 1).getTurn() == get(end).getTurn()) {
+                    start--;
+                }
+                for (int i = start; i <= end; i++) {
+                    list.add(get(i));
+                }
+                end = start - 1;
+            }
+            newestFirst = list;
+        }
+        return list;
+    }
+
+    private TurnReportItem get(int index) {
+        return items[(head + index) % CAPACITY];
+    }
+}
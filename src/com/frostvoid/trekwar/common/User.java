@@ -20,10 +20,13 @@ import com.frostvoid.trekwar.common.shipComponents.ShipComponent;
 import com.frostvoid.trekwar.common.shipHulls.HullClass;
 import com.frostvoid.trekwar.common.structures.Structure;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This class represents a user of the game
@@ -39,10 +42,12 @@ public class User implements Serializable {
     private String password;
     private String avatarFilename;
     private ArrayList<ChatLine> chat;
-    private ArrayList<TurnReportItem> turnReport;
+    private ArrayList<TurnReportItem> turnReport; // only set when loaded from old galaxy files, replaced by turnReports in readObject
+    private TurnReportLog turnReports;
     private long points; // points.. for highscore
     private Faction faction;
-    private int[][] sensorOverlay;
+    private SensorOverlay sensors;
+    private int[][] sensorOverlay; // only set when loaded from old galaxy files, replaced by sensors in readObject
     private ArrayList<ShipTemplate> shipTemplates;
     private ArrayList<StarSystem> starSystems;
     private ArrayList<Fleet> fleets;
@@ -50,6 +55,9 @@ public class User implements Serializable {
     private ArrayList<Technology> techs;
     private Technology currentResearch;
     private int nextShipId = 1;
+    private transient ReentrantLock lock; // guards templates, chat, turn reports and making the empire ledger, not synchronized so virtual threads are not pinned
+    private transient volatile EmpireLedger empireLedger; // null until first used
+    private transient volatile BitSet techBits; // techs as TechnologyIndex bits, null until first used, replaced (never changed) when a tech is added
 
     /**
      * Constructor to make a new user
@@ -62,17 +70,36 @@ public class User implements Serializable {
         this.username = name;
         this.password = password;
         chat = new ArrayList<ChatLine>();
-        turnReport = new ArrayList<TurnReportItem>();
+        turnReports = new TurnReportLog();
         points = 0;
         this.faction = faction;
 
-        this.sensorOverlay = new int[2][2];
+        this.sensors = new SensorOverlay(0, 0);
 
         starSystems = new ArrayList<StarSystem>();
         fleets = new ArrayList<Fleet>();
         shipTemplates = new ArrayList<ShipTemplate>();
         researchPoints = 0;
         techs = new ArrayList<Technology>();
+        lock = new ReentrantLock();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        lock = new ReentrantLock();
+        if (sensorOverlay != null) {
+            sensors = SensorOverlay.fromMatrix(sensorOverlay);
+            sensorOverlay = null;
+        }
+        if (turnReports == null) {
+            turnReports = new TurnReportLog();
+            if (turnReport != null) {
+                for (TurnReportItem item : turnReport) {
+                    turnReports.add(item);
+                }
+                turnReport = null;
+            }
+        }
     }
 
     /**
@@ -103,19 +130,19 @@ public class User implements Serializable {
     /**
      * Sets the users sensor overlay / fog of war
      *
-     * @param sensorOverlay a matrix with sensor strenght values
+     * @param sensorOverlay the sensor overlay
      */
-    public void setSensorOverlay(int[][] sensorOverlay) {
-        this.sensorOverlay = sensorOverlay;
+    public void setSensorOverlay(SensorOverlay sensorOverlay) {
+        this.sensors = sensorOverlay;
     }
 
     /**
      * Gets the sensor overlay
      *
-     * @return the sensor overlay matrix
+     * @return the sensor overlay
      */
-    public int[][] getSensorOverlay() {
-        return sensorOverlay;
+    public SensorOverlay getSensorOverlay() {
+        return sensors;
     }
 
     /**
@@ -179,6 +206,10 @@ public class User implements Serializable {
      */
     public void addSystem(StarSystem starSystem) {
         starSystems.add(starSystem);
+        EmpireLedger ledger = empireLedger;
+        if (ledger != null) {
+            starSystem.attachEmpireLedger(ledger);
+        }
     }
 
     /**
@@ -187,7 +218,14 @@ public class User implements Serializable {
      * @param starSystem Starsystem to remove
      */
     public void removeSystem(StarSystem starSystem) {
-        starSystems.remove(starSystem);
+        int index = starSystems.indexOf(starSystem);
+        if (index != -1) {
+            StarSystem removed = starSystems.remove(index);
+            EmpireLedger ledger = empireLedger;
+            if (ledger != null) {
+                removed.detachEmpireLedger(ledger);
+            }
+        }
     }
 
     /**
@@ -212,6 +250,10 @@ public class User implements Serializable {
             }
         }
         fleets.add(fleet);
+        EmpireLedger ledger = empireLedger;
+        if (ledger != null) {
+            fleet.attachEmpireLedger(ledger);
+        }
     }
 
     /**
@@ -220,7 +262,42 @@ public class User implements Serializable {
      * @param fleet
      */
     public void removeFleet(Fleet fleet) {
-        fleets.remove(fleet);
+        int index = fleets.indexOf(fleet);
+        if (index != -1) {
+            Fleet removed = fleets.remove(index);
+            EmpireLedger ledger = empireLedger;
+            if (ledger != null) {
+                removed.detachEmpireLedger(ledger);
+            }
+        }
+    }
+
+    /**
+     * Gets the empire ledger of this user, made from all systems and fleets the first time it is used
+     *
+     * @return the empire ledger
+     */
+    EmpireLedger getEmpireLedger() {
+        EmpireLedger ledger = empireLedger;
+        if (ledger == null) {
+            lock.lock();
+            try {
+                ledger = empireLedger;
+                if (ledger == null) {
+                    ledger = new EmpireLedger();
+                    for (StarSystem s : starSystems) {
+                        s.attachEmpireLedger(ledger);
+                    }
+                    for (Fleet f : fleets) {
+                        f.attachEmpireLedger(ledger);
+                    }
+                    empireLedger = ledger;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return ledger;
     }
 
     /**
@@ -286,9 +363,75 @@ public class User implements Serializable {
     public void addTech(Technology tech) {
         if (!techs.contains(tech)) {
             techs.add(tech);
+            int bit = TechnologyIndex.get().getBit(tech);
+            if (bit != -1) {
+                BitSet bits = (BitSet) getTechBits().clone();
+                bits.set(bit);
+                techBits = bits;
+            }
         }
     }
 
+    /**
+     * Checks if this user has a technology
+     *
+     * @param tech the technology
+     * @return true if the user has the technology
+     */
+    public boolean hasTech(Technology tech) {
+        int bit = TechnologyIndex.get().getBit(tech);
+        if (bit == -1) {
+            return techs.contains(tech);
+        }
+        return getTechBits().get(bit);
+    }
+
+    /**
+     * Checks if this user has all of a list of technologies
+     *
+     * @param required the technologies
+     * @return true if the user has every technology in the list
+     */
+    public boolean hasTechs(List<Technology> required) {
+        for (Technology t : required) {
+            if (!hasTech(t)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the technologies of this user as TechnologyIndex bits, made from techs the first time
+     *
+     * @return the technology bits, must not be changed
+     */
+    private BitSet getTechBits() {
+        BitSet bits = techBits;
+        if (bits == null) {
+            bits = TechnologyIndex.get().toBits(techs);
+            techBits = bits;
+        }
+        return bits;
+    }
+
+    /**
+     * Checks if this user has the technologies required by a hull, component or structure
+     *
+     * @param item     the hull, component or structure
+     * @param required the technologies it requires, used if the item is not from StaticData
+     * @param bits     the technology bits to check against
+     * @return true if all required technologies are in bits
+     */
+    private static boolean hasRequired(Object item, List<Technology> required, BitSet bits) {
+        TechnologyIndex index = TechnologyIndex.get();
+        BitSet requiredBits = index.getRequirements(item);
+        if (requiredBits == null) {
+            requiredBits = index.toBits(required);
+        }
+        return TechnologyIndex.hasAll(requiredBits, bits);
+    }
+
     /**
      * Gets a list of all the technologies this user has
      *
@@ -305,10 +448,7 @@ public class User implements Serializable {
      * @return research output per turn
      */
     public int getResearchOutput() {
-        int research = 0;
-        for (StarSystem s : starSystems) {
-            research += s.getSystemResearchSurplus();
-        }
+        int research = getEmpireLedger().getResearchSurplus();
         research += getResearchBonus();
 
         // prevent negative research
@@ -325,10 +465,7 @@ public class User implements Serializable {
     }
 
     public int getResearchBonus() {
-        int research = 0;
-        for (StarSystem s : starSystems) {
-            research += s.getSystemResearchSurplus();
-        }
+        int research = getEmpireLedger().getResearchSurplus();
         double bonus = ((research / 100D) * getFaction().getResearchBonus());
         return (int) Math.ceil(bonus);
     }
@@ -347,8 +484,13 @@ public class User implements Serializable {
      *
      * @param template the tempalte to add
      */
-    public synchronized void addShipTemplate(ShipTemplate template) {
-        shipTemplates.add(template);
+    public void addShipTemplate(ShipTemplate template) {
+        lock.lock();
+        try {
+            shipTemplates.add(template);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -356,8 +498,13 @@ public class User implements Serializable {
      *
      * @param template the template to remove
      */
-    public synchronized void removeShipTemplate(ShipTemplate template) {
-        shipTemplates.remove(template);
+    public void removeShipTemplate(ShipTemplate template) {
+        lock.lock();
+        try {
+            shipTemplates.remove(template);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -366,13 +513,18 @@ public class User implements Serializable {
      * @param name the name of the template to get
      * @return the template, or null if not found
      */
-    public synchronized ShipTemplate getShipTemplate(String name) {
-        for (ShipTemplate s : shipTemplates) {
-            if (s.getName().equalsIgnoreCase(name)) {
-                return s;
+    public ShipTemplate getShipTemplate(String name) {
+        lock.lock();
+        try {
+            for (ShipTemplate s : shipTemplates) {
+                if (s.getName().equalsIgnoreCase(name)) {
+                    return s;
+                }
             }
+            return null;
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
     /**
@@ -381,11 +533,7 @@ public class User implements Serializable {
      * @return deteurium amount
      */
     public int getDeuterium() {
-        int deuterium = 0;
-        for (StarSystem s : starSystems) {
-            deuterium += s.getDeuterium();
-        }
-        return deuterium;
+        return getEmpireLedger().getDeuterium();
     }
 
     /**
@@ -394,11 +542,7 @@ public class User implements Serializable {
      * @return max deuterium capacity
      */
     public int getMaxDeuterium() {
-        int max = 0;
-        for (StarSystem s : starSystems) {
-            max += s.getMaxDeuterium();
-        }
-        return max;
+        return getEmpireLedger().getMaxDeuterium();
     }
 
     /**
@@ -407,11 +551,7 @@ public class User implements Serializable {
      * @return total upkeep supply (per turn)
      */
     public int getShipUpkeepSupply() {
-        int upkeep = StaticData.SHIP_UPKEEP_BASE_VALUE;
-        for (StarSystem s : starSystems) {
-            upkeep += s.getShipUpkeepContribution();
-        }
-        return upkeep;
+        return StaticData.SHIP_UPKEEP_BASE_VALUE + getEmpireLedger().getShipUpkeepSupply();
     }
 
     /**
@@ -420,13 +560,7 @@ public class User implements Serializable {
      * @return total upkeep used (per turn)
      */
     public int getShipUpkeepUsed() {
-        int upkeep = 0;
-        for (Fleet f : fleets) {
-            for (Ship s : f.getShips()) {
-                upkeep += s.getUpkeepCost();
-            }
-        }
-        return upkeep;
+        return getEmpireLedger().getShipUpkeepUsed();
     }
 
     /**
@@ -454,9 +588,9 @@ public class User implements Serializable {
      */
     public ArrayList<HullClass> getAvailableShipHulls() {
         ArrayList<HullClass> hulls = new ArrayList<HullClass>();
-
+        BitSet bits = getTechBits();
         for (HullClass h : StaticData.allHullClasses) {
-            if (h.canUse(faction) && h.canUse(this)) {
+            if (h.canUse(faction) && hasRequired(h, h.getTechsRequired(), bits)) {
                 hulls.add(h);
             }
         }
@@ -464,19 +598,22 @@ public class User implements Serializable {
     }
 
     /**
-     * Returns the hulls the user would gain from researching a specific technology
+     * Returns the hulls the user would gain from researching a specific technology,
+     * only the hulls requiring the technology are checked
      *
      * @param technology the technology
      * @return hulls gained by researching the technology
      */
     public ArrayList<HullClass> getHullsFromResearchingTechnolog(Technology technology) {
-        ArrayList currentHulls = getAvailableShipHulls();
-        addTech(technology);
-        ArrayList<HullClass> hullsWithNewTech = getAvailableShipHulls();
-        techs.remove(technology);
-
-        hullsWithNewTech.removeAll(currentHulls);
-        return hullsWithNewTech;
+        ArrayList<HullClass> hulls = new ArrayList<HullClass>();
+        BitSet bits = getTechBits();
+        BitSet bitsWithNewTech = getTechBitsWith(technology);
+        for (HullClass h : TechnologyIndex.get().getHullClassesRequiring(technology)) {
+            if (h.canUse(faction) && !hasRequired(h, h.getTechsRequired(), bits) && hasRequired(h, h.getTechsRequired(), bitsWithNewTech)) {
+                hulls.add(h);
+            }
+        }
+        return hulls;
     }
 
     /**
@@ -486,8 +623,9 @@ public class User implements Serializable {
      */
     public ArrayList<ShipComponent> getAvailableShipComponents() {
         ArrayList<ShipComponent> components = new ArrayList<ShipComponent>();
+        BitSet bits = getTechBits();
         for (ShipComponent c : StaticData.allShipComponents) {
-            if (c.canUse(faction) && c.canUse(this)) {
+            if (c.canUse(faction) && hasRequired(c, c.getTechsRequired(), bits)) {
                 components.add(c);
             }
         }
@@ -501,8 +639,9 @@ public class User implements Serializable {
      */
     public ArrayList<Structure> getAvailableStructures() {
         ArrayList<Structure> structures = new ArrayList<Structure>();
+        BitSet bits = getTechBits();
         for (Structure s : StaticData.allStructures) {
-            if (s.canUse(faction) && s.canUse(this)) {
+            if (s.canUse(faction) && hasRequired(s, s.getTechsRequired(), bits)) {
                 structures.add(s);
             }
         }
@@ -510,19 +649,31 @@ public class User implements Serializable {
     }
 
     /**
-     * Returns the ship components that the user would gain from researching a specific technology
+     * Returns the ship components that the user would gain from researching a specific technology,
+     * only the components requiring the technology are checked
      *
      * @param technology the technology
      * @return the components gained by researching technology
      */
     public ArrayList<ShipComponent> getShipComponentsFromResearchingTechnolog(Technology technology) {
-        ArrayList currentComponents = getAvailableShipComponents();
-        addTech(technology);
-        ArrayList<ShipComponent> componentsWithNewTech = getAvailableShipComponents();
-        techs.remove(technology);
+        ArrayList<ShipComponent> components = new ArrayList<ShipComponent>();
+        BitSet bits = getTechBits();
+        BitSet bitsWithNewTech = getTechBitsWith(technology);
+        for (ShipComponent c : TechnologyIndex.get().getShipComponentsRequiring(technology)) {
+            if (c.canUse(faction) && !hasRequired(c, c.getTechsRequired(), bits) && hasRequired(c, c.getTechsRequired(), bitsWithNewTech)) {
+                components.add(c);
+            }
+        }
+        return components;
+    }
 
-        componentsWithNewTech.removeAll(currentComponents); // get complement
-        return componentsWithNewTech;
+    private BitSet getTechBitsWith(Technology technology) {
+        BitSet bits = (BitSet) getTechBits().clone();
+        int bit = TechnologyIndex.get().getBit(technology);
+        if (bit != -1) {
+            bits.set(bit);
+        }
+        return bits;
     }
 
     /**
@@ -548,8 +699,13 @@ public class User implements Serializable {
      *
      * @param chatline the line to add
      */
-    public synchronized void addChat(ChatLine chatline) {
-        chat.add(chatline);
+    public void addChat(ChatLine chatline) {
+        lock.lock();
+        try {
+            chat.add(chatline);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -557,41 +713,78 @@ public class User implements Serializable {
      *
      * @return the chat lines
      */
-    public synchronized ArrayList<ChatLine> getChat() {
-        return chat;
+    public ArrayList<ChatLine> getChat() {
+        lock.lock();
+        try {
+            return chat;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Adds a turn report item to this users list of turn reports
+     * Gets and removes all the chatlines this user has received
+     *
+     * @return the chat lines
+     */
+    public ArrayList<ChatLine> takeChat() {
+        lock.lock();
+        try {
+            ArrayList<ChatLine> lines = new ArrayList<ChatLine>(chat);
+            chat.clear();
+            return lines;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a turn report item to this users list of turn reports.
+     * During turn execution the report is added to the turn report buffer
+     * of the task, and added to the user when the turn is done
      *
      * @param item The turn report item to add
      */
     public void addTurnReport(TurnReportItem item) {
-        turnReport.add(item);
-        if (turnReport.size() > 100) {
-            turnReport.remove(0);
+        if (!TurnReportBuffer.add(this, item)) {
+            lock.lock();
+            try {
+                turnReports.add(item);
+            } finally {
+                lock.unlock();
+            }
         }
     }
 
     /**
-     * Gets the latest 100 turn reports for this users
+     * Adds turn report items to this users list of turn reports
+     *
+     * @param items the turn report items to add
+     */
+    void addTurnReports(ArrayList<TurnReportItem> items) {
+        lock.lock();
+        try {
+            for (TurnReportItem item : items) {
+                turnReports.add(item);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the latest 100 turn reports for this users, newest turn first.
+     * The list is shared and must not be modified
      *
      * @return a list of turn report items
      */
     public ArrayList<TurnReportItem> getTurnReports() {
-        Collections.sort(turnReport, new Comparator<TurnReportItem>() {
-            @Override
-            public int compare(TurnReportItem o1, TurnReportItem o2) {
-                if (o1.getTurn() < o2.getTurn()) {
-                    return 1;
-                } else if (o1.getTurn() > o2.getTurn()) {
-                    return -1;
-                } else {
-                    return 0;
-                }
-            }
-        });
-        return turnReport;
+        lock.lock();
+        try {
+            return turnReports.getNewestFirst();
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -638,13 +831,20 @@ public class User implements Serializable {
      * called each turn before doing LOS on all systems/ships
      */
     public void clearSensorStrenghts() {
-        for (int i = 0; i < sensorOverlay.length; i++) {
-            for (int j = 0; j < sensorOverlay[i].length; j++) {
-                // set all explored tiles to 0
-                if (sensorOverlay[i][j] > Integer.MIN_VALUE) {
-                    sensorOverlay[i][j] = 0;
-                }
-            }
-        }
+        sensors.clearSensorStrengths();
+    }
+
+    /**
+     * Makes a copy of this user only containing information other users are
+     * allowed to see (no password, chat, turn reports, fleets, systems, etc..)
+     *
+     * @return the public copy of this user
+     */
+    public User getPublicCopy() {
+        User copy = new User(username, null, faction);
+        copy.avatarFilename = avatarFilename;
+        copy.points = points;
+        copy.techs = techs;
+        return copy;
     }
 }
@@ -0,0 +1,1207 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net;
+
+import com.frostvoid.trekwar.common.CargoClassification;
+import com.frostvoid.trekwar.common.ChatLine;
+import com.frostvoid.trekwar.common.net.messaging.*;
+import com.frostvoid.trekwar.common.net.messaging.events.*;
+import com.frostvoid.trekwar.common.net.messaging.requests.*;
+import com.frostvoid.trekwar.common.net.messaging.responses.*;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hand written binary format for messages.
+ * <p>
+ * A message is written as the format version, a type tag and the fields of the
+ * message. Integers are written as (zigzag) variable length numbers, strings as a
+ * length followed by UTF-8 bytes, and enums as their ordinal. Small requests like
+ * MoveFleetRequest are around 15 bytes, instead of several hundred bytes with serialization.
+ * <p>
+ * Messages without a binary type are written using java serialization after the
+ * SERIALIZED tag, so new messages work before they get a binary type.
+ * <p>
+ * The tags of existing types must never be changed or reused, and the
+ * version must be increased if the fields of a type are changed.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+class BinaryCodec extends MessageCodec {
+
+    /**
+     * Version of the binary format
+     */
+    public static final int VERSION = 3;
+
+    private static final int TAG_SERIALIZED = 0;
+
+    private final HashMap<Class<? extends Message>, MessageType> typesByClass = new HashMap<Class<? extends Message>, MessageType>();
+    private final MessageType[] typesByTag = new MessageType[256];
+
+    BinaryCodec() {
+        super(1, "binary");
+
+        // REQUESTS
+        register(new MessageType(1, BuildQueueRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                BuildQueueRequest r = (BuildQueueRequest) message;
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeInt(out, r.getIndex());
+                writeEnum(out, r.getAction());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new BuildQueueRequest(readInt(in), readInt(in), readInt(in), readEnum(in, BuildQueueRequestType.values()));
+            }
+        });
+        register(new MessageType(2, BuildShipRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                BuildShipRequest r = (BuildShipRequest) message;
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeString(out, r.getTemplate());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new BuildShipRequest(readInt(in), readInt(in), readString(in));
+            }
+        });
+        register(new MessageType(3, BuildStructureRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                BuildStructureRequest r = (BuildStructureRequest) message;
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeInt(out, r.getPlanetNumber());
+                writeInt(out, r.getSlot());
+                writeString(out, r.getStructure());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new BuildStructureRequest(readInt(in), readInt(in), readInt(in), readInt(in), readString(in));
+            }
+        });
+        register(new FleetNameRequestType(4, CancelOrdersRequest.class) {
+            @Override
+            String getFleetName(Message message) {
+                return ((CancelOrdersRequest) message).getFleetName();
+            }
+
+            @Override
+            Message create(String fleetName) {
+                return new CancelOrdersRequest(fleetName);
+            }
+        });
+        register(new MessageType(5, CargoTransferRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                CargoTransferRequest r = (CargoTransferRequest) message;
+                writeEnum(out, r.getType());
+                writeEnum(out, r.getCargoClassification());
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeInt(out, r.getShipID());
+                writeInt(out, r.getAmount());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new CargoTransferRequest(readEnum(in, CargoTransferRequestType.values()), readEnum(in, CargoClassification.values()),
+                        readInt(in), readInt(in), readInt(in), readInt(in));
+            }
+        });
+        register(new FleetNameRequestType(6, ColonizeRequest.class) {
+            @Override
+            String getFleetName(Message message) {
+                return ((ColonizeRequest) message).getFleetName();
+            }
+
+            @Override
+            Message create(String fleetName) {
+                return new ColonizeRequest(fleetName);
+            }
+        });
+        register(new MessageType(7, DeleteTemplateRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                writeString(out, ((DeleteTemplateRequest) message).getTemplateName());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new DeleteTemplateRequest(readString(in));
+            }
+        });
+        register(new MessageType(8, DemolishStructureRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                DemolishStructureRequest r = (DemolishStructureRequest) message;
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeInt(out, r.getPlanetNumber());
+                writeInt(out, r.getSlot());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new DemolishStructureRequest(readInt(in), readInt(in), readInt(in), readInt(in));
+            }
+        });
+        register(new MessageType(9, DestroyDecommissionShipRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                DestroyDecommissionShipRequest r = (DestroyDecommissionShipRequest) message;
+                writeString(out, r.getSourceFleet());
+                writeInt(out, r.getShipID());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new DestroyDecommissionShipRequest(readString(in), readInt(in));
+            }
+        });
+        register(new EmptyMessageType(10, GetChatRequest.class) {
+            @Override
+            Message create() {
+                return new GetChatRequest();
+            }
+        });
+        register(new MessageType(11, GetGalaxyDeltaRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                writeLong(out, ((GetGalaxyDeltaRequest) message).getBaseTransferId());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new GetGalaxyDeltaRequest(readLong(in));
+            }
+        });
+        register(new EmptyMessageType(12, GetGalaxyRequest.class) {
+            @Override
+            Message create() {
+                return new GetGalaxyRequest();
+            }
+        });
+        register(new FleetNameRequestType(13, HarvestRequest.class) {
+            @Override
+            String getFleetName(Message message) {
+                return ((HarvestRequest) message).getFleetName();
+            }
+
+            @Override
+            Message create(String fleetName) {
+                return new HarvestRequest(fleetName);
+            }
+        });
+        register(new MessageType(14, HurryProductionRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                HurryProductionRequest r = (HurryProductionRequest) message;
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeInt(out, r.getIndex());
+                writeInt(out, r.getAmount());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new HurryProductionRequest(readInt(in), readInt(in), readInt(in), readInt(in));
+            }
+        });
+        register(new FleetNameRequestType(15, InvadeRequest.class) {
+            @Override
+            String getFleetName(Message message) {
+                return ((InvadeRequest) message).getFleetName();
+            }
+
+            @Override
+            Message create(String fleetName) {
+                return new InvadeRequest(fleetName);
+            }
+        });
+        register(new EmptyMessageType(16, ListUsersRequest.class) {
+            @Override
+            Message create() {
+                return new ListUsersRequest();
+            }
+        });
+        register(new MessageType(17, LoginRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                writeString(out, ((LoginRequest) message).getPassword());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new LoginRequest(null, readString(in)); // username is set with the other message fields
+            }
+        });
+        register(new EmptyMessageType(18, LogoutRequest.class) {
+            @Override
+            Message create() {
+                return new LogoutRequest();
+            }
+        });
+        register(new FleetNameRequestType(19, MineRequest.class) {
+            @Override
+            String getFleetName(Message message) {
+                return ((MineRequest) message).getFleetName();
+            }
+
+            @Override
+            Message create(String fleetName) {
+                return new MineRequest(fleetName);
+            }
+        });
+        register(new MessageType(20, MoveFleetRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                MoveFleetRequest r = (MoveFleetRequest) message;
+                writeString(out, r.getFleetName());
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new MoveFleetRequest(readString(in), readInt(in), readInt(in));
+            }
+        });
+        register(new MessageType(21, MoveShipToFleetRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                MoveShipToFleetRequest r = (MoveShipToFleetRequest) message;
+                writeString(out, r.getSourceFleet());
+                writeInt(out, r.getShipID());
+                writeString(out, r.getDestinationFleet());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new MoveShipToFleetRequest(readString(in), readInt(in), readString(in));
+            }
+        });
+        register(new MessageType(22, NewFleetRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                NewFleetRequest r = (NewFleetRequest) message;
+                writeString(out, r.getName());
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new NewFleetRequest(readString(in), readInt(in), readInt(in));
+            }
+        });
+        register(new FleetNameRequestType(23, OrbitalBombardmentRequest.class) {
+            @Override
+            String getFleetName(Message message) {
+                return ((OrbitalBombardmentRequest) message).getFleetName();
+            }
+
+            @Override
+            Message create(String fleetName) {
+                return new OrbitalBombardmentRequest(fleetName);
+            }
+        });
+        register(new MessageType(24, RenameFleetRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                RenameFleetRequest r = (RenameFleetRequest) message;
+                writeString(out, r.getCurrentName());
+                writeString(out, r.getNewName());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new RenameFleetRequest(readString(in), readString(in));
+            }
+        });
+        register(new MessageType(25, ResearchRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                writeString(out, ((ResearchRequest) message).getTechToResearch());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new ResearchRequest(readString(in));
+            }
+        });
+        register(new MessageType(26, SendChatRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                SendChatRequest r = (SendChatRequest) message;
+                writeString(out, r.getDestination());
+                writeString(out, r.getMessage());
+                out.writeBoolean(r.isPrivateMessage());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new SendChatRequest(readString(in), readString(in), in.readBoolean());
+            }
+        });
+        register(new MessageType(27, StructureStateChangeRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                StructureStateChangeRequest r = (StructureStateChangeRequest) message;
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeInt(out, r.getPlanetNumber());
+                writeInt(out, r.getSlotNumber());
+                writeEnum(out, r.getType());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new StructureStateChangeRequest(readInt(in), readInt(in), readInt(in), readInt(in),
+                        readEnum(in, StructureStateChangeRequestType.values()));
+            }
+        });
+        register(new EmptyMessageType(28, TimeToNextTurnRequest.class) {
+            @Override
+            Message create() {
+                return new TimeToNextTurnRequest();
+            }
+        });
+        register(new MessageType(29, TroopTransferRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                TroopTransferRequest r = (TroopTransferRequest) message;
+                writeEnum(out, r.getType());
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+                writeInt(out, r.getShipID());
+                writeInt(out, r.getAmount());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new TroopTransferRequest(readEnum(in, TroopTransferRequestType.values()), readInt(in), readInt(in), readInt(in), readInt(in));
+            }
+        });
+        register(new MessageType(30, UpdateTemplateRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                UpdateTemplateRequest r = (UpdateTemplateRequest) message;
+                writeString(out, r.getTemplateName());
+                writeString(out, r.getHullClass());
+                writeInt(out, r.getComponents().size());
+                for (Map.Entry<Integer, String> component : r.getComponents().entrySet()) {
+                    writeInt(out, component.getKey());
+                    writeString(out, component.getValue());
+                }
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                UpdateTemplateRequest r = new UpdateTemplateRequest(readString(in), readString(in));
+                int count = readCount(in);
+                for (int i = 0; i < count; i++) {
+                    r.addComponent(readInt(in), readString(in));
+                }
+                return r;
+            }
+        });
+        register(new EmptyMessageType(31, SubscribeRequest.class) {
+            @Override
+            Message create() {
+                return new SubscribeRequest();
+            }
+        });
+        register(new MessageType(32, BatchRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                ArrayList<Request> requests = ((BatchRequest) message).getRequests();
+                writeInt(out, requests.size());
+                for (Request request : requests) {
+                    write(request, out);
+                }
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException, ClassNotFoundException {
+                BatchRequest r = new BatchRequest();
+                int count = readCount(in);
+                for (int i = 0; i < count; i++) {
+                    r.addRequest((Request) read(in));
+                }
+                return r;
+            }
+        });
+        register(new MessageType(33, PredictBattleRequest.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                PredictBattleRequest r = (PredictBattleRequest) message;
+                writeString(out, r.getFleetName());
+                writeInt(out, r.getX());
+                writeInt(out, r.getY());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new PredictBattleRequest(readString(in), readInt(in), readInt(in));
+            }
+        });
+
+        // RESPONSES
+        register(new BooleanResponseType(64, BuildQueueResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((BuildQueueResponse) message).isBuildQueueActionsSuccessful();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new BuildQueueResponse(value);
+            }
+        });
+        register(new BooleanResponseType(65, BuildShipResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((BuildShipResponse) message).isShipAddedToBuildQueue();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new BuildShipResponse(value);
+            }
+        });
+        register(new BooleanResponseType(66, BuildStructureResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((BuildStructureResponse) message).isStructureAddedToBuildQueue();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new BuildStructureResponse(value);
+            }
+        });
+        register(new BooleanResponseType(67, CancelOrdersResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((CancelOrdersResponse) message).isFleetOrdersCancelled();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new CancelOrdersResponse(value);
+            }
+        });
+        register(new BooleanResponseType(68, CargoTransferResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((CargoTransferResponse) message).isCargoTransferred();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new CargoTransferResponse(value);
+            }
+        });
+        register(new BooleanResponseType(69, ColonizeResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((ColonizeResponse) message).isColonizationStarted();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new ColonizeResponse(value);
+            }
+        });
+        register(new BooleanResponseType(70, DeleteTemplateResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((DeleteTemplateResponse) message).isTemplateDeleted();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new DeleteTemplateResponse(value);
+            }
+        });
+        register(new BooleanResponseType(71, DemolishStructureResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((DemolishStructureResponse) message).isStructureDemolished();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new DemolishStructureResponse(value);
+            }
+        });
+        register(new BooleanResponseType(72, DestroyDecommissionShipResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((DestroyDecommissionShipResponse) message).isShipDestroyedSuccessfully();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new DestroyDecommissionShipResponse(value);
+            }
+        });
+        register(new MessageType(73, GetChatResponse.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                GetChatResponse r = (GetChatResponse) message;
+                out.writeBoolean(r.hasChatLines());
+                ArrayList<ChatLine> lines = r.getChatLines();
+                writeInt(out, lines == null ? -1 : lines.size());
+                if (lines != null) {
+                    for (ChatLine line : lines) {
+                        writeChatLine(out, line);
+                    }
+                }
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                GetChatResponse r = new GetChatResponse(in.readBoolean());
+                int count = readInt(in);
+                if (count >= 0) {
+                    ArrayList<ChatLine> lines = new ArrayList<ChatLine>(checkCount(count));
+                    for (int i = 0; i < count; i++) {
+                        lines.add(readChatLine(in));
+                    }
+                    r.setChatLines(lines);
+                }
+                return r;
+            }
+        });
+        register(new MessageType(74, GetGalaxyDeltaResponse.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                GetGalaxyDeltaResponse r = (GetGalaxyDeltaResponse) message;
+                out.writeBoolean(r.isFullGalaxy());
+                writeLong(out, r.getTransferId());
+                writeBytes(out, r.getData());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new GetGalaxyDeltaResponse(in.readBoolean(), readLong(in), readBytes(in));
+            }
+        });
+        register(new MessageType(75, GetGalaxyResponse.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                writeBytes(out, ((GetGalaxyResponse) message).getGalaxyData());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new GetGalaxyResponse(readBytes(in));
+            }
+        });
+        register(new BooleanResponseType(76, HarvestResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((HarvestResponse) message).isHarvestingStarted();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new HarvestResponse(value);
+            }
+        });
+        register(new BooleanResponseType(77, HurryProductionResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((HurryProductionResponse) message).isProductionHurried();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new HurryProductionResponse(value);
+            }
+        });
+        register(new BooleanResponseType(78, InvadeResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((InvadeResponse) message).isInvasionStarted();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new InvadeResponse(value);
+            }
+        });
+        register(new MessageType(79, ListUsersResponse.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                ArrayList<String> usernames = ((ListUsersResponse) message).getUsernames();
+                writeInt(out, usernames.size());
+                for (String username : usernames) {
+                    writeString(out, username);
+                }
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                ListUsersResponse r = new ListUsersResponse();
+                int count = readCount(in);
+                for (int i = 0; i < count; i++) {
+                    r.addUsername(readString(in));
+                }
+                return r;
+            }
+        });
+        register(new BooleanResponseType(80, LoginResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((LoginResponse) message).isLoginSuccessful();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new LoginResponse(value);
+            }
+        });
+        register(new BooleanResponseType(81, MineResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((MineResponse) message).isMiningStarted();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new MineResponse(value);
+            }
+        });
+        register(new BooleanResponseType(82, MoveFleetResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((MoveFleetResponse) message).isFleetMoveOK();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new MoveFleetResponse(value);
+            }
+        });
+        register(new BooleanResponseType(83, MoveShipToFleetResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((MoveShipToFleetResponse) message).isShipMovedSuccessfully();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new MoveShipToFleetResponse(value);
+            }
+        });
+        register(new BooleanResponseType(84, NewFleetResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((NewFleetResponse) message).isFleetCreationOK();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new NewFleetResponse(value);
+            }
+        });
+        register(new BooleanResponseType(85, OrbitalBombardmentResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((OrbitalBombardmentResponse) message).isBombardmentStarted();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new OrbitalBombardmentResponse(value);
+            }
+        });
+        register(new BooleanResponseType(86, RenameFleetResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((RenameFleetResponse) message).isRenameOK();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new RenameFleetResponse(value);
+            }
+        });
+        register(new BooleanResponseType(87, ResearchResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((ResearchResponse) message).isResearchChangeOK();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new ResearchResponse(value);
+            }
+        });
+        register(new BooleanResponseType(88, SendChatResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((SendChatResponse) message).isMessageDelivered();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new SendChatResponse(value);
+            }
+        });
+        register(new BooleanResponseType(89, StructureStateChangeResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((StructureStateChangeResponse) message).isStateChanged();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new StructureStateChangeResponse(value);
+            }
+        });
+        register(new MessageType(90, TimeToNextTurnResponse.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                TimeToNextTurnResponse r = (TimeToNextTurnResponse) message;
+                writeLong(out, r.getMillisecondsToNextTurn());
+                writeLong(out, r.getCurrentTurn());
+                writeLong(out, r.getNextTurn());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new TimeToNextTurnResponse(readLong(in), readLong(in), readLong(in));
+            }
+        });
+        register(new BooleanResponseType(91, TroopTransferResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((TroopTransferResponse) message).isTroopsTransferred();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new TroopTransferResponse(value);
+            }
+        });
+        register(new BooleanResponseType(92, UpdateTemplateResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((UpdateTemplateResponse) message).isTemplateUpdated();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new UpdateTemplateResponse(value);
+            }
+        });
+        register(new MessageType(93, WelcomeMessage.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                WelcomeMessage r = (WelcomeMessage) message;
+                writeString(out, r.getServerName());
+                writeString(out, r.getServerVersion());
+                writeString(out, r.getServerURL());
+                writeString(out, r.getMotd());
+                String[] codecs = r.getSupportedCodecs();
+                writeInt(out, codecs == null ? -1 : codecs.length);
+                if (codecs != null) {
+                    for (String codec : codecs) {
+                        writeString(out, codec);
+                    }
+                }
+                out.writeBoolean(r.isCompressionSupported());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                WelcomeMessage r = new WelcomeMessage(readString(in), readString(in), readString(in), readString(in));
+                int count = readInt(in);
+                if (count >= 0) {
+                    String[] codecs = new String[checkCount(count)];
+                    for (int i = 0; i < count; i++) {
+                        codecs[i] = readString(in);
+                    }
+                    r.setSupportedCodecs(codecs);
+                }
+                r.setCompressionSupported(in.readBoolean());
+                return r;
+            }
+        });
+        register(new BooleanResponseType(94, SubscribeResponse.class) {
+            @Override
+            boolean getValue(Message message) {
+                return ((SubscribeResponse) message).isSubscribed();
+            }
+
+            @Override
+            Message create(boolean value) {
+                return new SubscribeResponse(value);
+            }
+        });
+        register(new MessageType(95, BatchResponse.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                ArrayList<Response> responses = ((BatchResponse) message).getResponses();
+                writeInt(out, responses.size());
+                for (Response response : responses) {
+                    write(response, out);
+                }
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException, ClassNotFoundException {
+                BatchResponse r = new BatchResponse();
+                int count = readCount(in);
+                for (int i = 0; i < count; i++) {
+                    r.addResponse((Response) read(in));
+                }
+                return r;
+            }
+        });
+        register(new EmptyMessageType(96, Response.class) {
+            @Override
+            Message create() {
+                return new Response(); // only has the error message
+            }
+        });
+        register(new MessageType(97, PredictBattleResponse.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                PredictBattleResponse r = (PredictBattleResponse) message;
+                writeInt(out, r.getSimulations());
+                out.writeDouble(r.getWinChance());
+                out.writeDouble(r.getLossChance());
+                out.writeDouble(r.getAverageShipsLost());
+                out.writeDouble(r.getAverageEnemiesDestroyed());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new PredictBattleResponse(readInt(in), in.readDouble(), in.readDouble(), in.readDouble(), in.readDouble());
+            }
+        });
+
+        // EVENTS
+        register(new MessageType(128, TurnExecutedEvent.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                TurnExecutedEvent e = (TurnExecutedEvent) message;
+                writeLong(out, e.getCurrentTurn());
+                writeLong(out, e.getMillisecondsToNextTurn());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new TurnExecutedEvent(readLong(in), readLong(in));
+            }
+        });
+        register(new MessageType(129, ChatEvent.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                writeChatLine(out, ((ChatEvent) message).getChatLine());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new ChatEvent(readChatLine(in));
+            }
+        });
+        register(new MessageType(130, UserStatusEvent.class) {
+            @Override
+            void writeFields(Message message, DataOutputStream out) throws IOException {
+                UserStatusEvent e = (UserStatusEvent) message;
+                writeString(out, e.getUser());
+                out.writeBoolean(e.isLoggedIn());
+            }
+
+            @Override
+            Message readFields(DataInputStream in) throws IOException {
+                return new UserStatusEvent(readString(in), in.readBoolean());
+            }
+        });
+    }
+
+    private void register(MessageType type) {
+        if (typesByTag[type.tag] != null || typesByClass.containsKey(type.type)) {
+            throw new IllegalArgumentException("Message type registered twice: " + type.tag + " " + type.type.getName());
+        }
+        typesByTag[type.tag] = type;
+        typesByClass.put(type.type, type);
+    }
+
+    @Override
+    public void write(Message message, DataOutputStream out) throws IOException {
+        out.writeByte(VERSION);
+        MessageType type = typesByClass.get(message.getClass());
+        if (type == null) {
+            out.writeByte(TAG_SERIALIZED);
+            ObjectOutputStream oos = new ObjectOutputStream(out);
+            oos.writeObject(message);
+            oos.flush();
+            return;
+        }
+
+        out.writeByte(type.tag);
+        writeString(out, message.getUsername());
+        writeString(out, message.getSender_ip());
+        writeLong(out, message.getTimestamp_sent());
+        writeInt(out, message.getRequestId());
+        if (message instanceof Response) {
+            writeString(out, ((Response) message).getErrorMessage());
+        }
+        type.writeFields(message, out);
+    }
+
+    @Override
+    public Message read(DataInputStream in) throws IOException, ClassNotFoundException {
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary message version: " + version + " (expected " + VERSION + ")");
+        }
+        int tag = in.readUnsignedByte();
+        if (tag == TAG_SERIALIZED) {
+            return (Message) new ObjectInputStream(in).readObject();
+        }
+        MessageType type = typesByTag[tag];
+        if (type == null) {
+            throw new IOException("Unknown binary message type: " + tag);
+        }
+
+        String username = readString(in);
+        String senderIp = readString(in);
+        long timestamp = readLong(in);
+        int requestId = readInt(in);
+        String errorMessage = Response.class.isAssignableFrom(type.type) ? readString(in) : null;
+
+        Message message = type.readFields(in);
+        message.setUsername(username);
+        message.setSender_ip(senderIp);
+        message.setTimestamp_sent(timestamp);
+        message.setRequestId(requestId);
+        if (message instanceof Response) {
+            ((Response) message).setErrorMessage(errorMessage);
+        }
+        return message;
+    }
+
+    private static void writeLong(DataOutputStream out, long value) throws IOException {
+        long v = (value << 1) ^ (value >> 63); // zigzag, so small negative numbers are small too
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readLong(DataInputStream in) throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (v >>> 1) ^ -(v & 1);
+            }
+        }
+        throw new IOException("Malformed variable length number");
+    }
+
+    private static void writeInt(DataOutputStream out, int value) throws IOException {
+        writeLong(out, value);
+    }
+
+    private static int readInt(DataInputStream in) throws IOException {
+        long value = readLong(in);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new IOException("Number out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        return checkCount(readInt(in));
+    }
+
+    private static int checkCount(int count) throws IOException {
+        if (count < 0 || count > FrameCodec.MAX_RESPONSE_SIZE) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            writeInt(out, -1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        writeInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, "UTF-8");
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            writeInt(out, -1);
+            return;
+        }
+        writeInt(out, value.length);
+        out.write(value);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = readInt(in);
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[checkCount(length)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeChatLine(DataOutputStream out, ChatLine line) throws IOException {
+        writeString(out, line.getUserName());
+        writeLong(out, line.getTimestamp() == null ? Long.MIN_VALUE : line.getTimestamp().getTime());
+        writeString(out, line.getChannel());
+        writeString(out, line.getMessage());
+    }
+
+    private static ChatLine readChatLine(DataInputStream in) throws IOException {
+        String userName = readString(in);
+        long timestamp = readLong(in);
+        return new ChatLine(userName, timestamp == Long.MIN_VALUE ? null : new Date(timestamp), readString(in), readString(in));
+    }
+
+    private static void writeEnum(DataOutputStream out, Enum<?> value) throws IOException {
+        writeInt(out, value == null ? -1 : value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readEnum(DataInputStream in, E[] values) throws IOException {
+        int ordinal = readInt(in);
+        if (ordinal == -1) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Invalid enum value: " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Reads and writes the fields of one message class
+     */
+    private static abstract class MessageType {
+        final int tag;
+        final Class<? extends Message> type;
+
+        MessageType(int tag, Class<? extends Message> type) {
+            this.tag = tag;
+            this.type = type;
+        }
+
+        abstract void writeFields(Message message, DataOutputStream out) throws IOException;
+
+        abstract Message readFields(DataInputStream in) throws IOException, ClassNotFoundException;
+    }
+
+    /**
+     * Message without any fields of its own
+     */
+    private static abstract class EmptyMessageType extends MessageType {
+        EmptyMessageType(int tag, Class<? extends Message> type) {
+            super(tag, type);
+        }
+
+        abstract Message create();
+
+        @Override
+        void writeFields(Message message, DataOutputStream out) {
+        }
+
+        @Override
+        Message readFields(DataInputStream in) {
+            return create();
+        }
+    }
+
+    /**
+     * Fleet order request, only containing the name of the fleet
+     */
+    private static abstract class FleetNameRequestType extends MessageType {
+        FleetNameRequestType(int tag, Class<? extends Message> type) {
+            super(tag, type);
+        }
+
+        abstract String getFleetName(Message message);
+
+        abstract Message create(String fleetName);
+
+        @Override
+        void writeFields(Message message, DataOutputStream out) throws IOException {
+            writeString(out, getFleetName(message));
+        }
+
+        @Override
+        Message readFields(DataInputStream in) throws IOException {
+            return create(readString(in));
+        }
+    }
+
+    /**
+     * Response only containing a single true/false value (and the error message)
+     */
+    private static abstract class BooleanResponseType extends MessageType {
+        BooleanResponseType(int tag, Class<? extends Message> type) {
+            super(tag, type);
+        }
+
+        abstract boolean getValue(Message message);
+
+        abstract Message create(boolean value);
+
+        @Override
+        void writeFields(Message message, DataOutputStream out) throws IOException {
+            out.writeBoolean(getValue(message));
+        }
+
+        @Override
+        Message readFields(DataInputStream in) throws IOException {
+            return create(in.readBoolean());
+        }
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net;
+
+import com.frostvoid.trekwar.common.net.messaging.Message;
+
+import java.io.*;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads and writes messages as length prefixed frames.
+ * <p>
+ * Every frame is a 4 byte (big endian) length followed by that many bytes
+ * holding one message. The first byte of the payload is the id of the
+ * MessageCodec used for the rest of the payload, and the frame flags:
+ * - COMPRESSED: the rest of the payload is DEFLATE compressed
+ * - ACCEPTS_COMPRESSION: the sender can read compressed frames
+ * <p>
+ * Each message is encoded on its own,
+ * so frames can be decoded independently of each other (and by a different thread
+ * than the one that read them from the network).
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class FrameCodec {
+
+    /**
+     * Size of the frame header (the length)
+     */
+    public static final int HEADER_SIZE = 4;
+
+    /**
+     * Largest frame the server accepts from a client
+     */
+    public static final int MAX_REQUEST_SIZE = 1024 * 1024;
+
+    /**
+     * Largest frame the client accepts from the server
+     */
+    public static final int MAX_RESPONSE_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * Frame flag, set if the payload (after the first byte) is compressed
+     */
+    public static final int FLAG_COMPRESSED = 0x80;
+
+    /**
+     * Frame flag, set if the sender of the frame can read compressed frames
+     */
+    public static final int FLAG_ACCEPTS_COMPRESSION = 0x40;
+
+    private static final int CODEC_MASK = 0x0F;
+
+    /**
+     * Makes a complete frame (header + payload) for a message
+     *
+     * @param message the message
+     * @param codec   the codec to encode the message with
+     * @return the frame
+     * @throws IOException if the message could not be encoded
+     */
+    public static byte[] encode(Message message, MessageCodec codec) throws IOException {
+        return encode(message, codec, 0, 0);
+    }
+
+    /**
+     * Makes a complete frame (header + payload) for a message, compressing it if it is large
+     *
+     * @param message              the message
+     * @param codec                the codec to encode the message with
+     * @param flags                frame flags to set (FLAG_ACCEPTS_COMPRESSION)
+     * @param compressionThreshold compress messages larger than this many bytes, 0 to never compress
+     * @return the frame
+     * @throws IOException if the message could not be encoded
+     */
+    public static byte[] encode(Message message, MessageCodec codec, int flags, int compressionThreshold) throws IOException {
+        FrameOutputStream bytes = new FrameOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(codec.getId() | flags);
+        codec.write(message, out);
+        out.close();
+
+        if (compressionThreshold > 0 && bytes.size() - HEADER_SIZE - 1 > compressionThreshold) {
+            FrameOutputStream compressed = compress(bytes);
+            if (compressed.size() < bytes.size()) {
+                return compressed.toFrame();
+            }
+        }
+        return bytes.toFrame();
+    }
+
+    private static FrameOutputStream compress(FrameOutputStream frame) throws IOException {
+        byte[] buf = frame.getBuffer();
+        FrameOutputStream compressed = new FrameOutputStream(frame.size() / 4);
+        compressed.write(buf[HEADER_SIZE] | FLAG_COMPRESSED);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream out = new DeflaterOutputStream(compressed, deflater, 8192);
+            out.write(buf, HEADER_SIZE + 1, frame.size() - HEADER_SIZE - 1);
+            out.finish();
+        } finally {
+            deflater.end();
+        }
+        return compressed;
+    }
+
+    /**
+     * Gets the codec a frame payload was encoded with
+     *
+     * @param payload the payload
+     * @return the codec
+     * @throws IOException if the payload is empty or the codec is unknown
+     */
+    public static MessageCodec getCodec(byte[] payload) throws IOException {
+        if (payload.length == 0) {
+            throw new IOException("Empty frame");
+        }
+        return MessageCodec.forId(payload[0] & CODEC_MASK);
+    }
+
+    /**
+     * Checks if a flag is set on a frame
+     *
+     * @param payload the payload
+     * @param flag    the flag
+     * @return true if set
+     */
+    public static boolean hasFlag(byte[] payload, int flag) {
+        return payload.length > 0 && (payload[0] & flag) != 0;
+    }
+
+    /**
+     * Reads the message from a frame payload (the frame without the header)
+     *
+     * @param payload the payload
+     * @return the message
+     * @throws IOException            if the payload could not be read
+     * @throws ClassNotFoundException if the payload contains an unknown class
+     */
+    public static Message decode(byte[] payload) throws IOException, ClassNotFoundException {
+        return decode(payload, true);
+    }
+
+    /**
+     * Reads the message from a frame payload (the frame without the header)
+     *
+     * @param payload         the payload
+     * @param allowCompressed false to reject compressed frames (the server never accepts them)
+     * @return the message
+     * @throws IOException            if the payload could not be read, or is compressed when not allowed
+     * @throws ClassNotFoundException if the payload contains an unknown class
+     */
+    public static Message decode(byte[] payload, boolean allowCompressed) throws IOException, ClassNotFoundException {
+        MessageCodec codec = getCodec(payload);
+        InputStream bytes = new ByteArrayInputStream(payload, 1, payload.length - 1);
+        if (hasFlag(payload, FLAG_COMPRESSED)) {
+            if (!allowCompressed) {
+                throw new IOException("Compressed frame not allowed");
+            }
+            bytes = new BufferedInputStream(new InflaterInputStream(bytes), 8192);
+        }
+        DataInputStream in = new DataInputStream(bytes);
+        try {
+            return codec.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes a message as a single frame, and flushes the stream
+     *
+     * @param out     the stream to write to
+     * @param message the message
+     * @param codec   the codec to encode the message with
+     * @throws IOException if the message could not be written
+     */
+    public static void write(OutputStream out, Message message, MessageCodec codec) throws IOException {
+        write(out, message, codec, 0, 0);
+    }
+
+    /**
+     * Writes a message as a single frame, and flushes the stream
+     *
+     * @param out                  the stream to write to
+     * @param message              the message
+     * @param codec                the codec to encode the message with
+     * @param flags                frame flags to set (FLAG_ACCEPTS_COMPRESSION)
+     * @param compressionThreshold compress messages larger than this many bytes, 0 to never compress
+     * @throws IOException if the message could not be written
+     */
+    public static void write(OutputStream out, Message message, MessageCodec codec, int flags, int compressionThreshold) throws IOException {
+        out.write(encode(message, codec, flags, compressionThreshold));
+        out.flush();
+    }
+
+    /**
+     * Reads the payload of a single frame from a stream
+     *
+     * @param in           the stream to read from
+     * @param maxFrameSize the largest payload to accept
+     * @return the payload
+     * @throws IOException if the frame could not be read, or is too large
+     */
+    public static byte[] readFrame(DataInputStream in, int maxFrameSize) throws IOException {
+        int length = in.readInt();
+        checkLength(length, maxFrameSize);
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    /**
+     * Reads a single frame from a stream and decodes the message in it
+     *
+     * @param in           the stream to read from
+     * @param maxFrameSize the largest payload to accept
+     * @return the message
+     * @throws IOException            if the frame could not be read, or is too large
+     * @throws ClassNotFoundException if the payload contains an unknown class
+     */
+    public static Message read(DataInputStream in, int maxFrameSize) throws IOException, ClassNotFoundException {
+        return decode(readFrame(in, maxFrameSize));
+    }
+
+    /**
+     * Checks that a frame length read from the network is valid
+     *
+     * @param length       the length from the frame header
+     * @param maxFrameSize the largest payload to accept
+     * @throws IOException if the length is invalid
+     */
+    public static void checkLength(int length, int maxFrameSize) throws IOException {
+        if (length < 0 || length > maxFrameSize) {
+            throw new IOException("Invalid frame length: " + length + " (max " + maxFrameSize + ")");
+        }
+    }
+
+    /**
+     * Byte array stream that leaves room for the header, so the frame can be made without copying the payload
+     */
+    private static class FrameOutputStream extends ByteArrayOutputStream {
+
+        public FrameOutputStream() {
+            this(256);
+        }
+
+        public FrameOutputStream(int size) {
+            super(Math.max(size, HEADER_SIZE + 1));
+            count = HEADER_SIZE;
+        }
+
+        public byte[] getBuffer() {
+            return buf;
+        }
+
+        public byte[] toFrame() {
+            int length = count - HEADER_SIZE;
+            buf[0] = (byte) (length >>> 24);
+            buf[1] = (byte) (length >>> 16);
+            buf[2] = (byte) (length >>> 8);
+            buf[3] = (byte) length;
+            return count == buf.length ? buf : toByteArray();
+        }
+    }
+}
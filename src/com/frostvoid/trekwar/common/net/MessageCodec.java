@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net;
+
+import com.frostvoid.trekwar.common.net.messaging.Message;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Turns messages into bytes and back again.
+ * <p>
+ * Every frame starts with the id of the codec used for the rest of the payload,
+ * so the receiver can always decode a frame. The client picks a codec from the
+ * list of codecs in the WelcomeMessage (which is always sent using serialization),
+ * and the server answers every request using the codec of the request.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public abstract class MessageCodec {
+
+    /**
+     * Standard java serialization, supported by every client and server
+     */
+    public static final MessageCodec SERIALIZATION = new SerializationCodec();
+
+    /**
+     * Compact hand written binary format
+     */
+    public static final MessageCodec BINARY = new BinaryCodec();
+
+    private static final MessageCodec[] CODECS = {SERIALIZATION, BINARY}; // index is codec id
+
+    private final int id;
+    private final String name;
+
+    protected MessageCodec(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    /**
+     * @return the id of this codec, sent first in every frame
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of this codec, as used in the WelcomeMessage
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Writes a message
+     *
+     * @param message the message
+     * @param out     the stream to write to
+     * @throws IOException if the message could not be written
+     */
+    public abstract void write(Message message, DataOutputStream out) throws IOException;
+
+    /**
+     * Reads a message
+     *
+     * @param in the stream to read from
+     * @return the message
+     * @throws IOException            if the message could not be read
+     * @throws ClassNotFoundException if the message contains an unknown class
+     */
+    public abstract Message read(DataInputStream in) throws IOException, ClassNotFoundException;
+
+    /**
+     * Gets a codec from its id
+     *
+     * @param id the codec id
+     * @return the codec
+     * @throws IOException if there is no codec with the given id
+     */
+    public static MessageCodec forId(int id) throws IOException {
+        if (id < 0 || id >= CODECS.length) {
+            throw new IOException("Unknown message codec: " + id);
+        }
+        return CODECS[id];
+    }
+
+    /**
+     * Gets a codec from its name
+     *
+     * @param name the codec name
+     * @return the codec, or null if there is no codec with the given name
+     */
+    public static MessageCodec forName(String name) {
+        for (MessageCodec codec : CODECS) {
+            if (codec.getName().equals(name)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the names of all supported codecs
+     */
+    public static String[] getNames() {
+        String[] names = new String[CODECS.length];
+        for (int i = 0; i < CODECS.length; i++) {
+            names[i] = CODECS[i].getName();
+        }
+        return names;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net;
+
+import com.frostvoid.trekwar.common.net.messaging.Message;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Sends messages using standard java serialization
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+class SerializationCodec extends MessageCodec {
+
+    SerializationCodec() {
+        super(0, "serialization");
+    }
+
+    @Override
+    public void write(Message message, DataOutputStream out) throws IOException {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        oos.writeObject(message);
+        oos.flush();
+    }
+
+    @Override
+    public Message read(DataInputStream in) throws IOException, ClassNotFoundException {
+        return (Message) new ObjectInputStream(in).readObject();
+    }
+}
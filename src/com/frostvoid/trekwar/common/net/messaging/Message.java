@@ -28,6 +28,7 @@ public class Message implements Serializable {
     private String username;
     private String sender_ip; // set by server when message received
     private long timestamp_sent; // unix time, set by server when message received
+    private int requestId; // set by client, the server copies it to the response (0 if not a response to a request)
 
     /**
      * @return the username
@@ -70,4 +71,18 @@ public class Message implements Serializable {
     public void setTimestamp_sent(long timestamp_sent) {
         this.timestamp_sent = timestamp_sent;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the id of the request, or of the request this is a response to
+     */
+    public int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @param requestId the requestId to set
+     */
+    public void setRequestId(int requestId) {
+        this.requestId = requestId;
+    }
+}
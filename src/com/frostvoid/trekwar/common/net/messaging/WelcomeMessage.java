@@ -27,6 +27,8 @@ public class WelcomeMessage extends Response {
     private String serverVersion;
     private String serverURL;
     private String motd;
+    private String[] supportedCodecs;
+    private boolean compressionSupported;
 
     public WelcomeMessage(String serverName, String serverVersion, String serverURL, String motd) {
         this.serverName = serverName;
@@ -59,4 +61,50 @@ public class WelcomeMessage extends Response {
     public String getMotd() {
         return motd;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return names of the message codecs the server supports, or null if not set
+     */
+    public String[] getSupportedCodecs() {
+        return supportedCodecs;
+    }
+
+    /**
+     * @param supportedCodecs names of the message codecs the server supports
+     */
+    public void setSupportedCodecs(String[] supportedCodecs) {
+        this.supportedCodecs = supportedCodecs;
+    }
+
+    /**
+     * Checks if the server supports a message codec
+     *
+     * @param codecName name of the codec
+     * @return true if supported
+     */
+    public boolean supportsCodec(String codecName) {
+        if (supportedCodecs == null) {
+            return false;
+        }
+        for (String name : supportedCodecs) {
+            if (name.equals(codecName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the server can compress large responses
+     */
+    public boolean isCompressionSupported() {
+        return compressionSupported;
+    }
+
+    /**
+     * @param compressionSupported true if the server can compress large responses
+     */
+    public void setCompressionSupported(boolean compressionSupported) {
+        this.compressionSupported = compressionSupported;
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net.messaging.events;
+
+import com.frostvoid.trekwar.common.net.messaging.Event;
+
+/**
+ * Sent to all subscribed clients when a turn has been executed
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class TurnExecutedEvent extends Event {
+    private long currentTurn;
+    private long millisecondsToNextTurn;
+
+    /**
+     * @param currentTurn            the turn the galaxy is now in
+     * @param millisecondsToNextTurn time until the next turn is executed
+     */
+    public TurnExecutedEvent(long currentTurn, long millisecondsToNextTurn) {
+        this.currentTurn = currentTurn;
+        this.millisecondsToNextTurn = millisecondsToNextTurn;
+    }
+
+    public long getCurrentTurn() {
+        return currentTurn;
+    }
+
+    public long getMillisecondsToNextTurn() {
+        return millisecondsToNextTurn;
+    }
+}
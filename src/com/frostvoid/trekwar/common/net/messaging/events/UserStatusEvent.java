@@ -0,0 +1,47 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net.messaging.events;
+
+import com.frostvoid.trekwar.common.net.messaging.Event;
+
+/**
+ * Sent to all subscribed clients when a user logs in or out
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class UserStatusEvent extends Event {
+    private String user;
+    private boolean loggedIn;
+
+    /**
+     * @param user     the user that logged in or out
+     * @param loggedIn true if the user logged in, false if logged out
+     */
+    public UserStatusEvent(String user, boolean loggedIn) {
+        this.user = user;
+        this.loggedIn = loggedIn;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public boolean isLoggedIn() {
+        return loggedIn;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net.messaging.requests;
+
+import com.frostvoid.trekwar.common.net.messaging.Request;
+
+import java.util.ArrayList;
+
+/**
+ * Sends several requests at once, they are handled in order by the server
+ * and answered with a single BatchResponse.
+ * Login, logout, subscribe and batch requests can not be part of a batch
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class BatchRequest extends Request {
+    private ArrayList<Request> requests;
+
+    public BatchRequest() {
+        requests = new ArrayList<Request>();
+    }
+
+    public void addRequest(Request request) {
+        requests.add(request);
+    }
+
+    public ArrayList<Request> getRequests() {
+        return requests;
+    }
+}
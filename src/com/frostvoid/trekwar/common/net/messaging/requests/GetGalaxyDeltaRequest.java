@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net.messaging.requests;
+
+import com.frostvoid.trekwar.common.net.messaging.Request;
+
+/**
+ * Asks server to send the changes made to the galaxy since the last galaxy
+ * the client has applied, given by the transfer id it was sent with.
+ * The server sends a full galaxy if it can not make a delta
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GetGalaxyDeltaRequest extends Request {
+    private long baseTransferId;
+
+    /**
+     * @param baseTransferId the transfer id of the galaxy the client has applied, -1 if no galaxy
+     */
+    public GetGalaxyDeltaRequest(long baseTransferId) {
+        this.baseTransferId = baseTransferId;
+    }
+
+    /**
+     * @return the transfer id of the galaxy the client has applied, -1 if no galaxy
+     */
+    public long getBaseTransferId() {
+        return baseTransferId;
+    }
+}
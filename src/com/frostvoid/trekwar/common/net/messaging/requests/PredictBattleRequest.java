@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net.messaging.requests;
+
+import com.frostvoid.trekwar.common.net.messaging.Request;
+
+/**
+ * Asks the server to predict the outcome of a fleet fighting the enemy fleets in a system
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class PredictBattleRequest extends Request {
+    private String fleetName;
+    private int x;
+    private int y;
+
+    public PredictBattleRequest(String fleetName, int x, int y) {
+        this.fleetName = fleetName;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * @return the fleetName
+     */
+    public String getFleetName() {
+        return fleetName;
+    }
+
+    /**
+     * @return the x coordinate of the system
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * @return the y coordinate of the system
+     */
+    public int getY() {
+        return y;
+    }
+}
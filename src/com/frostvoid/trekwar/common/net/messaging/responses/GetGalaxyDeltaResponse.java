@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net.messaging.responses;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.GalaxyDelta;
+import com.frostvoid.trekwar.common.GalaxyTransfer;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+
+import java.io.IOException;
+
+/**
+ * Sends either a full galaxy or the changes since the clients last galaxy.
+ * Like GetGalaxyResponse the data is serialized by the server and
+ * deserialized when read by the client.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GetGalaxyDeltaResponse extends Response {
+    private boolean fullGalaxy;
+    private long transferId;
+    private byte[] data;
+
+    /**
+     * Creates a new galaxy delta response
+     *
+     * @param fullGalaxy true if data is a full galaxy, false if it is a delta
+     * @param transferId the id of this transfer, sent back by the client when the galaxy has been applied
+     * @param data       the serialized galaxy or delta, or null if nothing could be sent
+     */
+    public GetGalaxyDeltaResponse(boolean fullGalaxy, long transferId, byte[] data) {
+        this.fullGalaxy = fullGalaxy;
+        this.transferId = transferId;
+        this.data = data;
+    }
+
+    /**
+     * @return true if this response holds a full galaxy, false if it holds a delta
+     */
+    public boolean isFullGalaxy() {
+        return fullGalaxy;
+    }
+
+    /**
+     * @return the id of this transfer, -1 if no data
+     */
+    public long getTransferId() {
+        return transferId;
+    }
+
+    /**
+     * @return true if the server sent a galaxy or delta
+     */
+    public boolean hasData() {
+        return data != null;
+    }
+
+    /**
+     * Gets the size of the serialized data
+     *
+     * @return number of bytes, 0 if no data
+     */
+    public int getDataSize() {
+        return data == null ? 0 : data.length;
+    }
+
+    /**
+     * @return the serialized galaxy or delta, or null if no data
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * Deserializes the full galaxy
+     *
+     * @return the galaxy, or null if this response does not hold a full galaxy
+     * @throws IOException            if the galaxy data could not be read
+     * @throws ClassNotFoundException if the galaxy data contains unknown classes
+     */
+    public Galaxy getGalaxy() throws IOException, ClassNotFoundException {
+        if (!fullGalaxy || data == null) {
+            return null;
+        }
+        return GalaxyTransfer.readGalaxy(data);
+    }
+
+    /**
+     * Deserializes the galaxy delta
+     *
+     * @return the delta, or null if this response does not hold a delta
+     * @throws IOException            if the delta data could not be read
+     * @throws ClassNotFoundException if the delta data contains unknown classes
+     */
+    public GalaxyDelta getDelta() throws IOException, ClassNotFoundException {
+        if (fullGalaxy || data == null) {
+            return null;
+        }
+        return GalaxyTransfer.readDelta(data);
+    }
+}
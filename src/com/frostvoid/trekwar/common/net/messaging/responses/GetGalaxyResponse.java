@@ -16,23 +16,61 @@
 package com.frostvoid.trekwar.common.net.messaging.responses;
 
 import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.GalaxyTransfer;
 import com.frostvoid.trekwar.common.net.messaging.Response;
 
+import java.io.IOException;
+
 /**
  * Sends a galaxy object to the client
+ * <p>
+ * The galaxy is serialized by the server before the response is made,
+ * (as it only contains what the user is allowed to see, see GalaxyTransfer), and is deserialized
+ * by the client when calling getGalaxy()
  *
  * @author Erlend Aakre
  * @author FrostVoid Software
  * @author http://www.frostvoid.com
  */
 public class GetGalaxyResponse extends Response {
-    private Galaxy galaxy;
+    private byte[] galaxyData;
+
+    /**
+     * Creates a new galaxy response
+     *
+     * @param galaxyData the serialized galaxy, or null if no galaxy could be sent
+     */
+    public GetGalaxyResponse(byte[] galaxyData) {
+        this.galaxyData = galaxyData;
+    }
+
+    /**
+     * Gets the size of the serialized galaxy
+     *
+     * @return number of bytes, 0 if no galaxy
+     */
+    public int getGalaxySize() {
+        return galaxyData == null ? 0 : galaxyData.length;
+    }
 
-    public GetGalaxyResponse(Galaxy galaxy) {
-        this.galaxy = galaxy;
+    /**
+     * @return the serialized galaxy, or null if no galaxy
+     */
+    public byte[] getGalaxyData() {
+        return galaxyData;
     }
 
-    public Galaxy getGalaxy() {
-        return galaxy;
+    /**
+     * Deserializes the galaxy sent from the server
+     *
+     * @return the galaxy, or null if the server did not send one
+     * @throws IOException            if the galaxy data could not be read
+     * @throws ClassNotFoundException if the galaxy data contains unknown classes
+     */
+    public Galaxy getGalaxy() throws IOException, ClassNotFoundException {
+        if (galaxyData == null) {
+            return null;
+        }
+        return GalaxyTransfer.readGalaxy(galaxyData);
     }
 }
\ No newline at end of file
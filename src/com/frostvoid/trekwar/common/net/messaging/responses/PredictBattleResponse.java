@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.common.net.messaging.responses;
+
+import com.frostvoid.trekwar.common.net.messaging.Response;
+
+/**
+ * The predicted outcome of a space battle, chances are from 0 to 1
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class PredictBattleResponse extends Response {
+    private int simulations;
+    private double winChance;
+    private double lossChance;
+    private double averageShipsLost;
+    private double averageEnemiesDestroyed;
+
+    public PredictBattleResponse(int simulations, double winChance, double lossChance, double averageShipsLost, double averageEnemiesDestroyed) {
+        this.simulations = simulations;
+        this.winChance = winChance;
+        this.lossChance = lossChance;
+        this.averageShipsLost = averageShipsLost;
+        this.averageEnemiesDestroyed = averageEnemiesDestroyed;
+    }
+
+    public PredictBattleResponse(String errorMessage) {
+        setErrorMessage(errorMessage);
+    }
+
+    /**
+     * @return number of battles simulated, 0 if no prediction could be made
+     */
+    public int getSimulations() {
+        return simulations;
+    }
+
+    /**
+     * @return chance that all enemy ships are destroyed
+     */
+    public double getWinChance() {
+        return winChance;
+    }
+
+    /**
+     * @return chance that all our ships are destroyed
+     */
+    public double getLossChance() {
+        return lossChance;
+    }
+
+    public double getAverageShipsLost() {
+        return averageShipsLost;
+    }
+
+    public double getAverageEnemiesDestroyed() {
+        return averageEnemiesDestroyed;
+    }
+}
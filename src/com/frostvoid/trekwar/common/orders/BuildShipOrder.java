@@ -20,7 +20,6 @@ import com.frostvoid.trekwar.common.*;
 import com.frostvoid.trekwar.common.exceptions.NotUniqueException;
 import com.frostvoid.trekwar.common.exceptions.ShipException;
 import com.frostvoid.trekwar.common.exceptions.SlotException;
-import com.frostvoid.trekwar.common.utils.Language;
 import com.frostvoid.trekwar.server.TrekwarServer;
 import com.frostvoid.trekwar.server.utils.MiscTools;
 
@@ -67,8 +66,8 @@ public class BuildShipOrder extends Order {
                 updateTurnsToCompletion();
             } else {
                 TurnReportItem tr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), starsystem.getX(), starsystem.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                tr.setSummary(Client.getLanguage().get("turn_report_buildqueue_cant_build_ship_1"));
-                tr.setDetailed(Language.pop(Client.getLanguage().get("turn_report_buildqueue_cant_build_ship_2"), starsystem.getName()));
+                tr.setSummaryKey("turn_report_buildqueue_cant_build_ship_1");
+                tr.setDetailedKey("turn_report_buildqueue_cant_build_ship_2", starsystem.getName());
                 starsystem.getUser().addTurnReport(tr);
             }
         }
@@ -154,8 +153,8 @@ public class BuildShipOrder extends Order {
 
             // notify turn report
             TurnReportItem tr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), starsystem.getX(), starsystem.getY(), TurnReportItem.TurnReportSeverity.MEDIUM);
-            tr.setSummary(Client.getLanguage().get("turn_report_ship_constructed_1"));
-            tr.setDetailed(Language.pop(Client.getLanguage().get("turn_report_ship_constructed_2"), template.getName(), starsystem.getName()));
+            tr.setSummaryKey("turn_report_ship_constructed_1");
+            tr.setDetailedKey("turn_report_ship_constructed_2", template.getName(), starsystem.getName());
             starsystem.getUser().addTurnReport(tr);
 
         } catch (SlotException se) {
@@ -164,8 +163,8 @@ public class BuildShipOrder extends Order {
             TrekwarServer.getLog().log(Level.SEVERE, "Unable to add ship to flett, not unique ", ex);
         } catch (ShipException shipException) {
             TurnReportItem tr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), starsystem.getX(), starsystem.getY(), TurnReportItem.TurnReportSeverity.MEDIUM);
-            tr.setSummary(Client.getLanguage().get("turn_report_ship_too_few_colonists_1"));
-            tr.setDetailed(Language.pop(Client.getLanguage().get("turn_report_ship_too_few_colonists_1"), starsystem.getName()));
+            tr.setSummaryKey("turn_report_ship_too_few_colonists_1");
+            tr.setDetailedKey("turn_report_ship_too_few_colonists_2", starsystem.getName());
             starsystem.getUser().addTurnReport(tr);
         }
     }
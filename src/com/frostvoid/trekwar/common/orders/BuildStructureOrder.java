@@ -21,7 +21,6 @@ import com.frostvoid.trekwar.common.StarSystem;
 import com.frostvoid.trekwar.common.TurnReportItem;
 import com.frostvoid.trekwar.common.TurnReportItem.TurnReportSeverity;
 import com.frostvoid.trekwar.common.structures.Structure;
-import com.frostvoid.trekwar.common.utils.Language;
 import com.frostvoid.trekwar.server.TrekwarServer;
 import com.frostvoid.trekwar.server.utils.MiscTools;
 
@@ -101,8 +100,8 @@ public class BuildStructureOrder extends Order {
 
         // notify turn report
         TurnReportItem tr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), starsystem.getX(), starsystem.getY(), TurnReportSeverity.MEDIUM);
-        tr.setSummary(Client.getLanguage().get("turn_report_structure_1"));
-        tr.setDetailed(Language.pop(Client.getLanguage().get("turn_report_structure_2"), starsystem.getName(), structure.getName()));
+        tr.setSummaryKey("turn_report_structure_1");
+        tr.setDetailedKey("turn_report_structure_2", starsystem.getName(), structure.getName());
         starsystem.getUser().addTurnReport(tr);
 
         TrekwarServer.LOG.log(Level.FINE, "User {0} completed a {1} structure in the {2} system", new Object[]{starsystem.getUser().getUsername(), structure.getName(), starsystem.getName()});
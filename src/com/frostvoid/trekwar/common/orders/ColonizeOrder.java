@@ -23,7 +23,6 @@ import com.frostvoid.trekwar.common.shipComponents.ColonizationModule;
 import com.frostvoid.trekwar.common.shipComponents.ShipComponent;
 import com.frostvoid.trekwar.common.structures.Structure;
 import com.frostvoid.trekwar.common.utils.Calculations;
-import com.frostvoid.trekwar.common.utils.Language;
 import com.frostvoid.trekwar.server.TrekwarServer;
 
 import java.util.ArrayList;
@@ -191,8 +190,8 @@ public class ColonizeOrder extends Order {
 
         // notify turn report
         TurnReportItem tr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), starsystem.getX(), starsystem.getY(), TurnReportSeverity.MEDIUM);
-        tr.setSummary(Language.pop(Client.getLanguage().get("turn_report_colonized_1"), starsystem.getName()));
-        tr.setDetailed(Language.pop(Client.getLanguage().get("turn_report_colonized_2"), starsystem.getPopulation(), starsystem.getTroopCount()));
+        tr.setSummaryKey("turn_report_colonized_1", starsystem.getName());
+        tr.setDetailedKey("turn_report_colonized_2", starsystem.getPopulation(), starsystem.getTroopCount());
         user.addTurnReport(tr);
 
         TrekwarServer.getLog().log(Level.INFO, "User {0} has colonized system {1}", new Object[]{user.getUsername(), starsystem.getName()});
@@ -21,6 +21,7 @@ import com.frostvoid.trekwar.common.StarSystem;
 import com.frostvoid.trekwar.common.TurnReportItem;
 import com.frostvoid.trekwar.server.TrekwarServer;
 import com.frostvoid.trekwar.server.turnExec.GroundCombatResolver;
+import com.frostvoid.trekwar.server.turnExec.TurnExecutor;
 
 import java.util.logging.Level;
 
@@ -47,7 +48,7 @@ public class InvadeSystemOrder extends Order {
 
         if (!attackingFleet.getUser().getFaction().equals(target.getUser().getFaction()) &&
                 attackingFleet.getX() == target.getX() && attackingFleet.getY() == target.getY()) {
-            gcr = new GroundCombatResolver(attackingFleet, target);
+            gcr = new GroundCombatResolver(attackingFleet, target, TurnExecutor.getOrderRandom());
             gcr.resolve(false);
         }
         orderCompleted = true;
@@ -58,14 +59,13 @@ public class InvadeSystemOrder extends Order {
         if (gcr != null) {
             if (gcr.didAttackerWin()) {
                 TurnReportItem atr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), target.getX(), target.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                atr.setSummary("Invasion of the " + target.getName() + " system was successful");
-                atr.setDetailed("Our troops have secured the " + target.getName() + " system, with " + gcr.getAttackerLosses() + " casualties");
+                atr.setSummaryKey("turn_report_invasion_won_1", target.getName());
+                atr.setDetailedKey("turn_report_invasion_won_2", target.getName(), gcr.getAttackerLosses());
                 gcr.getWinner().addTurnReport(atr);
 
                 TurnReportItem dtr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), target.getX(), target.getY(), TurnReportItem.TurnReportSeverity.CRITICAL);
-                dtr.setSummary("We've lost the " + target.getName() + " system");
-                dtr.setDetailed(gcr.getWinner().getUsername() + " of the " + gcr.getWinner().getFaction().getName() +
-                        " has defeated our forces in the " + target.getName() + " system, the system is no longer under our control");
+                dtr.setSummaryKey("turn_report_invasion_system_lost_1", target.getName());
+                dtr.setDetailedKey("turn_report_invasion_system_lost_2", gcr.getWinner().getUsername(), gcr.getWinner().getFaction().getName(), target.getName());
                 gcr.getLooser().addTurnReport(dtr);
 
                 gcr.getWinner().addSystem(target);
@@ -84,15 +84,13 @@ public class InvadeSystemOrder extends Order {
                 TrekwarServer.getLog().log(Level.FINE, "{0} has invaded the {1} system, owned by {2}", new Object[]{gcr.getWinner().getUsername(), target.getName(), gcr.getLooser().getUsername()});
             } else {
                 TurnReportItem atr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), target.getX(), target.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                atr.setSummary("Invasion of the " + target.getName() + " failed");
-                atr.setDetailed("All our " + gcr.getAttackerLosses() + " troops were lost, trying to secure the " + target.getName() +
-                        " system, the enemy suffered " + gcr.getDefenderLosses() + " casualties");
+                atr.setSummaryKey("turn_report_invasion_failed_1", target.getName());
+                atr.setDetailedKey("turn_report_invasion_failed_2", gcr.getAttackerLosses(), target.getName(), gcr.getDefenderLosses());
                 gcr.getLooser().addTurnReport(atr);
 
                 TurnReportItem dtr = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), target.getX(), target.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                dtr.setSummary("Our troops have defended the " + target.getName() + " system");
-                dtr.setDetailed(gcr.getWinner().getUsername() + " of the " + gcr.getWinner().getFaction().getName() +
-                        " was repelled while trying to invade the " + target.getName() + " system, our forces took " + gcr.getDefenderLosses() + " casualties");
+                dtr.setSummaryKey("turn_report_invasion_defended_1", target.getName());
+                dtr.setDetailedKey("turn_report_invasion_defended_2", gcr.getWinner().getUsername(), gcr.getWinner().getFaction().getName(), target.getName(), gcr.getDefenderLosses());
                 gcr.getWinner().addTurnReport(dtr);
 
                 TrekwarServer.getLog().log(Level.FINE, "{0} failed in invading the {1} system, owned by {2}", new Object[]{gcr.getLooser().getUsername(), target.getName(), gcr.getWinner().getUsername()});
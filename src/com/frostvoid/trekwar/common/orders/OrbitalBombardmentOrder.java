@@ -21,6 +21,7 @@ import com.frostvoid.trekwar.common.StarSystem;
 import com.frostvoid.trekwar.common.StaticData;
 import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
 import com.frostvoid.trekwar.server.turnExec.OrbitalBombardmentResolver;
+import com.frostvoid.trekwar.server.turnExec.TurnExecutor;
 
 /**
  * Tells a fleet to bomb the shit out of some noob ass planets.
@@ -54,7 +55,7 @@ public class OrbitalBombardmentOrder extends Order {
             // make sure we don't attack the system if it's invaded
             // and that the fleet is still able to bomb (ship with torpedoes not destroyed)
             if (!fleet.getUser().getFaction().equals(system.getUser().getFaction()) && fleet.canBombPlanets()) {
-                OrbitalBombardmentResolver obr = new OrbitalBombardmentResolver(fleet, system);
+                OrbitalBombardmentResolver obr = new OrbitalBombardmentResolver(fleet, system, TurnExecutor.getOrderRandom());
                 obr.resolve();
 
                 if (system.getPopulation() == 0) {
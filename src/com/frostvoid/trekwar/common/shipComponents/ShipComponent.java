@@ -74,12 +74,7 @@ public class ShipComponent implements Serializable {
     }
 
     public boolean canUse(User u) {
-        for (Technology shipTech : techsRequired) {
-            if (!u.getTechs().contains(shipTech)) {
-                return false;
-            }
-        }
-        return true;
+        return u.hasTechs(techsRequired);
     }
 
     public boolean isCivilian() {
@@ -162,12 +162,7 @@ public class HullClass implements Serializable {
     }
 
     public boolean canUse(User u) {
-        for (Technology shipTech : techsRequired) {
-            if (!u.getTechs().contains(shipTech)) {
-                return false;
-            }
-        }
-        return true;
+        return u.hasTechs(techsRequired);
     }
 
 
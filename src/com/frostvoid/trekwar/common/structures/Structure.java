@@ -240,12 +240,7 @@ public abstract class Structure implements Serializable {
             return false;
         }
 
-        for (Technology shipTech : techsRequired) {
-            if (!user.getTechs().contains(shipTech)) {
-                return false;
-            }
-        }
-        return true;
+        return user.hasTechs(techsRequired);
     }
 
     /**
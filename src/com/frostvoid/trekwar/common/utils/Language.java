@@ -120,12 +120,55 @@ public class Language {
      * @return the first argument (string) with the other values inserted
      */
     public static String pop(Object... args) {
-        String main = args[0].toString();
+        return insert(args[0].toString(), args, 1);
+    }
 
-        for (int i = 1; i < args.length; i++) {
-            main = main.replace("%" + i, args[i].toString());
-        }
+    /**
+     * Gets a value from the language file with values inserted at the %x tags,
+     * see pop(Object...)
+     *
+     * @param key    the key to find value for
+     * @param values the values to insert, the first value replaces %1
+     * @return the value with the values inserted
+     */
+    public String format(String key, Object... values) {
+        return insert(get(key), values, 0);
+    }
 
-        return main;
+    /**
+     * Replaces all %x tags in a single pass, %x is replaced with values[first + x - 1].
+     * Tags without a matching value are left as they are
+     */
+    private static String insert(String text, Object[] values, int first) {
+        int tag = text.indexOf('%');
+        if (tag == -1) {
+            return text;
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 16 * (values.length - first));
+        int copied = 0;
+        while (tag != -1) {
+            int end = tag + 1;
+            int index = 0;
+            int matchEnd = -1;
+            int match = 0;
+            while (end < text.length() && index <= values.length && Character.isDigit(text.charAt(end))) {
+                index = index * 10 + (text.charAt(end) - '0');
+                end++;
+                if (index >= 1 && first + index - 1 < values.length) {
+                    match = index;
+                    matchEnd = end;
+                }
+            }
+            if (matchEnd != -1) {
+                sb.append(text, copied, tag);
+                sb.append(values[first + match - 1]);
+                copied = matchEnd;
+                tag = text.indexOf('%', matchEnd);
+            } else {
+                tag = text.indexOf('%', tag + 1);
+            }
+        }
+        sb.append(text, copied, text.length());
+        return sb.toString();
     }
 }
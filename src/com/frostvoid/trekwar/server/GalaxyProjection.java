@@ -0,0 +1,466 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server;
+
+import com.frostvoid.trekwar.common.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the galaxy as seen by users (fog of war), in the GalaxyTransfer format.
+ * <p>
+ * Filtering is done while the galaxy is being written, objects are swapped
+ * for filtered copies as they are encountered so the live galaxy is never
+ * deep copied or modified:
+ * - unexplored systems not owned by the user are sent as empty space
+ * - explored systems out of sensor range only show fleets of the users faction
+ * - other users build queues are never sent
+ * - other users are reduced to their public information
+ * - other users fleets are sent without their orders
+ * <p>
+ * Every user that has no system or fleet on a tile sees one of a few public views of
+ * the tile (unexplored, in sensor range, or out of sensor range for a faction),
+ * so tiles are written on their own and can be shared by users, see GalaxySnapshotCache.
+ * Only the header (the galaxy without the map), and the private part
+ * (the user and the tiles where it has systems or fleets) are written for a single user.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GalaxyProjection {
+
+    private static final ConcurrentHashMap<String, Integer> classIds = new ConcurrentHashMap<String, Integer>();
+    private static final ReentrantLock classLock = new ReentrantLock();
+    private static volatile String[] classNames = new String[0]; // class table, only ever grows
+
+    /**
+     * Writes the galaxy header: the galaxy with all users (as public copies) and the turn information, but without the map.
+     * The header is the same for every user
+     *
+     * @param galaxy the galaxy
+     * @return the serialized header
+     * @throws IOException if the header could not be serialized
+     */
+    public static byte[] writeHeader(final Galaxy galaxy) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 * 1024);
+        TransferOutputStream out = new TransferOutputStream(bytes) {
+            @Override
+            protected Object replace(Object obj) {
+                if (obj == galaxy.getMap()) {
+                    return new StarSystem[0][];
+                }
+                if (obj instanceof User) {
+                    return ((User) obj).getPublicCopy();
+                }
+                return obj;
+            }
+        };
+        out.writeObject(galaxy);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes the private part of the galaxy for a user: the user itself, and the tiles where the user has systems or fleets
+     *
+     * @param viewer  the user
+     * @param systems the systems where the user has systems or fleets
+     * @return the serialized private part
+     * @throws IOException if the private part could not be serialized
+     */
+    public static byte[] writePrivate(final User viewer, ArrayList<StarSystem> systems) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        TransferOutputStream out = new TransferOutputStream(bytes) {
+            @Override
+            protected Object replace(Object obj) {
+                if (obj instanceof StarSystem) {
+                    return project((StarSystem) obj, viewer);
+                }
+                if (obj instanceof Fleet) {
+                    Fleet fleet = (Fleet) obj;
+                    return fleet.getUser().equals(viewer) ? fleet : fleet.getPublicCopy();
+                }
+                if (obj instanceof User) {
+                    return obj.equals(viewer) ? obj : GalaxyTransfer.userRef((User) obj);
+                }
+                return obj;
+            }
+        };
+        out.writeObject(viewer);
+        out.writeObject(systems);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a public view of an explored tile, seen by every user that has no system or fleet on the tile
+     * (unexplored tiles are not written, see GalaxyTransfer)
+     *
+     * @param system        the system on the tile
+     * @param inSensorRange true for the view of users that have the tile in sensor range
+     * @param faction       the faction of the users (only used when not in sensor range)
+     * @return the serialized tile
+     * @throws IOException if the tile could not be serialized
+     */
+    public static byte[] writeTile(final StarSystem system, final boolean inSensorRange, final Faction faction)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        TransferOutputStream out = new TransferOutputStream(bytes) {
+            @Override
+            protected Object replace(Object obj) {
+                if (obj == system) {
+                    return projectTile(system, true, inSensorRange, faction);
+                }
+                if (obj instanceof StarSystem) {
+                    // other tiles are never written as part of this tile
+                    StarSystem other = (StarSystem) obj;
+                    return projectTile(other, false, false, faction);
+                }
+                if (obj instanceof Fleet) {
+                    return ((Fleet) obj).getPublicCopy();
+                }
+                if (obj instanceof User) {
+                    return GalaxyTransfer.userRef((User) obj);
+                }
+                return obj;
+            }
+        };
+        out.writeObject(system);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Puts the serialized parts of a galaxy (or galaxy delta) together
+     *
+     * @param kind        GalaxyTransfer.FULL_GALAXY or GalaxyTransfer.GALAXY_DELTA
+     * @param baseTurn    the turn of the galaxy the delta must be applied to (not used for a full galaxy)
+     * @param galaxy      the galaxy
+     * @param header      the header, from writeHeader
+     * @param privatePart the private part, from writePrivate
+     * @param tileIndexes the index (x * height + y) of every tile in tiles
+     * @param tiles       the tiles, from writeTile (empty for unexplored tiles)
+     * @return the galaxy data
+     */
+    public static byte[] assemble(int kind, long baseTurn, Galaxy galaxy, byte[] header, byte[] privatePart,
+                                  int[] tileIndexes, List<byte[]> tiles) {
+        String[] names = classNames; // read after the parts are written, so it has all classes used
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + names.length * 48 + header.length + privatePart.length + tiles.size() * 8
+                + sumLength(tiles));
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(kind);
+            out.writeLong(baseTurn);
+            out.writeInt(galaxy.getWidth());
+            out.writeInt(galaxy.getHeight());
+            out.writeInt(names.length);
+            for (String name : names) {
+                out.writeUTF(name);
+            }
+            out.writeInt(header.length);
+            out.write(header);
+            out.writeInt(privatePart.length);
+            out.write(privatePart);
+            out.writeInt(tiles.size());
+            for (int i = 0; i < tiles.size(); i++) {
+                byte[] tile = tiles.get(i);
+                out.writeInt(tileIndexes[i]);
+                out.writeInt(tile.length);
+                out.write(tile);
+            }
+            out.close();
+        } catch (IOException ioe) {
+            // not thrown by ByteArrayOutputStream
+            throw new IllegalStateException(ioe);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int sumLength(List<byte[]> parts) {
+        int sum = 0;
+        for (byte[] part : parts) {
+            sum += part.length;
+        }
+        return sum;
+    }
+
+    /**
+     * Computes a signature for every tile in the galaxy as seen by a user,
+     * if the signature of a tile changes, so has what the user can see on that tile.
+     * Index of tile x,y is x * galaxy height + y
+     *
+     * @param galaxy the galaxy
+     * @param viewer the user
+     * @return the tile signatures
+     */
+    public static long[] getTileSignatures(Galaxy galaxy, User viewer) {
+        StarSystem[][] map = galaxy.getMap();
+        int height = galaxy.getHeight();
+        long[] signatures = new long[galaxy.getWidth() * height];
+        for (int x = 0; x < galaxy.getWidth(); x++) {
+            for (int y = 0; y < height; y++) {
+                signatures[x * height + y] = getTileSignature(map[x][y], viewer);
+            }
+        }
+        return signatures;
+    }
+
+    private static long getTileSignature(StarSystem system, User viewer) {
+        boolean owned = system.getUser().equals(viewer);
+        if (!owned && !isExplored(viewer, system.getX(), system.getY())) {
+            return 1;
+        }
+        boolean inSensorRange = owned || isInSensorRange(viewer, system.getX(), system.getY());
+        return getTileSignature(system, inSensorRange, viewer.getFaction());
+    }
+
+    /**
+     * Computes the signature of an explored tile, the signature is the same for all users
+     * seeing the same public view of the tile (see writeTile)
+     *
+     * @param system        the system on the tile
+     * @param inSensorRange true if the tile is in sensor range
+     * @param faction       the faction of the user (only used when not in sensor range)
+     * @return the signature
+     */
+    private static long getTileSignature(StarSystem system, boolean inSensorRange, Faction faction) {
+        long h = inSensorRange ? 17 : 19;
+        h = mix(h, system.getUser().getUsername().hashCode());
+        h = mix(h, system.getName().hashCode());
+        h = mix(h, system.getStarSystemClassification().ordinal());
+        h = mix(h, system.getImageFile() == null ? 0 : system.getImageFile().hashCode());
+        h = mix(h, system.getSensorCost());
+        h = mix(h, system.getMorale());
+        h = mix(h, system.getResourcesLeft());
+        h = mix(h, system.getOre());
+        h = mix(h, system.getDeuterium());
+        h = mix(h, system.getTroopCount());
+
+        for (Planet p : system.getPlanets()) {
+            h = mix(h, p.getPopulation());
+            h = mix(h, p.getMaximumPopulation());
+            for (Integer slot : p.getStructuresMap().keySet()) {
+                h = mix(h, slot);
+                h = mix(h, p.getStructuresMap().get(slot).getName().hashCode());
+                h = mix(h, p.isStructureEnabled(slot) ? 1 : 0);
+            }
+        }
+
+        for (Fleet f : system.getFleets()) {
+            if (!inSensorRange && !f.getUser().getFaction().equals(faction)) {
+                continue;
+            }
+            h = mix(h, f.getName().hashCode());
+            h = mix(h, f.getUser().getUsername().hashCode());
+            h = mix(h, f.getMovementLeft());
+            for (Ship s : f.getShips()) {
+                h = mix(h, s.getName().hashCode());
+                h = mix(h, s.getCurrentShieldStrength());
+                h = mix(h, s.getCurrentArmorStrength());
+                h = mix(h, s.getCurrentHullStrength());
+                h = mix(h, s.getCurrentDeuterium());
+                h = mix(h, s.getCrew());
+                h = mix(h, s.getXp());
+                h = mix(h, s.getMorale());
+                h = mix(h, s.getCargoDeuterium());
+                h = mix(h, s.getCargoOre());
+                h = mix(h, s.getTroops());
+                h = mix(h, s.getColonists());
+            }
+        }
+        return h;
+    }
+
+    /**
+     * Computes the signature of the galaxy header (see writeHeader)
+     *
+     * @param galaxy the galaxy
+     * @return the signature
+     */
+    public static long getHeaderSignature(Galaxy galaxy) {
+        long h = mix(23, galaxy.getCurrentTurn());
+        h = mix(h, galaxy.lastTurnDate);
+        h = mix(h, galaxy.nextTurnDate);
+        h = mix(h, galaxy.turnSpeed);
+        h = mix(h, galaxy.maxUsersInGalaxy);
+        h = mix(h, galaxy.getExecutingTurn() ? 1 : 0);
+        for (User u : galaxy.getUsers()) {
+            h = mix(h, u.getUsername().hashCode());
+            h = mix(h, u.getPoints());
+            h = mix(h, u.getAvatarFilename() == null ? 0 : u.getAvatarFilename().hashCode());
+            h = mix(h, u.getFaction() == null ? 0 : u.getFaction().getName().hashCode());
+            h = mix(h, u.getTechs().size());
+        }
+        for (User u : galaxy.getLoggedInUsers()) {
+            h = mix(h, u.getUsername().hashCode());
+        }
+        return h;
+    }
+
+    /**
+     * Computes a signature of the parts of a user that can be changed by others than the user
+     * (or that are cheap to check), used with the tiles of the private part (see writePrivate)
+     *
+     * @param user the user
+     * @return the signature
+     */
+    public static long getUserSignature(User user) {
+        long h = mix(29, user.getPoints());
+        h = mix(h, user.getResearchPoints());
+        h = mix(h, user.getCurrentResearch() == null ? 0 : user.getCurrentResearch().hashCode());
+        h = mix(h, user.getTechs().size());
+        h = mix(h, user.getStarSystems().size());
+        h = mix(h, user.getFleets().size());
+        h = mix(h, user.getShipTemplates().size());
+        h = mix(h, user.getChat().size());
+        h = mix(h, user.getTurnReports().size());
+        return h;
+    }
+
+    static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Checks if a user has ever explored a tile
+     *
+     * @param viewer the user
+     * @param x      x location
+     * @param y      y location
+     * @return true if the tile is explored
+     */
+    public static boolean isExplored(User viewer, int x, int y) {
+        return viewer.getSensorOverlay().isExplored(x, y);
+    }
+
+    /**
+     * Checks if a tile is currently inside the sensor range of a user
+     *
+     * @param viewer the user
+     * @param x      x location
+     * @param y      y location
+     * @return true if the tile is currently seen
+     */
+    public static boolean isInSensorRange(User viewer, int x, int y) {
+        return viewer.getSensorOverlay().isInSensorRange(x, y);
+    }
+
+    /**
+     * Makes the version of a starsystem the user is allowed to see
+     *
+     * @param system the system
+     * @param viewer the user
+     * @return the system itself, a filtered copy or an empty stub
+     */
+    public static StarSystem project(StarSystem system, User viewer) {
+        if (system.getUser().equals(viewer)) {
+            return system;
+        }
+        return projectTile(system, isExplored(viewer, system.getX(), system.getY()),
+                isInSensorRange(viewer, system.getX(), system.getY()), viewer.getFaction());
+    }
+
+    /**
+     * Makes a public view of a starsystem
+     *
+     * @param system        the system
+     * @param explored      true if the system has been explored
+     * @param inSensorRange true if the system is in sensor range
+     * @param faction       the faction of the users seeing the system, their fleets are seen when not in sensor range
+     * @return a filtered copy or an empty stub
+     */
+    private static StarSystem projectTile(StarSystem system, boolean explored, boolean inSensorRange, Faction faction) {
+        if (!explored) {
+            return new StarSystem(StaticData.nobodyUser, system.getX(), system.getY(), "", StarSystemClassification.empty);
+        }
+        ArrayList<Fleet> visibleFleets = new ArrayList<Fleet>(system.getFleets().size());
+        for (Fleet f : system.getFleets()) {
+            if (inSensorRange || f.getUser().getFaction().equals(faction)) {
+                visibleFleets.add(f);
+            }
+        }
+        return system.getFilteredCopy(visibleFleets);
+    }
+
+    /**
+     * Writes one part of the galaxy data: without stream header, and with classes written as numbers in the class table
+     */
+    private static abstract class TransferOutputStream extends ObjectOutputStream {
+
+        TransferOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected void writeStreamHeader() {
+            // parts are written without stream header
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            writeInt(getClassId(desc.getName()));
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            Object ref = GalaxyTransfer.catalogRef(obj);
+            if (ref != null) {
+                return ref;
+            }
+            return replace(obj);
+        }
+
+        /**
+         * Replaces galaxy objects with what may be written in this part
+         *
+         * @param obj the object
+         * @return the object to write instead
+         */
+        protected abstract Object replace(Object obj);
+    }
+
+    private static int getClassId(String name) {
+        Integer id = classIds.get(name);
+        if (id == null) {
+            classLock.lock();
+            try {
+                id = classIds.get(name);
+                if (id == null) {
+                    String[] names = new String[classNames.length + 1];
+                    System.arraycopy(classNames, 0, names, 0, classNames.length);
+                    id = classNames.length;
+                    names[id] = name;
+                    classNames = names;
+                    classIds.put(name, id);
+                }
+            } finally {
+                classLock.unlock();
+            }
+        }
+        return id;
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.GalaxyTransfer;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Caches the serialized parts of the galaxy (see GalaxyProjection), so each part
+ * is only serialized once for as long as it does not change, and is shared by all
+ * users that see it:
+ * - the header (galaxy without map), the same for all users
+ * - the public view of every explored tile, shared by all users that see the same view of the tile
+ * - the private part of every user (the user, and the tiles where it has systems or fleets)
+ * <p>
+ * Every part is stamped with the turn and a signature of what it shows (tile signatures
+ * for tiles), so a part is only serialized again when what it shows has changed.
+ * The private part of a user is also made again after every request from that user
+ * that may have changed the galaxy (see invalidate). The cache is cleared after each turn.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GalaxySnapshotCache {
+
+    private static volatile Part header;
+    private static final ConcurrentHashMap<String, Part> tiles = new ConcurrentHashMap<String, Part>(); // key: tile index / view
+    private static final ConcurrentHashMap<String, Part> privateParts = new ConcurrentHashMap<String, Part>(); // key: username
+    private static final ConcurrentHashMap<String, AtomicLong> userStamps = new ConcurrentHashMap<String, AtomicLong>();
+    private static final byte[] UNEXPLORED_TILE = new byte[0]; // made by the client, see GalaxyTransfer
+
+    /**
+     * Marks the private part of a user as out of date, must be called after the user has changed the galaxy.
+     * Changes to tiles are found by the tile signatures, so other users are not affected
+     *
+     * @param user the user
+     */
+    public static void invalidate(User user) {
+        AtomicLong stamp = userStamps.get(user.getUsername());
+        if (stamp == null) {
+            AtomicLong newStamp = new AtomicLong();
+            stamp = userStamps.putIfAbsent(user.getUsername(), newStamp);
+            if (stamp == null) {
+                stamp = newStamp;
+            }
+        }
+        stamp.incrementAndGet();
+    }
+
+    /**
+     * Removes all cached parts, called after a turn has been executed
+     */
+    public static void clear() {
+        header = null;
+        tiles.clear();
+        privateParts.clear();
+    }
+
+    /**
+     * Gets the current snapshot of the galaxy as seen by a user.
+     * The parts of the galaxy are serialized (or taken from the cache) when the data is asked for
+     *
+     * @param galaxy the galaxy
+     * @param user   the user
+     * @return the snapshot
+     */
+    public static Snapshot getSnapshot(Galaxy galaxy, User user) {
+        return new Snapshot(galaxy, user);
+    }
+
+    private static long getUserStamp(User user) {
+        AtomicLong stamp = userStamps.get(user.getUsername());
+        return stamp == null ? 0 : stamp.get();
+    }
+
+    /**
+     * Gets a part from the cache, or puts a new (not yet serialized) part in the cache
+     * if the cached part is from another turn or has another signature
+     */
+    private static Part getPart(ConcurrentHashMap<String, Part> parts, String key, long turn, long signature, PartWriter writer) {
+        Part part = parts.get(key);
+        if (part != null && part.turn == turn && part.signature == signature) {
+            return part;
+        }
+        Part fresh = new Part(turn, signature, writer);
+        boolean added = part == null ? parts.putIfAbsent(key, fresh) == null : parts.replace(key, part, fresh);
+        if (!added) {
+            // another thread got here first, use its part if it is the same
+            Part other = parts.get(key);
+            if (other != null && other.turn == turn && other.signature == signature) {
+                return other;
+            }
+        }
+        return fresh;
+    }
+
+    /**
+     * The galaxy as seen by one user at a given point in time.
+     * Tile signatures are made when the snapshot is created, the serialized
+     * galaxy is made the first time it is requested
+     */
+    public static class Snapshot {
+        private final Galaxy galaxy;
+        private final User user;
+        private final long turn;
+        private final long[] tileSignatures;
+        private final boolean[] privateTiles;
+        private final long privateSignature;
+        private final long userStamp;
+
+        private Snapshot(Galaxy galaxy, User user) {
+            // read before the galaxy, so changes made while making the snapshot makes the private part out of date
+            this.userStamp = getUserStamp(user);
+            this.galaxy = galaxy;
+            this.user = user;
+            this.turn = galaxy.getCurrentTurn();
+            this.tileSignatures = GalaxyProjection.getTileSignatures(galaxy, user);
+
+            int height = galaxy.getHeight();
+            privateTiles = new boolean[tileSignatures.length];
+            for (StarSystem s : user.getStarSystems()) {
+                privateTiles[s.getX() * height + s.getY()] = true;
+            }
+            for (Fleet f : user.getFleets()) {
+                privateTiles[f.getX() * height + f.getY()] = true;
+            }
+            long h = GalaxyProjection.mix(userStamp, GalaxyProjection.getUserSignature(user));
+            for (int i = 0; i < privateTiles.length; i++) {
+                if (privateTiles[i]) {
+                    h = GalaxyProjection.mix(GalaxyProjection.mix(h, i), tileSignatures[i]);
+                }
+            }
+            privateSignature = h;
+        }
+
+        /**
+         * @return the turn this snapshot was made
+         */
+        public long getTurn() {
+            return turn;
+        }
+
+        /**
+         * @return the tile signatures of the galaxy as seen by the user
+         */
+        public long[] getTileSignatures() {
+            return tileSignatures;
+        }
+
+        /**
+         * Gets the serialized galaxy, serializing the parts that are not in the cache
+         *
+         * @return the serialized galaxy, or null if serialization failed
+         */
+        public byte[] getData() {
+            return assemble(GalaxyTransfer.FULL_GALAXY, -1, null);
+        }
+
+        /**
+         * Gets the serialized changes to the galaxy since the user got a galaxy with other tile signatures.
+         * The delta contains all tiles where the signature has changed, and all
+         * tiles with the users own systems and fleets.
+         *
+         * @param baseTurn      the turn of the galaxy the user already has
+         * @param oldSignatures the tile signatures of the galaxy the user already has
+         * @return the serialized delta, or null if serialization failed
+         */
+        public byte[] getDelta(long baseTurn, long[] oldSignatures) {
+            return assemble(GalaxyTransfer.GALAXY_DELTA, baseTurn, oldSignatures);
+        }
+
+        private byte[] assemble(int kind, long baseTurn, long[] oldSignatures) {
+            byte[] headerData = getHeader();
+            byte[] privateData = getPrivatePart();
+            if (headerData == null || privateData == null) {
+                return null;
+            }
+            StarSystem[][] map = galaxy.getMap();
+            int height = galaxy.getHeight();
+            int[] tileIndexes = new int[tileSignatures.length];
+            ArrayList<byte[]> tileData = new ArrayList<byte[]>();
+            for (int i = 0; i < tileSignatures.length; i++) {
+                if (privateTiles[i] || (oldSignatures != null && oldSignatures[i] == tileSignatures[i])) {
+                    continue;
+                }
+                byte[] data = getTile(map[i / height][i % height], i);
+                if (data == null) {
+                    return null;
+                }
+                tileIndexes[tileData.size()] = i;
+                tileData.add(data);
+            }
+            return GalaxyProjection.assemble(kind, baseTurn, galaxy, headerData, privateData, tileIndexes, tileData);
+        }
+
+        private byte[] getHeader() {
+            long signature = GalaxyProjection.getHeaderSignature(galaxy);
+            Part part = header;
+            if (part == null || part.turn != turn || part.signature != signature) {
+                part = new Part(turn, signature, new PartWriter() {
+                    @Override
+                    public byte[] write() throws IOException {
+                        return GalaxyProjection.writeHeader(galaxy);
+                    }
+                });
+                header = part;
+            }
+            return part.getData();
+        }
+
+        private byte[] getPrivatePart() {
+            Part part = getPart(privateParts, user.getUsername(), turn, privateSignature, new PartWriter() {
+                @Override
+                public byte[] write() throws IOException {
+                    ArrayList<StarSystem> systems = new ArrayList<StarSystem>();
+                    StarSystem[][] map = galaxy.getMap();
+                    int height = galaxy.getHeight();
+                    for (int i = 0; i < privateTiles.length; i++) {
+                        if (privateTiles[i]) {
+                            systems.add(map[i / height][i % height]);
+                        }
+                    }
+                    return GalaxyProjection.writePrivate(user, systems);
+                }
+            });
+            return part.getData();
+        }
+
+        private byte[] getTile(final StarSystem system, int index) {
+            if (!GalaxyProjection.isExplored(user, system.getX(), system.getY())) {
+                return UNEXPLORED_TILE;
+            }
+            final boolean inSensorRange = GalaxyProjection.isInSensorRange(user, system.getX(), system.getY());
+            String view = inSensorRange ? "*" : user.getFaction().getName();
+            Part part = getPart(tiles, index + "/" + view, turn, tileSignatures[index], new PartWriter() {
+                @Override
+                public byte[] write() throws IOException {
+                    return GalaxyProjection.writeTile(system, inSensorRange, user.getFaction());
+                }
+            });
+            return part.getData();
+        }
+    }
+
+    /**
+     * Serializes a part of the galaxy
+     */
+    private interface PartWriter {
+        byte[] write() throws IOException;
+    }
+
+    /**
+     * A serialized part of the galaxy, serialized by the first thread asking for the data
+     */
+    private static class Part {
+        private final long turn;
+        private final long signature;
+        private final ReentrantLock dataLock = new ReentrantLock();
+        private PartWriter writer;
+        private byte[] data;
+
+        Part(long turn, long signature, PartWriter writer) {
+            this.turn = turn;
+            this.signature = signature;
+            this.writer = writer;
+        }
+
+        /**
+         * Gets the serialized part, serializing it if this has not yet been done
+         *
+         * @return the serialized part, or null if serialization failed
+         */
+        byte[] getData() {
+            dataLock.lock();
+            try {
+                if (data == null) {
+                    try {
+                        data = writer.write();
+                        writer = null;
+                    } catch (IOException ioe) {
+                        TrekwarServer.getLog().log(Level.SEVERE, "Unable to serialize galaxy", ioe);
+                    }
+                }
+                return data;
+            } finally {
+                dataLock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server;
+
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Event;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Keeps track of the client sessions that have subscribed to events,
+ * and pushes events to them
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SessionRegistry {
+
+    private static final CopyOnWriteArrayList<ClientSession> subscribers = new CopyOnWriteArrayList<ClientSession>();
+
+    /**
+     * Starts sending events to a session
+     *
+     * @param session the session
+     */
+    public static void subscribe(ClientSession session) {
+        subscribers.addIfAbsent(session);
+    }
+
+    /**
+     * Stops sending events to a session
+     *
+     * @param session the session
+     */
+    public static void unsubscribe(ClientSession session) {
+        subscribers.remove(session);
+    }
+
+    /**
+     * Sends an event to all subscribed sessions
+     *
+     * @param event the event
+     */
+    public static void broadcast(Event event) {
+        for (ClientSession session : subscribers) {
+            session.push(event);
+        }
+    }
+
+    /**
+     * Sends an event to all subscribed sessions of a user
+     *
+     * @param user  the user
+     * @param event the event
+     * @return true if the user has a subscribed session, false if the event was not sent
+     */
+    public static boolean sendTo(User user, Event event) {
+        boolean sent = false;
+        for (ClientSession session : subscribers) {
+            if (user.equals(session.getLoggedInUser())) {
+                session.push(event);
+                sent = true;
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * @return number of subscribed sessions
+     */
+    public static int getSubscriberCount() {
+        return subscribers.size();
+    }
+}
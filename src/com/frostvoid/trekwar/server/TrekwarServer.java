@@ -18,8 +18,14 @@ package com.frostvoid.trekwar.server;
 import com.frostvoid.trekwar.common.Galaxy;
 import com.frostvoid.trekwar.common.User;
 import com.frostvoid.trekwar.common.exceptions.UserNotFoundException;
+import com.frostvoid.trekwar.common.net.messaging.events.TurnExecutedEvent;
 import com.frostvoid.trekwar.common.utils.Language;
+import com.frostvoid.trekwar.server.net.BlockingClientConnection;
+import com.frostvoid.trekwar.server.net.NioServer;
+import com.frostvoid.trekwar.server.net.VirtualThreads;
+import com.frostvoid.trekwar.server.requests.RequestHandlers;
 import com.frostvoid.trekwar.server.turnExec.TurnExecutor;
+import com.frostvoid.trekwar.server.utils.SensorField;
 import org.apache.commons.cli.*;
 
 import java.io.*;
@@ -27,6 +33,10 @@ import java.net.BindException;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.security.SecureRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.*;
 
 /**
@@ -48,7 +58,12 @@ public class TrekwarServer {
     private static String galaxyFileName;
     private static int port = 8472;
     private static int saveInterval = 5; // saves game to disk every X turns
+    private static boolean blockingNetwork = false; // thread per client instead of NIO
+    private static boolean virtualThreads = false; // use virtual threads for blocking clients
+    private static int workerThreads = Runtime.getRuntime().availableProcessors() * 2; // NIO request handling threads
+    private static int compressionThreshold = 16 * 1024; // compress responses larger than this (bytes), 0 = off
     private static ServerSocket server;
+    private static NioServer nioServer;
     public static final Logger LOG = Logger.getLogger("trekwar_server");
     public static final SecureRandom PRNG = new SecureRandom();
 
@@ -72,6 +87,11 @@ public class TrekwarServer {
         options.addOption(OptionBuilder.withArgName("port number").withLongOpt("port").hasArg().withDescription("the port number to bind to (default 8472)").create("p"));
         options.addOption(OptionBuilder.withArgName("number").withLongOpt("save-interval").hasArg().withDescription("how often (in turns) to save the galaxy to disk (default: 5)").create("s"));
         options.addOption(OptionBuilder.withArgName("log level").withLongOpt("log").hasArg().withDescription("sets the log level: ALL, FINEST, FINER, FINE, CONFIG, INFO, WARNING, SEVERE, OFF").create("l"));
+        options.addOption(OptionBuilder.withArgName("nio|blocking|virtual").withLongOpt("network").hasArg().withDescription("network layer, nio, blocking (thread per client) or virtual (virtual thread per client, java 21+) (default: nio)").create("n"));
+        options.addOption(OptionBuilder.withArgName("number").withLongOpt("workers").hasArg().withDescription("number of threads handling client requests in nio mode (default: 2 per cpu)").create("w"));
+        options.addOption(OptionBuilder.withArgName("bytes").withLongOpt("compress").hasArg().withDescription("compress responses larger than this to clients that support it, 0 to disable (default: 16384)").create("c"));
+        options.addOption(OptionBuilder.withArgName("raytable|boundingbox").withLongOpt("los").hasArg().withDescription("line of sight algorithm, precomputed rays or lines to the edge of the sensor range (default: raytable)").create("o"));
+        options.addOption(OptionBuilder.withArgName("number").withLongOpt("seed").hasArg().withDescription("random seed for the first turn, used to replay a turn (the seed of every turn is logged)").create("r"));
         options.addOption("h", "help", false, "prints this help message");
 
         CommandLineParser cliParser = new BasicParser();
@@ -82,6 +102,11 @@ public class TrekwarServer {
             String galaxyFileStr = cmd.getOptionValue("g");
             String saveIntervalStr = cmd.getOptionValue("s");
             String logLevelStr = cmd.getOptionValue("l");
+            String networkStr = cmd.getOptionValue("n");
+            String workersStr = cmd.getOptionValue("w");
+            String compressStr = cmd.getOptionValue("c");
+            String losStr = cmd.getOptionValue("o");
+            String seedStr = cmd.getOptionValue("r");
 
             if (cmd.hasOption("h")) {
                 HelpFormatter help = new HelpFormatter();
@@ -113,6 +138,45 @@ public class TrekwarServer {
                 saveInterval = 5;
             }
 
+            if (cmd.hasOption("n") && networkStr != null) {
+                if (networkStr.equalsIgnoreCase("blocking")) {
+                    blockingNetwork = true;
+                } else if (networkStr.equalsIgnoreCase("virtual")) {
+                    blockingNetwork = true;
+                    virtualThreads = true;
+                } else if (!networkStr.equalsIgnoreCase("nio")) {
+                    throw new ParseException("invalid network layer: " + networkStr);
+                }
+            }
+
+            if (cmd.hasOption("w") && workersStr != null) {
+                workerThreads = Integer.parseInt(workersStr);
+                if (workerThreads < 1 || workerThreads > 1000) {
+                    throw new NumberFormatException("Worker threads out of range (1-1000)");
+                }
+            }
+
+            if (cmd.hasOption("c") && compressStr != null) {
+                compressionThreshold = Integer.parseInt(compressStr);
+                if (compressionThreshold < 0) {
+                    throw new NumberFormatException("Compression threshold can not be negative");
+                }
+            }
+
+            if (cmd.hasOption("o") && losStr != null) {
+                if (losStr.equalsIgnoreCase("raytable")) {
+                    SensorField.setAlgorithm(SensorField.Algorithm.RAY_TABLE);
+                } else if (losStr.equalsIgnoreCase("boundingbox")) {
+                    SensorField.setAlgorithm(SensorField.Algorithm.BOUNDING_BOX_RAYS);
+                } else {
+                    throw new ParseException("invalid line of sight algorithm: " + losStr);
+                }
+            }
+
+            if (cmd.hasOption("r") && seedStr != null) {
+                TurnExecutor.setNextTurnSeed(Long.parseLong(seedStr));
+            }
+
             if (cmd.hasOption("l") && logLevelStr != null) {
                 if (logLevelStr.equalsIgnoreCase("finest")) {
                     LOG.setLevel(Level.FINEST);
@@ -188,13 +252,18 @@ public class TrekwarServer {
         LOG.log(Level.INFO, "Current turn  : {0}", galaxy.getCurrentTurn());
         LOG.log(Level.INFO, "Turn speed    : {0} seconds", galaxy.getTurnSpeed() / 1000);
         LOG.log(Level.INFO, "Save Interval : {0}", saveInterval);
+        LOG.log(Level.INFO, "Line of sight : {0}", SensorField.getAlgorithm());
         LOG.log(Level.INFO, "Users / max   : {0} / {1}", new Object[]{galaxy.getUserCount(), galaxy.getMaxUsers()});
 
 
         // START SERVER
         try {
-            server = new ServerSocket(port);
-            LOG.log(Level.INFO, "Server listening on port {0}", port);
+            if (blockingNetwork) {
+                server = new ServerSocket(port);
+            } else {
+                nioServer = new NioServer(port, galaxy, workerThreads);
+            }
+            LOG.log(Level.INFO, "Server listening on port {0} ({1})", new Object[]{port, blockingNetwork ? (virtualThreads ? "virtual threads" : "blocking") : "nio, " + workerThreads + " workers"});
         } catch (BindException be) {
             LOG.log(Level.SEVERE, "Error: Unable to bind to port {0}", port);
             System.err.println(be);
@@ -207,64 +276,66 @@ public class TrekwarServer {
 
         galaxy.startup();
 
-        Thread timerThread = new Thread(new Runnable() {
+        ScheduledExecutorService turnTimer = Executors.newSingleThreadScheduledExecutor();
+        turnTimer.scheduleWithFixedDelay(new Runnable() {
 
             @Override
-            @SuppressWarnings("SleepWhileInLoop")
             public void run() {
-                while (true) {
-                    try {
-                        Thread.sleep(1000);
-                        // && galaxy.getLoggedInUsers().size() > 0 will make server pause when nobody is logged in (TESTING)
-                        if (System.currentTimeMillis() > galaxy.nextTurnDate) {
-                            StringBuffer loggedInUsers = new StringBuffer();
-                            for (User u : galaxy.getLoggedInUsers()) {
-                                loggedInUsers.append(u.getUsername()).append(", ");
-                            }
-
-                            long time = TurnExecutor.executeTurn(galaxy);
-                            LOG.log(Level.INFO, "Turn {0} executed in {1} ms", new Object[]{galaxy.getCurrentTurn(), time});
-                            LOG.log(Level.INFO, "Logged in users: " + loggedInUsers.toString());
-                            LOG.log(Level.INFO, "====================================================================================");
-
-                            if (galaxy.getCurrentTurn() % saveInterval == 0) {
-                                saveGalaxy();
-                            }
-
-                            galaxy.lastTurnDate = System.currentTimeMillis();
-                            galaxy.nextTurnDate = galaxy.lastTurnDate + galaxy.turnSpeed;
+                try {
+                    // && galaxy.getLoggedInUsers().size() > 0 will make server pause when nobody is logged in (TESTING)
+                    if (System.currentTimeMillis() > galaxy.nextTurnDate) {
+                        StringBuffer loggedInUsers = new StringBuffer();
+                        for (User u : galaxy.getLoggedInUsers()) {
+                            loggedInUsers.append(u.getUsername()).append(", ");
                         }
 
-                    } catch (InterruptedException e) {
-                        LOG.log(Level.SEVERE, "Error in main server loop, interrupted", e);
+                        long time = TurnExecutor.executeTurn(galaxy);
+                        LOG.log(Level.INFO, "Turn {0} executed in {1} ms", new Object[]{galaxy.getCurrentTurn(), time});
+                        LOG.log(Level.INFO, "Logged in users: " + loggedInUsers.toString());
+                        RequestHandlers.logStatistics();
+                        LOG.log(Level.INFO, "====================================================================================");
+
+                        if (galaxy.getCurrentTurn() % saveInterval == 0) {
+                            saveGalaxy();
+                        }
+
+                        galaxy.lastTurnDate = System.currentTimeMillis();
+                        galaxy.nextTurnDate = galaxy.lastTurnDate + galaxy.turnSpeed;
+                        SessionRegistry.broadcast(new TurnExecutedEvent(galaxy.getCurrentTurn(), galaxy.turnSpeed));
                     }
+                } catch (RuntimeException e) {
+                    // an exception would stop the timer from running again
+                    LOG.log(Level.SEVERE, "Error in main server loop", e);
                 }
             }
-        });
-        timerThread.start();
+        }, 1, 1, TimeUnit.SECONDS);
 
 
         // ACCEPT CONNECTIONS AND DELEGATE TO CLIENT SESSIONS
-        while (true) {
-            Socket clientConnection;
-            try {
-                clientConnection = server.accept();
-                ClientSession c = new ClientSession(clientConnection, galaxy);
-                Thread t = new Thread(c);
-                t.start();
-            } catch (IOException ex) {
-                LOG.log(Level.SEVERE, "IO Exception while trying to handle incoming client connection", ex);
+        if (!blockingNetwork) {
+            nioServer.run();
+        } else {
+            ThreadFactory sessionThreads = null;
+            if (virtualThreads) {
+                sessionThreads = VirtualThreads.newThreadFactory();
+                if (sessionThreads == null) {
+                    LOG.log(Level.WARNING, "Virtual threads are not supported by this JVM (requires java 21+), using normal threads");
+                }
+            }
+            while (true) {
+                Socket clientConnection;
+                try {
+                    clientConnection = server.accept();
+                    BlockingClientConnection c = new BlockingClientConnection(clientConnection, galaxy);
+                    Thread t = sessionThreads != null ? sessionThreads.newThread(c) : new Thread(c);
+                    t.start();
+                } catch (IOException ex) {
+                    LOG.log(Level.SEVERE, "IO Exception while trying to handle incoming client connection", ex);
+                }
             }
         }
     }
 
-    public static Galaxy getGalaxyFor(User currentUser) {
-        // TODO, dont copy systems that is in fog of war
-        // go trough galaxy and compute sensor ranges for the user.
-        // See issue #36
-        return galaxy;
-    }
-
     /**
      * Gets the single galaxy instance this server is running
      *
@@ -283,6 +354,15 @@ public class TrekwarServer {
         return motd;
     }
 
+    /**
+     * Gets the size (in bytes) above which responses are compressed
+     *
+     * @return the threshold, 0 if compression is disabled
+     */
+    public static int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
     /**
      * Logs in a user on the server
      *
@@ -509,13 +509,7 @@ public class UniverseGenerator {
                     setUpStartingShips(newUser, s);
 
                     // create fog of war over entire map for user
-                    int[][] sensorOverlay = new int[g.getWidth()][g.getHeight()];
-                    for (int i = 0; i < sensorOverlay.length; i++) {
-                        for (int j = 0; j < sensorOverlay[i].length; j++) {
-                            sensorOverlay[i][j] = Integer.MIN_VALUE;
-                        }
-                    }
-                    newUser.setSensorOverlay(sensorOverlay);
+                    newUser.setSensorOverlay(new SensorOverlay(g.getWidth(), g.getHeight()));
 
                     // add user to galaxy
                     g.addUser(newUser);
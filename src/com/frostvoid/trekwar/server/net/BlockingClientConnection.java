@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.net;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.net.FrameCodec;
+import com.frostvoid.trekwar.common.net.MessageCodec;
+import com.frostvoid.trekwar.common.net.messaging.Message;
+import com.frostvoid.trekwar.common.net.messaging.Request;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Connection that uses a blocking socket, and one thread for each client
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class BlockingClientConnection implements ClientConnection, Runnable {
+
+    private Socket socket;
+    private DataInputStream in;
+    private OutputStream out;
+    private ClientSession session;
+    private volatile MessageCodec codec = MessageCodec.SERIALIZATION; // codec of the last request, used for responses
+    private volatile boolean acceptsCompression = false; // set if the client can read compressed responses
+    private final ReentrantLock sendLock = new ReentrantLock(); // not synchronized, so virtual threads are not pinned while writing
+
+    /**
+     * Creates a new connection, run() must be called to start talking to the client
+     *
+     * @param socket the socket to communicate on
+     * @param galaxy the galaxy object being used
+     */
+    public BlockingClientConnection(Socket socket, Galaxy galaxy) {
+        this.socket = socket;
+        this.session = new ClientSession(this, galaxy);
+    }
+
+    @Override
+    public void run() {
+        try {
+            out = new BufferedOutputStream(socket.getOutputStream());
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            session.sessionStarted();
+
+            while (true) {
+                byte[] frame = FrameCodec.readFrame(in, FrameCodec.MAX_REQUEST_SIZE);
+                Request request;
+                try {
+                    codec = FrameCodec.getCodec(frame);
+                    acceptsCompression = FrameCodec.hasFlag(frame, FrameCodec.FLAG_ACCEPTS_COMPRESSION);
+                    request = (Request) FrameCodec.decode(frame, false);
+                } catch (Exception ex) {
+                    TrekwarServer.LOG.log(Level.SEVERE, "Bad request object from {0}:\n{1}", new Object[]{socket.getRemoteSocketAddress().toString(), ex.getMessage()});
+                    break;
+                }
+                if (!session.handleRequest(request)) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            TrekwarServer.getLog().log(Level.WARNING, "IO Error while talking to client " + getRemoteAddress() + ": " + e.getMessage(), e);
+        } finally {
+            close();
+            session.sessionEnded();
+        }
+    }
+
+    @Override
+    public void send(Message message) throws IOException {
+        sendLock.lock();
+        try {
+            FrameCodec.write(out, message, codec, 0, acceptsCompression ? TrekwarServer.getCompressionThreshold() : 0);
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    @Override
+    public InetAddress getRemoteAddress() {
+        return socket.getInetAddress();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            TrekwarServer.getLog().log(Level.SEVERE, "Error while cleaning up after cliensession from '" + getRemoteAddress() + "'", e);
+        }
+    }
+}
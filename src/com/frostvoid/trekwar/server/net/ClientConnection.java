@@ -0,0 +1,52 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.net;
+
+import com.frostvoid.trekwar.common.net.messaging.Message;
+
+import java.io.IOException;
+import java.net.InetAddress;
+
+/**
+ * The network connection a ClientSession uses to talk to its client,
+ * implemented by both the blocking (thread per client) and the NIO network layer
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public interface ClientConnection {
+
+    /**
+     * Sends a message to the client
+     *
+     * @param message the message to send
+     * @throws IOException if the message could not be sent
+     */
+    public void send(Message message) throws IOException;
+
+    /**
+     * Gets the address of the client
+     *
+     * @return the client address
+     */
+    public InetAddress getRemoteAddress();
+
+    /**
+     * Closes the connection once all messages sent have been written
+     */
+    public void close();
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.net;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.net.FrameCodec;
+import com.frostvoid.trekwar.common.net.MessageCodec;
+import com.frostvoid.trekwar.common.net.messaging.Message;
+import com.frostvoid.trekwar.common.net.messaging.Request;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+/**
+ * A client connection handled by the NioServer.
+ * <p>
+ * read() and write() are only called by the selector thread. Received frames
+ * are queued, and handled by at most one worker thread at a time.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+class NioClientConnection implements ClientConnection {
+
+    private NioServer server;
+    private SocketChannel channel;
+    private SelectionKey key;
+    private InetAddress remoteAddress;
+    private ClientSession session;
+    private volatile MessageCodec codec = MessageCodec.SERIALIZATION; // codec of the last request, used for responses
+    private volatile boolean acceptsCompression = false; // set if the client can read compressed responses
+
+    // read state, only used by the selector thread
+    private ByteBuffer header = ByteBuffer.allocate(FrameCodec.HEADER_SIZE);
+    private ByteBuffer payload;
+
+    private final ConcurrentLinkedQueue<byte[]> receivedFrames = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicBoolean processing = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final AtomicBoolean sessionEnded = new AtomicBoolean(false);
+    private final LinkedList<ByteBuffer> writeQueue = new LinkedList<ByteBuffer>();
+    private boolean closeWhenWritten = false;
+    private volatile boolean closing = false; // no more requests are handled when closing
+
+    private Runnable frameHandler = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                byte[] frame;
+                while (!closing && (frame = receivedFrames.poll()) != null) {
+                    handleFrame(frame);
+                }
+                if (closed.get() && sessionEnded.compareAndSet(false, true)) {
+                    session.sessionEnded();
+                }
+            } finally {
+                processing.set(false);
+            }
+            // frames may have arrived after the queue was emptied, but before processing was reset
+            if ((!closing && !receivedFrames.isEmpty()) || (closed.get() && !sessionEnded.get())) {
+                scheduleFrameHandler();
+            }
+        }
+    };
+
+    NioClientConnection(NioServer server, SocketChannel channel, SelectionKey key, Galaxy galaxy) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+        this.remoteAddress = channel.socket().getInetAddress();
+        this.session = new ClientSession(this, galaxy);
+    }
+
+    /**
+     * Starts the session (sends the welcome message)
+     */
+    void start() {
+        try {
+            session.sessionStarted();
+        } catch (IOException ioe) {
+            TrekwarServer.getLog().log(Level.WARNING, "IO error while starting session for client with ip " + remoteAddress, ioe);
+            closeNow();
+        }
+    }
+
+    /**
+     * Reads all available data from the channel, queuing complete frames
+     */
+    void read() {
+        try {
+            while (true) {
+                if (payload == null) {
+                    if (channel.read(header) < 0) {
+                        closeNow();
+                        return;
+                    }
+                    if (header.hasRemaining()) {
+                        return;
+                    }
+                    header.flip();
+                    int length = header.getInt();
+                    header.clear();
+                    FrameCodec.checkLength(length, FrameCodec.MAX_REQUEST_SIZE);
+                    payload = ByteBuffer.allocate(length);
+                }
+                if (payload.hasRemaining() && channel.read(payload) < 0) {
+                    closeNow();
+                    return;
+                }
+                if (payload.hasRemaining()) {
+                    return;
+                }
+                receivedFrames.add(payload.array());
+                payload = null;
+                scheduleFrameHandler();
+            }
+        } catch (IOException ioe) {
+            TrekwarServer.getLog().log(Level.WARNING, "IO Error while talking to client " + remoteAddress + ": " + ioe.getMessage(), ioe);
+            closeNow();
+        }
+    }
+
+    /**
+     * Writes as much queued data as the channel accepts
+     */
+    void write() {
+        synchronized (writeQueue) {
+            try {
+                while (!writeQueue.isEmpty()) {
+                    ByteBuffer buffer = writeQueue.getFirst();
+                    channel.write(buffer);
+                    if (buffer.hasRemaining()) {
+                        return;
+                    }
+                    writeQueue.removeFirst();
+                }
+                if (key.isValid()) {
+                    key.interestOps(SelectionKey.OP_READ);
+                }
+                if (closeWhenWritten) {
+                    closeNow();
+                }
+            } catch (IOException ioe) {
+                TrekwarServer.getLog().log(Level.WARNING, "IO Error while talking to client " + remoteAddress + ": " + ioe.getMessage(), ioe);
+                closeNow();
+            }
+        }
+    }
+
+    /**
+     * Makes the selector tell us when the channel can be written to
+     */
+    void enableWriteInterest() {
+        if (key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    @Override
+    public void send(Message message) throws IOException {
+        if (closed.get()) {
+            throw new IOException("Connection to " + remoteAddress + " is closed");
+        }
+        ByteBuffer frame = ByteBuffer.wrap(FrameCodec.encode(message, codec, 0, acceptsCompression ? TrekwarServer.getCompressionThreshold() : 0));
+        synchronized (writeQueue) {
+            writeQueue.add(frame);
+        }
+        server.requestWrite(this);
+    }
+
+    @Override
+    public InetAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public void close() {
+        closing = true;
+        synchronized (writeQueue) {
+            if (writeQueue.isEmpty()) {
+                closeNow();
+            } else {
+                closeWhenWritten = true;
+            }
+        }
+    }
+
+    private void closeNow() {
+        if (closed.compareAndSet(false, true)) {
+            closing = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                TrekwarServer.getLog().log(Level.SEVERE, "Error while cleaning up after cliensession from '" + remoteAddress + "'", e);
+            }
+            scheduleFrameHandler();
+        }
+    }
+
+    private void scheduleFrameHandler() {
+        if (processing.compareAndSet(false, true)) {
+            server.execute(frameHandler);
+        }
+    }
+
+    private void handleFrame(byte[] frame) {
+        Request request;
+        try {
+            codec = FrameCodec.getCodec(frame);
+            acceptsCompression = FrameCodec.hasFlag(frame, FrameCodec.FLAG_ACCEPTS_COMPRESSION);
+            request = (Request) FrameCodec.decode(frame, false);
+        } catch (Exception ex) {
+            TrekwarServer.LOG.log(Level.SEVERE, "Bad request object from {0}:\n{1}", new Object[]{remoteAddress, ex.getMessage()});
+            closeNow();
+            return;
+        }
+        try {
+            if (!session.handleRequest(request)) {
+                close();
+            }
+        } catch (IOException ioe) {
+            TrekwarServer.getLog().log(Level.WARNING, "IO Error while talking to client " + remoteAddress + ": " + ioe.getMessage(), ioe);
+            closeNow();
+        }
+    }
+}
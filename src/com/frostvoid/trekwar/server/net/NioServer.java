@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.net;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+
+/**
+ * Non blocking network server.
+ * <p>
+ * One selector thread accepts connections and does all reading and writing,
+ * complete frames are handed to a fixed size pool of worker threads that
+ * decodes and handles the requests. Requests from the same client are always
+ * handled one at a time, in the order they were received.
+ * Idle clients does not use any threads.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class NioServer implements Runnable {
+
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private Galaxy galaxy;
+    private ConcurrentLinkedQueue<NioClientConnection> pendingWrites;
+
+    /**
+     * Creates a new server and binds it to a port
+     *
+     * @param port          the port to listen on
+     * @param galaxy        the galaxy object being used
+     * @param workerThreads number of threads handling requests
+     * @throws IOException if unable to bind to the port
+     */
+    public NioServer(int port, Galaxy galaxy, int workerThreads) throws IOException {
+        this.galaxy = galaxy;
+        this.workers = Executors.newFixedThreadPool(workerThreads);
+        this.pendingWrites = new ConcurrentLinkedQueue<NioClientConnection>();
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Runs the selector loop, does not return
+     */
+    @Override
+    public void run() {
+        while (true) {
+            try {
+                selector.select();
+
+                NioClientConnection pending;
+                while ((pending = pendingWrites.poll()) != null) {
+                    pending.enableWriteInterest();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        NioClientConnection connection = (NioClientConnection) key.attachment();
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.write();
+                        }
+                    }
+                }
+            } catch (IOException ex) {
+                TrekwarServer.getLog().log(Level.SEVERE, "IO Exception in network selector loop", ex);
+            }
+        }
+    }
+
+    private void accept() {
+        try {
+            SocketChannel channel = serverChannel.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            NioClientConnection connection = new NioClientConnection(this, channel, key, galaxy);
+            key.attach(connection);
+            connection.start();
+        } catch (IOException ex) {
+            TrekwarServer.getLog().log(Level.SEVERE, "IO Exception while trying to handle incoming client connection", ex);
+        }
+    }
+
+    /**
+     * Runs a task on the worker pool
+     *
+     * @param task the task
+     */
+    void execute(Runnable task) {
+        workers.execute(task);
+    }
+
+    /**
+     * Asks the selector thread to start writing queued data for a connection
+     *
+     * @param connection the connection
+     */
+    void requestWrite(NioClientConnection connection) {
+        pendingWrites.add(connection);
+        selector.wakeup();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.net.messaging.Request;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.BatchRequest;
+import com.frostvoid.trekwar.common.net.messaging.requests.LoginRequest;
+import com.frostvoid.trekwar.common.net.messaging.requests.LogoutRequest;
+import com.frostvoid.trekwar.common.net.messaging.requests.SubscribeRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.BatchResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles batch requests, all requests in the batch are handled in order
+ * and their responses are returned in a single response
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class BatchHandler extends RequestHandler<BatchRequest> {
+
+    public BatchHandler() {
+        super(BatchRequest.class, true); // every request in the batch is checked on its own
+    }
+
+    @Override
+    protected Response handle(ClientSession session, BatchRequest request) {
+        BatchResponse response = new BatchResponse();
+        for (Request r : request.getRequests()) {
+            if (r instanceof BatchRequest || r instanceof LoginRequest
+                    || r instanceof LogoutRequest || r instanceof SubscribeRequest) {
+                Response error = new Response();
+                error.setErrorMessage("Request not allowed in batch: " + r.getClass().getSimpleName());
+                response.addResponse(error);
+            } else {
+                response.addResponse(session.dispatch(r));
+            }
+        }
+        TrekwarServer.getLog().log(Level.FINE, "User {0} sent a batch of {1} requests", new Object[]{session.getLoggedInUser().getUsername(), request.getRequests().size()});
+        return response;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.BuildQueueRequestType;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.BuildQueueRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.BuildQueueResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.Collections;
+import java.util.logging.Level;
+
+/**
+ * Handles requests to move or delete items in a build queue
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class BuildQueueHandler extends RequestHandler<BuildQueueRequest> {
+
+    public BuildQueueHandler() {
+        super(BuildQueueRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, BuildQueueRequest buildQueueRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        StarSystem system = galaxy.getSystem(buildQueueRequest.getX(), buildQueueRequest.getY());
+
+        if (system != null && system.getUser().equals(currentUser)) {
+            TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to modify the build queue of system {1}, by applying {2} to item at index {3} ", new Object[]{currentUser.getUsername(), system.getName(), buildQueueRequest.getAction().toString(), buildQueueRequest.getIndex()});
+            if (system.getBuildQueue().size() > 0 && system.getBuildQueue().get(buildQueueRequest.getIndex() - 1) != null) {
+                // remove from build queue
+                if (buildQueueRequest.getAction().equals(BuildQueueRequestType.REMOVE)) {
+                    system.getBuildQueue().remove(buildQueueRequest.getIndex() - 1);
+                    return new BuildQueueResponse(true);
+                }
+                // Move up or down
+                else {
+                    if (system.getBuildQueue().size() >= 2 && buildQueueRequest.getIndex() > 0
+                            && buildQueueRequest.getIndex() <= system.getBuildQueue().size()) {
+                        if (buildQueueRequest.getAction().equals(BuildQueueRequestType.MOVEUP) && buildQueueRequest.getIndex() > 1) {
+                            Collections.swap(system.getBuildQueue(), buildQueueRequest.getIndex() - 1, buildQueueRequest.getIndex() - 2);
+                            return new BuildQueueResponse(true);
+                        } else if (buildQueueRequest.getAction().equals(BuildQueueRequestType.MOVEDOWN) && buildQueueRequest.getIndex() < system.getBuildQueue().size()) {
+                            Collections.swap(system.getBuildQueue(), buildQueueRequest.getIndex() - 1, buildQueueRequest.getIndex());
+                            return new BuildQueueResponse(true);
+                        } else {
+                            return new BuildQueueResponse("ERROR: invalid direction or index");
+                        }
+                    } else {
+                        return new BuildQueueResponse("ERROR: invalid build queue index or destination");
+                    }
+                }
+            } else {
+                return new BuildQueueResponse("ERROR: invalid build queue index");
+            }
+        } else {
+            return new BuildQueueResponse("ERROR: invalid starsystem (null or not owned by you)");
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.ShipTemplate;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.BuildShipRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.BuildShipResponse;
+import com.frostvoid.trekwar.common.orders.BuildShipOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles build ship requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class BuildShipHandler extends RequestHandler<BuildShipRequest> {
+
+    public BuildShipHandler() {
+        super(BuildShipRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, BuildShipRequest buildShipRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        StarSystem system = galaxy.getSystem(buildShipRequest.getX(), buildShipRequest.getY());
+        ShipTemplate template = currentUser.getShipTemplate(buildShipRequest.getTemplate());
+
+        if (template != null && system != null && system.getUser().equals(currentUser) && system.hasShipyard()) {
+            TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to build a {1} class ship in the {2} system ", new Object[]{currentUser.getUsername(), template.getName(), system.getName()});
+            BuildShipOrder bso = new BuildShipOrder(currentUser, system, template);
+            try {
+                system.addBuildOrder(bso);
+                return new BuildShipResponse(true);
+            } catch (InvalidOrderException ex) {
+                TrekwarServer.getLog().log(Level.WARNING, "User '" + currentUser.getUsername() + "' unable to add ship build order in system: '" + system.getName() + "'", ex);
+                return new BuildShipResponse("Unable to add order to build queue: " + ex.getMessage());
+            }
+        } else {
+            return new BuildShipResponse("Unable to get template or system, or system has wrong user or no shipyard");
+        }
+    }
+}
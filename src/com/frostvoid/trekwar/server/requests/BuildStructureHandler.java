@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Planet;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.StaticData;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.BuildStructureRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.BuildStructureResponse;
+import com.frostvoid.trekwar.common.orders.BuildStructureOrder;
+import com.frostvoid.trekwar.common.structures.Structure;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles build structure requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class BuildStructureHandler extends RequestHandler<BuildStructureRequest> {
+
+    public BuildStructureHandler() {
+        super(BuildStructureRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, BuildStructureRequest buildStructureRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        StarSystem system = galaxy.getSystem(buildStructureRequest.getX(), buildStructureRequest.getY());
+        Planet planet = system.getPlanetByNumber(buildStructureRequest.getPlanetNumber());
+
+        if (system != null && planet != null && system.getUser().equals(currentUser)) {
+            Structure structure = StaticData.getStructureByName(buildStructureRequest.getStructure());
+            if (structure != null) {
+                TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to build a {1} structure in the {2} system on planet {3}", new Object[]{currentUser.getUsername(), structure.getName(), system.getName(), buildStructureRequest.getPlanetNumber()});
+                BuildStructureOrder buildOrder = new BuildStructureOrder(system, planet, buildStructureRequest.getSlot(), structure);
+                try {
+                    system.addBuildOrder(buildOrder);
+                    return new BuildStructureResponse(true);
+                } catch (InvalidOrderException ex) {
+                    return new BuildStructureResponse("Unable to add build order: " + ex.getMessage());
+                }
+            } else {
+                return new BuildStructureResponse("Invalid building (null)");
+            }
+        } else {
+            return new BuildStructureResponse("Invalid system or planet");
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.CancelOrdersRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.CancelOrdersResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles cancel orders requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class CancelOrdersHandler extends RequestHandler<CancelOrdersRequest> {
+
+    public CancelOrdersHandler() {
+        super(CancelOrdersRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, CancelOrdersRequest cancelOrderRequest) {
+        User currentUser = session.getLoggedInUser();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to cancel orders for fleet named {1}", new Object[]{currentUser.getUsername(), cancelOrderRequest.getFleetName()});
+
+        Fleet f = currentUser.getFleetByName(cancelOrderRequest.getFleetName());
+        if (f != null) {
+            f.setOrder(null);
+            TrekwarServer.getLog().finer("Fleet found, current order removed");
+            CancelOrdersResponse response = new CancelOrdersResponse(true);
+            return response;
+        } else {
+            CancelOrdersResponse response = new CancelOrdersResponse(false);
+            TrekwarServer.getLog().finer("Fleet not found");
+            response.setErrorMessage("fleet with name " + cancelOrderRequest.getFleetName() + " not found for current user");
+            return response;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.CargoClassification;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.CargoTransferRequestType;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.CargoTransferRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.CargoTransferResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles requests to transfer cargo between a ship and a system
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class CargoTransferHandler extends RequestHandler<CargoTransferRequest> {
+
+    public CargoTransferHandler() {
+        super(CargoTransferRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, CargoTransferRequest cargoTransferRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to transfer {1} {2} to/from ship with id {3} ", new Object[]{currentUser.getUsername(), cargoTransferRequest.getAmount(), cargoTransferRequest.getCargoClassification(), cargoTransferRequest.getShipID()});
+
+        try {
+            StarSystem system = galaxy.getMap()[cargoTransferRequest.getX()][cargoTransferRequest.getY()];
+            Ship ship = system.getShipById(currentUser, cargoTransferRequest.getShipID());
+            if (cargoTransferRequest.getAmount() < 1) {
+                throw new NumberFormatException("amount less than 1");
+            }
+
+            if (cargoTransferRequest.getType().equals(CargoTransferRequestType.SHIPTOSYSTEM)) {
+                if (system != null && system.getUser().equals(currentUser) && ship != null && ship.getUser().equals(currentUser)) {
+                    if (cargoTransferRequest.getCargoClassification().equals(CargoClassification.deuterium) && system.hasDeuteriumPlant()) {
+                        if (cargoTransferRequest.getAmount() <= ship.getCargoDeuterium()) {
+                            ship.setCargoDeuterium(ship.getCargoDeuterium() - cargoTransferRequest.getAmount());
+                            system.addDeuterium(cargoTransferRequest.getAmount());
+                            TrekwarServer.getLog().log(Level.FINER, "user {0} added {1} deuterium to system: {2}", new Object[]{system.getUser(), cargoTransferRequest.getAmount(), system.getName()});
+                        } else {
+                            throw new InvalidOrderException("Could not add more deuterium than ship has");
+                        }
+                    } else if (cargoTransferRequest.getCargoClassification().equals(CargoClassification.ore) && system.hasOreRefinery()) {
+                        if (cargoTransferRequest.getAmount() <= ship.getCargoOre()) {
+                            ship.setCargoOre(ship.getCargoOre() - cargoTransferRequest.getAmount());
+                            system.addOre(cargoTransferRequest.getAmount());
+                            TrekwarServer.getLog().log(Level.FINER, "user {0} added {1} ore to system: {2}", new Object[]{system.getUser(), cargoTransferRequest.getAmount(), system.getName()});
+                        } else {
+                            throw new InvalidOrderException("Could not add more ore than ship has");
+                        }
+                    } else {
+                        throw new InvalidOrderException("System " + system + " could not handle cargo of type: " + cargoTransferRequest.getCargoClassification().toString());
+                    }
+                    return new CargoTransferResponse(true);
+                } else {
+                    throw new InvalidOrderException("System not found, not owned by you or ship not found or not owned by you");
+                }
+            } else if (cargoTransferRequest.getType().equals(CargoTransferRequestType.SYSTEMTOSHIP)) {
+                if (!ship.canLoadUnloadCargo() && ship.getAvailableCargoSpace() <= 0) {
+                    throw new InvalidOrderException("Ship has no cargo space available");
+                }
+
+                if (system != null && system.getUser().equals(currentUser) && ship != null && ship.getUser().equals(currentUser)) {
+                    if (cargoTransferRequest.getCargoClassification().equals(CargoClassification.deuterium) && system.hasDeuteriumPlant()) {
+                        if (cargoTransferRequest.getAmount() <= ship.getAvailableCargoSpace()) {
+                            ship.setCargoDeuterium(ship.getCargoDeuterium() + cargoTransferRequest.getAmount());
+                            system.removeDeuterium(cargoTransferRequest.getAmount());
+                            TrekwarServer.getLog().log(Level.FINER, "user {0} removed {1} deuterium from system: {2}", new Object[]{system.getUser(), cargoTransferRequest.getAmount(), system.getName()});
+                        } else {
+                            throw new InvalidOrderException("Could not add more deuterium than can fit in cargo hold");
+                        }
+                    } else if (cargoTransferRequest.getCargoClassification().equals(CargoClassification.ore) && system.hasOreRefinery()) {
+                        if (cargoTransferRequest.getAmount() <= ship.getAvailableCargoSpace()) {
+                            ship.setCargoOre(ship.getCargoOre() + cargoTransferRequest.getAmount());
+                            system.removeOre(cargoTransferRequest.getAmount());
+                            TrekwarServer.getLog().log(Level.FINER, "user {0} removed {1} ore from system: {2}", new Object[]{system.getUser(), cargoTransferRequest.getAmount(), system.getName()});
+                        } else {
+                            throw new InvalidOrderException("Could not add more ore than can fit in cargo hold");
+                        }
+                    } else {
+                        throw new InvalidOrderException("System " + system + " could not handle cargo of type: " + cargoTransferRequest.getCargoClassification().toString());
+                    }
+                    return new CargoTransferResponse(true);
+                } else {
+                    throw new InvalidOrderException("System not found, not owned by you or ship not found or not owned by you");
+                }
+            } else {
+                throw new InvalidOrderException("Invalid Transfer type");
+            }
+        } catch (Exception ex) {
+            TrekwarServer.getLog().warning("Unable to move cargo: " + ex.getMessage());
+            return new CargoTransferResponse("Error: " + ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.StaticData;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.ColonizeRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.ColonizeResponse;
+import com.frostvoid.trekwar.common.orders.ColonizeOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+
+/**
+ * Handles colonize system requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class ColonizeHandler extends RequestHandler<ColonizeRequest> {
+
+    private static final int SYSTEM_LOCK_STRIPES = 64; // must be a power of 2
+    private static final ReentrantLock[] systemLocks = new ReentrantLock[SYSTEM_LOCK_STRIPES];
+
+    static {
+        for (int i = 0; i < SYSTEM_LOCK_STRIPES; i++) {
+            systemLocks[i] = new ReentrantLock();
+        }
+    }
+
+    public ColonizeHandler() {
+        super(ColonizeRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, ColonizeRequest colonizeRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to colonize with fleet named {1} ", new Object[]{currentUser.getUsername(), colonizeRequest.getFleetName()});
+        Fleet f = currentUser.getFleetByName(colonizeRequest.getFleetName());
+
+        if (f != null) {
+            StarSystem system = galaxy.getMap()[f.getX()][f.getY()];
+            Ship colonyship = null;
+            for (Ship s : f.getShips()) {
+                if (s.canColonize()) {
+                    colonyship = s;
+                    TrekwarServer.getLog().finer("found a colonyship with id " + s.getShipId());
+                    break;
+                }
+            }
+            try {
+                if (colonyship != null && colonyship.canColonize()) {
+                    // decide while holding the lock, but return the response after releasing it
+                    Response colonizeResponse;
+                    Lock systemLock = getSystemLock(system);
+                    systemLock.lock();
+                    try {
+                        int numberOfColonizeOrdersInSystem = StaticData.countNumberOfColonizeOrdersInSystem(system);
+                        TrekwarServer.getLog().finer("Number of colonize orders in this system: " + numberOfColonizeOrdersInSystem);
+                        if (numberOfColonizeOrdersInSystem == 0) {
+                            if (system.getMaxStructures() >= StaticData.MAX_STRUCTURES_NEEDED_TO_COLONIZE) {
+                                ColonizeOrder co = new ColonizeOrder(currentUser, galaxy.getMap()[f.getX()][f.getY()], f, colonyship);
+                                TrekwarServer.getLog().finer("Fleet ordered to colonize system");
+                                f.setOrder(co);
+                                colonizeResponse = new ColonizeResponse(true);
+                            } else {
+                                TrekwarServer.getLog().finer("System too small to colonize");
+                                colonizeResponse = new ColonizeResponse("System too small, must have room for at least 10 structures");
+                            }
+                        } else {
+                            TrekwarServer.getLog().finer("System is already being colonized by another fleet");
+                            colonizeResponse = new ColonizeResponse("Someone already started colonizing that system");
+                        }
+                    } finally {
+                        systemLock.unlock();
+                    }
+                    return colonizeResponse;
+                } else {
+                    throw new InvalidOrderException("Ship did not have ability to colonize");
+                }
+            } catch (InvalidOrderException ex) {
+                TrekwarServer.getLog().finer("Fleet unable to colonize system: " + ex.getMessage());
+                return new ColonizeResponse("Fleet unable to colonize: " + ex.getMessage());
+            }
+        } else {
+            return new ColonizeResponse("Invalid fleet name");
+        }
+    }
+
+    /**
+     * Gets the lock used when requests from different clients must not change a system at the same time.
+     * Locks are shared by several systems (striped), so only one lock must be held at a time
+     *
+     * @param system the system
+     * @return the lock for the system
+     */
+    private static Lock getSystemLock(StarSystem system) {
+        return systemLocks[(system.getX() * 31 + system.getY()) & (SYSTEM_LOCK_STRIPES - 1)];
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.ShipTemplate;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.DeleteTemplateRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.DeleteTemplateResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles delete template requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class DeleteTemplateHandler extends RequestHandler<DeleteTemplateRequest> {
+
+    public DeleteTemplateHandler() {
+        super(DeleteTemplateRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, DeleteTemplateRequest request) {
+        User currentUser = session.getLoggedInUser();
+
+        String name = request.getTemplateName();
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to delete template {1}", new Object[]{currentUser.getUsername(), name});
+
+        ShipTemplate s = currentUser.getShipTemplate(name);
+        if (s != null) {
+            currentUser.removeShipTemplate(s);
+            TrekwarServer.getLog().finer("Template found and deleted");
+            return new DeleteTemplateResponse(true);
+        } else {
+            TrekwarServer.getLog().finer("Template not found");
+            return new DeleteTemplateResponse("ERROR: template " + name + " not found");
+        }
+    }
+}
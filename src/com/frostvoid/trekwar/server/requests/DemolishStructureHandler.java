@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Planet;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.DemolishStructureRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.DemolishStructureResponse;
+import com.frostvoid.trekwar.common.structures.Structure;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles demolish structure requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class DemolishStructureHandler extends RequestHandler<DemolishStructureRequest> {
+
+    public DemolishStructureHandler() {
+        super(DemolishStructureRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, DemolishStructureRequest demolishStructureRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        StarSystem system = galaxy.getSystem(demolishStructureRequest.getX(), demolishStructureRequest.getY());
+        Planet planet = system.getPlanetByNumber(demolishStructureRequest.getPlanetNumber());
+        Structure structure = planet.getStructuresMap().get(demolishStructureRequest.getSlot());
+
+        if (system != null && planet != null && structure != null && system.getUser().equals(currentUser)) {
+            TrekwarServer.getLog().log(Level.FINE, "User {0} is deleting a {1} structure in the {2} system on planet {3}", new Object[]{currentUser.getUsername(), structure.getName(), system.getName(), demolishStructureRequest.getPlanetNumber()});
+            planet.delStructure(demolishStructureRequest.getSlot());
+            return new DemolishStructureResponse(true);
+        } else {
+            return new DemolishStructureResponse("Invalid system, planet, structure or invalid user");
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.common.StaticData;
+import com.frostvoid.trekwar.common.TurnReportItem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.DestroyDecommissionShipRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.DestroyDecommissionShipResponse;
+import com.frostvoid.trekwar.common.orders.BuildShipOrder;
+import com.frostvoid.trekwar.common.orders.BuildStructureOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles requests to decommission or self destruct a ship
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class DestroyDecommissionShipHandler extends RequestHandler<DestroyDecommissionShipRequest> {
+
+    public DestroyDecommissionShipHandler() {
+        super(DestroyDecommissionShipRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, DestroyDecommissionShipRequest ddsRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        Fleet sourceFleet = currentUser.getFleetByName(ddsRequest.getSourceFleet());
+        Ship ship = sourceFleet.getShipById(ddsRequest.getShipID());
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is deleting ship with id {1} in fleet {2}", new Object[]{currentUser.getUsername(), ddsRequest.getShipID(), ddsRequest.getSourceFleet()});
+        if (ship == null) {
+            return new DestroyDecommissionShipResponse("ship not found (null)");
+        } else {
+            TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), sourceFleet.getX(), sourceFleet.getY(), TurnReportItem.TurnReportSeverity.MEDIUM);
+            tr.setSummaryKey("turn_report_ship_self_destruct_1");
+            tr.setDetailedKey("turn_report_ship_self_destruct_2", ship.getName(), sourceFleet.getName());
+
+            if (galaxy.getSystem(sourceFleet).getUser().equals(sourceFleet.getUser())) {
+                tr.setSummaryKey("turn_report_ship_decommissioned_1");
+                tr.setDetailedKey("turn_report_ship_decommissioned_2", ship.getName(), sourceFleet.getName(), galaxy.getSystem(sourceFleet).getName());
+                if (!galaxy.getSystem(sourceFleet).getBuildQueue().isEmpty()) {
+                    int industryBonus = 0;
+                    if (galaxy.getSystem(sourceFleet).getBuildQueue().get(0) instanceof BuildShipOrder) {
+                        BuildShipOrder bso = (BuildShipOrder) galaxy.getSystem(sourceFleet).getBuildQueue().get(0);
+                        industryBonus = ship.getCost() / StaticData.SHIP_DECOMMISSION_FACTOR_INDUSTRY_TO_SHIP;
+                        bso.setIndustryInvested(bso.getIndustryInvested() + industryBonus);
+                        tr.setDetailedKey("turn_report_ship_decommissioned_3", ship.getName(), sourceFleet.getName(), galaxy.getSystem(sourceFleet).getName(), industryBonus, bso.getTemplate().getName());
+                    }
+                    if (galaxy.getSystem(sourceFleet).getBuildQueue().get(0) instanceof BuildStructureOrder) {
+                        BuildStructureOrder bso = (BuildStructureOrder) galaxy.getSystem(sourceFleet).getBuildQueue().get(0);
+                        industryBonus = ship.getCost() / StaticData.SHIP_DECOMMISSION_FACTOR_INDUSTRY_TO_STRUCTURE;
+                        bso.setIndustryInvested(bso.getIndustryInvested() + industryBonus);
+                        tr.setDetailedKey("turn_report_ship_decommissioned_4", ship.getName(), sourceFleet.getName(), galaxy.getSystem(sourceFleet).getName(), industryBonus, bso.getStructure().getName());
+                    }
+                }
+            }
+            ship.destroy();
+            TrekwarServer.getLog().finer("ship destroyed");
+            currentUser.addTurnReport(tr);
+            return new DestroyDecommissionShipResponse(true);
+        }
+    }
+}
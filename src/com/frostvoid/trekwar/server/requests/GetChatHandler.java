@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.ChatLine;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.GetChatRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.GetChatResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+
+import java.util.ArrayList;
+
+/**
+ * Handles get chat requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GetChatHandler extends RequestHandler<GetChatRequest> {
+
+    public GetChatHandler() {
+        super(GetChatRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, GetChatRequest request) {
+        User currentUser = session.getLoggedInUser();
+
+        ArrayList<ChatLine> chatLines = currentUser.takeChat();
+        if (!chatLines.isEmpty()) {
+            GetChatResponse response = new GetChatResponse(true);
+            response.setChatLines(chatLines);
+            return response;
+        } else {
+            return new GetChatResponse(false);
+        }
+    }
+}
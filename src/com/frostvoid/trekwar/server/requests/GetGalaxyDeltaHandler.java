@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.GetGalaxyDeltaRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.GetGalaxyDeltaResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.GalaxySnapshotCache;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+/**
+ * Handles get galaxy delta requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GetGalaxyDeltaHandler extends RequestHandler<GetGalaxyDeltaRequest> {
+
+    public GetGalaxyDeltaHandler() {
+        super(GetGalaxyDeltaRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, GetGalaxyDeltaRequest deltaRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        if (!TrekwarServer.getGalaxy().getExecutingTurn()) {
+            // signatures are made before serializing, so changes made while serializing are sent next time
+            GalaxySnapshotCache.Snapshot snapshot = GalaxySnapshotCache.getSnapshot(galaxy, currentUser);
+            long[] signatures = snapshot.getTileSignatures();
+            long currentTurn = snapshot.getTurn();
+            // the delta is made against the galaxy the client says it has applied, not the last one sent,
+            // as the last one may have been lost or failed to apply
+            long[] oldSignatures = session.getTileSignaturesOfAppliedGalaxy(deltaRequest.getBaseTransferId());
+            boolean fullGalaxy = oldSignatures == null;
+            byte[] data;
+            if (fullGalaxy) {
+                data = snapshot.getData();
+            } else {
+                data = snapshot.getDelta(session.getTurnOfAppliedGalaxy(), oldSignatures);
+            }
+            long transferId = -1;
+            if (data != null) {
+                transferId = session.addGalaxyTransfer(currentTurn, signatures);
+            }
+            return new GetGalaxyDeltaResponse(fullGalaxy, transferId, data);
+        } else {
+            return new GetGalaxyDeltaResponse(true, -1, null);
+        }
+    }
+}
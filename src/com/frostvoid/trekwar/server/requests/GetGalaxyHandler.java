@@ -0,0 +1,56 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.GetGalaxyRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.GetGalaxyResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.GalaxySnapshotCache;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+/**
+ * Handles get galaxy requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class GetGalaxyHandler extends RequestHandler<GetGalaxyRequest> {
+
+    public GetGalaxyHandler() {
+        super(GetGalaxyRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, GetGalaxyRequest request) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        // TODO: IF next turn is LESS than 2 seconds away, don't send galaxy.
+        // TODO: check that this clientsessions last galaxy object sent turn number is lower than current galaxy turn number.
+        // TODO: limit number of galaxy transfers a single client can get in a given timeframe
+        if (!TrekwarServer.getGalaxy().getExecutingTurn()) {
+            GalaxySnapshotCache.Snapshot snapshot = GalaxySnapshotCache.getSnapshot(galaxy, currentUser);
+            session.setTurnOfLastTransferedGalaxy(snapshot.getTurn());
+            return new GetGalaxyResponse(snapshot.getData());
+        } else {
+            return new GetGalaxyResponse(null);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.HarvestRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.HarvestResponse;
+import com.frostvoid.trekwar.common.orders.HarvestDeuteriumOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles requests to harvest deuterium from a nebula
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class HarvestHandler extends RequestHandler<HarvestRequest> {
+
+    public HarvestHandler() {
+        super(HarvestRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, HarvestRequest harvestRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to harvest deuterium with fleet named {1} ", new Object[]{currentUser.getUsername(), harvestRequest.getFleetName()});
+
+        Fleet f = currentUser.getFleetByName(harvestRequest.getFleetName());
+        try {
+            if (f.canHarvestDeuterium()) {
+                TrekwarServer.getLog().finer("Fleet can mine, will mine at " + f.getX() + "," + f.getY() + " named " + galaxy.getSystem(f).getName());
+                HarvestDeuteriumOrder hdo = new HarvestDeuteriumOrder(currentUser, galaxy.getMap()[f.getX()][f.getY()], f);
+                f.setOrder(hdo);
+                return new HarvestResponse(true);
+            } else {
+                throw new InvalidOrderException("Fleet could not harvest deuterium from nebula");
+            }
+        } catch (InvalidOrderException ex) {
+            return new HarvestResponse("Unable to mine: " + ex.getMessage());
+        }
+    }
+}
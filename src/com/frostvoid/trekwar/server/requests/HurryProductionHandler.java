@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.HurryProductionRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.HurryProductionResponse;
+import com.frostvoid.trekwar.common.orders.BuildShipOrder;
+import com.frostvoid.trekwar.common.orders.BuildStructureOrder;
+import com.frostvoid.trekwar.common.orders.Order;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles hurry production requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class HurryProductionHandler extends RequestHandler<HurryProductionRequest> {
+
+    public HurryProductionHandler() {
+        super(HurryProductionRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, HurryProductionRequest hurryProductionRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to hurry production in the system at {1},{2} ", new Object[]{currentUser.getUsername(), hurryProductionRequest.getX(), hurryProductionRequest.getY()});
+
+        StarSystem system = galaxy.getSystem(hurryProductionRequest.getX(), hurryProductionRequest.getY());
+
+        if (system != null && system.getUser().equals(currentUser)) {
+            if (system.getBuildQueue().get(hurryProductionRequest.getIndex() - 1) != null) {
+                if (hurryProductionRequest.getAmount() <= system.getOre()) {
+                    Order o = system.getBuildQueue().get(hurryProductionRequest.getIndex() - 1);
+                    if (o instanceof BuildStructureOrder) {
+                        BuildStructureOrder bso = (BuildStructureOrder) o;
+                        bso.setIndustryInvested(bso.getIndustryInvested() + hurryProductionRequest.getAmount());
+                    }
+                    if (o instanceof BuildShipOrder) {
+                        BuildShipOrder bso = (BuildShipOrder) o;
+                        bso.setIndustryInvested(bso.getIndustryInvested() + hurryProductionRequest.getAmount());
+                    }
+                    system.setOre(system.getOre() - hurryProductionRequest.getAmount());
+                    TrekwarServer.getLog().log(Level.FINE, "User {0} hurried production by {1} in system {2}", new Object[]{currentUser.getUsername(), hurryProductionRequest.getAmount(), system.getName()});
+                    return new HurryProductionResponse(true);
+                } else {
+                    return new HurryProductionResponse("Insufficient ore in system");
+                }
+            } else {
+                return new HurryProductionResponse("Invalid index for build queue");
+            }
+        } else {
+            return new HurryProductionResponse("Invalid starsystem (null or not owned by you)");
+        }
+    }
+}
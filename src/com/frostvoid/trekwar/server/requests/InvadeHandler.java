@@ -0,0 +1,61 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.InvadeRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.InvadeResponse;
+import com.frostvoid.trekwar.common.orders.InvadeSystemOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles invade system requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class InvadeHandler extends RequestHandler<InvadeRequest> {
+
+    public InvadeHandler() {
+        super(InvadeRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, InvadeRequest invadeRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to invade a system with fleet named {1} ", new Object[]{currentUser.getUsername(), invadeRequest.getFleetName()});
+
+        Fleet f = currentUser.getFleetByName(invadeRequest.getFleetName());
+        if (f != null && f.getTroops() > 0) {
+            InvadeSystemOrder iso = new InvadeSystemOrder(f, galaxy.getSystem(f.getX(), f.getY()));
+            TrekwarServer.getLog().finer("Invading system at " + f.getX() + "," + f.getY() + " named " + galaxy.getSystem(f).getName());
+            f.setOrder(iso);
+            return new InvadeResponse(true);
+        } else {
+            TrekwarServer.getLog().finer("Unable to invade, fleet not found or has no troops");
+            return new InvadeResponse("Fleet not found, or had no troops");
+        }
+    }
+}
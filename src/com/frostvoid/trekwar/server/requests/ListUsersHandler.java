@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.ListUsersRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.ListUsersResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+
+/**
+ * Handles list users requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class ListUsersHandler extends RequestHandler<ListUsersRequest> {
+
+    public ListUsersHandler() {
+        super(ListUsersRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, ListUsersRequest request) {
+        Galaxy galaxy = session.getGalaxy();
+
+        ListUsersResponse response = new ListUsersResponse();
+        for (User u : galaxy.getLoggedInUsers()) {
+            response.addUsername(u.getUsername());
+        }
+        return response;
+    }
+}
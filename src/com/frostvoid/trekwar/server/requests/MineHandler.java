@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.MineRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.MineResponse;
+import com.frostvoid.trekwar.common.orders.MiningOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles requests to mine asteroids
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class MineHandler extends RequestHandler<MineRequest> {
+
+    public MineHandler() {
+        super(MineRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, MineRequest mineRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to mine asteroids with fleet named {1} ", new Object[]{currentUser.getUsername(), mineRequest.getFleetName()});
+
+        Fleet f = currentUser.getFleetByName(mineRequest.getFleetName());
+        try {
+            if (f.canMine()) {
+                TrekwarServer.getLog().finer("Fleet can mine, will mine at " + f.getX() + "," + f.getY() + " named " + galaxy.getSystem(f).getName());
+                MiningOrder mo = new MiningOrder(currentUser, galaxy.getMap()[f.getX()][f.getY()], f);
+                f.setOrder(mo);
+                return new MineResponse(true);
+            } else {
+                throw new InvalidOrderException("Fleet could not mine asteroids");
+            }
+        } catch (InvalidOrderException ex) {
+            return new MineResponse("Unable to mine: " + ex.getMessage());
+        }
+    }
+}
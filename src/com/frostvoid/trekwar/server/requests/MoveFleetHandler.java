@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.MoveFleetRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.MoveFleetResponse;
+import com.frostvoid.trekwar.common.orders.MoveOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles move fleet requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class MoveFleetHandler extends RequestHandler<MoveFleetRequest> {
+
+    public MoveFleetHandler() {
+        super(MoveFleetRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, MoveFleetRequest moveFleetRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to move fleet named {1} to: {2},{3}'", new Object[]{currentUser.getUsername(), moveFleetRequest.getFleetName(), moveFleetRequest.getX(), moveFleetRequest.getY()});
+        Fleet fleet = currentUser.getFleetByName(moveFleetRequest.getFleetName());
+
+        if (fleet != null && moveFleetRequest.getX() >= 0 && moveFleetRequest.getX() < galaxy.getMap().length &&
+                moveFleetRequest.getY() >= 0 && moveFleetRequest.getY() < galaxy.getMap()[moveFleetRequest.getX()].length) {
+            MoveOrder mo = new MoveOrder(fleet, moveFleetRequest.getX(), moveFleetRequest.getY());
+            fleet.setOrder(mo);
+            TrekwarServer.getLog().log(Level.FINER, "Fleet found at {0},{1}. Move order set", new Object[]{fleet.getX(), fleet.getY()});
+            return new MoveFleetResponse(true);
+
+        } else {
+            MoveFleetResponse response = new MoveFleetResponse(false);
+            response.setErrorMessage("invalid fleet or coordinates out of bounds");
+            TrekwarServer.getLog().finer("Fleet object not found, or target coordinates out of bounds");
+            return response;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.MoveShipToFleetRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.MoveShipToFleetResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles move ship to fleet requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class MoveShipToFleetHandler extends RequestHandler<MoveShipToFleetRequest> {
+
+    public MoveShipToFleetHandler() {
+        super(MoveShipToFleetRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, MoveShipToFleetRequest moveShipToFleetRequest) {
+        User currentUser = session.getLoggedInUser();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to move ship with id {1} from fleet {2} to fleet {3}", new Object[]{currentUser.getUsername(), moveShipToFleetRequest.getShipID(), moveShipToFleetRequest.getSourceFleet(), moveShipToFleetRequest.getDestinationFleet()});
+        Fleet sourceFleet = currentUser.getFleetByName(moveShipToFleetRequest.getSourceFleet());
+        Fleet destinationFleet = currentUser.getFleetByName(moveShipToFleetRequest.getDestinationFleet());
+
+        Ship ship = sourceFleet.getShipById(moveShipToFleetRequest.getShipID());
+
+        if (moveShipToFleetRequest.getSourceFleet().equals(moveShipToFleetRequest.getDestinationFleet())) {
+            return new MoveShipToFleetResponse("source and destination fleet are identical");
+        } else if (sourceFleet == null || destinationFleet == null) {
+            return new MoveShipToFleetResponse("Invalid source or destination fleet (null)");
+        } else if (ship == null) {
+            return new MoveShipToFleetResponse("ship not found (null)");
+        } else {
+            sourceFleet.removeShip(ship);
+            destinationFleet.addShip(ship);
+            TrekwarServer.getLog().finer("Ship moved between fleets");
+            return new MoveShipToFleetResponse(true);
+        }
+    }
+}
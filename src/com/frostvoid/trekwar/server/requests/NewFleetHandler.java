@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.NotUniqueException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.NewFleetRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.NewFleetResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles new fleet requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class NewFleetHandler extends RequestHandler<NewFleetRequest> {
+
+    public NewFleetHandler() {
+        super(NewFleetRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, NewFleetRequest newFleetRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to make new fleet named {1} at {2},{3}", new Object[]{currentUser.getUsername(), newFleetRequest.getName(), newFleetRequest.getX(), newFleetRequest.getY()});
+
+        if (newFleetRequest.getName().length() < 2 || newFleetRequest.getName().length() > 20) {
+            NewFleetResponse response = new NewFleetResponse(false);
+            response.setErrorMessage("fleet name must be between 2 and 20 characters long");
+            return response;
+        } else if (galaxy.getMap()[newFleetRequest.getX()][newFleetRequest.getY()] == null) {
+            NewFleetResponse response = new NewFleetResponse(false);
+            response.setErrorMessage("fleet location [" + newFleetRequest.getX() + "," + newFleetRequest.getY() + "] is not a valid starsystem");
+            return response;
+        } else {
+            if (currentUser.isFleetNameAvailable(newFleetRequest.getName())) {
+                Fleet f = new Fleet(currentUser, newFleetRequest.getName(), galaxy.getSystem(newFleetRequest.getX(), newFleetRequest.getY()));
+                try {
+                    currentUser.addFleet(f);
+                    galaxy.getMap()[newFleetRequest.getX()][newFleetRequest.getY()].addFleet(f);
+                    TrekwarServer.getLog().log(Level.FINER, "Fleet added'");
+                    return new NewFleetResponse(true);
+                } catch (NotUniqueException ex) {
+                    NewFleetResponse response = new NewFleetResponse(false);
+                    response.setErrorMessage("NotUniqueException: " + ex.getMessage());
+                    TrekwarServer.getLog().log(Level.SEVERE, "New fleet name become unavailable before fleet could be added to user/galaxy");
+                    return response;
+                }
+            } else {
+                NewFleetResponse response = new NewFleetResponse(false);
+                response.setErrorMessage("Fleet name unavailable: " + newFleetRequest.getName());
+                TrekwarServer.getLog().log(Level.FINER, "Fleet name not available'");
+                return response;
+            }
+        }
+    }
+}
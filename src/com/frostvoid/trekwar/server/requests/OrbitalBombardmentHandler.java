@@ -0,0 +1,67 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.OrbitalBombardmentRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.OrbitalBombardmentResponse;
+import com.frostvoid.trekwar.common.orders.OrbitalBombardmentOrder;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles orbital bombardment requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class OrbitalBombardmentHandler extends RequestHandler<OrbitalBombardmentRequest> {
+
+    public OrbitalBombardmentHandler() {
+        super(OrbitalBombardmentRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, OrbitalBombardmentRequest bombRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to invade a system with fleet named {1} ", new Object[]{currentUser.getUsername(), bombRequest.getFleetName()});
+
+        Fleet f = currentUser.getFleetByName(bombRequest.getFleetName());
+        StarSystem s = galaxy.getSystem(f);
+        if (f != null && f.canBombPlanets() && !f.getUser().getFaction().equals(s.getUser().getFaction())) {
+            try {
+                TrekwarServer.getLog().finer("Fleet can bomb planets, bombing planets at " + f.getX() + "," + f.getY() + " named " + galaxy.getSystem(f).getName());
+                OrbitalBombardmentOrder obo = new OrbitalBombardmentOrder(f, s);
+                f.setOrder(obo);
+                return new OrbitalBombardmentResponse(true);
+            } catch (InvalidOrderException ioe) {
+                return new OrbitalBombardmentResponse("Invalid order: " + ioe.getMessage());
+            }
+        } else {
+            return new OrbitalBombardmentResponse("fleet null, can't bomb planets or target system is not enemy");
+        }
+    }
+}
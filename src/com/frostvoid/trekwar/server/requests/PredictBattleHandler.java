@@ -0,0 +1,85 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.PredictBattleRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.PredictBattleResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.GalaxyProjection;
+import com.frostvoid.trekwar.server.TrekwarServer;
+import com.frostvoid.trekwar.server.turnExec.SpaceBattlePredictor;
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+
+/**
+ * Handles predict battle requests, the fleet (and any allied fleets in the system)
+ * fights all enemy fleets in the system. Only systems in sensor range can be predicted,
+ * so the prediction does not reveal fleets the user can not see
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class PredictBattleHandler extends RequestHandler<PredictBattleRequest> {
+
+    public PredictBattleHandler() {
+        super(PredictBattleRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, PredictBattleRequest request) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is predicting battle for fleet named {1} at {2},{3}", new Object[]{currentUser.getUsername(), request.getFleetName(), request.getX(), request.getY()});
+
+        Fleet fleet = currentUser.getFleetByName(request.getFleetName());
+        StarSystem target = galaxy.getSystem(request.getX(), request.getY());
+        if (fleet == null || target == null) {
+            return new PredictBattleResponse("invalid fleet or coordinates out of bounds");
+        }
+        if (!target.getUser().equals(currentUser) && !GalaxyProjection.isInSensorRange(currentUser, target.getX(), target.getY())) {
+            return new PredictBattleResponse("target system is not in sensor range");
+        }
+
+        ArrayList<Ship> ownShips = new ArrayList<Ship>(fleet.getShips());
+        ArrayList<Ship> enemyShips = new ArrayList<Ship>();
+        for (Fleet f : target.getFleets()) {
+            if (f == fleet) {
+                continue;
+            }
+            if (f.getUser().getFaction().equals(currentUser.getFaction())) {
+                ownShips.addAll(f.getShips());
+            } else {
+                enemyShips.addAll(f.getShips());
+            }
+        }
+        if (enemyShips.isEmpty()) {
+            return new PredictBattleResponse("no enemy fleets in target system");
+        }
+
+        SpaceBattlePredictor.Prediction p = SpaceBattlePredictor.predict(ownShips, enemyShips);
+        return new PredictBattleResponse(p.getSimulations(), p.getWinChance(), p.getLossChance(),
+                p.getAverageShipsLost(), p.getAverageEnemiesDestroyed());
+    }
+}
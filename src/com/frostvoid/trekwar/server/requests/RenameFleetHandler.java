@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Fleet;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.RenameFleetRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.RenameFleetResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles rename fleet requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class RenameFleetHandler extends RequestHandler<RenameFleetRequest> {
+
+    public RenameFleetHandler() {
+        super(RenameFleetRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, RenameFleetRequest renameFleetRequest) {
+        User currentUser = session.getLoggedInUser();
+
+        Fleet f = currentUser.getFleetByName(renameFleetRequest.getCurrentName());
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to rename fleet {1} to {2}", new Object[]{currentUser.getUsername(), renameFleetRequest.getCurrentName(), renameFleetRequest.getNewName()});
+
+        if (renameFleetRequest.getNewName().length() < 2 || renameFleetRequest.getNewName().length() > 20) {
+            RenameFleetResponse response = new RenameFleetResponse(false);
+            response.setErrorMessage("fleet name must be between 2 and 20 characters long");
+            return response;
+        } else if (f != null && f.getUser().equals(currentUser)) {
+            if (currentUser.isFleetNameAvailable(renameFleetRequest.getNewName())) {
+                f.setName(renameFleetRequest.getNewName());
+                return new RenameFleetResponse(true);
+            } else {
+                RenameFleetResponse response = new RenameFleetResponse(false);
+                response.setErrorMessage("Fleet " + renameFleetRequest.getCurrentName() + " not found, or name " + renameFleetRequest.getNewName() + " is not valid");
+                return response;
+            }
+        } else {
+            RenameFleetResponse response = new RenameFleetResponse(false);
+            response.setErrorMessage("Fleet " + renameFleetRequest.getCurrentName() + " not found, or does not belong to current user");
+            TrekwarServer.getLog().log(Level.FINER, "Fleet not found or does not belong to current user'");
+            return response;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.net.messaging.Request;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.server.ClientSession;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Handles all requests of a single type, and keeps count of how many requests
+ * it has handled and how long they took.
+ * <p>
+ * One handler object is shared by all client sessions, so handlers must not keep
+ * any per session state, that belongs in the ClientSession.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public abstract class RequestHandler<T extends Request> {
+
+    private final Class<T> requestType;
+    private final boolean readOnly;
+
+    private final AtomicLong handledCount = new AtomicLong();
+    private final AtomicLong totalTime = new AtomicLong(); // nanoseconds
+    private final AtomicLong maxTime = new AtomicLong(); // nanoseconds
+
+    /**
+     * Creates a new request handler
+     *
+     * @param requestType the type of request handled
+     * @param readOnly    true if the request never changes the galaxy
+     */
+    protected RequestHandler(Class<T> requestType, boolean readOnly) {
+        this.requestType = requestType;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Handles a request, the session is always logged in
+     *
+     * @param session the session that received the request
+     * @param request the request
+     * @return the response to send to the client
+     */
+    protected abstract Response handle(ClientSession session, T request);
+
+    /**
+     * Handles a request and records the time it took
+     *
+     * @param session the session that received the request
+     * @param request the request, must be of the type handled by this handler
+     * @return the response to send to the client
+     */
+    public final Response execute(ClientSession session, Request request) {
+        long start = System.nanoTime();
+        try {
+            return handle(session, requestType.cast(request));
+        } finally {
+            long time = System.nanoTime() - start;
+            handledCount.incrementAndGet();
+            totalTime.addAndGet(time);
+            long max = maxTime.get();
+            while (time > max && !maxTime.compareAndSet(max, time)) {
+                max = maxTime.get();
+            }
+        }
+    }
+
+    public Class<T> getRequestType() {
+        return requestType;
+    }
+
+    /**
+     * Checks if the request never changes the galaxy, if so cached galaxy snapshots are
+     * still valid after the request has been handled
+     *
+     * @return true if the request only reads data
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return number of requests handled
+     */
+    public long getHandledCount() {
+        return handledCount.get();
+    }
+
+    /**
+     * @return total time spent handling requests, in nanoseconds
+     */
+    public long getTotalTime() {
+        return totalTime.get();
+    }
+
+    /**
+     * @return the longest time spent handling a single request, in nanoseconds
+     */
+    public long getMaxTime() {
+        return maxTime.get();
+    }
+
+    /**
+     * @return average time spent handling a request, in nanoseconds
+     */
+    public long getAverageTime() {
+        long count = handledCount.get();
+        return count == 0 ? 0 : totalTime.get() / count;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.net.messaging.Request;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.logging.Level;
+
+/**
+ * Registry of the handlers for all requests a logged in client can send.
+ * Login and logout are handled by the ClientSession itself.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class RequestHandlers {
+
+    private static final HashMap<Class<? extends Request>, RequestHandler<?>> handlers = new HashMap<Class<? extends Request>, RequestHandler<?>>();
+
+    static {
+        register(new BatchHandler());
+        register(new SubscribeHandler());
+        register(new TimeToNextTurnHandler());
+        register(new ResearchHandler());
+        register(new RenameFleetHandler());
+        register(new NewFleetHandler());
+        register(new MoveShipToFleetHandler());
+        register(new DestroyDecommissionShipHandler());
+        register(new MoveFleetHandler());
+        register(new CancelOrdersHandler());
+        register(new ColonizeHandler());
+        register(new InvadeHandler());
+        register(new OrbitalBombardmentHandler());
+        register(new MineHandler());
+        register(new HarvestHandler());
+        register(new TroopTransferHandler());
+        register(new CargoTransferHandler());
+        register(new StructureStateChangeHandler());
+        register(new BuildShipHandler());
+        register(new HurryProductionHandler());
+        register(new BuildQueueHandler());
+        register(new BuildStructureHandler());
+        register(new DemolishStructureHandler());
+        register(new GetGalaxyHandler());
+        register(new GetGalaxyDeltaHandler());
+        register(new ListUsersHandler());
+        register(new SendChatHandler());
+        register(new GetChatHandler());
+        register(new UpdateTemplateHandler());
+        register(new DeleteTemplateHandler());
+        register(new PredictBattleHandler());
+    }
+
+    private static void register(RequestHandler<?> handler) {
+        handlers.put(handler.getRequestType(), handler);
+    }
+
+    /**
+     * Gets the handler for a type of request
+     *
+     * @param requestType the class of the request
+     * @return the handler, or null if no handler exists for the request type
+     */
+    public static RequestHandler<?> get(Class<? extends Request> requestType) {
+        return handlers.get(requestType);
+    }
+
+    /**
+     * @return all request handlers
+     */
+    public static Collection<RequestHandler<?>> getAll() {
+        return new ArrayList<RequestHandler<?>>(handlers.values());
+    }
+
+    /**
+     * Logs how many requests of each type have been handled, and how long they took
+     */
+    public static void logStatistics() {
+        if (!TrekwarServer.getLog().isLoggable(Level.FINE)) {
+            return;
+        }
+        for (RequestHandler<?> handler : handlers.values()) {
+            if (handler.getHandledCount() > 0) {
+                TrekwarServer.getLog().log(Level.FINE, "{0}: {1} handled, avg {2} us, max {3} us, total {4} ms",
+                        new Object[]{handler.getRequestType().getSimpleName(), handler.getHandledCount(),
+                                handler.getAverageTime() / 1000, handler.getMaxTime() / 1000, handler.getTotalTime() / 1000000});
+            }
+        }
+    }
+}
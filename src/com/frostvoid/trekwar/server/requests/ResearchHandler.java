@@ -0,0 +1,66 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Technology;
+import com.frostvoid.trekwar.common.TechnologyGenerator;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.ResearchRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.ResearchResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles change research requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class ResearchHandler extends RequestHandler<ResearchRequest> {
+
+    public ResearchHandler() {
+        super(ResearchRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, ResearchRequest researchRequest) {
+        User currentUser = session.getLoggedInUser();
+
+        Technology researchTech = TechnologyGenerator.getTech(researchRequest.getTechToResearch());
+
+        if (researchTech != null) {
+            // make sure user only researches techs within range, and not techs already researched
+            if (researchTech.getLevel() == (currentUser.getHighestTech(researchTech.getType()).getLevel() + 1) && !currentUser.hasTech(researchTech)) {
+                currentUser.setCurrentResearch(researchTech);
+                currentUser.setResearchPoints(0);
+                TrekwarServer.getLog().log(Level.FINER, "User {0} changed research to {1} - {2}", new Object[]{currentUser.getUsername(), researchTech.getType(), researchTech.getName()});
+                return new ResearchResponse(true);
+            } else {
+                ResearchResponse response = new ResearchResponse(false);
+                response.setErrorMessage("invalid tech: out of range");
+                return response;
+            }
+        } else {
+            ResearchResponse response = new ResearchResponse(false);
+            response.setErrorMessage("invalid tech: " + researchRequest.getTechToResearch());
+            return response;
+        }
+    }
+}
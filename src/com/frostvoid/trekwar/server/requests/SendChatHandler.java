@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.ChatLine;
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.UserNotFoundException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.events.ChatEvent;
+import com.frostvoid.trekwar.common.net.messaging.requests.SendChatRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.SendChatResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.SessionRegistry;
+
+import java.util.Date;
+
+/**
+ * Handles chat messages sent to a channel or a user
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SendChatHandler extends RequestHandler<SendChatRequest> {
+
+    public SendChatHandler() {
+        super(SendChatRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, SendChatRequest sendChatRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        ChatLine c = null;
+        if (sendChatRequest.isPrivateMessage()) {
+            c = new ChatLine(currentUser.getUsername(), new Date(), "PRIV " + sendChatRequest.getDestination(), sendChatRequest.getMessage());
+            try {
+                User u = galaxy.getUser(sendChatRequest.getDestination());
+                if (u != null) {
+                    deliverChat(u, c);
+                    return new SendChatResponse(true);
+                } else {
+                    throw new UserNotFoundException("user object was null");
+                }
+            } catch (UserNotFoundException ex) {
+                return new SendChatResponse("Error: " + ex.getMessage());
+            }
+        } else {
+            c = new ChatLine(currentUser.getUsername(), new Date(), sendChatRequest.getDestination(), sendChatRequest.getMessage());
+            for (User u : galaxy.getLoggedInUsers()) {
+                if (c.getChannel().equalsIgnoreCase("galaxy")) {
+                    deliverChat(u, c);
+                } else if (c.getChannel().equalsIgnoreCase("faction") && u.getFaction().equals(currentUser.getFaction())) {
+                    deliverChat(u, c);
+                }
+            }
+            return new SendChatResponse(true);
+        }
+    }
+
+    /**
+     * Pushes a chat line to the users subscribed sessions,
+     * or keeps it until the user asks for it
+     *
+     * @param user the user to receive the chat line
+     * @param line the chat line
+     */
+    private static void deliverChat(User user, ChatLine line) {
+        if (!SessionRegistry.sendTo(user, new ChatEvent(line))) {
+            user.addChat(line);
+        }
+    }
+}
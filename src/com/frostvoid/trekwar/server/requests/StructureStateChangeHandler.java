@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Planet;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.StructureStateChangeRequestType;
+import com.frostvoid.trekwar.common.net.messaging.requests.StructureStateChangeRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.StructureStateChangeResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles requests to enable or disable a structure
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class StructureStateChangeHandler extends RequestHandler<StructureStateChangeRequest> {
+
+    public StructureStateChangeHandler() {
+        super(StructureStateChangeRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, StructureStateChangeRequest structureStateChangeRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        StarSystem system = galaxy.getSystem(structureStateChangeRequest.getX(), structureStateChangeRequest.getY());
+        Planet planet = system.getPlanetByNumber(structureStateChangeRequest.getPlanetNumber());
+
+        if (system.getUser().equals(currentUser) && planet != null) {
+            try {
+                if (structureStateChangeRequest.getType().equals(StructureStateChangeRequestType.ENABLE)) {
+                    planet.setStructureEnabled(structureStateChangeRequest.getSlotNumber(), true);
+                    TrekwarServer.getLog().log(Level.FINE, "User {0} enabled a {1} structure at slot {2} in the {3} system", new Object[]{currentUser.getUsername(), planet.getStructuresMap().get(structureStateChangeRequest.getSlotNumber()).getName(), structureStateChangeRequest.getSlotNumber(), system.getName()});
+                } else {
+                    planet.setStructureEnabled(structureStateChangeRequest.getSlotNumber(), false);
+                    TrekwarServer.getLog().log(Level.FINE, "User {0} disabled a {1} structure at slot {2} in the {3} system", new Object[]{currentUser.getUsername(), planet.getStructuresMap().get(structureStateChangeRequest.getSlotNumber()).getName(), structureStateChangeRequest.getSlotNumber(), system.getName()});
+                }
+                return new StructureStateChangeResponse(true);
+            } catch (IndexOutOfBoundsException ioobe) {
+                return new StructureStateChangeResponse("Wrong planet slot: " + ioobe.getMessage());
+            }
+        } else {
+            return new StructureStateChangeResponse("Failed to get planet, or you are not owner of the starsystem");
+        }
+    }
+}
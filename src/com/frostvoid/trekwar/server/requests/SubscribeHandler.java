@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.SubscribeRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.SubscribeResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.SessionRegistry;
+
+/**
+ * Handles subscribe to events requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SubscribeHandler extends RequestHandler<SubscribeRequest> {
+
+    public SubscribeHandler() {
+        super(SubscribeRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, SubscribeRequest request) {
+        SessionRegistry.subscribe(session);
+        return new SubscribeResponse(true);
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.TimeToNextTurnRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.TimeToNextTurnResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+
+/**
+ * Handles time to next turn requests
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class TimeToNextTurnHandler extends RequestHandler<TimeToNextTurnRequest> {
+
+    public TimeToNextTurnHandler() {
+        super(TimeToNextTurnRequest.class, true);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, TimeToNextTurnRequest request) {
+        Galaxy galaxy = session.getGalaxy();
+
+        long res = (galaxy.nextTurnDate - System.currentTimeMillis());
+        session.updateLastActivity();
+        return new TimeToNextTurnResponse(res, galaxy.getCurrentTurn(), galaxy.getCurrentTurn() + 1);
+    }
+}
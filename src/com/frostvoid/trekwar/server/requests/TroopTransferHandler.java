@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.InvalidOrderException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.TroopTransferRequestType;
+import com.frostvoid.trekwar.common.net.messaging.requests.TroopTransferRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.TroopTransferResponse;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.logging.Level;
+
+/**
+ * Handles requests to transfer troops between a ship and a system
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class TroopTransferHandler extends RequestHandler<TroopTransferRequest> {
+
+    public TroopTransferHandler() {
+        super(TroopTransferRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, TroopTransferRequest troopTransferRequest) {
+        User currentUser = session.getLoggedInUser();
+        Galaxy galaxy = session.getGalaxy();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to transfer {1} troops to/from ship with id {2} ", new Object[]{currentUser.getUsername(), troopTransferRequest.getAmount(), troopTransferRequest.getShipID()});
+
+        try {
+            StarSystem system = galaxy.getMap()[troopTransferRequest.getX()][troopTransferRequest.getY()];
+            Ship ship = system.getShipById(currentUser, troopTransferRequest.getShipID());
+            if (troopTransferRequest.getAmount() < 1) {
+                throw new NumberFormatException("amount less than 1");
+            }
+
+            if (system != null && system.getUser().equals(currentUser) && ship != null && ship.getUser().equals(currentUser)) {
+                if (troopTransferRequest.getType().equals(TroopTransferRequestType.SHIPTOSYSTEM)) {
+                    if (troopTransferRequest.getAmount() <= ship.getTroops()) {
+                        ship.setTroops(ship.getTroops() - troopTransferRequest.getAmount());
+                        system.setTroopCount(system.getTroopCount() + troopTransferRequest.getAmount());
+                        TrekwarServer.getLog().log(Level.FINER, "user {0} transferred {1} troops to system: {2}", new Object[]{system.getUser(), troopTransferRequest.getAmount(), system.getName()});
+                        return new TroopTransferResponse(true);
+                    } else {
+                        throw new InvalidOrderException("Could not transfer more troops than ship has");
+                    }
+                } else if (troopTransferRequest.getType().equals(TroopTransferRequestType.SYSTEMTOSHIP)) {
+                    if (troopTransferRequest.getAmount() <= system.getTroopCount()) {
+                        ship.setTroops(ship.getTroops() + troopTransferRequest.getAmount());
+                        system.setTroopCount(system.getTroopCount() - troopTransferRequest.getAmount());
+                        TrekwarServer.getLog().log(Level.FINER, "user {0} transferred {1} troops from system: {2}", new Object[]{system.getUser(), troopTransferRequest.getAmount(), system.getName()});
+                        return new TroopTransferResponse(true);
+                    } else {
+                        throw new InvalidOrderException("Could not transfer more troops than starsystem has");
+                    }
+                } else {
+                    throw new InvalidOrderException("Invalid Transfer type");
+                }
+            } else {
+                throw new InvalidOrderException("System not found, not owned by you or ship not found or not owned by you");
+            }
+        } catch (Exception ex) {
+            return new TroopTransferResponse("Error: " + ex.getMessage());
+        }
+    }
+}
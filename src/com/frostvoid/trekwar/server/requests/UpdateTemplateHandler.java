@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.requests;
+
+import com.frostvoid.trekwar.common.ShipTemplate;
+import com.frostvoid.trekwar.common.User;
+import com.frostvoid.trekwar.common.exceptions.SlotException;
+import com.frostvoid.trekwar.common.net.messaging.Response;
+import com.frostvoid.trekwar.common.net.messaging.requests.UpdateTemplateRequest;
+import com.frostvoid.trekwar.common.net.messaging.responses.UpdateTemplateResponse;
+import com.frostvoid.trekwar.common.shipComponents.ShipComponent;
+import com.frostvoid.trekwar.common.shipHulls.HullClass;
+import com.frostvoid.trekwar.server.ClientSession;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Handles requests to save a new or changed ship template
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class UpdateTemplateHandler extends RequestHandler<UpdateTemplateRequest> {
+
+    public UpdateTemplateHandler() {
+        super(UpdateTemplateRequest.class, false);
+    }
+
+    @Override
+    protected Response handle(ClientSession session, UpdateTemplateRequest templateRequest) {
+        User currentUser = session.getLoggedInUser();
+
+        TrekwarServer.getLog().log(Level.FINE, "User {0} is trying to save or edit template {1}", new Object[]{currentUser.getUsername(), templateRequest.getTemplateName()});
+
+        ShipTemplate template = currentUser.getShipTemplate(templateRequest.getTemplateName());
+        boolean makeNewTemplate = false;
+
+        // creating NEW template
+        if (template == null) {
+            TrekwarServer.getLog().log(Level.FINER, "template {0} not found for user, making new template object!", new Object[]{templateRequest.getTemplateName()});
+            makeNewTemplate = true;
+            HullClass hullClass = null;
+            for (HullClass hc : currentUser.getAvailableShipHulls()) {
+                if (hc.getName().equalsIgnoreCase(templateRequest.getHullClass())) {
+                    hullClass = hc;
+                    break;
+                }
+            }
+            if (hullClass != null) {
+                template = new ShipTemplate(currentUser, templateRequest.getTemplateName(), hullClass);
+                TrekwarServer.getLog().finer("Template object initialized");
+            } else {
+                return new UpdateTemplateResponse("Error: invalid hull class: " + templateRequest.getHullClass());
+            }
+        }
+
+        // add components
+        boolean invalidComponentFound = false;
+        TrekwarServer.getLog().finer("Adding components to template");
+        for (Map.Entry<Integer, String> entry : templateRequest.getComponents().entrySet()) {
+            ShipComponent c = null;
+            for (ShipComponent temp : currentUser.getAvailableShipComponents()) {
+                if (temp.getName().equalsIgnoreCase(entry.getValue())) {
+                    c = temp;
+                    break;
+                }
+            }
+            if (c != null) {
+                try {
+                    template.setComponent(entry.getKey(), c);
+                } catch (SlotException e) {
+                    TrekwarServer.getLog().finer("Invalid component found in component list: " + e.getMessage());
+                    invalidComponentFound = true;
+                    break;
+                }
+            } else {
+                TrekwarServer.getLog().finer("Invalid component found in component list");
+                invalidComponentFound = true;
+                break;
+            }
+        }
+
+        if (!template.isValid()) {
+            TrekwarServer.getLog().finer("Template is invalid");
+            return new UpdateTemplateResponse("Error: template is not valid");
+        }
+
+        // save if adding new
+        if (makeNewTemplate) {
+            TrekwarServer.getLog().finer("Added new template object to user object");
+            currentUser.addShipTemplate(template);
+        }
+
+        if (!invalidComponentFound) {
+            return new UpdateTemplateResponse(true);
+        } else {
+            return new UpdateTemplateResponse("Error: one or more components not found");
+        }
+    }
+}
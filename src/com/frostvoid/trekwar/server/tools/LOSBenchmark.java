@@ -0,0 +1,99 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.tools;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.SensorOverlay;
+import com.frostvoid.trekwar.server.UniverseGenerator;
+import com.frostvoid.trekwar.server.utils.SensorField;
+
+import java.io.FileInputStream;
+import java.io.ObjectInputStream;
+import java.util.Random;
+
+/**
+ * Compares the speed and coverage of the line of sight algorithms on the same galaxy.
+ * <p>
+ * usage: LOSBenchmark [galaxy file]
+ * (a 100x100 galaxy is generated if no file is given)
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class LOSBenchmark {
+
+    private static final int SOURCES = 2000;
+    private static final int ROUNDS = 10;
+    private static final int COVERAGE_SOURCES = 50; // few enough that sensor ranges do not cover the whole map
+
+    public static void main(String[] args) throws Exception {
+        Galaxy galaxy;
+        if (args.length > 0) {
+            ObjectInputStream ois = new ObjectInputStream(new FileInputStream(args[0]));
+            galaxy = (Galaxy) ois.readObject();
+            ois.close();
+        } else {
+            galaxy = new UniverseGenerator().makeGalaxy(100, 100, 100, 10, 4, 10, 10);
+        }
+
+        // same sources for both algorithms, typical fleet and starsystem sensor strengths
+        Random random = new Random(42);
+        int[] xs = new int[SOURCES];
+        int[] ys = new int[SOURCES];
+        int[] strengths = new int[SOURCES];
+        for (int i = 0; i < SOURCES; i++) {
+            xs[i] = random.nextInt(galaxy.getWidth());
+            ys[i] = random.nextInt(galaxy.getHeight());
+            strengths[i] = 20 + random.nextInt(120);
+        }
+
+        System.out.println("Galaxy " + galaxy.getWidth() + "x" + galaxy.getHeight() + ", " + SOURCES + " sensor sources, " + ROUNDS + " rounds");
+        for (SensorField.Algorithm algorithm : SensorField.Algorithm.values()) {
+            // warm up
+            run(galaxy, algorithm, xs, ys, strengths);
+
+            long start = System.nanoTime();
+            for (int round = 0; round < ROUNDS; round++) {
+                run(galaxy, algorithm, xs, ys, strengths);
+            }
+            long time = System.nanoTime() - start;
+
+            SensorOverlay overlay = new SensorOverlay(galaxy.getWidth(), galaxy.getHeight());
+            for (int i = 0; i < COVERAGE_SOURCES; i++) {
+                SensorField.compute(galaxy, xs[i], ys[i], strengths[i], algorithm).applyTo(overlay);
+            }
+            int seen = 0;
+            long strengthSum = 0;
+            for (int x = 0; x < galaxy.getWidth(); x++) {
+                for (int y = 0; y < galaxy.getHeight(); y++) {
+                    if (overlay.isInSensorRange(x, y)) {
+                        seen++;
+                        strengthSum += overlay.getSensorStrength(x, y);
+                    }
+                }
+            }
+            System.out.println(String.format("%-18s %8.2f ms per round, %6.2f us per source, %d tiles in range of " + COVERAGE_SOURCES + " sources, average strength %.1f",
+                    algorithm, time / 1000000.0 / ROUNDS, time / 1000.0 / ROUNDS / SOURCES, seen, seen == 0 ? 0 : strengthSum / (double) seen));
+        }
+    }
+
+    private static void run(Galaxy galaxy, SensorField.Algorithm algorithm, int[] xs, int[] ys, int[] strengths) {
+        for (int i = 0; i < xs.length; i++) {
+            SensorField.compute(galaxy, xs[i], ys[i], strengths[i], algorithm);
+        }
+    }
+}
@@ -21,6 +21,7 @@ import com.frostvoid.trekwar.common.TechnologyGenerator.techType;
 import com.frostvoid.trekwar.common.User;
 import com.frostvoid.trekwar.server.TrekwarServer;
 
+import java.util.Random;
 import java.util.logging.Level;
 
 /**
@@ -42,6 +43,7 @@ public class GroundCombatResolver {
 
     private Fleet attacker;
     private StarSystem defender;
+    private Random random;
 
     private User winner;
 
@@ -62,8 +64,20 @@ public class GroundCombatResolver {
      * @param defender the system that is being invaded
      */
     public GroundCombatResolver(Fleet attacker, StarSystem defender) {
+        this(attacker, defender, TrekwarServer.PRNG);
+    }
+
+    /**
+     * Set up the object, calculating strengths, etc..
+     *
+     * @param attacker the fleet that is invading a system
+     * @param defender the system that is being invaded
+     * @param random   the random number generator to use
+     */
+    public GroundCombatResolver(Fleet attacker, StarSystem defender, Random random) {
         this.attacker = attacker;
         this.defender = defender;
+        this.random = random;
 
         reset();
     }
@@ -130,8 +144,8 @@ public class GroundCombatResolver {
 
         while (winner == null) {
 
-            double attacker_rand = (TrekwarServer.PRNG.nextDouble() * RANDOM_WEIGHT) + attacker_strength;
-            double defender_rand = (TrekwarServer.PRNG.nextDouble() * RANDOM_WEIGHT) + defender_strength;
+            double attacker_rand = (random.nextDouble() * RANDOM_WEIGHT) + attacker_strength;
+            double defender_rand = (random.nextDouble() * RANDOM_WEIGHT) + defender_strength;
 
             if (attacker_rand > defender_rand) {
                 defender_troops--;
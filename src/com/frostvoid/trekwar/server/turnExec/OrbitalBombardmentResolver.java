@@ -27,6 +27,7 @@ import com.frostvoid.trekwar.server.TrekwarServer;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Random;
 import java.util.logging.Level;
 
 /**
@@ -48,16 +49,19 @@ public class OrbitalBombardmentResolver {
 
     private Fleet attacker;
     private StarSystem defender;
+    private Random random;
 
     /**
      * Set up the object, calculating strengths, etc..
      *
      * @param attacker the fleet that is invading a system
      * @param defender the system that is being invaded
+     * @param random   the random number generator to use
      */
-    public OrbitalBombardmentResolver(Fleet attacker, StarSystem defender) {
+    public OrbitalBombardmentResolver(Fleet attacker, StarSystem defender, Random random) {
         this.attacker = attacker;
         this.defender = defender;
+        this.random = random;
     }
 
     /**
@@ -116,7 +120,7 @@ public class OrbitalBombardmentResolver {
 
 
             // damage to system structures
-            if (TrekwarServer.PRNG.nextInt(100) < launcher.getStructureHitChance()) {
+            if (random.nextInt(100) < launcher.getStructureHitChance()) {
                 Structure destroyedStructure = destroyRandomStructure();
                 if (destroyedStructure != null) {
                     structuresDestroyed.add(destroyedStructure);
@@ -146,12 +150,12 @@ public class OrbitalBombardmentResolver {
         sb.append(Language.pop(TrekwarServer.getLanguage().getU("turn_report_system_bombed_5"), defender.getMorale()));
 
         TurnReportItem tri_defend = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), defender.getX(), defender.getY(), TurnReportItem.TurnReportSeverity.CRITICAL);
-        tri_defend.setSummary(Language.pop(TrekwarServer.getLanguage().getU("turn_report_system_bombed_1"), defender.getName()));
+        tri_defend.setSummaryKey("turn_report_system_bombed_1", defender.getName());
         tri_defend.setDetailed(sb.toString());
         defender.getUser().addTurnReport(tri_defend);
 
         TurnReportItem tri_attack = new TurnReportItem(TrekwarServer.getGalaxy().getCurrentTurn(), attacker.getX(), attacker.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-        tri_attack.setSummary(Language.pop(TrekwarServer.getLanguage().getU("turn_report_system_bombed_0"), defender.getName()));
+        tri_attack.setSummaryKey("turn_report_system_bombed_0", defender.getName());
         tri_attack.setDetailed(sb.toString());
         attacker.getUser().addTurnReport(tri_attack);
     }
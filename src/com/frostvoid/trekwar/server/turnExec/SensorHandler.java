@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.turnExec;
+
+import com.frostvoid.trekwar.common.*;
+import com.frostvoid.trekwar.server.TrekwarServer;
+import com.frostvoid.trekwar.server.utils.LineOfSightCache;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+
+/**
+ * Updates the sensor overlay of a single user from all the users fleets and starsystems.
+ * Only writes to the users own sensor overlay and turn reports, so handlers for
+ * different users can run at the same time.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SensorHandler implements Callable<Integer> {
+
+    private Galaxy galaxy;
+    private User user;
+    private Random random;
+
+    public SensorHandler(Galaxy galaxy, User user, Random random) {
+        this.galaxy = galaxy;
+        this.user = user;
+        this.random = random;
+    }
+
+    /**
+     * @return the number of sensor fields computed
+     */
+    @Override
+    public Integer call() {
+        LineOfSightCache los = LineOfSightCache.getCache(user);
+        los.beginUpdate(galaxy);
+        boolean upkeepPenalty = user.hasUpkeepPenalty();
+
+        for (Fleet fleet : user.getFleets()) {
+            if (upkeepPenalty && random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_SENSOR_FAIL_CHANCE) {
+                TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.HIGH);
+                tr.setSummaryKey("turn_report_sensor_fail_upkeep_1");
+                tr.setDetailedKey("turn_report_sensor_fail_upkeep_2", fleet.getName());
+                user.addTurnReport(tr);
+                TrekwarServer.getLog().log(Level.FINE, "Fleet {0} owned by {1} did not update sensors because of upkeep penalty", new Object[]{fleet.getName(), user.getUsername()});
+            } else {
+                los.addSource(galaxy, fleet, fleet.getX(), fleet.getY(), fleet.getSensorStrength());
+            }
+        }
+
+        for (StarSystem s : user.getStarSystems()) {
+            los.addSource(galaxy, s, s.getX(), s.getY(), s.getSystemScanStrength());
+        }
+        return los.finishUpdate(user);
+    }
+}
@@ -22,6 +22,7 @@ import com.frostvoid.trekwar.server.TrekwarServer;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Random;
 import java.util.logging.Level;
 
 /**
@@ -36,17 +37,20 @@ public class SpaceBattle {
     private StarSystem location;
     private long turn;
     private int round = 0;
+    private Random random;
 
     /**
      * Creates a new space battle
      *
      * @param location the starsystem the battle takes place in
      * @param turn     the turn this battle is taking place on
+     * @param random   the random number generator used for all rolls in this battle
      */
-    public SpaceBattle(StarSystem location, long turn) {
+    public SpaceBattle(StarSystem location, long turn, Random random) {
         ships = new ArrayList<Ship>();
         this.location = location;
         this.turn = turn;
+        this.random = random;
     }
 
     /**
@@ -56,7 +60,7 @@ public class SpaceBattle {
      * @return An attacking ship
      */
     public Ship getRandomAttacker() {
-        int rand = TrekwarServer.PRNG.nextInt(ships.size());
+        int rand = random.nextInt(ships.size());
         boolean looped = false;
         for (int i = rand; i < ships.size(); i++) {
             if (ships.get(i).getActionPoints() > 0) {
@@ -86,7 +90,7 @@ public class SpaceBattle {
             return null;
         }
 
-        int rand = TrekwarServer.PRNG.nextInt(ships.size());
+        int rand = random.nextInt(ships.size());
         boolean looped = false;
         Ship weakestShip = null; // TODO find weakest ship
         for (int i = rand; i < ships.size(); i++) {
@@ -174,7 +178,7 @@ public class SpaceBattle {
      */
     private void nextRound() {
         round++;
-        Collections.shuffle(ships);
+        Collections.shuffle(ships, random);
 
         for (Ship ship : ships) {
             ship.battle_restoreActionPoints();
@@ -184,4 +188,13 @@ public class SpaceBattle {
     public int getRound() {
         return round;
     }
+
+    /**
+     * Gets the random number generator used for this battle
+     *
+     * @return the random number generator
+     */
+    public Random getRandom() {
+        return random;
+    }
 }
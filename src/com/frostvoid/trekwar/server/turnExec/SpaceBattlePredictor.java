@@ -0,0 +1,254 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.turnExec;
+
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.server.TrekwarServer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.logging.Level;
+
+/**
+ * Predicts the outcome of a space battle by fighting it many times.
+ * <p>
+ * The ships are copied into a SpaceCombatEngine once, and every simulation runs on
+ * a copy of that engine, so the real ships are never changed. Simulations are split
+ * between threads in a fork join pool.
+ * <p>
+ * Predictions are cached by the composition of the two sides (everything about the
+ * ships that affects combat, grouped by faction), so asking again about the same fleets is free.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SpaceBattlePredictor {
+
+    /**
+     * Number of times each battle is fought
+     */
+    public static final int SIMULATIONS = 2000;
+    private static final int SIMULATIONS_PER_TASK = 100;
+    private static final int MAX_CACHED_PREDICTIONS = 1000;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final ConcurrentHashMap<Long, Prediction> cache = new ConcurrentHashMap<Long, Prediction>();
+
+    /**
+     * Predicts the outcome of a battle between two sides
+     *
+     * @param ownShips   the ships on one side
+     * @param enemyShips the ships on the other side
+     * @return the prediction, seen from the side of ownShips
+     */
+    public static Prediction predict(List<Ship> ownShips, List<Ship> enemyShips) {
+        long startTime = System.nanoTime();
+        ArrayList<Ship> ships = new ArrayList<Ship>(ownShips.size() + enemyShips.size());
+        ships.addAll(ownShips);
+        ships.addAll(enemyShips);
+        SpaceCombatEngine template = new SpaceCombatEngine(ships, null);
+
+        long key = getCompositionKey(template, ownShips.size(), enemyShips.size());
+        Prediction prediction = cache.get(key);
+        if (prediction != null) {
+            return prediction;
+        }
+
+        long[] result = pool.invoke(new SimulationTask(template, ownShips.size(), TrekwarServer.PRNG.nextLong(), 0, SIMULATIONS));
+        prediction = new Prediction(SIMULATIONS, result[0], result[1], result[2], result[3]);
+        if (cache.size() >= MAX_CACHED_PREDICTIONS) {
+            cache.clear();
+        }
+        cache.put(key, prediction);
+        TrekwarServer.LOG.log(Level.FINE, "Predicted battle of {0} vs {1} ships in {2} ms", new Object[]{ownShips.size(), enemyShips.size(), (System.nanoTime() - startTime) / 1000000});
+        return prediction;
+    }
+
+    /**
+     * Removes all cached predictions
+     */
+    public static void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Makes a key that is the same for the same ships of the same factions on each side, in any order.
+     * Factions on a side fight each other, so every faction is hashed as its own group
+     */
+    private static long getCompositionKey(SpaceCombatEngine engine, int ownShips, int enemyShips) {
+        long h = 31 * ownShips + enemyShips;
+        h = mix(h, getSideKey(engine, 0, ownShips));
+        h = mix(h, -1);
+        h = mix(h, getSideKey(engine, ownShips, ownShips + enemyShips));
+        return h;
+    }
+
+    /**
+     * Hashes the ships from index first (inclusive) to last (exclusive), by faction
+     */
+    private static long getSideKey(SpaceCombatEngine engine, int first, int last) {
+        ArrayList<Integer> factions = new ArrayList<Integer>();
+        for (int i = first; i < last; i++) {
+            if (!factions.contains(engine.getFaction(i))) {
+                factions.add(engine.getFaction(i));
+            }
+        }
+        long[] groups = new long[factions.size()];
+        for (int g = 0; g < groups.length; g++) {
+            int faction = factions.get(g);
+            long[] signatures = new long[last - first];
+            int count = 0;
+            for (int i = first; i < last; i++) {
+                if (engine.getFaction(i) == faction) {
+                    signatures[count++] = engine.getShipSignature(i);
+                }
+            }
+            Arrays.sort(signatures, 0, count);
+            long group = count;
+            for (int i = 0; i < count; i++) {
+                group = mix(group, signatures[i]);
+            }
+            groups[g] = group;
+        }
+        Arrays.sort(groups);
+        long h = groups.length;
+        for (long group : groups) {
+            h = mix(h, group);
+        }
+        return h;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * Runs a range of simulations, splitting it in two until it is small enough
+     * result: [wins, losses, own ships lost, enemy ships destroyed]
+     */
+    private static class SimulationTask extends RecursiveTask<long[]> {
+        private final SpaceCombatEngine template;
+        private final int ownShips;
+        private final long seed;
+        private final int from;
+        private final int to;
+
+        SimulationTask(SpaceCombatEngine template, int ownShips, long seed, int from, int to) {
+            this.template = template;
+            this.ownShips = ownShips;
+            this.seed = seed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from > SIMULATIONS_PER_TASK) {
+                int middle = (from + to) / 2;
+                SimulationTask first = new SimulationTask(template, ownShips, seed, from, middle);
+                first.fork();
+                long[] second = new SimulationTask(template, ownShips, seed, middle, to).compute();
+                long[] result = first.join();
+                for (int i = 0; i < result.length; i++) {
+                    result[i] += second[i];
+                }
+                return result;
+            }
+
+            long[] result = new long[4];
+            TurnRandom random = new TurnRandom(seed).stream(from);
+            for (int sim = from; sim < to; sim++) {
+                SpaceCombatEngine engine = new SpaceCombatEngine(template, random);
+                engine.run();
+                int ownLost = 0;
+                int enemyLost = 0;
+                for (int i = 0; i < engine.getShipCount(); i++) {
+                    if (engine.getDestroyedBy(i) >= 0) {
+                        if (i < ownShips) {
+                            ownLost++;
+                        } else {
+                            enemyLost++;
+                        }
+                    }
+                }
+                if (enemyLost == engine.getShipCount() - ownShips) {
+                    result[0]++;
+                } else if (ownLost == ownShips) {
+                    result[1]++;
+                }
+                result[2] += ownLost;
+                result[3] += enemyLost;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The predicted outcome of a battle
+     */
+    public static class Prediction {
+        private final int simulations;
+        private final long wins;
+        private final long losses;
+        private final long shipsLost;
+        private final long enemiesDestroyed;
+
+        Prediction(int simulations, long wins, long losses, long shipsLost, long enemiesDestroyed) {
+            this.simulations = simulations;
+            this.wins = wins;
+            this.losses = losses;
+            this.shipsLost = shipsLost;
+            this.enemiesDestroyed = enemiesDestroyed;
+        }
+
+        public int getSimulations() {
+            return simulations;
+        }
+
+        /**
+         * @return chance (0 - 1) that all enemy ships are destroyed
+         */
+        public double getWinChance() {
+            return (double) wins / simulations;
+        }
+
+        /**
+         * @return chance (0 - 1) that all own ships are destroyed
+         */
+        public double getLossChance() {
+            return (double) losses / simulations;
+        }
+
+        /**
+         * @return average number of own ships lost
+         */
+        public double getAverageShipsLost() {
+            return (double) shipsLost / simulations;
+        }
+
+        /**
+         * @return average number of enemy ships destroyed
+         */
+        public double getAverageEnemiesDestroyed() {
+            return (double) enemiesDestroyed / simulations;
+        }
+    }
+}
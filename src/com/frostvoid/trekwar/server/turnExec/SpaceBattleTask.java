@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.turnExec;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Resolves a list of space battles, splitting the list between threads in a fork join pool.
+ * Battles take place in different systems and have no ships in common, so they can be
+ * resolved at the same time. The results must be applied by the caller afterwards.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SpaceBattleTask extends RecursiveAction {
+
+    private List<SpaceCombatResolver> resolvers;
+
+    /**
+     * Creates a new task
+     *
+     * @param resolvers the resolvers for the battles to resolve
+     */
+    public SpaceBattleTask(List<SpaceCombatResolver> resolvers) {
+        this.resolvers = resolvers;
+    }
+
+    @Override
+    protected void compute() {
+        if (resolvers.size() == 1) {
+            resolvers.get(0).doCombat();
+        } else if (resolvers.size() > 1) {
+            int middle = resolvers.size() / 2;
+            invokeAll(new SpaceBattleTask(resolvers.subList(0, middle)),
+                    new SpaceBattleTask(resolvers.subList(middle, resolvers.size())));
+        }
+    }
+}
@@ -0,0 +1,611 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.turnExec;
+
+import com.frostvoid.trekwar.common.Faction;
+import com.frostvoid.trekwar.common.Ship;
+import com.frostvoid.trekwar.common.TechnologyGenerator.techType;
+import com.frostvoid.trekwar.common.shipComponents.BeamEmitter;
+import com.frostvoid.trekwar.common.shipComponents.MiningLaser;
+import com.frostvoid.trekwar.common.shipComponents.ShipComponent;
+import com.frostvoid.trekwar.common.shipComponents.TorpedoLauncher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs the combat rounds of a space battle.
+ * <p>
+ * Everything needed during combat (shields, armor, hull, action points, weapons,
+ * chance to hit modifiers) is copied from the ships into arrays indexed by ship
+ * once, when the engine is made, so combat rounds do not allocate or look at ship
+ * components. Weapons are kept in one table per weapon type, with the weapons of
+ * ship i at index weaponStart[i] up to weaponStart[i + 1].
+ * <p>
+ * The rules are the same as ship to ship combat always has been: a random ship with
+ * action points left attacks a random enemy, preferring beam weapons against shields
+ * and torpedoes against armor and hull. When no ship has action points left a new
+ * round starts.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SpaceCombatEngine {
+
+    /**
+     * The battle is ended after this many rounds
+     */
+    public static final int MAX_ROUNDS = 15000;
+
+    private final Random random;
+    private final int shipCount;
+
+    // ship state
+    private final int[] shield;
+    private final int[] armor;
+    private final int[] hull;
+    private final int[] actionPoints;
+    private final int[] destroyedBy; // index of the ship that destroyed a ship, -1 if not destroyed
+
+    // ship properties, constant during the battle
+    private final int[] faction;
+    private final int[] maxHull;
+    private final int[] undamagedActionPoints;
+    private final int[] critChance; // out of 1000
+    private final int[] hitBonus; // attacker sensors and computer tech
+    private final int[] targetModifier; // defender signature and maneuverability
+
+    // weapon tables
+    private final int[] beamStart;
+    private final int[] beamDamage;
+    private final int[] beamCost;
+    private final boolean[] beamMiningLaser;
+    private final int[] torpedoStart;
+    private final int[] torpedoDamage;
+    private final int[] torpedoCost;
+
+    // ships still in the battle, in the order they are searched for attackers and targets
+    private final int[] order;
+    private int alive;
+    private int round = 0;
+
+    /**
+     * Makes a new engine, copying everything needed for combat from the ships
+     *
+     * @param ships  the ships taking part in the battle
+     * @param random random number generator used for all rolls
+     */
+    public SpaceCombatEngine(List<Ship> ships, Random random) {
+        this.random = random;
+        shipCount = ships.size();
+        shield = new int[shipCount];
+        armor = new int[shipCount];
+        hull = new int[shipCount];
+        actionPoints = new int[shipCount];
+        destroyedBy = new int[shipCount];
+        faction = new int[shipCount];
+        maxHull = new int[shipCount];
+        undamagedActionPoints = new int[shipCount];
+        critChance = new int[shipCount];
+        hitBonus = new int[shipCount];
+        targetModifier = new int[shipCount];
+        beamStart = new int[shipCount + 1];
+        torpedoStart = new int[shipCount + 1];
+        order = new int[shipCount];
+
+        ArrayList<Faction> factions = new ArrayList<Faction>();
+        int beams = 0;
+        int torpedoes = 0;
+        for (int i = 0; i < shipCount; i++) {
+            Ship s = ships.get(i);
+            shield[i] = s.getCurrentShieldStrength();
+            armor[i] = s.getCurrentArmorStrength();
+            hull[i] = s.getCurrentHullStrength();
+            actionPoints[i] = s.getActionPoints();
+            destroyedBy[i] = -1;
+
+            Faction f = s.getUser().getFaction();
+            if (!factions.contains(f)) {
+                factions.add(f);
+            }
+            faction[i] = factions.indexOf(f);
+            maxHull[i] = s.getMaxHitpoints();
+            undamagedActionPoints[i] = s.getUndamagedActionPoints();
+            critChance[i] = s.getXp() + 50;
+            hitBonus[i] = s.getSensorStrength() / 5 + s.getUser().getHighestTech(techType.computertech).getLevel() / 2;
+
+            // penalty for enemy maneuverability
+            int agility = s.getManeuverability() / 2;
+            if (agility > 30) {
+                agility = 30;
+            }
+            if (agility < 1) {
+                agility = 0;
+            }
+            targetModifier[i] = s.getSignatureStrength() / 10 - agility;
+
+            for (ShipComponent c : s.getComponents().values()) {
+                if (c instanceof BeamEmitter || c instanceof MiningLaser) {
+                    beams++;
+                } else if (c instanceof TorpedoLauncher) {
+                    torpedoes++;
+                }
+            }
+            order[i] = i;
+        }
+        alive = shipCount;
+
+        beamDamage = new int[beams];
+        beamCost = new int[beams];
+        beamMiningLaser = new boolean[beams];
+        torpedoDamage = new int[torpedoes];
+        torpedoCost = new int[torpedoes];
+        beams = 0;
+        torpedoes = 0;
+        for (int i = 0; i < shipCount; i++) {
+            beamStart[i] = beams;
+            torpedoStart[i] = torpedoes;
+            for (ShipComponent c : ships.get(i).getComponents().values()) {
+                if (c instanceof BeamEmitter) {
+                    beamDamage[beams] = ((BeamEmitter) c).getDamage();
+                    beamCost[beams] = ((BeamEmitter) c).getActionPointsRequired();
+                    beams++;
+                } else if (c instanceof MiningLaser) {
+                    beamDamage[beams] = ((MiningLaser) c).getCapacity() / 2;
+                    beamCost[beams] = 2;
+                    beamMiningLaser[beams] = true;
+                    beams++;
+                } else if (c instanceof TorpedoLauncher) {
+                    torpedoDamage[torpedoes] = ((TorpedoLauncher) c).getDamage();
+                    torpedoCost[torpedoes] = ((TorpedoLauncher) c).getActionPointsRequired();
+                    torpedoes++;
+                }
+            }
+        }
+        beamStart[shipCount] = beams;
+        torpedoStart[shipCount] = torpedoes;
+    }
+
+    /**
+     * Makes a copy of an engine that has not been run, the copy has its own ship state
+     * and shares everything that does not change during combat. Used to run the same
+     * battle many times
+     *
+     * @param engine the engine to copy
+     * @param random random number generator used for all rolls
+     */
+    public SpaceCombatEngine(SpaceCombatEngine engine, Random random) {
+        this.random = random;
+        shipCount = engine.shipCount;
+        shield = engine.shield.clone();
+        armor = engine.armor.clone();
+        hull = engine.hull.clone();
+        actionPoints = engine.actionPoints.clone();
+        destroyedBy = engine.destroyedBy.clone();
+        faction = engine.faction;
+        maxHull = engine.maxHull;
+        undamagedActionPoints = engine.undamagedActionPoints;
+        critChance = engine.critChance;
+        hitBonus = engine.hitBonus;
+        targetModifier = engine.targetModifier;
+        beamStart = engine.beamStart;
+        beamDamage = engine.beamDamage;
+        beamCost = engine.beamCost;
+        beamMiningLaser = engine.beamMiningLaser;
+        torpedoStart = engine.torpedoStart;
+        torpedoDamage = engine.torpedoDamage;
+        torpedoCost = engine.torpedoCost;
+        order = engine.order.clone();
+        alive = engine.alive;
+        round = engine.round;
+    }
+
+    /**
+     * Runs combat until only one faction is left, no ship is able to attack, or MAX_ROUNDS is reached
+     *
+     * @return true if the battle ended before MAX_ROUNDS was reached
+     */
+    public boolean run() {
+        while (round <= MAX_ROUNDS) {
+            int attacker = findAttacker();
+            if (attacker < 0) {
+                return true;
+            }
+            int defender = findTarget(attacker);
+            if (defender < 0) {
+                return true;
+            }
+
+            shipToShip(attacker, defender);
+
+            if (hull[attacker] < 1) {
+                destroy(attacker, defender);
+            }
+            if (hull[defender] < 1) {
+                destroy(defender, attacker);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes shields, armor, hull and action points back to the ships
+     *
+     * @param ships the ships, in the same order as given to the constructor
+     */
+    public void writeBack(List<Ship> ships) {
+        for (int i = 0; i < shipCount; i++) {
+            Ship s = ships.get(i);
+            s.setCurrentShieldStrength(shield[i]);
+            s.setCurrentArmorStrength(armor[i]);
+            s.setCurrentHullStrength(hull[i]);
+            s.battle_setActionPoints(actionPoints[i]);
+        }
+    }
+
+    /**
+     * Gets the ship that destroyed a ship
+     *
+     * @param ship index of the ship
+     * @return index of the ship that destroyed it, or -1 if the ship was not destroyed
+     */
+    public int getDestroyedBy(int ship) {
+        return destroyedBy[ship];
+    }
+
+    /**
+     * Gets the faction of a ship, as a number that is only the same for ships of the same faction in this battle
+     *
+     * @param ship index of the ship
+     * @return the faction number
+     */
+    public int getFaction(int ship) {
+        return faction[ship];
+    }
+
+    /**
+     * Gets a signature of everything about a ship that affects the outcome of combat,
+     * except its faction (see getFaction). Ships with the same signature fight the same way
+     *
+     * @param ship index of the ship
+     * @return the signature
+     */
+    public long getShipSignature(int ship) {
+        long h = 17;
+        h = mix(h, shield[ship]);
+        h = mix(h, armor[ship]);
+        h = mix(h, hull[ship]);
+        h = mix(h, actionPoints[ship]);
+        h = mix(h, maxHull[ship]);
+        h = mix(h, undamagedActionPoints[ship]);
+        h = mix(h, critChance[ship]);
+        h = mix(h, hitBonus[ship]);
+        h = mix(h, targetModifier[ship]);
+        for (int w = beamStart[ship]; w < beamStart[ship + 1]; w++) {
+            h = mix(h, beamDamage[w]);
+            h = mix(h, beamMiningLaser[w] ? -beamCost[w] : beamCost[w]);
+        }
+        h = mix(h, -1);
+        for (int w = torpedoStart[ship]; w < torpedoStart[ship + 1]; w++) {
+            h = mix(h, torpedoDamage[w]);
+            h = mix(h, torpedoCost[w]);
+        }
+        return h;
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+
+    /**
+     * @return number of ships in the battle
+     */
+    public int getShipCount() {
+        return shipCount;
+    }
+
+    /**
+     * @return number of combat rounds fought
+     */
+    public int getRound() {
+        return round;
+    }
+
+    /**
+     * Finds a random ship with action points left, starts a new round if there are none
+     *
+     * @return index of the attacker, -1 if no ship has action points even after starting a new round
+     */
+    private int findAttacker() {
+        if (alive == 0) {
+            return -1;
+        }
+        int start = random.nextInt(alive);
+        for (int n = 0; n < alive; n++) {
+            int i = order[(start + n) % alive];
+            if (actionPoints[i] > 0) {
+                return i;
+            }
+        }
+
+        nextRound();
+        for (int n = 0; n < alive; n++) {
+            if (actionPoints[order[n]] > 0) {
+                return order[n];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a random ship of another faction than the attacker
+     *
+     * @param attacker the attacker
+     * @return index of the target, -1 if only the attackers faction is left
+     */
+    private int findTarget(int attacker) {
+        int start = random.nextInt(alive);
+        for (int n = 0; n < alive; n++) {
+            int i = order[(start + n) % alive];
+            if (faction[i] != faction[attacker]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Ends the round, ships are shuffled and get their action points back
+     */
+    private void nextRound() {
+        round++;
+        for (int n = alive - 1; n > 0; n--) {
+            int swap = random.nextInt(n + 1);
+            int tmp = order[n];
+            order[n] = order[swap];
+            order[swap] = tmp;
+        }
+        for (int n = 0; n < alive; n++) {
+            int i = order[n];
+            actionPoints[i] = Ship.applyStructuralDamagePenalty(undamagedActionPoints[i], hull[i], maxHull[i]);
+        }
+    }
+
+    private void destroy(int ship, int destroyer) {
+        destroyedBy[ship] = destroyer;
+        for (int n = 0; n < alive; n++) {
+            if (order[n] == ship) {
+                System.arraycopy(order, n + 1, order, n, alive - n - 1);
+                alive--;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Does a single ship to ship attack
+     *
+     * @param attacker the attacking ship
+     * @param defender the defending ship
+     */
+    private void shipToShip(int attacker, int defender) {
+        // prevent fireing torpedo launchers more times than there are torpedo launchers on ship
+        int torpedoLaunchers = torpedoStart[attacker + 1] - torpedoStart[attacker];
+
+        // prevent each beam emitter from firering more than 3 times
+        int beamEmitters = (beamStart[attacker + 1] - beamStart[attacker]) * 3;
+
+        while (actionPoints[attacker] > 0) {
+            // prefer beam weapons if enemy has shields up, torpedoes if shields are down
+            if (shield[defender] > 0 && beamEmitters > 0) {
+                beamEmitters--;
+                fireBeamWeapon(attacker, defender);
+            } else if (torpedoLaunchers > 0) {
+                torpedoLaunchers--;
+                fireTorpedo(attacker, defender);
+            } else if (beamEmitters > 0) {
+                beamEmitters--;
+                fireBeamWeapon(attacker, defender);
+            } else {
+                // out of weapons to fire, loose remaining AP
+                actionPoints[attacker] = 0;
+            }
+        }
+    }
+
+    /**
+     * Fires a beam weapon
+     *
+     * @param attacker the attacker
+     * @param defender the target
+     */
+    private void fireBeamWeapon(int attacker, int defender) {
+        int weapon = pickBeamWeapon(attacker);
+        int damage = weapon < 0 ? 0 : beamDamage[weapon];
+        if (damage < 1) {
+            // no weapon found.. spend 2 AP point to avoid deadlock
+            spendActionPoints(attacker, 2);
+            return;
+        }
+
+        spendActionPoints(attacker, beamCost[weapon]);
+
+        if (chanceToHit(attacker, defender) > 100) {
+            // crits based on skill
+            if (random.nextInt(1000) < critChance[attacker]) {
+                damage += (damage / 2);
+            }
+
+            // damage against shields
+            if (shield[defender] > 0) {
+                int damageRemainder = damage - shield[defender];
+                shield[defender] = Math.max(0, shield[defender] - (damage * 2));
+                if (damageRemainder > 2) {
+                    // took down shields, remaining damage goes to armor/hp
+                    damage = damageRemainder;
+                } else {
+                    // shields still up
+                    return;
+                }
+            }
+
+            // damage against armor
+            if (armor[defender] > 0 && damage > 0) {
+                int damageRemainder = damage - armor[defender];
+                armor[defender] = Math.max(0, armor[defender] - (damage / 2));
+                if (damageRemainder > 0) {
+                    // destroyed armor, more damage hp
+                    damage = damageRemainder;
+                } else {
+                    // armor holding
+                    return;
+                }
+            }
+
+            // damage against structure (hitpoints)
+            if (hull[defender] > 0 && damage > 0) {
+                hull[defender] = Math.max(0, hull[defender] - damage);
+            }
+        }
+    }
+
+    /**
+     * Fires a torpedo on a target
+     *
+     * @param attacker the attacker
+     * @param defender the target
+     */
+    private void fireTorpedo(int attacker, int defender) {
+        int weapon = pickTorpedoLauncher(attacker);
+        int damage = weapon < 0 ? 0 : torpedoDamage[weapon];
+        if (damage < 1) {
+            // no weapon found.. spend 2 AP point to avoid deadlock
+            spendActionPoints(attacker, 2);
+            return;
+        }
+
+        spendActionPoints(attacker, torpedoCost[weapon]);
+
+        if (chanceToHit(attacker, defender) > 100) {
+            // crits based on skill
+            if (random.nextInt(1000) < critChance[attacker]) {
+                damage += (damage / 2);
+            }
+
+            // damage against shields
+            if (shield[defender] > 0) {
+                int damageRemainder = damage - shield[defender];
+                shield[defender] = Math.max(0, shield[defender] - damage);
+                if (damageRemainder > 2) {
+                    // took down shields, half remaining damage goes to armor/hp
+                    damage = damageRemainder / 2;
+                } else {
+                    // shields still up
+                    return;
+                }
+            }
+
+            // damage against armor
+            if (armor[defender] > 0 && damage > 0) {
+                int damageRemainder = damage - armor[defender];
+                armor[defender] = Math.max(0, armor[defender] - (damage * 2));
+                if (damageRemainder > 0) {
+                    // destroyed armor, more damage hp
+                    damage = damageRemainder - 5;
+                } else {
+                    // armor holding
+                    return;
+                }
+            }
+
+            // damage against structure (hitpoints)
+            if (hull[defender] > 0 && damage > 0) {
+                hull[defender] = Math.max(0, hull[defender] - (damage * 3));
+            }
+        }
+    }
+
+    /**
+     * Calculates the chance an attacker has to hit another ship
+     *
+     * @param attacker the attacker
+     * @param defender the other ship
+     * @return chance to hit, a number from 0 to N (where 100 and above is a hit)
+     */
+    private int chanceToHit(int attacker, int defender) {
+        return random.nextInt(100) + 60 + hitBonus[attacker] + targetModifier[defender];
+    }
+
+    private void spendActionPoints(int ship, int points) {
+        actionPoints[ship] = Math.max(0, actionPoints[ship] - points);
+    }
+
+    /**
+     * Picks a random beam weapon the attacker has enough action points to fire
+     *
+     * @param ship the ship
+     * @return index in the beam weapon table, -1 if none can be fired
+     */
+    private int pickBeamWeapon(int ship) {
+        int ap = actionPoints[ship];
+        int usable = 0;
+        for (int w = beamStart[ship]; w < beamStart[ship + 1]; w++) {
+            if (beamMiningLaser[w] ? ap > 2 : beamCost[w] <= ap) {
+                usable++;
+            }
+        }
+        if (usable == 0) {
+            return -1;
+        }
+        int pick = usable == 1 ? 0 : random.nextInt(usable);
+        for (int w = beamStart[ship]; ; w++) {
+            if (beamMiningLaser[w] ? ap > 2 : beamCost[w] <= ap) {
+                if (pick-- == 0) {
+                    return w;
+                }
+            }
+        }
+    }
+
+    /**
+     * Picks a random torpedo launcher the attacker has enough action points to fire
+     *
+     * @param ship the ship
+     * @return index in the torpedo launcher table, -1 if none can be fired
+     */
+    private int pickTorpedoLauncher(int ship) {
+        int ap = actionPoints[ship];
+        int usable = 0;
+        for (int w = torpedoStart[ship]; w < torpedoStart[ship + 1]; w++) {
+            if (torpedoCost[w] <= ap) {
+                usable++;
+            }
+        }
+        if (usable == 0) {
+            return -1;
+        }
+        int pick = usable == 1 ? 0 : random.nextInt(usable);
+        for (int w = torpedoStart[ship]; ; w++) {
+            if (torpedoCost[w] <= ap) {
+                if (pick-- == 0) {
+                    return w;
+                }
+            }
+        }
+    }
+}
@@ -20,10 +20,10 @@ import com.frostvoid.trekwar.common.TurnReportItem.TurnReportSeverity;
 import com.frostvoid.trekwar.common.orders.BuildShipOrder;
 import com.frostvoid.trekwar.common.orders.BuildStructureOrder;
 import com.frostvoid.trekwar.common.orders.Order;
-import com.frostvoid.trekwar.common.utils.Language;
 import com.frostvoid.trekwar.server.TrekwarServer;
 import com.frostvoid.trekwar.server.utils.MiscTools;
 
+import java.util.Random;
 import java.util.logging.Level;
 
 /**
@@ -38,17 +38,27 @@ public class SystemHandler implements Runnable {
     private int rowStart;
     private int rowEnd;
     private Galaxy galaxy;
+    private TurnRandom turnRandom;
+    private Random random; // stream for the row being handled
 
-    public SystemHandler(Galaxy galaxy, int rowStart, int rowEnd) {
+    /**
+     * @param galaxy     the galaxy
+     * @param rowStart   first row to handle
+     * @param rowEnd     handle rows up to (not including) this
+     * @param turnRandom every row gets its own stream from this, so results do not depend on how rows are divided between handlers
+     */
+    public SystemHandler(Galaxy galaxy, int rowStart, int rowEnd, TurnRandom turnRandom) {
         this.galaxy = galaxy;
         this.rowStart = rowStart;
         this.rowEnd = rowEnd;
+        this.turnRandom = turnRandom;
     }
 
     @Override
     public void run() {
         TrekwarServer.getLog().fine("SystemHandler running");
         for (int i = rowStart; i < rowEnd; i++) {
+            random = turnRandom.stream(i);
             for (int j = 0; j < galaxy.getMap()[i].length; j++) {
                 StarSystem s = galaxy.getMap()[i][j];
 
@@ -87,10 +97,10 @@ public class SystemHandler implements Runnable {
                         TrekwarServer.getLog().log(Level.FINE, "executing build order for system: {0}", s.getName());
 
                         if (order instanceof BuildShipOrder && s.getUser().hasUpkeepPenalty()
-                                && TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_CONSTRUCTION_DELAY_CHANCE) {
+                                && random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_CONSTRUCTION_DELAY_CHANCE) {
                             TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), s.getX(), s.getY(), TurnReportItem.TurnReportSeverity.MEDIUM);
-                            tr.setSummary(TrekwarServer.getLanguage().get("turn_report_ship_construction_fail_upkeep_1"));
-                            tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_ship_construction_fail_upkeep_2"), s.getName()));
+                            tr.setSummaryKey("turn_report_ship_construction_fail_upkeep_1");
+                            tr.setDetailedKey("turn_report_ship_construction_fail_upkeep_2", s.getName());
                             s.getUser().addTurnReport(tr);
                         } else {
                             order.execute();
@@ -183,8 +193,8 @@ public class SystemHandler implements Runnable {
 
 
             TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), s.getX(), s.getY(), TurnReportSeverity.CRITICAL);
-            tr.setSummary(Language.pop(TrekwarServer.getLanguage().get("turn_report_starvation_1"), s.getName()));
-            tr.setDetailed(TrekwarServer.getLanguage().get("turn_report_starvation_2"));
+            tr.setSummaryKey("turn_report_starvation_1", s.getName());
+            tr.setDetailedKey("turn_report_starvation_2");
             s.getUser().addTurnReport(tr);
         } else {
             // +1 morale if system has food/population balance
@@ -228,19 +238,19 @@ public class SystemHandler implements Runnable {
      * @param galaxy the galaxy object
      * @param s      the starsystem
      */
-    private static void turnHandleStarsystemIndustry(Galaxy galaxy, StarSystem s) {
+    private void turnHandleStarsystemIndustry(Galaxy galaxy, StarSystem s) {
         TrekwarServer.getLog().fine("System industry surplus: " + s.getSystemIndustrySurplus());
         if (s.getSystemIndustrySurplus() < 0) {
             if (s.getOre() > 0) {
-                int rand = TrekwarServer.PRNG.nextInt(100);
+                int rand = random.nextInt(100);
                 if (rand < 5) {
-                    int lossPercentage = TrekwarServer.PRNG.nextInt(25) + 10;
+                    int lossPercentage = random.nextInt(25) + 10;
                     int lossOre = (s.getOre() / 100) * lossPercentage;
                     s.removeOre(lossOre);
 
                     TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), s.getX(), s.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                    tr.setSummary(Language.pop(TrekwarServer.getLanguage().get("turn_report_oreloss_1"), s.getName()));
-                    tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_oreloss_2"), lossOre));
+                    tr.setSummaryKey("turn_report_oreloss_1", s.getName());
+                    tr.setDetailedKey("turn_report_oreloss_2", lossOre);
                     s.getUser().addTurnReport(tr);
                 }
             }
@@ -253,20 +263,20 @@ public class SystemHandler implements Runnable {
      * @param galaxy the galaxy object
      * @param s      the starsystem
      */
-    private static void turnHandleStarsystemResearch(Galaxy galaxy, StarSystem s) {
+    private void turnHandleStarsystemResearch(Galaxy galaxy, StarSystem s) {
         TrekwarServer.getLog().fine("System research surplus: " + s.getSystemResearchSurplus());
         if (s.getSystemResearchSurplus() < 0) {
             if (s.getUser().getCurrentResearch() != null) {
-                int rand = TrekwarServer.PRNG.nextInt(100);
+                int rand = random.nextInt(100);
                 if (rand < StaticData.RESEARCH_LOSS_CHANCE) {
                     TrekwarServer.getLog().finer("Research points lost due to research deficit in system");
-                    int lossPercentage = TrekwarServer.PRNG.nextInt(60) + 20;
+                    int lossPercentage = random.nextInt(60) + 20;
                     int lossResearch = (s.getUser().getResearchPoints() / 100) * lossPercentage;
                     s.getUser().setResearchPoints(s.getUser().getResearchPoints() - lossResearch);
 
                     TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), s.getX(), s.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                    tr.setSummary(Language.pop(TrekwarServer.getLanguage().get("turn_report_researchloss_1"), s.getName()));
-                    tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_researchloss_2"), lossResearch, s.getUser().getCurrentResearch().getName()));
+                    tr.setSummaryKey("turn_report_researchloss_1", s.getName());
+                    tr.setDetailedKey("turn_report_researchloss_2", lossResearch, s.getUser().getCurrentResearch().getName());
                     s.getUser().addTurnReport(tr);
                 }
             }
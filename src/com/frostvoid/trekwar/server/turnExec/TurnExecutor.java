@@ -17,16 +17,16 @@ package com.frostvoid.trekwar.server.turnExec;
 
 import com.frostvoid.trekwar.common.*;
 import com.frostvoid.trekwar.common.orders.Order;
-import com.frostvoid.trekwar.common.utils.Language;
+import com.frostvoid.trekwar.server.GalaxySnapshotCache;
 import com.frostvoid.trekwar.server.TrekwarServer;
-import com.frostvoid.trekwar.server.utils.MapTools;
+import com.frostvoid.trekwar.server.utils.LineOfSightCache;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.Random;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.logging.Level;
 
@@ -39,10 +39,37 @@ import java.util.logging.Level;
  */
 public class TurnExecutor {
 
-    private static final int NUM_TASKS = 4;
+    private static final int NUM_TASKS = Math.max(4, Runtime.getRuntime().availableProcessors());
     private static ExecutorService exec = Executors.newFixedThreadPool(NUM_TASKS);
+    private static ForkJoinPool battlePool = new ForkJoinPool(NUM_TASKS);
+    private static Long nextTurnSeed = null; // seed to use for the next turn, random if null
+    private static TurnRandom orderRandom; // used by orders executed during the turn
 
 
+    /**
+     * Sets the seed used for all random rolls of the next turn, used to replay a turn.
+     * The seed of every turn is logged when the turn starts
+     *
+     * @param seed the seed
+     */
+    public static void setNextTurnSeed(long seed) {
+        nextTurnSeed = seed;
+    }
+
+    /**
+     * Gets the random number generator for orders executed during the turn,
+     * orders are executed one at a time in the order they are shuffled in
+     *
+     * @return the random number generator
+     */
+    public static Random getOrderRandom() {
+        if (orderRandom == null) {
+            // not executing a turn
+            return new TurnRandom(TrekwarServer.PRNG.nextLong());
+        }
+        return orderRandom;
+    }
+
     /**
      * Executes a turn, updates all game objects (orders, research, population, combat, etc..)
      *
@@ -54,7 +81,20 @@ public class TurnExecutor {
         long startTime = System.currentTimeMillis();
         TrekwarServer.getLog().info("TurnExecutor starting to execute turn " + (galaxy.getCurrentTurn() + 1));
         ArrayList<Order> fleetOrders = new ArrayList<Order>();
-        ArrayList<Fleet> allFleetsInGame = new ArrayList<Fleet>();
+
+        // every part of the turn gets its own random stream from the turn seed, always split in the same order
+        long seed = nextTurnSeed != null ? nextTurnSeed : TrekwarServer.PRNG.nextLong();
+        nextTurnSeed = null;
+        TrekwarServer.getLog().log(Level.INFO, "Turn {0} random seed: {1}", new Object[]{galaxy.getCurrentTurn() + 1, Long.toString(seed)});
+        TurnRandom turnRandom = new TurnRandom(seed);
+        TurnRandom systemRandom = turnRandom.split();
+        TurnRandom userAndFleetRandom = turnRandom.split();
+        orderRandom = turnRandom.split();
+        TurnRandom sensorRandom = turnRandom.split();
+        TurnRandom battleRandom = turnRandom.split();
+
+        // turn reports are collected per task, and added to the users in this order when the turn is done
+        ArrayList<TurnReportBuffer> reportBuffers = new ArrayList<TurnReportBuffer>();
 
 
         // FOR ALL TILES
@@ -66,26 +106,29 @@ public class TurnExecutor {
         ArrayList<Future> systemhandler_future = new ArrayList<Future>();
 
         for (int i = 0; i < NUM_TASKS; i++) {
-            threads.add(new SystemHandler(galaxy, offset, offset + chunkSize + mod));
+            threads.add(new SystemHandler(galaxy, offset, offset + chunkSize + mod, systemRandom));
             offset += (chunkSize + mod);
             if (i == 0) {
                 mod = 0;
             }
         }
         for (SystemHandler handler : threads) {
-            systemhandler_future.add(exec.submit(handler));
+            TurnReportBuffer buffer = new TurnReportBuffer();
+            reportBuffers.add(buffer);
+            systemhandler_future.add(exec.submit(buffer.wrap(handler)));
         }
 
         // HANDLE ALL USER + FLEET STUFF
-        UserAndFleetHandler ufh = new UserAndFleetHandler(galaxy);
-        Future<UserAndFleetHandlerResult> ufh_future = exec.submit(ufh);
+        UserAndFleetHandler ufh = new UserAndFleetHandler(galaxy, userAndFleetRandom);
+        TurnReportBuffer ufhReports = new TurnReportBuffer();
+        reportBuffers.add(ufhReports);
+        Future<UserAndFleetHandlerResult> ufh_future = exec.submit(ufhReports.wrap(ufh));
 
 
         // WAIT FOR THREADS BEFORE EXECUTING FLEET ORDERS
         // user and fleet handler
         try {
             UserAndFleetHandlerResult ufh_res = ufh_future.get();
-            allFleetsInGame = ufh_res.getFleetsFound();
             fleetOrders = ufh_res.getOrdersFound();
         } catch (Exception ee) {
             TrekwarServer.getLog().log(Level.SEVERE, "UserAndFleetHandler failed execution, fleet orders will NOT be executed", ee);
@@ -104,8 +147,13 @@ public class TurnExecutor {
         }
 
 
+        // orders and battle results are handled by this thread
+        TurnReportBuffer mainReports = new TurnReportBuffer();
+        reportBuffers.add(mainReports);
+        mainReports.open();
+
         // RANDOMIZE AND EXECUTE ALL FLEET ORDERS... ONLY THING THAT CAUSES STUFF TO MOVE BETWEEN DIFFERENT TILES
-        Collections.shuffle(fleetOrders);
+        Collections.shuffle(fleetOrders, orderRandom);
         TrekwarServer.getLog().log(Level.INFO, "Executing {0} fleet orders", fleetOrders.size());
         for (Order order : fleetOrders) {
             TrekwarServer.getLog().log(Level.FINE, "Executing order of type: {0}", new Object[]{order.getClass().getSimpleName()});
@@ -116,44 +164,38 @@ public class TurnExecutor {
         }
 
 
-        // update sensor strength
+        // update sensor strength, one task per user. Only sensor fields that have changed since last turn are computed
+        LineOfSightCache.checkSensorCosts(galaxy);
+        ArrayList<Future<Integer>> sensorhandler_future = new ArrayList<Future<Integer>>();
         for (User u : galaxy.getUsers()) {
-            u.clearSensorStrenghts();
-            boolean upkeepPenalty = u.hasUpkeepPenalty();
-
-            for (Fleet fleet : u.getFleets()) {
-                if (upkeepPenalty && TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_SENSOR_FAIL_CHANCE) {
-                    TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                    tr.setSummary(TrekwarServer.getLanguage().get("turn_report_sensor_fail_upkeep_1"));
-                    tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_sensor_fail_upkeep_2"), fleet.getName()));
-                    u.addTurnReport(tr);
-                    TrekwarServer.getLog().log(Level.FINE, "Fleet {0} owned by {1} did not update sensors because of upkeep penalty", new Object[]{fleet.getName(), u.getUsername()});
-                } else {
-                    MapTools.doLOS(galaxy, u, fleet.getX(), fleet.getY(), fleet.getSensorStrength());
-                }
-            }
-
-            for (StarSystem s : u.getStarSystems()) {
-                MapTools.doLOS(galaxy, s.getUser(), s.getX(), s.getY(), s.getSystemScanStrength());
+            TurnReportBuffer buffer = new TurnReportBuffer();
+            reportBuffers.add(buffer);
+            sensorhandler_future.add(exec.submit(buffer.wrap(new SensorHandler(galaxy, u, sensorRandom.split()))));
+        }
+        int sensorFieldsComputed = 0;
+        try {
+            for (Future<Integer> f : sensorhandler_future) {
+                sensorFieldsComputed += f.get();
             }
+        } catch (Exception ee) {
+            TrekwarServer.getLog().log(Level.SEVERE, "Exception waiting for sensorhandler_future to return", ee);
         }
+        TrekwarServer.getLog().log(Level.FINE, "Computed {0} sensor fields", sensorFieldsComputed);
 
 
-        // Find all systems that have opposing factions
-        Set<StarSystem> combatSystems = new HashSet<StarSystem>();
-        for (Fleet f : allFleetsInGame) {
-            StarSystem s = galaxy.getMap()[f.getX()][f.getY()];
-            if (SpaceCombatResolver.systemHasOpposingFleets(s) && SpaceCombatResolver.systemHasFleetWithArmedShips(s)) {
-                if (!combatSystems.contains(s)) {
-                    combatSystems.add(s);
-                }
+        // Find all systems that have opposing factions, only tiles with fleets from more than one faction are checked
+        ArrayList<StarSystem> combatSystems = new ArrayList<StarSystem>();
+        for (StarSystem s : galaxy.getFleetIndex().getSystemsWithOpposingFleets()) {
+            if (SpaceCombatResolver.systemHasFleetWithArmedShips(s)) {
+                combatSystems.add(s);
             }
         }
 
-        // Resolve battle in all systems
+        // Resolve battle in all systems, battles are resolved in parallel and the results applied afterwards
+        ArrayList<SpaceCombatResolver> resolvers = new ArrayList<SpaceCombatResolver>(combatSystems.size());
         for (StarSystem system : combatSystems) {
             TrekwarServer.LOG.log(Level.INFO, "Creating new space battle at system {0} ({1},{2})", new Object[]{system.getName(), system.getX(), system.getY()});
-            SpaceBattle battle = new SpaceBattle(system, galaxy.getCurrentTurn());
+            SpaceBattle battle = new SpaceBattle(system, galaxy.getCurrentTurn(), battleRandom.stream(system.getX() * galaxy.getHeight() + system.getY()));
 
             // add all ships in system to the battle
             for (Fleet f : system.getFleets()) {
@@ -162,13 +204,26 @@ public class TurnExecutor {
                     TrekwarServer.LOG.log(Level.FINER, "Added ship to a battle: {0}", ship.getName());
                 }
             }
-            // TODO: space combat resolutions are not multithreaded.. Should be fixed at some point?
-            TrekwarServer.LOG.log(Level.FINE, "Starting Space Combat Resolver");
-            SpaceCombatResolver scr = new SpaceCombatResolver(battle);
-            scr.doCombat();
+            resolvers.add(new SpaceCombatResolver(battle));
+        }
+        if (!resolvers.isEmpty()) {
+            TrekwarServer.LOG.log(Level.FINE, "Starting Space Combat Resolver for {0} battles", resolvers.size());
+            try {
+                battlePool.invoke(new SpaceBattleTask(resolvers));
+            } catch (Exception ee) {
+                TrekwarServer.getLog().log(Level.SEVERE, "Exception resolving space battles", ee);
+            }
+            for (SpaceCombatResolver scr : resolvers) {
+                scr.applyResults();
+            }
         }
 
+        mainReports.close();
+        TurnReportBuffer.flush(reportBuffers);
+
+        orderRandom = null;
         galaxy.incrementCurrentTurn();
+        GalaxySnapshotCache.clear();
         galaxy.setExecutingTurn(false);
         long stopTime = System.currentTimeMillis();
         return stopTime - startTime;
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.turnExec;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded random number generator used during turn execution, a java.util.Random
+ * (as used by Collections.shuffle and the combat resolvers) backed by a SplittableRandom.
+ * <p>
+ * Every turn gets a master seed, and every task executing part of the turn
+ * (system handlers, battles, etc.) gets its own stream split from the master,
+ * in the same order every time. A turn can therefore be replayed exactly by
+ * executing it again with the same seed, and tasks running at the same time
+ * never share a generator.
+ * <p>
+ * The seed can only be given when the stream is created, setSeed() is not supported.
+ * Not thread safe, each stream must only be used by one thread at a time.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class TurnRandom extends Random {
+
+    private final SplittableRandom random;
+    private final long streamSeed; // seed for the numbered streams, see stream()
+
+    /**
+     * Creates a new master stream
+     *
+     * @param seed the seed
+     */
+    public TurnRandom(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private TurnRandom(SplittableRandom random) {
+        super(0);
+        this.random = random;
+        this.streamSeed = random.nextLong();
+    }
+
+    /**
+     * Makes a new stream, independent of this one. Splitting advances this stream,
+     * so streams split in the same order from the same seed are the same
+     *
+     * @return the new stream
+     */
+    public TurnRandom split() {
+        return new TurnRandom(random.split());
+    }
+
+    /**
+     * Gets stream number N of this stream, without advancing this stream.
+     * Used when the number of streams needed, or the order they are made in, is not fixed
+     *
+     * @param index the stream number
+     * @return the stream
+     */
+    public TurnRandom stream(long index) {
+        return new TurnRandom(new SplittableRandom(new SplittableRandom(streamSeed + index).nextLong()));
+    }
+
+    /**
+     * Not supported, the seed is given when the stream is created
+     *
+     * @param seed ignored
+     * @throws UnsupportedOperationException always, except when called by the Random constructor
+     */
+    @Override
+    public void setSeed(long seed) {
+        if (random != null) {
+            throw new UnsupportedOperationException("The seed of a TurnRandom can not be changed");
+        }
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (random.nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public int nextInt() {
+        return random.nextInt();
+    }
+
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return random.nextBoolean();
+    }
+}
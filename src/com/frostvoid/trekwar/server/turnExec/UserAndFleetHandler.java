@@ -17,10 +17,10 @@ package com.frostvoid.trekwar.server.turnExec;
 
 import com.frostvoid.trekwar.common.*;
 import com.frostvoid.trekwar.common.orders.Order;
-import com.frostvoid.trekwar.common.utils.Language;
 import com.frostvoid.trekwar.server.TrekwarServer;
 
 import java.util.ArrayList;
+import java.util.Random;
 import java.util.concurrent.Callable;
 import java.util.logging.Level;
 
@@ -34,14 +34,14 @@ import java.util.logging.Level;
 public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult> {
 
     private Galaxy galaxy;
+    private Random random;
 
-    private ArrayList<Fleet> fleetsFound;
     private ArrayList<Order> ordersFound;
 
-    public UserAndFleetHandler(Galaxy galaxy) {
+    public UserAndFleetHandler(Galaxy galaxy, Random random) {
         this.galaxy = galaxy;
+        this.random = random;
 
-        fleetsFound = new ArrayList<Fleet>();
         ordersFound = new ArrayList<Order>();
     }
 
@@ -65,8 +65,8 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                 if (u.getCurrentResearch().getResearchCost() <= u.getResearchPoints()) {
                     Technology research = u.getCurrentResearch();
                     TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), -1, -1, TurnReportItem.TurnReportSeverity.MEDIUM);
-                    tr.setSummary(TrekwarServer.getLanguage().get("turn_report_research_1"));
-                    tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_research_2"), research.getType(), research.getName()));
+                    tr.setSummaryKey("turn_report_research_1");
+                    tr.setDetailedKey("turn_report_research_2", research.getType(), research.getName());
                     u.addTurnReport(tr);
                     TrekwarServer.getLog().log(Level.FINE, "User {0} has discovered: {1}", new Object[]{u.getUsername(), u.getCurrentResearch().getName()});
 
@@ -104,8 +104,6 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                 }
 
 
-                fleetsFound.add(fleet);
-
                 // FLEET IN OWN STARSYSTEM
                 if (galaxy.getMap()[fleet.getX()][fleet.getY()].getUser().equals(fleet.getUser())) {
                     StarSystem system = galaxy.getMap()[fleet.getX()][fleet.getY()];
@@ -118,10 +116,10 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                             amount = galaxy.getMap()[fleet.getX()][fleet.getY()].getDeuterium();
                         }
                         TrekwarServer.LOG.log(Level.FINEST, "Refueling with {0} deuterium. Fleet has {1} deuterium", new Object[]{amount, fleet.getDeuteriumLeft()});
-                        if (upkeepPenalty && TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REFUEL_FAIL_CHANCE) {
+                        if (upkeepPenalty && random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REFUEL_FAIL_CHANCE) {
                             TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                            tr.setSummary(TrekwarServer.getLanguage().get("turn_report_refuel_fail_upkeep_1"));
-                            tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_refuel_fail_upkeep_2"), fleet.getName(), system.getName()));
+                            tr.setSummaryKey("turn_report_refuel_fail_upkeep_1");
+                            tr.setDetailedKey("turn_report_refuel_fail_upkeep_2", fleet.getName(), system.getName());
                             u.addTurnReport(tr);
                             TrekwarServer.LOG.log(Level.FINE, "Refueling fleet {0} failed because of upkeep penalty", fleet.getName());
                         } else {
@@ -135,11 +133,11 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                     // add crew if system not in hunger
                     if (fleet.needsMoreCrew() && system.getSystemFoodSurplus() >= 0) {
                         TrekwarServer.LOG.log(Level.FINER, "Adding crew to fleet {1} in friendly system {2}", new Object[]{fleet.getName(), system.getName()});
-                        if (upkeepPenalty && TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REPAIR_FAIL_CHANCE) {
+                        if (upkeepPenalty && random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REPAIR_FAIL_CHANCE) {
                             TrekwarServer.LOG.log(Level.FINEST, "Adding crew to fleet {0} failed because of upkeep penalty", fleet.getName());
                             TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.MEDIUM);
-                            tr.setSummary(TrekwarServer.getLanguage().get("turn_report_recrew_fail_upkeep_1"));
-                            tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_recrew_fail_upkeep_2"), fleet.getName(), system.getName()));
+                            tr.setSummaryKey("turn_report_recrew_fail_upkeep_1");
+                            tr.setDetailedKey("turn_report_recrew_fail_upkeep_2", fleet.getName(), system.getName());
                             u.addTurnReport(tr);
                         } else {
                             for (Ship s : fleet.getShips()) {
@@ -154,10 +152,10 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                     // repair damaged ships in own system
                     if (fleet.needsRepair()) {
                         TrekwarServer.LOG.log(Level.FINER, "Repairing fleet {0} in friendly system {1}", new Object[]{fleet.getName(), system.getName()});
-                        if (upkeepPenalty && TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REPAIR_FAIL_CHANCE) {
+                        if (upkeepPenalty && random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REPAIR_FAIL_CHANCE) {
                             TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                            tr.setSummary(TrekwarServer.getLanguage().get("turn_report_repair_fail_upkeep_1"));
-                            tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_repair_fail_upkeep_2"), fleet.getName(), system.getName()));
+                            tr.setSummaryKey("turn_report_repair_fail_upkeep_1");
+                            tr.setDetailedKey("turn_report_repair_fail_upkeep_2", fleet.getName(), system.getName());
                             u.addTurnReport(tr);
                             TrekwarServer.LOG.log(Level.FINEST, "Repairing fleet {0} failed because of upkeep penalty", fleet.getName());
                         } else {
@@ -170,10 +168,10 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                     // repair in space (not own system)
                     if (fleet.needsRepair()) {
                         TrekwarServer.LOG.log(Level.FINER, "Repairing fleet {0} in deep space", fleet.getName());
-                        if (upkeepPenalty && TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REPAIR_FAIL_CHANCE) {
+                        if (upkeepPenalty && random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_REPAIR_FAIL_CHANCE) {
                             TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.HIGH);
-                            tr.setSummary(TrekwarServer.getLanguage().get("turn_report_repair_fail_upkeep_1"));
-                            tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_repair_fail_upkeep_3"), fleet.getName()));
+                            tr.setSummaryKey("turn_report_repair_fail_upkeep_1");
+                            tr.setDetailedKey("turn_report_repair_fail_upkeep_3", fleet.getName());
                             u.addTurnReport(tr);
                             TrekwarServer.LOG.log(Level.FINEST, "Repairing fleet {0} in failed because of upkeep penalty", fleet.getName());
                         } else {
@@ -186,61 +184,61 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                 if (upkeepPenalty) {
                     for (Ship ship : fleet.getShips()) {
                         // MORALE PENALTY FOR UPKEEP SHORTAGE
-                        if (TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_MORALE_LOSS_CHANCE) {
+                        if (random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_MORALE_LOSS_CHANCE) {
                             ship.setMorale(ship.getMorale() - 3);
                             TrekwarServer.LOG.log(Level.FINE, "A {0} class ship in fleet {1} suffered a morale loss due to upkeep penalty. morale: {2}", new Object[]{ship.getName(), fleet.getName(), ship.getMorale()});
                         }
 
                         // SHIP DAMAGE PENALTY FOR UPKEEP SHORTAGE
-                        if (TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_LIGHT_DAMAGE_CHANCE) {
+                        if (random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_LIGHT_DAMAGE_CHANCE) {
                             int armorDmg = 0;
                             if (ship.getCurrentArmorStrength() > 0) {
-                                armorDmg = TrekwarServer.PRNG.nextInt(ship.getCurrentArmorStrength() / 8);
+                                armorDmg = random.nextInt(ship.getCurrentArmorStrength() / 8);
                             }
-                            int hullDmg = TrekwarServer.PRNG.nextInt(ship.getCurrentHullStrength() / 10);
+                            int hullDmg = random.nextInt(ship.getCurrentHullStrength() / 10);
                             if (armorDmg > 0 || hullDmg > 0) {
                                 ship.setCurrentArmorStrength(ship.getCurrentArmorStrength() - armorDmg);
                                 ship.setCurrentHullStrength(ship.getCurrentHullStrength() - hullDmg);
                                 ship.setMorale(ship.getMorale() - 6);
                                 TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.CRITICAL);
-                                tr.setSummary(TrekwarServer.getLanguage().get("turn_report_ship_damage_upkeep_1"));
-                                tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_ship_damage_upkeep_2"), fleet.getName(), ship.getHullClass().getName(), armorDmg, hullDmg));
+                                tr.setSummaryKey("turn_report_ship_damage_upkeep_1");
+                                tr.setDetailedKey("turn_report_ship_damage_upkeep_2", fleet.getName(), ship.getHullClass().getName(), armorDmg, hullDmg);
                                 u.addTurnReport(tr);
                                 TrekwarServer.LOG.log(Level.FINE, "A {0} class ship in fleet {1} suffered light damage due to upkeep penalty. armor/hull dmg: {2}/{3}", new Object[]{ship.getName(), fleet.getName(), armorDmg, hullDmg});
                                 TrekwarServer.LOG.log(Level.FINER, "Armor: {0}/{1}, Hull: {2}/{3}", new Object[]{ship.getMaxArmor(), ship.getCurrentArmorStrength(), ship.getMaxHitpoints(), ship.getCurrentHullStrength()});
                             }
                         }
-                        if (TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_MODERATE_DAMAGE_CHANCE) {
+                        if (random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_MODERATE_DAMAGE_CHANCE) {
                             int armorDmg = 0;
                             if (ship.getCurrentArmorStrength() > 0) {
-                                armorDmg = TrekwarServer.PRNG.nextInt(ship.getCurrentArmorStrength() / 5);
+                                armorDmg = random.nextInt(ship.getCurrentArmorStrength() / 5);
                             }
-                            int hullDmg = TrekwarServer.PRNG.nextInt(ship.getCurrentHullStrength() / 5);
+                            int hullDmg = random.nextInt(ship.getCurrentHullStrength() / 5);
                             if (armorDmg > 0 || hullDmg > 0) {
                                 ship.setCurrentArmorStrength(ship.getCurrentArmorStrength() - armorDmg);
                                 ship.setCurrentHullStrength(ship.getCurrentHullStrength() - hullDmg);
                                 ship.setMorale(ship.getMorale() - 10);
                                 TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.CRITICAL);
-                                tr.setSummary(TrekwarServer.getLanguage().get("turn_report_ship_damage_upkeep_1"));
-                                tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_ship_damage_upkeep_2"), fleet.getName(), ship.getHullClass().getName(), armorDmg, hullDmg));
+                                tr.setSummaryKey("turn_report_ship_damage_upkeep_1");
+                                tr.setDetailedKey("turn_report_ship_damage_upkeep_2", fleet.getName(), ship.getHullClass().getName(), armorDmg, hullDmg);
                                 u.addTurnReport(tr);
                                 TrekwarServer.LOG.log(Level.FINE, "A {0} class ship in fleet {1} suffered moderate damage due to upkeep penalty. armor/hull dmg: {2}/{3}", new Object[]{ship.getName(), fleet.getName(), armorDmg, hullDmg});
                                 TrekwarServer.LOG.log(Level.FINER, "Armor: {0}/{1}, Hull: {2}/{3}", new Object[]{ship.getMaxArmor(), ship.getCurrentArmorStrength(), ship.getMaxHitpoints(), ship.getCurrentHullStrength()});
                             }
                         }
-                        if (TrekwarServer.PRNG.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_HEAVY_DAMAGE_CHANCE) {
+                        if (random.nextInt(100) < StaticData.SHIP_UPKEEP_PENALTY_HEAVY_DAMAGE_CHANCE) {
                             int armorDmg = 0;
                             if (ship.getCurrentArmorStrength() > 0) {
-                                armorDmg = TrekwarServer.PRNG.nextInt(ship.getCurrentArmorStrength());
+                                armorDmg = random.nextInt(ship.getCurrentArmorStrength());
                             }
-                            int hullDmg = TrekwarServer.PRNG.nextInt(ship.getCurrentHullStrength() / 2);
+                            int hullDmg = random.nextInt(ship.getCurrentHullStrength() / 2);
                             if (armorDmg > 0 || hullDmg > 0) {
                                 ship.setCurrentArmorStrength(ship.getCurrentArmorStrength() - armorDmg);
                                 ship.setCurrentHullStrength(ship.getCurrentHullStrength() - hullDmg);
                                 ship.setMorale(ship.getMorale() - 30);
                                 TurnReportItem tr = new TurnReportItem(galaxy.getCurrentTurn(), fleet.getX(), fleet.getY(), TurnReportItem.TurnReportSeverity.CRITICAL);
-                                tr.setSummary(TrekwarServer.getLanguage().get("turn_report_ship_damage_upkeep_1"));
-                                tr.setDetailed(Language.pop(TrekwarServer.getLanguage().get("turn_report_ship_damage_upkeep_2"), fleet.getName(), ship.getHullClass().getName(), armorDmg, hullDmg));
+                                tr.setSummaryKey("turn_report_ship_damage_upkeep_1");
+                                tr.setDetailedKey("turn_report_ship_damage_upkeep_2", fleet.getName(), ship.getHullClass().getName(), armorDmg, hullDmg);
                                 u.addTurnReport(tr);
                                 TrekwarServer.LOG.log(Level.FINE, "A {0} class ship in fleet {1} suffered heavy damage due to upkeep penalty. armor/hull dmg: {2}/{3}", new Object[]{ship.getName(), fleet.getName(), armorDmg, hullDmg});
                                 TrekwarServer.LOG.log(Level.FINER, "Armor: {0}/{1}, Hull: {2}/{3}", new Object[]{ship.getMaxArmor(), ship.getCurrentArmorStrength(), ship.getMaxHitpoints(), ship.getCurrentHullStrength()});
@@ -267,23 +265,17 @@ public class UserAndFleetHandler implements Callable<UserAndFleetHandlerResult>
                 }
             }
         }
-        return new UserAndFleetHandlerResult(fleetsFound, ordersFound);
+        return new UserAndFleetHandlerResult(ordersFound);
     }
 }
 
 class UserAndFleetHandlerResult {
-    private ArrayList<Fleet> fleetsFound;
     private ArrayList<Order> ordersFound;
 
-    public UserAndFleetHandlerResult(ArrayList<Fleet> fleetsFound, ArrayList<Order> ordersFound) {
-        this.fleetsFound = fleetsFound;
+    public UserAndFleetHandlerResult(ArrayList<Order> ordersFound) {
         this.ordersFound = ordersFound;
     }
 
-    public ArrayList<Fleet> getFleetsFound() {
-        return fleetsFound;
-    }
-
     public ArrayList<Order> getOrdersFound() {
         return ordersFound;
     }
@@ -47,9 +47,14 @@ public final class BresenhamLine {
     private int dx, dy, error, x_inc, y_inc, xx, yy, length, count;
 
     /**
-     * General case algorithm
+     * General case algorithm, one for each thread
      */
-    private static final BresenhamLine bresenham = new BresenhamLine();
+    private static final ThreadLocal<BresenhamLine> bresenham = new ThreadLocal<BresenhamLine>() {
+        @Override
+        protected BresenhamLine initialValue() {
+            return new BresenhamLine();
+        }
+    };
 
     /**
      * Construct a Bresenham algorithm.
@@ -160,6 +165,16 @@ public final class BresenhamLine {
         return yy;
     }
 
+    /**
+     * Gets the Bresenham algorithm of the current thread, so worker threads
+     * can plot many lines without making a new object for each line
+     *
+     * @return the Bresenham algorithm of the current thread
+     */
+    public static BresenhamLine getThreadInstance() {
+        return bresenham.get();
+    }
+
     /**
      * Plot a line between (x1,y1) and (x2,y2). The results are placed in x[] and y[], which must be large enough.
      *
@@ -167,11 +182,12 @@ public final class BresenhamLine {
      */
     public static final int plot(final int x1, final int y1, final int x2, final int y2, final int x[], final int y[]) {
 
-        int length = Math.min(x.length, Math.min(y.length, bresenham.plot(x1, y1, x2, y2)));
+        BresenhamLine line = bresenham.get();
+        int length = Math.min(x.length, Math.min(y.length, line.plot(x1, y1, x2, y2)));
         for (int i = 0; i < length; i++) {
-            x[i] = bresenham.getX();
-            y[i] = bresenham.getY();
-            bresenham.next();
+            x[i] = line.getX();
+            y[i] = line.getY();
+            line.next();
         }
 
         return length;
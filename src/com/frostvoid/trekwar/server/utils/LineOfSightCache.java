@@ -0,0 +1,256 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.utils;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.SensorOverlay;
+import com.frostvoid.trekwar.common.StarSystem;
+import com.frostvoid.trekwar.common.User;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incremental line of sight for the sensor overlay of a user.
+ * <p>
+ * The sensor field of every sensor source (fleet, starsystem, etc..) is kept between turns,
+ * and is only computed again if the source has moved, changed sensor strength, or the sensor cost
+ * of a tile the field covers has changed. Only tiles covered by fields that changed are updated
+ * in the sensor overlay, the rest of the overlay is left as it was.
+ * <p>
+ * Every turn: checkSensorCosts(galaxy) once, then for each user beginUpdate(),
+ * addSource(...) for every sensor source, and finishUpdate(...).
+ * Different users can be updated at the same time by different threads.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class LineOfSightCache {
+
+    private static final ConcurrentHashMap<String, LineOfSightCache> caches = new ConcurrentHashMap<String, LineOfSightCache>();
+    private static int[] sensorCosts; // sensor cost of every tile at last check, index x * height + y
+    private static int[] changedCostSums; // summed area table of tiles with changed sensor cost, null if none changed
+    private static int sensorCostHeight;
+
+    private IdentityHashMap<Object, SensorField> fields = new IdentityHashMap<Object, SensorField>();
+    private IdentityHashMap<Object, SensorField> nextFields;
+    private boolean[] dirty; // tiles that must be updated, index x * height + y
+    private int[] dirtySums;
+    private boolean anyDirty;
+    private boolean fullUpdate = true; // the overlay has never been made by this cache
+    private int width;
+    private int height;
+    private int computed;
+
+    /**
+     * Gets the line of sight cache of a user
+     *
+     * @param user the user
+     * @return the cache
+     */
+    public static LineOfSightCache getCache(User user) {
+        LineOfSightCache cache = caches.get(user.getUsername());
+        if (cache == null) {
+            caches.putIfAbsent(user.getUsername(), new LineOfSightCache());
+            cache = caches.get(user.getUsername());
+        }
+        return cache;
+    }
+
+    /**
+     * Finds tiles where the sensor cost has changed since last check,
+     * must be called once each turn before any user is updated
+     *
+     * @param galaxy the galaxy
+     */
+    public static synchronized void checkSensorCosts(Galaxy galaxy) {
+        StarSystem[][] map = galaxy.getMap();
+        int w = galaxy.getWidth();
+        int h = galaxy.getHeight();
+        int[] costs = new int[w * h];
+        boolean[] changed = new boolean[w * h];
+        boolean anyChanged = false;
+        for (int x = 0; x < w; x++) {
+            for (int y = 0; y < h; y++) {
+                int i = x * h + y;
+                costs[i] = map[x][y].getSensorCost();
+                if (sensorCosts != null && sensorCosts.length == costs.length && sensorCosts[i] != costs[i]) {
+                    changed[i] = true;
+                    anyChanged = true;
+                }
+            }
+        }
+        sensorCostHeight = h;
+        changedCostSums = anyChanged ? summedAreaTable(changed, w, h, null) : null;
+        sensorCosts = costs;
+    }
+
+    /**
+     * Removes all cached sensor fields, the next update of every user will update the whole overlay
+     */
+    public static void clear() {
+        caches.clear();
+    }
+
+    /**
+     * Starts updating the sensor overlay of the user for a new turn
+     *
+     * @param galaxy the galaxy
+     */
+    public void beginUpdate(Galaxy galaxy) {
+        if (dirty == null || width != galaxy.getWidth() || height != galaxy.getHeight()) {
+            width = galaxy.getWidth();
+            height = galaxy.getHeight();
+            dirty = new boolean[width * height];
+            fields.clear();
+            fullUpdate = true;
+        }
+        nextFields = new IdentityHashMap<Object, SensorField>(fields.size() * 2);
+        computed = 0;
+    }
+
+    /**
+     * Adds a sensor source to the overlay for this turn, sources not added are removed from the overlay
+     *
+     * @param galaxy         the galaxy
+     * @param source         the source object, used to find the field of the source from last turn
+     * @param x              the source x coordinate
+     * @param y              the source y coordinate
+     * @param sensorStrength the sensor strength
+     */
+    public void addSource(Galaxy galaxy, Object source, int x, int y, int sensorStrength) {
+        SensorField field = fields.get(source);
+        if (field != null && field.isSameSource(x, y, sensorStrength) && !isSensorCostChanged(field)) {
+            nextFields.put(source, field);
+            return;
+        }
+        if (field != null) {
+            markDirty(field);
+        }
+        field = SensorField.compute(galaxy, x, y, sensorStrength);
+        markDirty(field);
+        nextFields.put(source, field);
+        computed++;
+    }
+
+    /**
+     * Updates the sensor overlay of the user with the sources added this turn
+     *
+     * @param user the user (must be the owner of this cache)
+     * @return the number of sensor fields computed this turn
+     */
+    public int finishUpdate(User user) {
+        for (Map.Entry<Object, SensorField> entry : fields.entrySet()) {
+            if (!nextFields.containsKey(entry.getKey())) {
+                markDirty(entry.getValue());
+            }
+        }
+        fields = nextFields;
+        nextFields = null;
+
+        if (fullUpdate) {
+            Arrays.fill(dirty, true);
+            anyDirty = true;
+            fullUpdate = false;
+        }
+        if (!anyDirty) {
+            return computed;
+        }
+
+        SensorOverlay overlay = user.getSensorOverlay();
+        if (overlay.getWidth() != width || overlay.getHeight() != height) {
+            // users that never get a map sized overlay (like the nobody user) have no sensors
+            Arrays.fill(dirty, false);
+            anyDirty = false;
+            return computed;
+        }
+
+        // reset dirty tiles and add all fields covering them
+        for (int x = 0; x < width; x++) {
+            int m = x * height;
+            for (int y = 0; y < height; y++) {
+                if (dirty[m + y]) {
+                    overlay.clearSensorStrength(x, y);
+                }
+            }
+        }
+        dirtySums = summedAreaTable(dirty, width, height, dirtySums);
+        for (SensorField field : fields.values()) {
+            if (countInRect(dirtySums, height, field) > 0) {
+                field.applyTo(overlay, dirty, height);
+            }
+        }
+
+        Arrays.fill(dirty, false);
+        anyDirty = false;
+        return computed;
+    }
+
+    private void markDirty(SensorField field) {
+        for (int x = field.getLeft(); x <= field.getRight(); x++) {
+            int m = x * height;
+            for (int y = field.getTop(); y <= field.getBottom(); y++) {
+                dirty[m + y] = true;
+            }
+        }
+        anyDirty = true;
+    }
+
+    private static boolean isSensorCostChanged(SensorField field) {
+        int[] sums = changedCostSums;
+        return sums != null && countInRect(sums, sensorCostHeight, field) > 0;
+    }
+
+    /**
+     * Makes a summed area table of a map of flags, entry (x + 1) * (height + 1) + (y + 1)
+     * holds the number of flags set in the rectangle from 0,0 to x,y (inclusive)
+     *
+     * @param flags  the flags, index x * height + y
+     * @param width  the width of the map
+     * @param height the height of the map
+     * @param table  table to reuse, or null
+     * @return the summed area table
+     */
+    private static int[] summedAreaTable(boolean[] flags, int width, int height, int[] table) {
+        int h1 = height + 1;
+        if (table == null || table.length != (width + 1) * h1) {
+            table = new int[(width + 1) * h1];
+        }
+        for (int x = 0; x < width; x++) {
+            int rowSum = 0;
+            int m = x * height;
+            for (int y = 0; y < height; y++) {
+                if (flags[m + y]) {
+                    rowSum++;
+                }
+                table[(x + 1) * h1 + y + 1] = table[x * h1 + y + 1] + rowSum;
+            }
+        }
+        return table;
+    }
+
+    private static int countInRect(int[] table, int height, SensorField field) {
+        int h1 = height + 1;
+        int x0 = field.getLeft();
+        int y0 = field.getTop();
+        int x1 = field.getRight() + 1;
+        int y1 = field.getBottom() + 1;
+        return table[x1 * h1 + y1] - table[x0 * h1 + y1] - table[x1 * h1 + y0] + table[x0 * h1 + y0];
+    }
+}
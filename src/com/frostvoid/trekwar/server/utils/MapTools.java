@@ -32,53 +32,17 @@ public class MapTools {
 
 
     /**
-     * Does Line Of Sight for a starsystem, ship or other space entity
+     * Does Line Of Sight for a starsystem, ship or other space entity.
+     * LineOfSightCache should be used when doing LOS for all sources every turn
      *
+     * @param galaxy         the galaxy
      * @param user           the user to do LOS for (updates this user fog of war)
      * @param sourceX        the source x coordinate
      * @param sourceY        the source y coordinate
      * @param sensorStrength the sensor strength
      */
     public static void doLOS(Galaxy galaxy, User user, int sourceX, int sourceY, int sensorStrength) {
-        ArrayList<StarSystem> boundingBox = getBoundingBox(galaxy.getMap(), galaxy.getMap()[sourceX][sourceY], sensorStrength / 10);
-
-        // ALWAYS remove fog of war in adjacent spaces
-        ArrayList<StarSystem> box = getBoundingBox(galaxy.getMap(), galaxy.getMap()[sourceX][sourceY], 1);
-        for (StarSystem s : box) {
-            updateTileSensorStrength(user, s.getX(), s.getY(), -1);
-        }
-
-        // ALWAYS remove fog of war AND show tile, for the starsystem the sensor source is in
-        updateTileSensorStrength(user, sourceX, sourceY, 0);
-
-        BresenhamLine b = new BresenhamLine();
-        for (StarSystem s : boundingBox) {
-            b.plot(sourceX, sourceY, s.getX(), s.getY());
-            int strength = sensorStrength;
-            updateTileSensorStrength(user, sourceX, sourceY, strength - galaxy.getMap()[sourceX][sourceY].getSensorCost());
-            strength -= galaxy.getMap()[sourceX][sourceY].getSensorCost();
-
-            while (b.next()) {
-                strength -= galaxy.getMap()[b.getX()][b.getY()].getSensorCost();
-                if (strength <= 0) {
-                    break;
-                } else {
-                    updateTileSensorStrength(user, b.getX(), b.getY(), strength);
-                }
-            }
-        }
-    }
-
-    /**
-     * Updates the sensor strength of a tile, IF new value is higher than existing one
-     *
-     * @param user     the user to update sensor strength map for
-     * @param x        tile x coordinate
-     * @param y        tile y coordinate
-     * @param strength sensor strength for tile
-     */
-    private static void updateTileSensorStrength(User user, int x, int y, int strength) {
-        user.getSensorOverlay()[x][y] = Math.max(user.getSensorOverlay()[x][y], strength);
+        SensorField.compute(galaxy, sourceX, sourceY, sensorStrength).applyTo(user.getSensorOverlay());
     }
 
     /**
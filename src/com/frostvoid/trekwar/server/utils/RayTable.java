@@ -0,0 +1,116 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Precomputed rays for line of sight within a given radius.
+ * <p>
+ * Every tile offset in the square around the source has exactly one parent, the tile one step
+ * closer to the source on the Bresenham line from the source to the tile. Offsets are sorted by
+ * distance from the source, so walking the table in order always visits a parent before its
+ * children, and every tile in range is visited exactly once.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class RayTable {
+
+    private static final ConcurrentHashMap<Integer, RayTable> tables = new ConcurrentHashMap<Integer, RayTable>();
+
+    private final int radius;
+    private final int[] dx;
+    private final int[] dy;
+    private final int[] parent; // index of parent offset, -1 for the source
+
+    private RayTable(int radius) {
+        this.radius = radius;
+        int side = 2 * radius + 1;
+        int count = side * side;
+        dx = new int[count];
+        dy = new int[count];
+        parent = new int[count];
+        int[] indexOf = new int[count]; // (dx + radius) * side + (dy + radius)
+
+        parent[0] = -1;
+        indexOf[radius * side + radius] = 0;
+        int i = 1;
+        BresenhamLine line = new BresenhamLine();
+        for (int d = 1; d <= radius; d++) {
+            for (int x = -d; x <= d; x++) {
+                for (int y = -d; y <= d; y++) {
+                    if (Math.max(Math.abs(x), Math.abs(y)) != d) {
+                        continue;
+                    }
+                    // the point one step closer to the source on the line from the source
+                    line.plot(0, 0, x, y);
+                    for (int step = 0; step < d - 1; step++) {
+                        line.next();
+                    }
+                    dx[i] = x;
+                    dy[i] = y;
+                    parent[i] = indexOf[(line.getX() + radius) * side + (line.getY() + radius)];
+                    indexOf[(x + radius) * side + (y + radius)] = i;
+                    i++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the ray table for a radius, tables are made the first time they are needed
+     *
+     * @param radius the radius
+     * @return the ray table
+     */
+    public static RayTable get(int radius) {
+        RayTable table = tables.get(radius);
+        if (table == null) {
+            tables.putIfAbsent(radius, new RayTable(radius));
+            table = tables.get(radius);
+        }
+        return table;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return number of offsets in the table, the first offset is the source itself
+     */
+    public int size() {
+        return dx.length;
+    }
+
+    public int getDx(int i) {
+        return dx[i];
+    }
+
+    public int getDy(int i) {
+        return dy[i];
+    }
+
+    /**
+     * @param i index of an offset
+     * @return index of the parent offset, always lower than i (-1 for the source)
+     */
+    public int getParent(int i) {
+        return parent[i];
+    }
+}
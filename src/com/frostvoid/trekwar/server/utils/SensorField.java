@@ -0,0 +1,271 @@
+/*
+ * Copyright 2012 FrostVoid Software
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.frostvoid.trekwar.server.utils;
+
+import com.frostvoid.trekwar.common.Galaxy;
+import com.frostvoid.trekwar.common.SensorOverlay;
+import com.frostvoid.trekwar.common.StarSystem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The sensor strength a single sensor source (starsystem, fleet, etc..) gives
+ * to the tiles around it, for a rectangle of the map covering every tile the source can see.
+ * Tiles not reached by the source hold Integer.MIN_VALUE, tiles that are only explored hold -1 or 0.
+ *
+ * @author Erlend Aakre
+ * @author FrostVoid Software
+ * @author http://www.frostvoid.com
+ */
+public class SensorField {
+
+    /**
+     * Line of sight algorithms
+     * BOUNDING_BOX_RAYS: a Bresenham line to every tile on the edge of the bounding box
+     * RAY_TABLE: precomputed rays visiting every tile in range once (see RayTable)
+     */
+    public enum Algorithm {
+        BOUNDING_BOX_RAYS, RAY_TABLE
+    }
+
+    private static volatile Algorithm algorithm = Algorithm.RAY_TABLE;
+
+    private final int sourceX;
+    private final int sourceY;
+    private final int sensorStrength;
+
+    private final int left;
+    private final int top;
+    private final int right; // inclusive
+    private final int bottom; // inclusive
+    private final int[] values; // (x - left) * (bottom - top + 1) + (y - top)
+
+    private SensorField(int sourceX, int sourceY, int sensorStrength, int left, int top, int right, int bottom) {
+        this.sourceX = sourceX;
+        this.sourceY = sourceY;
+        this.sensorStrength = sensorStrength;
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+        values = new int[(right - left + 1) * (bottom - top + 1)];
+        Arrays.fill(values, Integer.MIN_VALUE);
+    }
+
+    /**
+     * Does Line Of Sight for a sensor source with the selected algorithm
+     *
+     * @param galaxy         the galaxy
+     * @param sourceX        the source x coordinate
+     * @param sourceY        the source y coordinate
+     * @param sensorStrength the sensor strength
+     * @return the sensor field of the source
+     */
+    public static SensorField compute(Galaxy galaxy, int sourceX, int sourceY, int sensorStrength) {
+        return compute(galaxy, sourceX, sourceY, sensorStrength, algorithm);
+    }
+
+    /**
+     * Does Line Of Sight for a sensor source.
+     * The sensor strength is reduced by the sensor cost of every tile on the way from the source,
+     * tiles are seen while the sensor strength left is above 0
+     *
+     * @param galaxy         the galaxy
+     * @param sourceX        the source x coordinate
+     * @param sourceY        the source y coordinate
+     * @param sensorStrength the sensor strength
+     * @param algorithm      the line of sight algorithm to use
+     * @return the sensor field of the source
+     */
+    public static SensorField compute(Galaxy galaxy, int sourceX, int sourceY, int sensorStrength, Algorithm algorithm) {
+        StarSystem[][] map = galaxy.getMap();
+        int r = Math.max(1, sensorStrength / 10);
+        SensorField field = new SensorField(sourceX, sourceY, sensorStrength,
+                Math.max(0, sourceX - r), Math.max(0, sourceY - r),
+                Math.min(map.length - 1, sourceX + r), Math.min(map[0].length - 1, sourceY + r));
+
+        if (algorithm == Algorithm.RAY_TABLE) {
+            field.castRayTable(map);
+        } else {
+            field.traceBoundingBoxRays(map);
+        }
+        return field;
+    }
+
+    /**
+     * Traces a Bresenham line from the source to every tile on the edge of the bounding box,
+     * tiles close to the source are visited by many lines
+     *
+     * @param map the map
+     */
+    private void traceBoundingBoxRays(StarSystem[][] map) {
+        ArrayList<StarSystem> boundingBox = MapTools.getBoundingBox(map, map[sourceX][sourceY], sensorStrength / 10);
+
+        // ALWAYS remove fog of war in adjacent spaces
+        ArrayList<StarSystem> box = MapTools.getBoundingBox(map, map[sourceX][sourceY], 1);
+        for (StarSystem s : box) {
+            update(s.getX(), s.getY(), -1);
+        }
+
+        // ALWAYS remove fog of war AND show tile, for the starsystem the sensor source is in
+        update(sourceX, sourceY, 0);
+
+        int sourceCost = map[sourceX][sourceY].getSensorCost();
+        if (!boundingBox.isEmpty()) {
+            update(sourceX, sourceY, sensorStrength - sourceCost);
+        }
+
+        BresenhamLine b = BresenhamLine.getThreadInstance();
+        for (StarSystem s : boundingBox) {
+            b.plot(sourceX, sourceY, s.getX(), s.getY());
+            int strength = sensorStrength - sourceCost;
+
+            while (b.next()) {
+                strength -= map[b.getX()][b.getY()].getSensorCost();
+                if (strength <= 0) {
+                    break;
+                } else {
+                    update(b.getX(), b.getY(), strength);
+                }
+            }
+        }
+    }
+
+    /**
+     * Walks the precomputed rays of a RayTable, every tile in range is visited once,
+     * and gets the sensor strength left on its parent tile minus its own sensor cost
+     *
+     * @param map the map
+     */
+    private void castRayTable(StarSystem[][] map) {
+        // ALWAYS remove fog of war in adjacent spaces
+        for (int x = left; x <= right; x++) {
+            for (int y = top; y <= bottom; y++) {
+                if (Math.abs(x - sourceX) <= 1 && Math.abs(y - sourceY) <= 1) {
+                    update(x, y, -1);
+                }
+            }
+        }
+
+        // ALWAYS remove fog of war AND show tile, for the starsystem the sensor source is in
+        int sourceStrength = sensorStrength - map[sourceX][sourceY].getSensorCost();
+        update(sourceX, sourceY, Math.max(0, sourceStrength));
+        if (sourceStrength <= 0) {
+            return;
+        }
+
+        RayTable rays = RayTable.get(sensorStrength / 10);
+        int[] strengths = new int[rays.size()]; // strength left after each tile, 0 if not reached
+        strengths[0] = sourceStrength;
+        for (int i = 1; i < strengths.length; i++) {
+            int parentStrength = strengths[rays.getParent(i)];
+            if (parentStrength <= 0) {
+                continue;
+            }
+            int x = sourceX + rays.getDx(i);
+            int y = sourceY + rays.getDy(i);
+            if (x < left || x > right || y < top || y > bottom) {
+                continue;
+            }
+            int strength = parentStrength - map[x][y].getSensorCost();
+            if (strength > 0) {
+                strengths[i] = strength;
+                update(x, y, strength);
+            }
+        }
+    }
+
+    /**
+     * Selects the line of sight algorithm, cached sensor fields are removed
+     *
+     * @param newAlgorithm the algorithm
+     */
+    public static void setAlgorithm(Algorithm newAlgorithm) {
+        algorithm = newAlgorithm;
+        LineOfSightCache.clear();
+    }
+
+    public static Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    private void update(int x, int y, int strength) {
+        int i = (x - left) * (bottom - top + 1) + (y - top);
+        values[i] = Math.max(values[i], strength);
+    }
+
+    /**
+     * Adds this field to a sensor overlay, the highest sensor strength is kept for each tile
+     *
+     * @param overlay the sensor overlay of a user
+     */
+    public void applyTo(SensorOverlay overlay) {
+        int i = 0;
+        for (int x = left; x <= right; x++) {
+            for (int y = top; y <= bottom; y++, i++) {
+                overlay.update(x, y, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Adds this field to the tiles of a sensor overlay that are marked in a mask
+     *
+     * @param overlay the sensor overlay of a user
+     * @param mask    the tiles to update, index of tile x,y is x * height + y
+     * @param height  the height of the map
+     */
+    public void applyTo(SensorOverlay overlay, boolean[] mask, int height) {
+        int i = 0;
+        for (int x = left; x <= right; x++) {
+            int m = x * height;
+            for (int y = top; y <= bottom; y++, i++) {
+                if (mask[m + y]) {
+                    overlay.update(x, y, values[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if this field was made for a source at the same location and with the same strength
+     *
+     * @param x        the source x coordinate
+     * @param y        the source y coordinate
+     * @param strength the sensor strength
+     * @return true if the source is unchanged
+     */
+    public boolean isSameSource(int x, int y, int strength) {
+        return sourceX == x && sourceY == y && sensorStrength == strength;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getTop() {
+        return top;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getBottom() {
+        return bottom;
+    }
+}